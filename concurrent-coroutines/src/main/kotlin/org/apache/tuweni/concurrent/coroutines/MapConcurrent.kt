@@ -0,0 +1,73 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.concurrent.coroutines
+
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.async
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.asFlow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Semaphore
+
+/**
+ * Returns a flow of the results of applying [transform] to each element of this flow, with at most [parallelism]
+ * transformations running at any time.
+ *
+ * Results are emitted in the order of the original elements. Elements are only collected from this flow as earlier
+ * transformations complete and their results are collected, so slow transformations or a slow collector suspend the
+ * upstream flow. If any transformation fails, the transformations still running are cancelled and the flow fails with
+ * the same exception.
+ *
+ * @param parallelism the maximum number of transformations running at any time
+ * @param transform the transformation to apply to each element
+ * @return a flow of the transformed elements
+ */
+fun <T, R> Flow<T>.mapConcurrent(parallelism: Int, transform: suspend (T) -> R): Flow<R> {
+  require(parallelism >= 1) { "parallelism must be at least 1" }
+  val upstream = this
+  return flow {
+    coroutineScope {
+      val permits = Semaphore(parallelism)
+      val pending = Channel<Deferred<R>>(parallelism)
+      launch {
+        try {
+          upstream.collect { element ->
+            permits.acquire()
+            pending.send(
+              async {
+                try {
+                  transform(element)
+                } finally {
+                  permits.release()
+                }
+              },
+            )
+          }
+        } finally {
+          pending.close()
+        }
+      }
+      for (deferred in pending) {
+        emit(deferred.await())
+      }
+    }
+  }
+}
+
+/**
+ * Applies [transform] to each element of this iterable, with at most [parallelism] transformations running at any
+ * time.
+ *
+ * If any transformation fails, the transformations still running are cancelled, no further elements are transformed,
+ * and the same exception is thrown.
+ *
+ * @param parallelism the maximum number of transformations running at any time
+ * @param transform the transformation to apply to each element
+ * @return the transformed elements, in the order of the original elements
+ */
+suspend fun <T, R> Iterable<T>.mapConcurrent(parallelism: Int, transform: suspend (T) -> R): List<R> =
+  asFlow().mapConcurrent(parallelism, transform).toList()
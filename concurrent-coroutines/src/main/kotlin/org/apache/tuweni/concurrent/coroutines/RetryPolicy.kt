@@ -0,0 +1,166 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.concurrent.coroutines
+
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.math.ceil
+import kotlin.random.Random
+
+/**
+ * A budget limiting retries, shared across all the operations using it.
+ *
+ * Each operation deposits [retryRatio] tokens, up to a total of [maxTokens], and each retry withdraws a whole token.
+ * Once the budget is exhausted, operations are only attempted once until enough of them have been made to fund further
+ * retries. When a dependency fails, the load from the operations sharing a budget is therefore bounded to roughly
+ * `1 + retryRatio` times the usual load, rather than multiplied by the number of attempts each operation may make.
+ *
+ * @param retryRatio the number of tokens deposited by each operation
+ * @param maxTokens the maximum number of tokens held by the budget
+ * @param initialTokens the number of tokens initially held by the budget
+ */
+class RetryBudget(
+  val retryRatio: Double = 0.1,
+  val maxTokens: Int = 100,
+  initialTokens: Int = maxTokens,
+) {
+  init {
+    require(retryRatio >= 0) { "retryRatio must not be negative" }
+    require(maxTokens >= 0) { "maxTokens must not be negative" }
+    require(initialTokens in 0..maxTokens) { "initialTokens must be between 0 and maxTokens" }
+  }
+
+  // tokens are held in thousandths, so that fractional deposits are not lost
+  private val deposit = (retryRatio * SCALE).toLong()
+  private val capacity = maxTokens * SCALE
+  private val balance = AtomicLong(initialTokens * SCALE)
+
+  /**
+   * The number of whole tokens currently available.
+   */
+  val available: Int
+    get() = (balance.get() / SCALE).toInt()
+
+  /**
+   * Record a new operation, depositing [retryRatio] tokens.
+   */
+  fun deposit() {
+    balance.accumulateAndGet(deposit) { current, amount -> minOf(capacity, current + amount) }
+  }
+
+  /**
+   * Withdraw a token for a retry.
+   *
+   * @return `true` if a token was withdrawn and the retry may be made
+   */
+  fun tryWithdraw(): Boolean {
+    while (true) {
+      val current = balance.get()
+      if (current < SCALE) {
+        return false
+      }
+      if (balance.compareAndSet(current, current - SCALE)) {
+        return true
+      }
+    }
+  }
+
+  private companion object {
+    const val SCALE = 1000L
+  }
+}
+
+/**
+ * A policy for retrying operations, used by [retry].
+ *
+ * The delay before each retry is chosen with decorrelated jitter: a random delay between [baseDelayMs] and three times
+ * the previous delay, capped at [maxDelayMs]. Delays grow exponentially on average, but callers retrying after the
+ * same failure do not retry in lockstep.
+ *
+ * If [hedgePercentile] is set, the policy tracks the latency of successful attempts, and when an attempt has not
+ * succeeded after that percentile of the recorded latencies, a further attempt is started alongside it. The first
+ * attempt to succeed wins. Hedging needs some recorded latencies before it starts, so the first operations using a
+ * policy are not hedged.
+ *
+ * A policy may be shared by many callers, which then share its latency samples and its [budget]. Retries and hedged
+ * attempts both withdraw from the budget.
+ *
+ * @param maxAttempts the maximum number of attempts for each operation, including the first
+ * @param baseDelayMs the minimum delay before a retry, in milliseconds
+ * @param maxDelayMs the maximum delay before a retry, in milliseconds
+ * @param budget the budget funding retries and hedged attempts, or `null` if retries are not limited by a budget
+ * @param hedgePercentile the percentile of recorded latencies after which an attempt is hedged, between 0 and 1, or
+ *         `null` if attempts should not be hedged
+ * @param random the source of randomness for delays
+ */
+class RetryPolicy @JvmOverloads constructor(
+  val maxAttempts: Int,
+  val baseDelayMs: Long,
+  val maxDelayMs: Long,
+  val budget: RetryBudget? = null,
+  val hedgePercentile: Double? = null,
+  private val random: Random = Random.Default,
+) {
+  init {
+    require(maxAttempts >= 1) { "maxAttempts must be at least 1" }
+    require(baseDelayMs >= 0) { "baseDelayMs must not be negative" }
+    require(maxDelayMs >= baseDelayMs) { "maxDelayMs must not be less than baseDelayMs" }
+    require(hedgePercentile == null || hedgePercentile > 0 && hedgePercentile <= 1) {
+      "hedgePercentile must be between 0 and 1"
+    }
+  }
+
+  private val latencies = LongArray(LATENCY_SAMPLES)
+  private var latencyCount = 0
+  private var latencyIndex = 0
+
+  /**
+   * Choose the delay before a retry.
+   *
+   * @param previousDelayMs the delay before the previous retry, or 0 for the first retry
+   * @return the delay before the next retry, in milliseconds
+   */
+  fun nextDelay(previousDelayMs: Long): Long {
+    val upper = minOf(maxDelayMs, maxOf(baseDelayMs, previousDelayMs) * 3)
+    if (upper <= baseDelayMs) {
+      return baseDelayMs
+    }
+    return random.nextLong(baseDelayMs, upper + 1)
+  }
+
+  /**
+   * Record the latency of a successful attempt.
+   *
+   * @param latencyMs the time taken by the attempt, in milliseconds
+   */
+  @Synchronized
+  fun recordLatency(latencyMs: Long) {
+    latencies[latencyIndex] = latencyMs
+    latencyIndex = (latencyIndex + 1) % LATENCY_SAMPLES
+    if (latencyCount < LATENCY_SAMPLES) {
+      ++latencyCount
+    }
+  }
+
+  /**
+   * The delay after which an attempt should be hedged.
+   *
+   * @return the delay in milliseconds, or `null` if attempts should not be hedged
+   */
+  fun hedgeDelay(): Long? {
+    val percentile = hedgePercentile ?: return null
+    val samples = synchronized(this) {
+      if (latencyCount < MIN_HEDGE_SAMPLES) {
+        return null
+      }
+      latencies.copyOf(latencyCount)
+    }
+    samples.sort()
+    val index = (ceil(percentile * samples.size).toInt() - 1).coerceIn(0, samples.size - 1)
+    return maxOf(1, samples[index])
+  }
+
+  private companion object {
+    const val LATENCY_SAMPLES = 128
+    const val MIN_HEDGE_SAMPLES = 16
+  }
+}
@@ -8,6 +8,10 @@ import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.ExperimentalCoroutinesApi
 import kotlinx.coroutines.Job
 import kotlinx.coroutines.async
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
 import kotlinx.coroutines.withTimeoutOrNull
 
 /**
@@ -144,3 +148,82 @@ suspend fun <R> timeoutAndRetry(
     ++i
   }
 }
+
+/**
+ * Retry a suspending block according to a [RetryPolicy] until a non-null result is obtained.
+ *
+ * Each attempt that returns `null` is retried after a jittered delay chosen by the policy, while the policy's budget
+ * allows it and at most [RetryPolicy.maxAttempts] attempts are made. If the policy hedges attempts, an attempt that
+ * has not completed within the policy's hedging delay is joined by another, and the first non-null result is
+ * returned. Attempts still running when a result is obtained are cancelled. If any attempt throws an exception, all
+ * other attempts are cancelled and the exception is rethrown.
+ *
+ * @param policy the retry policy
+ * @param block the suspending block to be executed, receiving the attempt number
+ * @return the first non-null result, or `null` if all attempts fail
+ */
+suspend fun <R> retry(
+  policy: RetryPolicy,
+  block: suspend (Int) -> R?,
+): R? = coroutineScope {
+  val outcomes = Channel<AttemptOutcome<R>>(Channel.UNLIMITED)
+  val jobs = mutableListOf<Job>()
+  fun start(attempt: Int) {
+    val startTime = System.nanoTime()
+    jobs.add(
+      launch {
+        val result = block(attempt)
+        outcomes.send(AttemptOutcome(result, (System.nanoTime() - startTime) / 1_000_000))
+      },
+    )
+  }
+
+  policy.budget?.deposit()
+  var attempts = 1
+  var running = 1
+  var hedging = true
+  var backoff = 0L
+  var result: R? = null
+  start(attempts)
+  try {
+    while (true) {
+      val hedgeDelay = if (hedging && attempts < policy.maxAttempts) policy.hedgeDelay() else null
+      val outcome = if (hedgeDelay == null) {
+        outcomes.receive()
+      } else {
+        withTimeoutOrNull(hedgeDelay) { outcomes.receive() }
+      }
+      if (outcome == null) {
+        // no attempt completed within the hedging delay
+        if (policy.budget?.tryWithdraw() == false) {
+          hedging = false
+        } else {
+          start(++attempts)
+          ++running
+        }
+        continue
+      }
+      --running
+      if (outcome.result != null) {
+        policy.recordLatency(outcome.latencyMs)
+        result = outcome.result
+        break
+      }
+      if (running > 0) {
+        continue
+      }
+      if (attempts >= policy.maxAttempts || policy.budget?.tryWithdraw() == false) {
+        break
+      }
+      backoff = policy.nextDelay(backoff)
+      delay(backoff)
+      start(++attempts)
+      ++running
+    }
+  } finally {
+    jobs.forEach { job -> job.cancel() }
+  }
+  result
+}
+
+private class AttemptOutcome<R>(val result: R?, val latencyMs: Long)
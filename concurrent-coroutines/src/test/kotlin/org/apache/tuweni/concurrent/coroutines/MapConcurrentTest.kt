@@ -0,0 +1,92 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.concurrent.coroutines
+
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.awaitCancellation
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.asFlow
+import kotlinx.coroutines.flow.onEach
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+
+internal class MapConcurrentTest {
+
+  @Test
+  fun shouldPreserveOrder() = runBlocking {
+    val result = (1..20).mapConcurrent(4) { i ->
+      delay((20 - i) * 5L)
+      i * 2
+    }
+    assertEquals((1..20).map { it * 2 }, result)
+  }
+
+  @Test
+  fun shouldLimitParallelism() = runBlocking {
+    val running = AtomicInteger()
+    val maxRunning = AtomicInteger()
+    (1..50).mapConcurrent(3) {
+      val now = running.incrementAndGet()
+      maxRunning.accumulateAndGet(now) { a, b -> maxOf(a, b) }
+      delay(10)
+      running.decrementAndGet()
+    }
+    assertEquals(3, maxRunning.get())
+  }
+
+  @Test
+  fun shouldApplyBackpressureToUpstream() = runBlocking {
+    val collected = AtomicInteger()
+    (1..100).asFlow()
+      .onEach { collected.incrementAndGet() }
+      .mapConcurrent(2) { it }
+      .collect {
+        delay(5)
+        assertTrue(collected.get() <= it + 5, "upstream ran ahead of the collector")
+      }
+  }
+
+  @Test
+  fun shouldCancelOthersOnFailure() = runBlocking {
+    val cancelled = AtomicBoolean()
+    val started = AtomicInteger()
+    val exception = assertThrows<IllegalStateException> {
+      runBlocking {
+        (1..10).mapConcurrent(2) { i ->
+          started.incrementAndGet()
+          if (i == 2) {
+            delay(10)
+            throw IllegalStateException("failed")
+          }
+          try {
+            awaitCancellation()
+          } catch (e: CancellationException) {
+            cancelled.set(true)
+            throw e
+          }
+        }
+      }
+    }
+    assertEquals("failed", exception.message)
+    assertTrue(cancelled.get())
+    assertEquals(2, started.get())
+  }
+
+  @Test
+  fun shouldRejectInvalidParallelism() {
+    assertThrows<IllegalArgumentException> {
+      listOf(1).asFlow().mapConcurrent(0) { it }
+    }
+  }
+
+  @Test
+  fun shouldMapEmptyFlow() = runBlocking {
+    assertEquals(emptyList<Int>(), emptyList<Int>().asFlow().mapConcurrent(4) { it }.toList())
+  }
+}
@@ -0,0 +1,148 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.concurrent.coroutines
+
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.awaitCancellation
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+
+internal class RetryPolicyTest {
+
+  @Test
+  fun shouldChooseDelaysWithinBounds() {
+    val policy = RetryPolicy(maxAttempts = 10, baseDelayMs = 10, maxDelayMs = 1000)
+    var delay = 0L
+    repeat(1000) {
+      val next = policy.nextDelay(delay)
+      assertTrue(next >= 10, "delay $next below base")
+      assertTrue(next <= 1000, "delay $next above cap")
+      assertTrue(next <= maxOf(10, delay) * 3, "delay $next grew too fast from $delay")
+      delay = next
+    }
+  }
+
+  @Test
+  fun shouldNotJitterFixedDelay() {
+    val policy = RetryPolicy(maxAttempts = 10, baseDelayMs = 50, maxDelayMs = 50)
+    assertEquals(50L, policy.nextDelay(0))
+    assertEquals(50L, policy.nextDelay(50))
+  }
+
+  @Test
+  fun shouldRetryUntilSuccess() = runBlocking {
+    val attempts = AtomicInteger()
+    val result = retry(RetryPolicy(maxAttempts = 5, baseDelayMs = 1, maxDelayMs = 10)) { attempt ->
+      attempts.incrementAndGet()
+      if (attempt == 3) "done" else null
+    }
+    assertEquals("done", result)
+    assertEquals(3, attempts.get())
+  }
+
+  @Test
+  fun shouldStopRetryingAfterMaxAttempts() = runBlocking {
+    val attempts = AtomicInteger()
+    val result = retry(RetryPolicy(maxAttempts = 4, baseDelayMs = 1, maxDelayMs = 10)) {
+      attempts.incrementAndGet()
+      null
+    }
+    assertNull(result)
+    assertEquals(4, attempts.get())
+  }
+
+  @Test
+  fun shouldStopRetryingWhenBudgetExhausted() = runBlocking {
+    val budget = RetryBudget(retryRatio = 0.4, maxTokens = 10, initialTokens = 2)
+    val policy = RetryPolicy(maxAttempts = 10, baseDelayMs = 1, maxDelayMs = 1, budget = budget)
+    val attempts = AtomicInteger()
+    assertNull(
+      retry(policy) {
+        attempts.incrementAndGet()
+        null
+      },
+    )
+    // the first attempt, then two retries funded by the initial tokens
+    assertEquals(3, attempts.get())
+    assertEquals(0, budget.available)
+
+    attempts.set(0)
+    assertNull(
+      retry(policy) {
+        attempts.incrementAndGet()
+        null
+      },
+    )
+    // the deposits of the two operations do not yet fund a retry
+    assertEquals(1, attempts.get())
+  }
+
+  @Test
+  fun shouldCapBudget() {
+    val budget = RetryBudget(retryRatio = 1.0, maxTokens = 3, initialTokens = 0)
+    repeat(10) { budget.deposit() }
+    assertEquals(3, budget.available)
+    assertTrue(budget.tryWithdraw())
+    assertTrue(budget.tryWithdraw())
+    assertTrue(budget.tryWithdraw())
+    assertFalse(budget.tryWithdraw())
+  }
+
+  @Test
+  fun shouldRethrowExceptions() {
+    val exception = assertThrows<IllegalStateException> {
+      runBlocking {
+        retry(RetryPolicy(maxAttempts = 5, baseDelayMs = 1, maxDelayMs = 10)) {
+          throw IllegalStateException("failed")
+        }
+      }
+    }
+    assertEquals("failed", exception.message)
+  }
+
+  @Test
+  fun shouldNotHedgeWithoutLatencySamples() {
+    val policy = RetryPolicy(maxAttempts = 2, baseDelayMs = 1, maxDelayMs = 10, hedgePercentile = 0.9)
+    assertNull(policy.hedgeDelay())
+    repeat(100) { i -> policy.recordLatency(i + 1L) }
+    assertEquals(90L, policy.hedgeDelay())
+  }
+
+  @Test
+  fun shouldHedgeSlowAttempts() = runBlocking {
+    val policy = RetryPolicy(maxAttempts = 2, baseDelayMs = 1, maxDelayMs = 10, hedgePercentile = 0.5)
+    repeat(20) { policy.recordLatency(10) }
+    val cancelled = AtomicBoolean()
+    val result = retry(policy) { attempt ->
+      if (attempt == 1) {
+        try {
+          awaitCancellation()
+        } catch (e: CancellationException) {
+          cancelled.set(true)
+          throw e
+        }
+      }
+      delay(5)
+      "hedged"
+    }
+    assertEquals("hedged", result)
+    assertTrue(cancelled.get())
+  }
+
+  @Test
+  fun shouldRejectInvalidPolicies() {
+    assertThrows<IllegalArgumentException> { RetryPolicy(maxAttempts = 0, baseDelayMs = 1, maxDelayMs = 10) }
+    assertThrows<IllegalArgumentException> { RetryPolicy(maxAttempts = 1, baseDelayMs = 10, maxDelayMs = 1) }
+    assertThrows<IllegalArgumentException> {
+      RetryPolicy(maxAttempts = 1, baseDelayMs = 1, maxDelayMs = 10, hedgePercentile = 1.5)
+    }
+  }
+}
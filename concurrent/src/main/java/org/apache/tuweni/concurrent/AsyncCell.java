@@ -0,0 +1,584 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.concurrent;
+
+import static java.util.Objects.requireNonNull;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+
+/**
+ * A single-assignment cell holding the outcome of an asynchronous operation, shared by {@link
+ * DefaultCompletableAsyncResult} and {@link DefaultCompletableAsyncCompletion}.
+ *
+ * <p>Continuations waiting for the outcome are kept on a lock-free stack, and are run in the order
+ * they were added by the thread that completes the cell. Once the cell is complete, continuations
+ * are run immediately by the thread adding them, without being stored.
+ *
+ * <p>Continuations that complete a dependent cell do not run its continuations themselves, but
+ * return the cell to the thread completing the source, which runs them in a loop. Completing the
+ * head of a long chain of dependent cells therefore does not exhaust the stack.
+ *
+ * <p>The outcome of dependent cells follows the conventions of {@link
+ * java.util.concurrent.CompletableFuture}: a dependent cell fails with a {@link
+ * CompletionException} wrapping the exception of its source, or of its own function, while cells
+ * completed explicitly hold the exception they were completed with.
+ *
+ * @param <T> The type of the value held by the cell.
+ */
+abstract class AsyncCell<T> {
+
+  /** A continuation, run with the encoded outcome of a cell when it completes. */
+  abstract static class Continuation {
+    @Nullable Continuation next;
+
+    /**
+     * Run the continuation.
+     *
+     * @param outcome the encoded outcome of the cell
+     * @return a dependent cell completed by the continuation, whose own continuations have yet to
+     *     be run, or {@code null}
+     */
+    @Nullable
+    abstract AsyncCell<?> run(Object outcome);
+  }
+
+  private static final class Failure {
+    private final Throwable ex;
+
+    private Failure(Throwable ex) {
+      this.ex = ex;
+    }
+  }
+
+  // the encoded outcome of a cell completed with null
+  private static final Object NIL = new Object();
+
+  // the stack of a cell that has run its continuations
+  private static final Continuation CLOSED =
+      new Continuation() {
+        @Override
+        @Nullable
+        AsyncCell<?> run(Object outcome) {
+          return null;
+        }
+      };
+
+  private static final VarHandle OUTCOME;
+  private static final VarHandle STACK;
+
+  static {
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      OUTCOME = lookup.findVarHandle(AsyncCell.class, "outcome", Object.class);
+      STACK = lookup.findVarHandle(AsyncCell.class, "stack", Continuation.class);
+    } catch (ReflectiveOperationException ex) {
+      throw new ExceptionInInitializerError(ex);
+    }
+  }
+
+  @Nullable private volatile Object outcome;
+  @Nullable private volatile Continuation stack;
+
+  AsyncCell() {}
+
+  AsyncCell(@Nullable T value) {
+    this.outcome = encode(value);
+    this.stack = CLOSED;
+  }
+
+  static Object encode(@Nullable Object value) {
+    return (value == null) ? NIL : value;
+  }
+
+  static Object encodeFailure(Throwable ex) {
+    return new Failure(requireNonNull(ex));
+  }
+
+  @Nullable
+  @SuppressWarnings("unchecked")
+  static <T> T valueOf(Object outcome) {
+    return (outcome == NIL || outcome instanceof Failure) ? null : (T) outcome;
+  }
+
+  @Nullable
+  static Throwable failureOf(Object outcome) {
+    return (outcome instanceof Failure) ? ((Failure) outcome).ex : null;
+  }
+
+  static <T> List<T> valuesOf(Object[] outcomes) {
+    List<T> values = new ArrayList<>(outcomes.length);
+    for (Object outcome : outcomes) {
+      values.add(valueOf(outcome));
+    }
+    return values;
+  }
+
+  static Throwable wrap(Throwable ex) {
+    return (ex instanceof CompletionException) ? ex : new CompletionException(ex);
+  }
+
+  final boolean completeWith(Object encoded) {
+    if (!OUTCOME.compareAndSet(this, null, encoded)) {
+      return false;
+    }
+    postComplete(this);
+    return true;
+  }
+
+  /**
+   * Complete this cell without running its continuations, which are left to the caller.
+   *
+   * @return this cell, if the outcome was set, or {@code null} if the cell was already complete
+   */
+  @Nullable
+  final AsyncCell<?> settle(Object encoded) {
+    return OUTCOME.compareAndSet(this, null, encoded) ? this : null;
+  }
+
+  // runs the continuations of a completed cell, and of the dependent cells they complete
+  private static void postComplete(@Nullable AsyncCell<?> cell) {
+    ArrayDeque<AsyncCell<?>> completed = null;
+    Throwable thrown = null;
+    while (cell != null) {
+      Continuation head = (Continuation) STACK.getAndSet(cell, CLOSED);
+      // reverse the stack, so continuations run in the order they were added
+      Continuation reversed = null;
+      while (head != null) {
+        Continuation next = head.next;
+        head.next = reversed;
+        reversed = head;
+        head = next;
+      }
+      Object encoded = cell.outcome;
+      while (reversed != null) {
+        Continuation next = reversed.next;
+        reversed.next = null;
+        try {
+          AsyncCell<?> dependent = reversed.run(encoded);
+          if (dependent != null) {
+            if (completed == null) {
+              completed = new ArrayDeque<>();
+            }
+            completed.add(dependent);
+          }
+        } catch (Throwable t) {
+          // keep running the remaining continuations, so that no dependent is left incomplete
+          if (thrown == null) {
+            thrown = t;
+          }
+        }
+        reversed = next;
+      }
+      cell = (completed == null) ? null : completed.poll();
+    }
+    if (thrown instanceof RuntimeException) {
+      throw (RuntimeException) thrown;
+    }
+    if (thrown instanceof Error) {
+      throw (Error) thrown;
+    }
+  }
+
+  final boolean completeValue(@Nullable T value) {
+    return completeWith(encode(value));
+  }
+
+  final boolean completeFailure(Throwable ex) {
+    return completeWith(encodeFailure(ex));
+  }
+
+  final boolean cancelCell() {
+    return completeFailure(new CancellationException()) || isCancelledCell();
+  }
+
+  /**
+   * Provides the encoded outcome of this cell.
+   *
+   * @return the encoded outcome, or {@code null} if this cell is not complete
+   */
+  @Nullable
+  final Object outcome() {
+    return outcome;
+  }
+
+  final boolean isDoneCell() {
+    return outcome != null;
+  }
+
+  final boolean isFailedCell() {
+    return outcome instanceof Failure;
+  }
+
+  final boolean isCancelledCell() {
+    return failureOf(outcome) instanceof CancellationException;
+  }
+
+  /**
+   * Run a continuation when this cell completes, or immediately if it is already complete.
+   *
+   * @param continuation the continuation, which must not throw
+   */
+  final void onComplete(Continuation continuation) {
+    while (true) {
+      Continuation head = stack;
+      if (head == CLOSED) {
+        postComplete(continuation.run(outcome));
+        return;
+      }
+      continuation.next = head;
+      if (STACK.compareAndSet(this, head, continuation)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Wait for this cell to complete.
+   *
+   * @param timeout the maximum time to wait
+   * @param unit the time unit of the timeout argument
+   * @return the encoded outcome
+   */
+  final Object await(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+    Object o = outcome;
+    if (o != null) {
+      return o;
+    }
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    Waiter waiter = new Waiter(Thread.currentThread());
+    onComplete(waiter);
+    try {
+      while ((o = outcome) == null) {
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
+        }
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          throw new TimeoutException();
+        }
+        LockSupport.parkNanos(this, remaining);
+      }
+      return o;
+    } finally {
+      waiter.thread = null;
+    }
+  }
+
+  /**
+   * Provide the value of an outcome, or throw its failure in the way {@link
+   * java.util.concurrent.Future#get()} reports it, wrapped in a {@link CompletionException}.
+   */
+  @Nullable
+  static <T> T report(Object outcome) {
+    Throwable ex = failureOf(outcome);
+    if (ex == null) {
+      return valueOf(outcome);
+    }
+    if (ex instanceof CancellationException) {
+      throw (CancellationException) ex;
+    }
+    Throwable cause = ex;
+    if (ex instanceof CompletionException && ex.getCause() != null) {
+      cause = ex.getCause();
+    }
+    throw new CompletionException(cause.toString(), cause);
+  }
+
+  /**
+   * Complete a cell with the same outcome as an {@link AsyncResult}.
+   *
+   * @param source the result to follow
+   * @param target the cell to complete
+   */
+  static <T> void relay(AsyncResult<? extends T> source, AsyncCell<T> target) {
+    if (source instanceof AsyncCell) {
+      ((AsyncCell<?>) source).onComplete(new Relay(target));
+    } else {
+      source.whenComplete(
+          (value, ex) -> {
+            if (ex == null) {
+              target.completeValue(value);
+            } else {
+              target.completeFailure(ex);
+            }
+          });
+    }
+  }
+
+  /**
+   * Complete a cell with the same outcome as an {@link AsyncCompletion}.
+   *
+   * @param source the completion to follow
+   * @param target the cell to complete
+   */
+  static void relay(AsyncCompletion source, AsyncCell<Void> target) {
+    if (source instanceof AsyncCell) {
+      ((AsyncCell<?>) source).onComplete(new Relay(target));
+    } else {
+      source.whenComplete(
+          ex -> {
+            if (ex == null) {
+              target.completeValue(null);
+            } else {
+              target.completeFailure(ex);
+            }
+          });
+    }
+  }
+
+  private static final class Waiter extends Continuation {
+    @Nullable private volatile Thread thread;
+
+    private Waiter(Thread thread) {
+      this.thread = thread;
+    }
+
+    @Override
+    @Nullable
+    AsyncCell<?> run(Object outcome) {
+      Thread t = thread;
+      if (t != null) {
+        LockSupport.unpark(t);
+      }
+      return null;
+    }
+  }
+
+  /** Completes a target with the outcome it is run with. */
+  static final class Relay extends Continuation {
+    private final AsyncCell<?> target;
+
+    Relay(AsyncCell<?> target) {
+      this.target = target;
+    }
+
+    @Override
+    @Nullable
+    AsyncCell<?> run(Object outcome) {
+      return target.settle(outcome);
+    }
+  }
+
+  /** Invokes a listener with the value or exception of the outcome it is run with. */
+  static final class Listen<T> extends Continuation {
+    private final BiConsumer<? super T, ? super Throwable> listener;
+
+    Listen(BiConsumer<? super T, ? super Throwable> listener) {
+      this.listener = listener;
+    }
+
+    @Override
+    @Nullable
+    AsyncCell<?> run(Object outcome) {
+      listener.accept(valueOf(outcome), failureOf(outcome));
+      return null;
+    }
+  }
+
+  /** Completes a target by applying a function to a value, or propagates a failure. */
+  static final class Apply<T, U> extends Continuation {
+    private final Function<? super T, ? extends U> fn;
+    private final AsyncCell<U> target;
+
+    Apply(Function<? super T, ? extends U> fn, AsyncCell<U> target) {
+      this.fn = fn;
+      this.target = target;
+    }
+
+    @Override
+    @Nullable
+    AsyncCell<?> run(Object outcome) {
+      Throwable ex = failureOf(outcome);
+      if (ex != null) {
+        return target.settle(encodeFailure(wrap(ex)));
+      }
+      U result;
+      try {
+        result = fn.apply(valueOf(outcome));
+      } catch (Throwable t) {
+        return target.settle(encodeFailure(wrap(t)));
+      }
+      return target.settle(encode(result));
+    }
+  }
+
+  /** Completes a target by applying a function to a value or exception. */
+  static final class Handle<T, U> extends Continuation {
+    private final BiFunction<? super T, Throwable, ? extends U> fn;
+    private final AsyncCell<U> target;
+
+    Handle(BiFunction<? super T, Throwable, ? extends U> fn, AsyncCell<U> target) {
+      this.fn = fn;
+      this.target = target;
+    }
+
+    @Override
+    @Nullable
+    AsyncCell<?> run(Object outcome) {
+      U result;
+      try {
+        result = fn.apply(valueOf(outcome), failureOf(outcome));
+      } catch (Throwable t) {
+        return target.settle(encodeFailure(wrap(t)));
+      }
+      return target.settle(encode(result));
+    }
+  }
+
+  /** Invokes an action with a value or exception, then completes a target with the same. */
+  static final class WhenComplete<T> extends Continuation {
+    private final BiConsumer<? super T, ? super Throwable> action;
+    private final AsyncCell<T> target;
+
+    WhenComplete(BiConsumer<? super T, ? super Throwable> action, AsyncCell<T> target) {
+      this.action = action;
+      this.target = target;
+    }
+
+    @Override
+    @Nullable
+    AsyncCell<?> run(Object outcome) {
+      Throwable ex = failureOf(outcome);
+      try {
+        action.accept(valueOf(outcome), ex);
+      } catch (Throwable t) {
+        if (ex == null) {
+          ex = t;
+        } else if (ex != t) {
+          ex.addSuppressed(t);
+        }
+      }
+      return target.settle((ex == null) ? outcome : encodeFailure(wrap(ex)));
+    }
+  }
+
+  /**
+   * Complete a cell once all of a group of results have completed. The cell completes with the
+   * value obtained from the values of the group, or fails with the exception of the first result in
+   * the group that failed.
+   *
+   * @param sources the results to wait for
+   * @param target the cell to complete
+   * @param finisher a function obtaining the value of the cell from the values of the group
+   */
+  static <T> void join(
+      AsyncResult<?>[] sources, AsyncCell<T> target, Function<Object[], ? extends T> finisher) {
+    Join<T> join = new Join<>(sources.length, target, finisher);
+    for (int i = 0; i < sources.length; ++i) {
+      AsyncResult<?> source = requireNonNull(sources[i]);
+      if (source instanceof AsyncCell) {
+        ((AsyncCell<?>) source).onComplete(new Member(join, i));
+      } else {
+        int index = i;
+        source.whenComplete(
+            (value, ex) ->
+                postComplete(
+                    join.complete(index, (ex == null) ? encode(value) : encodeFailure(ex))));
+      }
+    }
+  }
+
+  /**
+   * Complete a cell once all of a group of completions have completed. The cell fails with the
+   * exception of the first completion in the group that failed.
+   *
+   * @param sources the completions to wait for
+   * @param target the cell to complete
+   */
+  static void join(AsyncCompletion[] sources, AsyncCell<Void> target) {
+    Join<Void> join = new Join<>(sources.length, target, outcomes -> null);
+    for (int i = 0; i < sources.length; ++i) {
+      AsyncCompletion source = requireNonNull(sources[i]);
+      if (source instanceof AsyncCell) {
+        ((AsyncCell<?>) source).onComplete(new Member(join, i));
+      } else {
+        int index = i;
+        source.whenComplete(
+            ex -> postComplete(join.complete(index, (ex == null) ? NIL : encodeFailure(ex))));
+      }
+    }
+  }
+
+  private static final class Join<T> {
+    private static final VarHandle REMAINING;
+
+    static {
+      try {
+        REMAINING = MethodHandles.lookup().findVarHandle(Join.class, "remaining", int.class);
+      } catch (ReflectiveOperationException ex) {
+        throw new ExceptionInInitializerError(ex);
+      }
+    }
+
+    private final Object[] outcomes;
+    private final AsyncCell<T> target;
+    private final Function<Object[], ? extends T> finisher;
+    private volatile int remaining;
+
+    private Join(int size, AsyncCell<T> target, Function<Object[], ? extends T> finisher) {
+      this.outcomes = new Object[size];
+      this.target = target;
+      this.finisher = finisher;
+      this.remaining = size;
+      if (size == 0) {
+        postComplete(finish());
+      }
+    }
+
+    @Nullable
+    private AsyncCell<?> complete(int index, Object outcome) {
+      outcomes[index] = outcome;
+      // the decrement publishes the outcome to the thread that finishes the join
+      if ((int) REMAINING.getAndAdd(this, -1) == 1) {
+        return finish();
+      }
+      return null;
+    }
+
+    @Nullable
+    private AsyncCell<?> finish() {
+      for (Object outcome : outcomes) {
+        Throwable ex = failureOf(outcome);
+        if (ex != null) {
+          return target.settle(encodeFailure(wrap(ex)));
+        }
+      }
+      T value;
+      try {
+        value = finisher.apply(outcomes);
+      } catch (Throwable t) {
+        return target.settle(encodeFailure(wrap(t)));
+      }
+      return target.settle(encode(value));
+    }
+  }
+
+  private static final class Member extends Continuation {
+    private final Join<?> join;
+    private final int index;
+
+    private Member(Join<?> join, int index) {
+      this.join = join;
+      this.index = index;
+    }
+
+    @Override
+    @Nullable
+    AsyncCell<?> run(Object outcome) {
+      return join.complete(index, outcome);
+    }
+  }
+}
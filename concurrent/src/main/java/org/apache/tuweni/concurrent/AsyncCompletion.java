@@ -4,9 +4,9 @@ package org.apache.tuweni.concurrent;
 
 import static java.util.Objects.requireNonNull;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.concurrent.CompletableFuture;
+import java.util.List;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ForkJoinPool;
@@ -24,8 +24,7 @@ import io.vertx.core.WorkerExecutor;
 /** A completion that will be complete at a future time. */
 public interface AsyncCompletion {
 
-  AsyncCompletion COMPLETED =
-      new DefaultCompletableAsyncCompletion(CompletableFuture.completedFuture(null));
+  AsyncCompletion COMPLETED = DefaultCompletableAsyncCompletion.completed();
 
   /**
    * Return an already completed completion.
@@ -67,7 +66,9 @@ public interface AsyncCompletion {
    * @return A completion.
    */
   static AsyncCompletion allOf(AsyncCompletion... cs) {
-    return allOf(Arrays.stream(cs));
+    DefaultCompletableAsyncCompletion completion = new DefaultCompletableAsyncCompletion();
+    AsyncCell.join(cs.clone(), completion);
+    return completion;
   }
 
   /**
@@ -79,7 +80,9 @@ public interface AsyncCompletion {
    * @return A completion.
    */
   static AsyncCompletion allOf(Collection<AsyncCompletion> cs) {
-    return allOf(cs.stream());
+    DefaultCompletableAsyncCompletion completion = new DefaultCompletableAsyncCompletion();
+    AsyncCell.join(cs.toArray(new AsyncCompletion[0]), completion);
+    return completion;
   }
 
   /**
@@ -91,25 +94,9 @@ public interface AsyncCompletion {
    * @return A completion.
    */
   static AsyncCompletion allOf(Stream<AsyncCompletion> cs) {
-    @SuppressWarnings("rawtypes")
-    java.util.concurrent.CompletableFuture[] completableFutures =
-        cs.map(
-                completion -> {
-                  java.util.concurrent.CompletableFuture<Void> javaFuture =
-                      new java.util.concurrent.CompletableFuture<>();
-                  completion.whenComplete(
-                      ex -> {
-                        if (ex == null) {
-                          javaFuture.complete(null);
-                        } else {
-                          javaFuture.completeExceptionally(ex);
-                        }
-                      });
-                  return javaFuture;
-                })
-            .toArray(java.util.concurrent.CompletableFuture[]::new);
-    return new DefaultCompletableAsyncCompletion(
-        java.util.concurrent.CompletableFuture.allOf(completableFutures));
+    DefaultCompletableAsyncCompletion completion = new DefaultCompletableAsyncCompletion();
+    AsyncCell.join(cs.toArray(AsyncCompletion[]::new), completion);
+    return completion;
   }
 
   /**
@@ -216,6 +203,61 @@ public interface AsyncCompletion {
     return completion;
   }
 
+  /**
+   * Returns a completion that completes after the given blocking action executes asynchronously on
+   * a new virtual thread.
+   *
+   * <p>Virtual threads are cheap to create and block, so this is well suited to running a large
+   * number of concurrent blocking operations, such as file or network I/O.
+   *
+   * @param action The blocking action to execute.
+   * @return A completion.
+   */
+  static AsyncCompletion executeOnVirtualThread(Runnable action) {
+    return executeBlocking(VirtualThreads.EXECUTOR, action);
+  }
+
+  /**
+   * Returns a completion that completes after all of the given blocking actions execute
+   * concurrently on new virtual threads.
+   *
+   * <p>If any action throws, the returned completion completes exceptionally with the same
+   * exception and the actions that are still running are interrupted. Cancelling the returned
+   * completion also interrupts the actions that are still running.
+   *
+   * @param actions The blocking actions to execute.
+   * @return A completion.
+   */
+  static AsyncCompletion allOfOnVirtualThreads(Collection<? extends Runnable> actions) {
+    requireNonNull(actions);
+    List<Supplier<Void>> fns = new ArrayList<>(actions.size());
+    for (Runnable action : actions) {
+      requireNonNull(action);
+      fns.add(
+          () -> {
+            action.run();
+            return null;
+          });
+    }
+    CompletableAsyncCompletion completion = AsyncCompletion.incomplete();
+    AsyncResult<List<Void>> result = VirtualThreads.executeAll(fns);
+    result.whenComplete(
+        (v, ex) -> {
+          if (ex == null) {
+            completion.complete();
+          } else {
+            completion.completeExceptionally(ex);
+          }
+        });
+    completion.whenComplete(
+        ex -> {
+          if (ex != null) {
+            result.cancel();
+          }
+        });
+    return completion;
+  }
+
   /**
    * Returns a completion that completes after the given blocking action executes asynchronously on
    * a vertx context.
@@ -32,9 +32,7 @@ public interface AsyncResult<T> {
    * @return A completed result.
    */
   static <T> AsyncResult<T> completed(@Nullable T value) {
-    CompletableAsyncResult<T> result = new DefaultCompletableAsyncResult<>();
-    result.complete(value);
-    return result;
+    return new DefaultCompletableAsyncResult<>(value);
   }
 
   /**
@@ -70,7 +68,9 @@ public interface AsyncResult<T> {
    * @return A completion.
    */
   static AsyncCompletion allOf(AsyncResult<?>... rs) {
-    return allOf(Arrays.stream(rs));
+    DefaultCompletableAsyncCompletion completion = new DefaultCompletableAsyncCompletion();
+    AsyncCell.join(rs.clone(), completion, outcomes -> null);
+    return completion;
   }
 
   /**
@@ -81,7 +81,9 @@ public interface AsyncResult<T> {
    * @return A completion.
    */
   static AsyncCompletion allOf(Collection<? extends AsyncResult<?>> rs) {
-    return allOf(rs.stream());
+    DefaultCompletableAsyncCompletion completion = new DefaultCompletableAsyncCompletion();
+    AsyncCell.join(rs.toArray(new AsyncResult<?>[0]), completion, outcomes -> null);
+    return completion;
   }
 
   /**
@@ -92,25 +94,9 @@ public interface AsyncResult<T> {
    * @return A completion.
    */
   static AsyncCompletion allOf(Stream<? extends AsyncResult<?>> rs) {
-    @SuppressWarnings("rawtypes")
-    java.util.concurrent.CompletableFuture[] completableFutures =
-        rs.map(
-                result -> {
-                  java.util.concurrent.CompletableFuture<Void> javaFuture =
-                      new java.util.concurrent.CompletableFuture<>();
-                  result.whenComplete(
-                      (v, ex) -> {
-                        if (ex == null) {
-                          javaFuture.complete(null);
-                        } else {
-                          javaFuture.completeExceptionally(ex);
-                        }
-                      });
-                  return javaFuture;
-                })
-            .toArray(java.util.concurrent.CompletableFuture[]::new);
-    return new DefaultCompletableAsyncCompletion(
-        java.util.concurrent.CompletableFuture.allOf(completableFutures));
+    DefaultCompletableAsyncCompletion completion = new DefaultCompletableAsyncCompletion();
+    AsyncCell.join(rs.toArray(AsyncResult<?>[]::new), completion, outcomes -> null);
+    return completion;
   }
 
   /**
@@ -122,7 +108,9 @@ public interface AsyncResult<T> {
    * @return A new result.
    */
   static <T> AsyncResult<List<T>> combine(Collection<? extends AsyncResult<? extends T>> rs) {
-    return combine(rs.stream());
+    DefaultCompletableAsyncResult<List<T>> result = new DefaultCompletableAsyncResult<>();
+    AsyncCell.join(rs.toArray(new AsyncResult<?>[0]), result, AsyncCell::valuesOf);
+    return result;
   }
 
   /**
@@ -134,16 +122,37 @@ public interface AsyncResult<T> {
    * @return A new result.
    */
   static <T> AsyncResult<List<T>> combine(Stream<? extends AsyncResult<? extends T>> rs) {
-    Stream<AsyncResult<List<T>>> ls = rs.map(r -> r.thenApply(Collections::singletonList));
-    return ls.reduce(
-        AsyncResult.completed(new ArrayList<>()),
-        (r1, r2) ->
-            r1.thenCombine(
-                r2,
-                (l1, l2) -> {
-                  l1.addAll(l2);
-                  return l1;
-                }));
+    DefaultCompletableAsyncResult<List<T>> result = new DefaultCompletableAsyncResult<>();
+    AsyncCell.join(rs.toArray(AsyncResult<?>[]::new), result, AsyncCell::valuesOf);
+    return result;
+  }
+
+  /**
+   * Returns a result that completes with the values obtained by applying an asynchronous function
+   * to each of the given items, with at most {@code parallelism} of the function's results
+   * incomplete at any time.
+   *
+   * <p>The function is applied to the items in order, each time an earlier result completes. The
+   * values of the returned result are in the same order as the items. If any of the function's
+   * results complete exceptionally, or the function throws, the returned result completes
+   * exceptionally, no further items are processed and the results still incomplete are cancelled.
+   * Cancelling the returned result also cancels the results still incomplete.
+   *
+   * @param items The items to process.
+   * @param parallelism The maximum number of incomplete results at any time.
+   * @param fn The function returning a result for an item.
+   * @param <T> The type of the items.
+   * @param <U> The type of the values that this result will complete with.
+   * @return A new result.
+   * @throws IllegalArgumentException If {@code parallelism} is less than 1.
+   */
+  static <T, U> AsyncResult<List<U>> mapConcurrent(
+      Collection<? extends T> items,
+      int parallelism,
+      Function<? super T, ? extends AsyncResult<? extends U>> fn) {
+    requireNonNull(items);
+    requireNonNull(fn);
+    return BoundedFanOut.start(items, parallelism, fn);
   }
 
   /**
@@ -231,6 +240,40 @@ public interface AsyncResult<T> {
     return asyncResult;
   }
 
+  /**
+   * Returns a result that, after the given blocking function executes asynchronously on a new
+   * virtual thread and returns a result, completes when the returned result completes, with the
+   * same value or exception.
+   *
+   * <p>Virtual threads are cheap to create and block, so this is well suited to running a large
+   * number of concurrent blocking operations, such as file or network I/O.
+   *
+   * @param fn The function returning a result.
+   * @param <T> The type of the returned result's value.
+   * @return A new result.
+   */
+  static <T> AsyncResult<T> executeOnVirtualThread(Supplier<T> fn) {
+    return executeBlocking(VirtualThreads.EXECUTOR, fn);
+  }
+
+  /**
+   * Returns a result that, after all of the given blocking functions execute concurrently on new
+   * virtual threads, completes with their values in order.
+   *
+   * <p>If any function throws, the returned result completes exceptionally with the same exception
+   * and the functions that are still running are interrupted. Cancelling the returned result also
+   * interrupts the functions that are still running.
+   *
+   * @param fns The functions to execute.
+   * @param <T> The type of the values returned by the functions.
+   * @return A new result.
+   */
+  static <T> AsyncResult<List<T>> combineOnVirtualThreads(
+      Collection<? extends Supplier<? extends T>> fns) {
+    requireNonNull(fns);
+    return VirtualThreads.executeAll(new ArrayList<>(fns));
+  }
+
   /**
    * Returns a result that, after the given blocking function executes asynchronously on a vertx
    * context and returns a result, completes when the returned result completes, with the same value
@@ -0,0 +1,151 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.concurrent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+
+/**
+ * Applies an asynchronous function to a collection of items, with at most a fixed number of the
+ * returned results incomplete at any time. Used by {@link AsyncResult#mapConcurrent}.
+ *
+ * <p>Items are taken from the collection only as earlier results complete, in order. The first
+ * failure completes the combined result exceptionally, stops further items being taken, and
+ * cancels the results still in flight, as does cancelling the combined result.
+ *
+ * @param <T> The type of the items.
+ * @param <U> The type of the values of the results.
+ */
+final class BoundedFanOut<T, U> {
+
+  private final Iterator<? extends T> items;
+  private final int parallelism;
+  private final Function<? super T, ? extends AsyncResult<? extends U>> fn;
+  private final Object[] values;
+  private final DefaultCompletableAsyncResult<List<U>> result =
+      new DefaultCompletableAsyncResult<>();
+  private final Map<Integer, AsyncResult<? extends U>> inFlight = new HashMap<>();
+  private int next;
+  private int running;
+  private boolean draining;
+
+  private BoundedFanOut(
+      Collection<? extends T> items,
+      int parallelism,
+      Function<? super T, ? extends AsyncResult<? extends U>> fn) {
+    this.items = items.iterator();
+    this.parallelism = parallelism;
+    this.fn = fn;
+    this.values = new Object[items.size()];
+  }
+
+  static <T, U> AsyncResult<List<U>> start(
+      Collection<? extends T> items,
+      int parallelism,
+      Function<? super T, ? extends AsyncResult<? extends U>> fn) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Invalid parallelism " + parallelism);
+    }
+    BoundedFanOut<T, U> fanOut = new BoundedFanOut<>(items, parallelism, fn);
+    fanOut.result.whenComplete(
+        (list, ex) -> {
+          if (ex != null) {
+            fanOut.cancelInFlight();
+          }
+        });
+    fanOut.drain();
+    return fanOut.result;
+  }
+
+  // Start items while there is room for them. Completions that happen while starting an item do
+  // not start items themselves, but leave it to the loop, so a long run of results that complete
+  // immediately does not recurse.
+  private void drain() {
+    synchronized (this) {
+      if (draining) {
+        return;
+      }
+      draining = true;
+    }
+    while (true) {
+      T item = null;
+      int index = -1;
+      boolean finished = false;
+      synchronized (this) {
+        if (!result.isDone() && running < parallelism && items.hasNext()) {
+          item = items.next();
+          index = next++;
+          ++running;
+        } else {
+          draining = false;
+          finished = !result.isDone() && running == 0 && !items.hasNext();
+        }
+      }
+      if (index < 0) {
+        if (finished) {
+          complete();
+        }
+        return;
+      }
+      launch(item, index);
+    }
+  }
+
+  private void launch(T item, int index) {
+    AsyncResult<? extends U> itemResult;
+    try {
+      itemResult = fn.apply(item);
+    } catch (Throwable ex) {
+      result.completeFailure(AsyncCell.wrap(ex));
+      return;
+    }
+    synchronized (this) {
+      if (result.isDone()) {
+        itemResult.cancel();
+        return;
+      }
+      inFlight.put(index, itemResult);
+    }
+    itemResult.whenComplete((value, ex) -> onItemComplete(index, value, ex));
+  }
+
+  private void onItemComplete(int index, @Nullable U value, @Nullable Throwable ex) {
+    if (ex != null) {
+      result.completeFailure(AsyncCell.wrap(ex));
+      return;
+    }
+    synchronized (this) {
+      values[index] = value;
+      inFlight.remove(index);
+      --running;
+    }
+    drain();
+  }
+
+  private void complete() {
+    List<U> list = new ArrayList<>(values.length);
+    for (Object value : values) {
+      @SuppressWarnings("unchecked")
+      U u = (U) value;
+      list.add(u);
+    }
+    result.completeValue(list);
+  }
+
+  private void cancelInFlight() {
+    List<AsyncResult<? extends U>> toCancel;
+    synchronized (this) {
+      toCancel = new ArrayList<>(inFlight.values());
+      inFlight.clear();
+    }
+    for (AsyncResult<? extends U> itemResult : toCancel) {
+      itemResult.cancel();
+    }
+  }
+}
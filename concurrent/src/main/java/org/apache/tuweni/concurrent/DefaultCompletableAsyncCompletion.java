@@ -4,58 +4,77 @@ package org.apache.tuweni.concurrent;
 
 import static java.util.Objects.requireNonNull;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import javax.annotation.Nullable;
 
 import io.vertx.core.Vertx;
 import io.vertx.core.WorkerExecutor;
 
-final class DefaultCompletableAsyncCompletion implements CompletableAsyncCompletion {
+final class DefaultCompletableAsyncCompletion extends AsyncCell<Void>
+    implements CompletableAsyncCompletion {
 
-  private final CompletableFuture<Void> future;
+  private static final VarHandle FUTURE;
 
-  DefaultCompletableAsyncCompletion() {
-    this(new CompletableFuture<>());
+  static {
+    try {
+      FUTURE =
+          MethodHandles.lookup()
+              .findVarHandle(
+                  DefaultCompletableAsyncCompletion.class, "future", CompletableFuture.class);
+    } catch (ReflectiveOperationException ex) {
+      throw new ExceptionInInitializerError(ex);
+    }
   }
 
-  DefaultCompletableAsyncCompletion(CompletableFuture<Void> future) {
-    this.future = future;
+  // created on demand by toFuture()
+  @Nullable private volatile CompletableFuture<Void> future;
+
+  DefaultCompletableAsyncCompletion() {}
+
+  private DefaultCompletableAsyncCompletion(@Nullable Void value) {
+    super(value);
+  }
+
+  static DefaultCompletableAsyncCompletion completed() {
+    return new DefaultCompletableAsyncCompletion(null);
   }
 
   @Override
   public boolean complete() {
-    return future.complete(null);
+    return completeValue(null);
   }
 
   @Override
   public boolean completeExceptionally(Throwable ex) {
-    return future.completeExceptionally(ex);
+    return completeFailure(ex);
   }
 
   @Override
   public boolean cancel() {
-    return future.cancel(false);
+    return cancelCell();
   }
 
   @Override
   public boolean isDone() {
-    return future.isDone();
+    return isDoneCell();
   }
 
   @Override
   public boolean isCompletedExceptionally() {
-    return future.isCompletedExceptionally();
+    return isFailedCell();
   }
 
   @Override
   public boolean isCancelled() {
-    return future.isCancelled();
+    return isCancelledCell();
   }
 
   @Override
@@ -72,30 +91,18 @@ final class DefaultCompletableAsyncCompletion implements CompletableAsyncComplet
   public void join(long timeout, TimeUnit unit)
       throws CompletionException, TimeoutException, InterruptedException {
     requireNonNull(unit);
-    try {
-      future.get(timeout, unit);
-    } catch (ExecutionException ex) {
-      throw new CompletionException(ex.getMessage(), ex.getCause());
-    }
+    report(await(timeout, unit));
   }
 
   @Override
   public <U> AsyncResult<U> then(Supplier<? extends AsyncResult<U>> fn) {
     requireNonNull(fn);
-    CompletableAsyncResult<U> asyncResult = AsyncResult.incomplete();
-    future.whenComplete(
-        (v, ex1) -> {
+    DefaultCompletableAsyncResult<U> asyncResult = new DefaultCompletableAsyncResult<>();
+    listen(
+        ex1 -> {
           if (ex1 == null) {
             try {
-              fn.get()
-                  .whenComplete(
-                      (u, ex3) -> {
-                        if (ex3 == null) {
-                          asyncResult.complete(u);
-                        } else {
-                          asyncResult.completeExceptionally(ex3);
-                        }
-                      });
+              relay(fn.get(), asyncResult);
             } catch (Throwable ex2) {
               asyncResult.completeExceptionally(ex2);
             }
@@ -111,8 +118,8 @@ final class DefaultCompletableAsyncCompletion implements CompletableAsyncComplet
     requireNonNull(vertx);
     requireNonNull(fn);
     CompletableAsyncResult<U> asyncResult = AsyncResult.incomplete();
-    future.whenComplete(
-        (v, ex1) -> {
+    listen(
+        ex1 -> {
           if (ex1 == null) {
             try {
               vertx.runOnContext(
@@ -145,8 +152,8 @@ final class DefaultCompletableAsyncCompletion implements CompletableAsyncComplet
   public AsyncCompletion thenCompose(Supplier<? extends AsyncCompletion> fn) {
     requireNonNull(fn);
     CompletableAsyncCompletion completion = AsyncCompletion.incomplete();
-    future.whenComplete(
-        (v, ex1) -> {
+    listen(
+        ex1 -> {
           if (ex1 == null) {
             try {
               fn.get()
@@ -171,7 +178,15 @@ final class DefaultCompletableAsyncCompletion implements CompletableAsyncComplet
   @Override
   public AsyncCompletion thenRun(Runnable action) {
     requireNonNull(action);
-    return new DefaultCompletableAsyncCompletion(future.thenRun(action));
+    DefaultCompletableAsyncCompletion completion = new DefaultCompletableAsyncCompletion();
+    onComplete(
+        new Apply<Void, Void>(
+            v -> {
+              action.run();
+              return null;
+            },
+            completion));
+    return completion;
   }
 
   @Override
@@ -179,8 +194,8 @@ final class DefaultCompletableAsyncCompletion implements CompletableAsyncComplet
     requireNonNull(vertx);
     requireNonNull(runnable);
     CompletableAsyncCompletion completion = AsyncCompletion.incomplete();
-    future.whenComplete(
-        (t, ex1) -> {
+    listen(
+        ex1 -> {
           if (ex1 == null) {
             try {
               vertx.runOnContext(
@@ -208,8 +223,8 @@ final class DefaultCompletableAsyncCompletion implements CompletableAsyncComplet
     requireNonNull(vertx);
     requireNonNull(runnable);
     CompletableAsyncCompletion completion = AsyncCompletion.incomplete();
-    future.whenComplete(
-        (t, ex1) -> {
+    listen(
+        ex1 -> {
           if (ex1 == null) {
             try {
               vertx.executeBlocking(
@@ -240,8 +255,8 @@ final class DefaultCompletableAsyncCompletion implements CompletableAsyncComplet
     requireNonNull(executor);
     requireNonNull(runnable);
     CompletableAsyncCompletion completion = AsyncCompletion.incomplete();
-    future.whenComplete(
-        (t, ex1) -> {
+    listen(
+        ex1 -> {
           if (ex1 == null) {
             try {
               executor.executeBlocking(
@@ -270,7 +285,9 @@ final class DefaultCompletableAsyncCompletion implements CompletableAsyncComplet
   @Override
   public <U> AsyncResult<U> thenSupply(Supplier<? extends U> supplier) {
     requireNonNull(supplier);
-    return new DefaultCompletableAsyncResult<>(future.thenApply(v -> supplier.get()));
+    DefaultCompletableAsyncResult<U> asyncResult = new DefaultCompletableAsyncResult<>();
+    onComplete(new Apply<Void, U>(v -> supplier.get(), asyncResult));
+    return asyncResult;
   }
 
   @Override
@@ -278,8 +295,8 @@ final class DefaultCompletableAsyncCompletion implements CompletableAsyncComplet
     requireNonNull(vertx);
     requireNonNull(supplier);
     CompletableAsyncResult<U> completion = AsyncResult.incomplete();
-    future.whenComplete(
-        (t, ex1) -> {
+    listen(
+        ex1 -> {
           if (ex1 == null) {
             try {
               vertx.runOnContext(
@@ -305,8 +322,15 @@ final class DefaultCompletableAsyncCompletion implements CompletableAsyncComplet
       AsyncResult<? extends U> other, Consumer<? super U> consumer) {
     requireNonNull(other);
     requireNonNull(consumer);
-    return new DefaultCompletableAsyncCompletion(
-        future.thenAccept(v -> other.thenAccept(consumer)));
+    DefaultCompletableAsyncCompletion completion = new DefaultCompletableAsyncCompletion();
+    onComplete(
+        new Apply<Void, Void>(
+            v -> {
+              other.thenAccept(consumer);
+              return null;
+            },
+            completion));
+    return completion;
   }
 
   @Override
@@ -315,8 +339,8 @@ final class DefaultCompletableAsyncCompletion implements CompletableAsyncComplet
     requireNonNull(other);
     requireNonNull(fn);
     CompletableAsyncResult<V> asyncResult = AsyncResult.incomplete();
-    future.whenComplete(
-        (v, ex1) -> {
+    listen(
+        ex1 -> {
           if (ex1 == null) {
             try {
               other.whenComplete(
@@ -341,8 +365,8 @@ final class DefaultCompletableAsyncCompletion implements CompletableAsyncComplet
   public AsyncCompletion thenCombine(AsyncCompletion other) {
     requireNonNull(other);
     CompletableAsyncCompletion completion = AsyncCompletion.incomplete();
-    future.whenComplete(
-        (v, ex1) -> {
+    listen(
+        ex1 -> {
           if (ex1 == null) {
             try {
               other.whenComplete(
@@ -366,40 +390,80 @@ final class DefaultCompletableAsyncCompletion implements CompletableAsyncComplet
   @Override
   public AsyncCompletion exceptionally(Consumer<? super Throwable> consumer) {
     requireNonNull(consumer);
-    return new DefaultCompletableAsyncCompletion(
-        future.exceptionally(
-            ex -> {
-              consumer.accept(ex);
+    DefaultCompletableAsyncCompletion completion = new DefaultCompletableAsyncCompletion();
+    onComplete(
+        new Handle<Void, Void>(
+            (v, ex) -> {
+              if (ex != null) {
+                consumer.accept(ex);
+              }
               return null;
-            }));
+            },
+            completion));
+    return completion;
   }
 
   @Override
   public AsyncCompletion whenComplete(Consumer<? super Throwable> consumer) {
     requireNonNull(consumer);
-    return new DefaultCompletableAsyncCompletion(
-        future.whenComplete((v, ex) -> consumer.accept(ex)));
+    DefaultCompletableAsyncCompletion completion = new DefaultCompletableAsyncCompletion();
+    onComplete(new WhenComplete<Void>((v, ex) -> consumer.accept(ex), completion));
+    return completion;
   }
 
   @Override
   public <U> AsyncResult<U> handle(Function<? super Throwable, ? extends U> fn) {
     requireNonNull(fn);
-    return new DefaultCompletableAsyncResult<>(future.handle((v, ex) -> fn.apply(ex)));
+    DefaultCompletableAsyncResult<U> asyncResult = new DefaultCompletableAsyncResult<>();
+    onComplete(new Handle<Void, U>((v, ex) -> fn.apply(ex), asyncResult));
+    return asyncResult;
   }
 
   @Override
   public AsyncCompletion accept(Consumer<? super Throwable> consumer) {
     requireNonNull(consumer);
-    return new DefaultCompletableAsyncCompletion(
-        future.handle(
+    DefaultCompletableAsyncCompletion completion = new DefaultCompletableAsyncCompletion();
+    onComplete(
+        new Handle<Void, Void>(
             (v, ex) -> {
               consumer.accept(ex);
               return null;
-            }));
+            },
+            completion));
+    return completion;
   }
 
   @Override
   public CompletableFuture<Void> toFuture() {
-    return future;
+    CompletableFuture<Void> f = future;
+    if (f != null) {
+      return f;
+    }
+    CompletableFuture<Void> created = new CompletableFuture<>();
+    if (!FUTURE.compareAndSet(this, null, created)) {
+      return future;
+    }
+    // link both ways, so that completing either one completes the other
+    listen(
+        ex -> {
+          if (ex == null) {
+            created.complete(null);
+          } else {
+            created.completeExceptionally(ex);
+          }
+        });
+    created.whenComplete(
+        (v, ex) -> {
+          if (ex == null) {
+            completeValue(null);
+          } else {
+            completeFailure(ex);
+          }
+        });
+    return created;
+  }
+
+  private void listen(Consumer<? super Throwable> listener) {
+    onComplete(new Listen<Void>((v, ex) -> listener.accept(ex)));
   }
 }
@@ -4,9 +4,7 @@ package org.apache.tuweni.concurrent;
 
 import static java.util.Objects.requireNonNull;
 
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.function.BiConsumer;
@@ -18,46 +16,43 @@ import javax.annotation.Nullable;
 import io.vertx.core.Vertx;
 import io.vertx.core.WorkerExecutor;
 
-final class DefaultCompletableAsyncResult<T> implements CompletableAsyncResult<T> {
+final class DefaultCompletableAsyncResult<T> extends AsyncCell<T>
+    implements CompletableAsyncResult<T> {
 
-  private final CompletableFuture<T> future;
+  DefaultCompletableAsyncResult() {}
 
-  DefaultCompletableAsyncResult() {
-    this(new CompletableFuture<>());
-  }
-
-  DefaultCompletableAsyncResult(CompletableFuture<T> future) {
-    this.future = future;
+  DefaultCompletableAsyncResult(@Nullable T value) {
+    super(value);
   }
 
   @Override
   public boolean complete(@Nullable T value) {
-    return future.complete(value);
+    return completeValue(value);
   }
 
   @Override
   public boolean completeExceptionally(Throwable ex) {
-    return future.completeExceptionally(ex);
+    return completeFailure(ex);
   }
 
   @Override
   public boolean cancel() {
-    return future.cancel(false);
+    return cancelCell();
   }
 
   @Override
   public boolean isDone() {
-    return future.isDone();
+    return isDoneCell();
   }
 
   @Override
   public boolean isCompletedExceptionally() {
-    return future.isCompletedExceptionally();
+    return isFailedCell();
   }
 
   @Override
   public boolean isCancelled() {
-    return future.isCancelled();
+    return isCancelledCell();
   }
 
   @Override
@@ -76,30 +71,18 @@ final class DefaultCompletableAsyncResult<T> implements CompletableAsyncResult<T
   public T get(long timeout, TimeUnit unit)
       throws CompletionException, TimeoutException, InterruptedException {
     requireNonNull(unit);
-    try {
-      return future.get(timeout, unit);
-    } catch (ExecutionException ex) {
-      throw new CompletionException(ex.getMessage(), ex.getCause());
-    }
+    return report(await(timeout, unit));
   }
 
   @Override
   public <U> AsyncResult<U> then(Function<? super T, ? extends AsyncResult<U>> fn) {
     requireNonNull(fn);
-    CompletableAsyncResult<U> asyncResult = AsyncResult.incomplete();
-    future.whenComplete(
+    DefaultCompletableAsyncResult<U> asyncResult = new DefaultCompletableAsyncResult<>();
+    listen(
         (t, ex1) -> {
           if (ex1 == null) {
             try {
-              fn.apply(t)
-                  .whenComplete(
-                      (u, ex3) -> {
-                        if (ex3 == null) {
-                          asyncResult.complete(u);
-                        } else {
-                          asyncResult.completeExceptionally(ex3);
-                        }
-                      });
+              relay(fn.apply(t), asyncResult);
             } catch (Throwable ex2) {
               asyncResult.completeExceptionally(ex2);
             }
@@ -116,7 +99,7 @@ final class DefaultCompletableAsyncResult<T> implements CompletableAsyncResult<T
     requireNonNull(vertx);
     requireNonNull(fn);
     CompletableAsyncResult<U> asyncResult = AsyncResult.incomplete();
-    future.whenComplete(
+    listen(
         (t, ex1) -> {
           if (ex1 == null) {
             try {
@@ -149,20 +132,12 @@ final class DefaultCompletableAsyncResult<T> implements CompletableAsyncResult<T
   @Override
   public AsyncCompletion thenCompose(Function<? super T, ? extends AsyncCompletion> fn) {
     requireNonNull(fn);
-    CompletableAsyncCompletion completion = AsyncCompletion.incomplete();
-    future.whenComplete(
+    DefaultCompletableAsyncCompletion completion = new DefaultCompletableAsyncCompletion();
+    listen(
         (t, ex1) -> {
           if (ex1 == null) {
             try {
-              fn.apply(t)
-                  .whenComplete(
-                      ex3 -> {
-                        if (ex3 == null) {
-                          completion.complete();
-                        } else {
-                          completion.completeExceptionally(ex3);
-                        }
-                      });
+              relay(fn.apply(t), completion);
             } catch (Throwable ex2) {
               completion.completeExceptionally(ex2);
             }
@@ -176,7 +151,15 @@ final class DefaultCompletableAsyncResult<T> implements CompletableAsyncResult<T
   @Override
   public AsyncCompletion thenRun(Runnable action) {
     requireNonNull(action);
-    return new DefaultCompletableAsyncCompletion(future.thenRun(action));
+    DefaultCompletableAsyncCompletion completion = new DefaultCompletableAsyncCompletion();
+    onComplete(
+        new Apply<T, Void>(
+            t -> {
+              action.run();
+              return null;
+            },
+            completion));
+    return completion;
   }
 
   @Override
@@ -184,7 +167,7 @@ final class DefaultCompletableAsyncResult<T> implements CompletableAsyncResult<T
     requireNonNull(vertx);
     requireNonNull(runnable);
     CompletableAsyncCompletion completion = AsyncCompletion.incomplete();
-    future.whenComplete(
+    listen(
         (t, ex1) -> {
           if (ex1 == null) {
             try {
@@ -213,7 +196,7 @@ final class DefaultCompletableAsyncResult<T> implements CompletableAsyncResult<T
     requireNonNull(vertx);
     requireNonNull(runnable);
     CompletableAsyncCompletion completion = AsyncCompletion.incomplete();
-    future.whenComplete(
+    listen(
         (t, ex1) -> {
           if (ex1 == null) {
             try {
@@ -245,7 +228,7 @@ final class DefaultCompletableAsyncResult<T> implements CompletableAsyncResult<T
     requireNonNull(executor);
     requireNonNull(runnable);
     CompletableAsyncCompletion completion = AsyncCompletion.incomplete();
-    future.whenComplete(
+    listen(
         (t, ex1) -> {
           if (ex1 == null) {
             try {
@@ -275,7 +258,20 @@ final class DefaultCompletableAsyncResult<T> implements CompletableAsyncResult<T
   @Override
   public <U> AsyncResult<U> thenApply(Function<? super T, ? extends U> fn) {
     requireNonNull(fn);
-    return new DefaultCompletableAsyncResult<>(future.thenApply(fn));
+    Object outcome = outcome();
+    if (outcome != null && failureOf(outcome) == null) {
+      // fast path for an already completed result, which needs no continuation
+      try {
+        return new DefaultCompletableAsyncResult<>(fn.apply(valueOf(outcome)));
+      } catch (Throwable ex) {
+        DefaultCompletableAsyncResult<U> asyncResult = new DefaultCompletableAsyncResult<>();
+        asyncResult.completeFailure(wrap(ex));
+        return asyncResult;
+      }
+    }
+    DefaultCompletableAsyncResult<U> asyncResult = new DefaultCompletableAsyncResult<>();
+    onComplete(new Apply<>(fn, asyncResult));
+    return asyncResult;
   }
 
   @Override
@@ -283,7 +279,7 @@ final class DefaultCompletableAsyncResult<T> implements CompletableAsyncResult<T
     requireNonNull(vertx);
     requireNonNull(fn);
     CompletableAsyncResult<U> asyncResult = AsyncResult.incomplete();
-    future.whenComplete(
+    listen(
         (t, ex1) -> {
           if (ex1 == null) {
             try {
@@ -311,7 +307,7 @@ final class DefaultCompletableAsyncResult<T> implements CompletableAsyncResult<T
     requireNonNull(vertx);
     requireNonNull(fn);
     CompletableAsyncResult<U> asyncResult = AsyncResult.incomplete();
-    future.whenComplete(
+    listen(
         (t, ex1) -> {
           if (ex1 == null) {
             try {
@@ -341,7 +337,7 @@ final class DefaultCompletableAsyncResult<T> implements CompletableAsyncResult<T
     requireNonNull(executor);
     requireNonNull(fn);
     CompletableAsyncResult<U> asyncResult = AsyncResult.incomplete();
-    future.whenComplete(
+    listen(
         (t, ex1) -> {
           if (ex1 == null) {
             try {
@@ -368,7 +364,15 @@ final class DefaultCompletableAsyncResult<T> implements CompletableAsyncResult<T
   @Override
   public AsyncCompletion thenAccept(Consumer<? super T> consumer) {
     requireNonNull(consumer);
-    return new DefaultCompletableAsyncCompletion(future.thenAccept(consumer));
+    DefaultCompletableAsyncCompletion completion = new DefaultCompletableAsyncCompletion();
+    onComplete(
+        new Apply<T, Void>(
+            t -> {
+              consumer.accept(t);
+              return null;
+            },
+            completion));
+    return completion;
   }
 
   @Override
@@ -376,8 +380,15 @@ final class DefaultCompletableAsyncResult<T> implements CompletableAsyncResult<T
       AsyncResult<? extends U> other, BiConsumer<? super T, ? super U> consumer) {
     requireNonNull(other);
     requireNonNull(consumer);
-    return new DefaultCompletableAsyncCompletion(
-        future.thenAccept(t -> other.thenAccept(u -> consumer.accept(t, u))));
+    DefaultCompletableAsyncCompletion completion = new DefaultCompletableAsyncCompletion();
+    onComplete(
+        new Apply<T, Void>(
+            t -> {
+              other.thenAccept(u -> consumer.accept(t, u));
+              return null;
+            },
+            completion));
+    return completion;
   }
 
   @Override
@@ -386,7 +397,7 @@ final class DefaultCompletableAsyncResult<T> implements CompletableAsyncResult<T
     requireNonNull(other);
     requireNonNull(fn);
     CompletableAsyncResult<V> asyncResult = AsyncResult.incomplete();
-    future.whenComplete(
+    listen(
         (t, ex1) -> {
           if (ex1 == null) {
             try {
@@ -411,29 +422,42 @@ final class DefaultCompletableAsyncResult<T> implements CompletableAsyncResult<T
   @Override
   public AsyncResult<T> exceptionally(Function<Throwable, ? extends T> fn) {
     requireNonNull(fn);
-    return new DefaultCompletableAsyncResult<>(future.exceptionally(fn));
+    DefaultCompletableAsyncResult<T> asyncResult = new DefaultCompletableAsyncResult<>();
+    onComplete(new Handle<T, T>((t, ex) -> (ex == null) ? t : fn.apply(ex), asyncResult));
+    return asyncResult;
   }
 
   @Override
   public AsyncResult<T> whenComplete(BiConsumer<? super T, ? super Throwable> action) {
     requireNonNull(action);
-    return new DefaultCompletableAsyncResult<>(future.whenComplete(action));
+    DefaultCompletableAsyncResult<T> asyncResult = new DefaultCompletableAsyncResult<>();
+    onComplete(new WhenComplete<>(action, asyncResult));
+    return asyncResult;
   }
 
   @Override
   public <U> AsyncResult<U> handle(BiFunction<? super T, Throwable, ? extends U> fn) {
     requireNonNull(fn);
-    return new DefaultCompletableAsyncResult<>(future.handle(fn));
+    DefaultCompletableAsyncResult<U> asyncResult = new DefaultCompletableAsyncResult<>();
+    onComplete(new Handle<>(fn, asyncResult));
+    return asyncResult;
   }
 
   @Override
   public AsyncCompletion accept(BiConsumer<? super T, Throwable> consumer) {
     requireNonNull(consumer);
-    return new DefaultCompletableAsyncCompletion(
-        future.handle(
+    DefaultCompletableAsyncCompletion completion = new DefaultCompletableAsyncCompletion();
+    onComplete(
+        new Handle<T, Void>(
             (t, ex) -> {
               consumer.accept(t, ex);
               return null;
-            }));
+            },
+            completion));
+    return completion;
+  }
+
+  private void listen(BiConsumer<? super T, ? super Throwable> listener) {
+    onComplete(new Listen<>(listener));
   }
 }
@@ -6,11 +6,15 @@ import static java.util.Objects.requireNonNull;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.function.LongSupplier;
+import java.util.function.ToIntBiFunction;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 
@@ -18,8 +22,14 @@ import javax.annotation.Nullable;
  * A concurrent hash map that stores values along with an expiry.
  *
  * <p>Values are stored in the map until their expiry is reached, after which they will no longer be
- * available and will appear as if removed. The actual removal is done lazily whenever the map is
- * accessed, or when the {@link #purgeExpired()} method is invoked.
+ * available and will appear as if removed. Reads check the expiry of the entry they access, and
+ * the actual removal of other expired entries is done lazily whenever the map is modified, when the
+ * {@link #purgeExpired()} method is invoked, or periodically when scheduled with {@link
+ * #schedulePurge(ScheduledExecutorService, long, TimeUnit)}.
+ *
+ * <p>A map may also be bounded by a maximum total weight, where each entry is weighed when it is
+ * stored. When the bound is exceeded, entries are evicted using a segmented LRU policy: entries that
+ * have been read since they were stored are protected from eviction by entries that have not.
  *
  * @param <K> The key type.
  * @param <V> The value type.
@@ -27,32 +37,50 @@ import javax.annotation.Nullable;
 public final class ExpiringMap<K, V> implements Map<K, V> {
 
   // Uses object equality, to ensure uniqueness as a value in the storage map
-  private static final class ExpiringEntry<K, V> implements Comparable<ExpiringEntry<K, V>> {
+  private static final class ExpiringEntry<K, V> extends SegmentedLru.Node
+      implements ExpiryIndex.Entry {
     private K key;
     private V value;
     private long expiry;
+    private boolean scheduled;
     @Nullable private BiConsumer<K, V> expiryListener;
 
     ExpiringEntry(K key, V value, long expiry, @Nullable BiConsumer<K, V> expiryListener) {
+      this(key, value, expiry, false, expiryListener);
+    }
+
+    ExpiringEntry(
+        K key,
+        V value,
+        long expiry,
+        boolean scheduled,
+        @Nullable BiConsumer<K, V> expiryListener) {
       this.key = key;
       this.value = value;
       this.expiry = expiry;
+      this.scheduled = scheduled;
       this.expiryListener = expiryListener;
     }
 
     @Override
-    public int compareTo(ExpiringEntry<K, V> o) {
-      return Long.compare(expiry, o.expiry);
+    public long expiry() {
+      return expiry;
     }
   }
 
   private final ConcurrentHashMap<K, ExpiringEntry<K, V>> storage = new ConcurrentHashMap<>();
-  private final PriorityBlockingQueue<ExpiringEntry<K, V>> expiryQueue =
-      new PriorityBlockingQueue<>();
+  private final ExpiryIndex<ExpiringEntry<K, V>> expiryIndex =
+      new ExpiryIndex<>(e -> storage.get(e.key) == e);
   private final LongSupplier currentTimeSupplier;
   private final Long defaultTimeout;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
 
   @Nullable private final BiConsumer<K, V> globalExpiryListener;
+  @Nullable private final SegmentedLru<ExpiringEntry<K, V>> evictionPolicy;
+  private final ToIntBiFunction<? super K, ? super V> weigher;
+  @Nullable private final BiConsumer<K, V> evictionListener;
 
   /** Construct an empty map. */
   public ExpiringMap() {
@@ -78,19 +106,69 @@ public final class ExpiringMap<K, V> implements Map<K, V> {
     this(System::currentTimeMillis, defaultTimeout, expiryListener);
   }
 
+  /**
+   * Construct a map with a default timeout value and a maximum number of entries.
+   *
+   * @param defaultTimeout the default timeout in milliseconds
+   * @param maximumSize the maximum number of entries in the map
+   */
+  public ExpiringMap(Long defaultTimeout, long maximumSize) {
+    this(System::currentTimeMillis, defaultTimeout, null, maximumSize, (k, v) -> 1, null);
+  }
+
+  /**
+   * Construct a map with a default timeout value, a global expiration listener and a maximum total
+   * weight of entries.
+   *
+   * @param defaultTimeout the default timeout in milliseconds
+   * @param expiryListener a listener that will be called for each entry expiration
+   * @param maximumWeight the maximum total weight of the entries in the map
+   * @param weigher a function computing the weight of an entry, which must not be negative
+   * @param evictionListener a listener that will be called for each entry evicted to respect the
+   *     maximum weight
+   */
+  public ExpiringMap(
+      Long defaultTimeout,
+      @Nullable BiConsumer<K, V> expiryListener,
+      long maximumWeight,
+      ToIntBiFunction<? super K, ? super V> weigher,
+      @Nullable BiConsumer<K, V> evictionListener) {
+    this(
+        System::currentTimeMillis,
+        defaultTimeout,
+        expiryListener,
+        maximumWeight,
+        weigher,
+        evictionListener);
+  }
+
   ExpiringMap(
       LongSupplier currentTimeSupplier, Long defaultTimeout, BiConsumer<K, V> expiryListener) {
+    this(currentTimeSupplier, defaultTimeout, expiryListener, Long.MAX_VALUE, (k, v) -> 1, null);
+  }
+
+  ExpiringMap(
+      LongSupplier currentTimeSupplier,
+      Long defaultTimeout,
+      @Nullable BiConsumer<K, V> expiryListener,
+      long maximumWeight,
+      ToIntBiFunction<? super K, ? super V> weigher,
+      @Nullable BiConsumer<K, V> evictionListener) {
+    requireNonNull(weigher);
     this.currentTimeSupplier = currentTimeSupplier;
     this.defaultTimeout = defaultTimeout;
     this.globalExpiryListener = expiryListener;
+    this.evictionPolicy =
+        (maximumWeight == Long.MAX_VALUE) ? null : new SegmentedLru<>(maximumWeight);
+    this.weigher = weigher;
+    this.evictionListener = evictionListener;
   }
 
   @Nullable
   @Override
   public V get(Object key) {
     requireNonNull(key);
-    purgeExpired();
-    ExpiringEntry<K, V> entry = storage.get(key);
+    ExpiringEntry<K, V> entry = recordAccess(liveEntry(storage.get(key)));
     return (entry == null) ? null : entry.value;
   }
 
@@ -103,8 +181,7 @@ public final class ExpiringMap<K, V> implements Map<K, V> {
   @Override
   public boolean containsKey(Object key) {
     requireNonNull(key);
-    purgeExpired();
-    return storage.containsKey(key);
+    return recordAccess(liveEntry(storage.get(key))) != null;
   }
 
   @Override
@@ -131,10 +208,12 @@ public final class ExpiringMap<K, V> implements Map<K, V> {
   public V put(K key, V value) {
     requireNonNull(key);
     requireNonNull(value);
-    purgeExpired();
-    ExpiringEntry<K, V> oldEntry =
-        storage.put(key, new ExpiringEntry<>(key, value, defaultTimeout, globalExpiryListener));
-    return (oldEntry == null) ? null : oldEntry.value;
+    expireBuckets();
+    ExpiringEntry<K, V> newEntry =
+        new ExpiringEntry<>(key, value, defaultTimeout, globalExpiryListener);
+    ExpiringEntry<K, V> oldEntry = storage.put(key, newEntry);
+    replaced(oldEntry, newEntry);
+    return liveValue(oldEntry);
   }
 
   /**
@@ -174,7 +253,7 @@ public final class ExpiringMap<K, V> implements Map<K, V> {
     }
 
     long now = currentTimeSupplier.getAsLong();
-    purgeExpired(now);
+    expiryIndex.expireBuckets(now, this::expire);
 
     if (expiry <= now) {
       V previous = remove(key);
@@ -186,23 +265,25 @@ public final class ExpiringMap<K, V> implements Map<K, V> {
 
     ExpiringEntry<K, V> newEntry =
         new ExpiringEntry<>(
-            key, value, expiry, expiryListener == null ? globalExpiryListener : expiryListener);
+            key,
+            value,
+            expiry,
+            true,
+            expiryListener == null ? globalExpiryListener : expiryListener);
     ExpiringEntry<K, V> oldEntry = storage.put(key, newEntry);
-    expiryQueue.offer(newEntry);
-    if (oldEntry != null && oldEntry.expiry < Long.MAX_VALUE) {
-      expiryQueue.remove(oldEntry);
-    }
-    return (oldEntry == null) ? null : oldEntry.value;
+    expiryIndex.add(newEntry);
+    replaced(oldEntry, newEntry);
+    return liveValue(oldEntry, now);
   }
 
   @Override
   public void putAll(Map<? extends K, ? extends V> m) {
     requireNonNull(m);
-    purgeExpired();
+    expireBuckets();
     for (Map.Entry<? extends K, ? extends V> e : m.entrySet()) {
-      storage.put(
-          e.getKey(),
-          new ExpiringEntry<>(e.getKey(), e.getValue(), defaultTimeout, globalExpiryListener));
+      ExpiringEntry<K, V> newEntry =
+          new ExpiringEntry<>(e.getKey(), e.getValue(), defaultTimeout, globalExpiryListener);
+      replaced(storage.put(e.getKey(), newEntry), newEntry);
     }
   }
 
@@ -211,11 +292,19 @@ public final class ExpiringMap<K, V> implements Map<K, V> {
   public V putIfAbsent(K key, V value) {
     requireNonNull(key);
     requireNonNull(value);
-    purgeExpired();
-    ExpiringEntry<K, V> oldEntry =
-        storage.putIfAbsent(
-            key, new ExpiringEntry<>(key, value, defaultTimeout, globalExpiryListener));
-    return (oldEntry == null) ? null : oldEntry.value;
+    expireBuckets();
+    ExpiringEntry<K, V> newEntry =
+        new ExpiringEntry<>(key, value, defaultTimeout, globalExpiryListener);
+    while (true) {
+      ExpiringEntry<K, V> oldEntry = storage.putIfAbsent(key, newEntry);
+      if (oldEntry == null) {
+        replaced(null, newEntry);
+        return null;
+      }
+      if (liveEntry(oldEntry) != null) {
+        return oldEntry.value;
+      }
+    }
   }
 
   /**
@@ -255,7 +344,7 @@ public final class ExpiringMap<K, V> implements Map<K, V> {
     }
 
     long now = currentTimeSupplier.getAsLong();
-    purgeExpired(now);
+    expiryIndex.expireBuckets(now, this::expire);
 
     if (expiry <= now) {
       V previous = remove(key);
@@ -267,13 +356,22 @@ public final class ExpiringMap<K, V> implements Map<K, V> {
 
     ExpiringEntry<K, V> newEntry =
         new ExpiringEntry<>(
-            key, value, expiry, expiryListener == null ? globalExpiryListener : expiryListener);
-    ExpiringEntry<K, V> oldEntry = storage.putIfAbsent(key, newEntry);
-    if (oldEntry == null) {
-      expiryQueue.offer(newEntry);
-      return null;
+            key,
+            value,
+            expiry,
+            true,
+            expiryListener == null ? globalExpiryListener : expiryListener);
+    while (true) {
+      ExpiringEntry<K, V> oldEntry = storage.putIfAbsent(key, newEntry);
+      if (oldEntry == null) {
+        expiryIndex.add(newEntry);
+        replaced(null, newEntry);
+        return null;
+      }
+      if (liveEntry(oldEntry, now) != null) {
+        return oldEntry.value;
+      }
     }
-    return oldEntry.value;
   }
 
   @Override
@@ -282,15 +380,15 @@ public final class ExpiringMap<K, V> implements Map<K, V> {
         storage.compute(
             key,
             (k, oldEntry) -> {
-              if (oldEntry != null && oldEntry.expiry < Long.MAX_VALUE) {
-                expiryQueue.remove(oldEntry);
-              }
-              V oldValue = (oldEntry == null) ? null : oldEntry.value;
+              V oldValue = isExpired(oldEntry) ? null : oldEntry.value;
               V newValue = remappingFunction.apply(k, oldValue);
-              return (newValue == null)
-                  ? null
-                  : new ExpiringEntry<>(k, newValue, defaultTimeout, null);
+              return track(
+                  oldEntry,
+                  (newValue == null)
+                      ? null
+                      : new ExpiringEntry<>(k, newValue, defaultTimeout, null));
             });
+    evict();
     return (newEntry == null) ? null : newEntry.value;
   }
 
@@ -301,13 +399,23 @@ public final class ExpiringMap<K, V> implements Map<K, V> {
 
   public V computeIfAbsent(
       K key, long expiration, Function<? super K, ? extends V> mappingFunction) {
+    ExpiringEntry<K, V> entry = liveEntry(storage.get(key));
+    if (entry != null) {
+      return entry.value;
+    }
     ExpiringEntry<K, V> newEntry =
-        storage.computeIfAbsent(
+        storage.compute(
             key,
-            k -> {
+            (k, oldEntry) -> {
+              if (!isExpired(oldEntry)) {
+                return oldEntry;
+              }
               V newValue = mappingFunction.apply(k);
-              return (newValue == null) ? null : new ExpiringEntry<>(k, newValue, expiration, null);
+              return track(
+                  oldEntry,
+                  (newValue == null) ? null : new ExpiringEntry<>(k, newValue, expiration, null));
             });
+    evict();
     return (newEntry == null) ? null : newEntry.value;
   }
 
@@ -318,46 +426,51 @@ public final class ExpiringMap<K, V> implements Map<K, V> {
         storage.computeIfPresent(
             key,
             (k, oldEntry) -> {
-              if (oldEntry.expiry < Long.MAX_VALUE) {
-                expiryQueue.remove(oldEntry);
+              if (isExpired(oldEntry)) {
+                return track(oldEntry, null);
               }
               V newValue = remappingFunction.apply(k, oldEntry.value);
-              return (newValue == null)
-                  ? null
-                  : new ExpiringEntry<>(k, newValue, defaultTimeout, globalExpiryListener);
+              return track(
+                  oldEntry,
+                  (newValue == null)
+                      ? null
+                      : new ExpiringEntry<>(k, newValue, defaultTimeout, globalExpiryListener));
             });
+    evict();
     return (newEntry == null) ? null : newEntry.value;
   }
 
   @Override
   public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+    requireNonNull(value);
     ExpiringEntry<K, V> entry =
-        storage.merge(
+        storage.compute(
             key,
-            new ExpiringEntry<>(key, value, defaultTimeout, null),
-            (oldEntry, newEntry) -> {
-              if (oldEntry.expiry < Long.MAX_VALUE) {
-                expiryQueue.remove(oldEntry);
+            (k, oldEntry) -> {
+              if (isExpired(oldEntry)) {
+                return track(oldEntry, new ExpiringEntry<>(k, value, defaultTimeout, null));
               }
-              V newValue = remappingFunction.apply(oldEntry.value, newEntry.value);
-              return (newValue == null)
-                  ? null
-                  : new ExpiringEntry<>(key, newValue, defaultTimeout, globalExpiryListener);
+              V newValue = remappingFunction.apply(oldEntry.value, value);
+              return track(
+                  oldEntry,
+                  (newValue == null)
+                      ? null
+                      : new ExpiringEntry<>(k, newValue, defaultTimeout, globalExpiryListener));
             });
+    evict();
     return (entry == null) ? null : entry.value;
   }
 
   @Override
   public V replace(K key, V value) {
-    ExpiringEntry<K, V> oldEntry =
-        storage.replace(key, new ExpiringEntry<>(key, value, defaultTimeout, globalExpiryListener));
-    if (oldEntry != null) {
-      if (oldEntry.expiry < Long.MAX_VALUE) {
-        expiryQueue.remove(oldEntry);
-      }
-      return oldEntry.value;
+    ExpiringEntry<K, V> oldEntry = liveEntry(storage.get(key));
+    ExpiringEntry<K, V> newEntry =
+        new ExpiringEntry<>(key, value, defaultTimeout, globalExpiryListener);
+    if (oldEntry == null || !storage.replace(key, oldEntry, newEntry)) {
+      return null;
     }
-    return null;
+    replaced(oldEntry, newEntry);
+    return oldEntry.value;
   }
 
   @Override
@@ -368,14 +481,14 @@ public final class ExpiringMap<K, V> implements Map<K, V> {
         storage.computeIfPresent(
             key,
             (k, oldEntry) -> {
-              if (oldEntry.value.equals(oldValue)) {
-                if (oldEntry.expiry < Long.MAX_VALUE) {
-                  expiryQueue.remove(oldEntry);
-                }
-                return new ExpiringEntry<>(k, newValue, defaultTimeout, globalExpiryListener);
+              if (!isExpired(oldEntry) && oldEntry.value.equals(oldValue)) {
+                return track(
+                    oldEntry,
+                    new ExpiringEntry<>(k, newValue, defaultTimeout, globalExpiryListener));
               }
               return oldEntry;
             });
+    evict();
     return (entry != null) && entry.value.equals(newValue);
   }
 
@@ -383,53 +496,49 @@ public final class ExpiringMap<K, V> implements Map<K, V> {
   public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
     storage.replaceAll(
         (k, oldEntry) -> {
-          if (oldEntry.expiry < Long.MAX_VALUE) {
-            expiryQueue.remove(oldEntry);
+          if (isExpired(oldEntry)) {
+            return oldEntry;
           }
-          return new ExpiringEntry<>(
-              k,
-              requireNonNull(function.apply(k, oldEntry.value)),
-              defaultTimeout,
-              globalExpiryListener);
+          return track(
+              oldEntry,
+              new ExpiringEntry<>(
+                  k,
+                  requireNonNull(function.apply(k, oldEntry.value)),
+                  defaultTimeout,
+                  globalExpiryListener));
         });
+    evict();
   }
 
   @Override
   public V remove(Object key) {
     requireNonNull(key);
-    purgeExpired();
+    expireBuckets();
     ExpiringEntry<K, V> entry = storage.remove(key);
-    if (entry == null) {
-      return null;
-    }
-    if (entry.expiry < Long.MAX_VALUE) {
-      expiryQueue.remove(entry);
-    }
-    return entry.value;
+    replaced(entry, null);
+    return liveValue(entry);
   }
 
   @Override
   public boolean remove(Object key, Object value) {
     requireNonNull(key);
     requireNonNull(value);
-    purgeExpired();
-    ExpiringEntry<K, V> entry = storage.get(key);
-    if (entry == null || !value.equals(entry.value)) {
-      return false;
-    }
-    if (!storage.remove(key, entry)) {
+    expireBuckets();
+    ExpiringEntry<K, V> entry = liveEntry(storage.get(key));
+    if (entry == null || !value.equals(entry.value) || !storage.remove(key, entry)) {
       return false;
     }
-    if (entry.expiry < Long.MAX_VALUE) {
-      expiryQueue.remove(entry);
-    }
+    replaced(entry, null);
     return true;
   }
 
   @Override
   public void clear() {
-    expiryQueue.clear();
+    expiryIndex.clear();
     storage.clear();
+    if (evictionPolicy != null) {
+      evictionPolicy.clear();
+    }
   }
 
   @Override
@@ -471,7 +580,13 @@ public final class ExpiringMap<K, V> implements Map<K, V> {
 
   @Override
   public void forEach(BiConsumer<? super K, ? super V> action) {
-    storage.forEach((k, v) -> action.accept(k, v.value));
+    long now = currentTimeSupplier.getAsLong();
+    storage.forEach(
+        (k, v) -> {
+          if (!isExpired(v, now)) {
+            action.accept(k, v.value);
+          }
+        });
   }
 
   /**
@@ -484,17 +599,183 @@ public final class ExpiringMap<K, V> implements Map<K, V> {
     return purgeExpired(currentTimeSupplier.getAsLong());
   }
 
-  private long purgeExpired(long oldest) {
-    ExpiringEntry<K, V> entry;
-    while ((entry = expiryQueue.peek()) != null && entry.expiry <= oldest) {
-      if (!expiryQueue.remove(entry) || !storage.remove(entry.key, entry)) {
-        continue;
+  private long purgeExpired(long now) {
+    return expiryIndex.expire(now, this::expire);
+  }
+
+  /**
+   * Schedule a periodic purge of expired entries, so that they are removed and their expiry
+   * listeners are invoked even if the map is not modified.
+   *
+   * @param executor The executor to schedule the purge on.
+   * @param period The period between the end of one purge and the start of the next.
+   * @param unit The time unit of the period.
+   * @return A future that can be cancelled to stop purging.
+   */
+  public ScheduledFuture<?> schedulePurge(
+      ScheduledExecutorService executor, long period, TimeUnit unit) {
+    requireNonNull(executor);
+    return executor.scheduleWithFixedDelay(this::purgeExpired, period, period, unit);
+  }
+
+  private void expireBuckets() {
+    expiryIndex.expireBuckets(currentTimeSupplier.getAsLong(), this::expire);
+  }
+
+  /**
+   * Provides the number of reads that found a live entry.
+   *
+   * @return The number of reads that found a live entry.
+   */
+  public long hitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * Provides the number of reads that did not find a live entry.
+   *
+   * @return The number of reads that did not find a live entry.
+   */
+  public long missCount() {
+    return misses.sum();
+  }
+
+  /**
+   * Provides the ratio of reads that found a live entry.
+   *
+   * @return The ratio of reads that found a live entry, or {@code 1.0} if there have been no reads.
+   */
+  public double hitRate() {
+    long hitCount = hits.sum();
+    long total = hitCount + misses.sum();
+    return (total == 0) ? 1.0 : (double) hitCount / total;
+  }
+
+  /**
+   * Provides the number of entries evicted to respect the maximum weight of the map.
+   *
+   * @return The number of entries evicted to respect the maximum weight of the map.
+   */
+  public long evictionCount() {
+    return evictions.sum();
+  }
+
+  private void expire(ExpiringEntry<K, V> entry) {
+    // only remove if it's still mapped to the same entry (object equality is used)
+    if (!storage.remove(entry.key, entry)) {
+      return;
+    }
+    replaced(entry, null);
+    if (entry.expiryListener != null) {
+      entry.expiryListener.accept(entry.key, entry.value);
+    }
+  }
+
+  @Nullable
+  private ExpiringEntry<K, V> recordAccess(@Nullable ExpiringEntry<K, V> entry) {
+    if (entry == null) {
+      misses.increment();
+    } else {
+      hits.increment();
+      if (evictionPolicy != null) {
+        evictionPolicy.access(entry);
+      }
+    }
+    return entry;
+  }
+
+  private void replaced(
+      @Nullable ExpiringEntry<K, V> oldEntry, @Nullable ExpiringEntry<K, V> newEntry) {
+    track(oldEntry, newEntry);
+    evict();
+  }
+
+  // may be called while the storage map holds a lock, so must not modify the storage map
+  @Nullable
+  private ExpiringEntry<K, V> track(
+      @Nullable ExpiringEntry<K, V> oldEntry, @Nullable ExpiringEntry<K, V> newEntry) {
+    if (oldEntry != null && oldEntry != newEntry && oldEntry.scheduled) {
+      expiryIndex.remove(oldEntry);
+    }
+    if (evictionPolicy != null && oldEntry != newEntry) {
+      if (oldEntry != null) {
+        evictionPolicy.remove(oldEntry);
+      }
+      if (newEntry != null) {
+        evictionPolicy.add(newEntry, weigher.applyAsInt(newEntry.key, newEntry.value));
       }
+    }
+    return newEntry;
+  }
+
+  private void evict() {
+    if (evictionPolicy == null) {
+      return;
+    }
+    for (ExpiringEntry<K, V> victim : evictionPolicy.evict()) {
+      if (storage.remove(victim.key, victim)) {
+        if (victim.scheduled) {
+          expiryIndex.remove(victim);
+        }
+        evictions.increment();
+        if (evictionListener != null) {
+          evictionListener.accept(victim.key, victim.value);
+        }
+      }
+    }
+  }
+
+  // for testing
+  int indexSize() {
+    return expiryIndex.size();
+  }
+
+  private boolean isExpired(@Nullable ExpiringEntry<K, V> entry) {
+    return entry == null || (entry.scheduled && isExpired(entry, currentTimeSupplier.getAsLong()));
+  }
+
+  private static boolean isExpired(ExpiringEntry<?, ?> entry, long now) {
+    return entry.scheduled && entry.expiry <= now;
+  }
+
+  @Nullable
+  private ExpiringEntry<K, V> liveEntry(@Nullable ExpiringEntry<K, V> entry) {
+    if (entry == null || !entry.scheduled) {
+      return entry;
+    }
+    return liveEntry(entry, currentTimeSupplier.getAsLong());
+  }
+
+  @Nullable
+  private ExpiringEntry<K, V> liveEntry(@Nullable ExpiringEntry<K, V> entry, long now) {
+    if (entry == null || !isExpired(entry, now)) {
+      return entry;
+    }
+    expire(entry);
+    return null;
+  }
+
+  @Nullable
+  private V liveValue(@Nullable ExpiringEntry<K, V> entry) {
+    if (entry == null || !entry.scheduled) {
+      return (entry == null) ? null : entry.value;
+    }
+    return liveValue(entry, currentTimeSupplier.getAsLong());
+  }
+
+  // for an entry that is no longer mapped, notifying its listener if it had expired
+  @Nullable
+  private V liveValue(@Nullable ExpiringEntry<K, V> entry, long now) {
+    if (entry == null) {
+      return null;
+    }
+    if (isExpired(entry, now)) {
       if (entry.expiryListener != null) {
         entry.expiryListener.accept(entry.key, entry.value);
       }
+      return null;
     }
-    return entry == null ? Long.MAX_VALUE : entry.expiry;
+    return entry.value;
   }
 
   @SuppressWarnings("rawtypes")
@@ -8,17 +8,28 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 import java.util.function.LongSupplier;
+import java.util.function.ToIntFunction;
 import javax.annotation.Nullable;
 
 /**
  * A concurrent hash set that stores values along with an expiry.
  *
  * <p>Elements are stored in the set until their expiry is reached, after which they will no longer
- * be available and will appear as if removed. The actual removal is done lazily whenever the set is
- * accessed, or when the {@link #purgeExpired()} method is invoked.
+ * be available and will appear as if removed. Lookups check the expiry of the element they access,
+ * and the actual removal of other expired elements is done lazily whenever the set is modified or
+ * iterated, when the {@link #purgeExpired()} method is invoked, or periodically when scheduled with
+ * {@link #schedulePurge(ScheduledExecutorService, long, TimeUnit)}.
+ *
+ * <p>A set may also be bounded by a maximum total weight, where each element is weighed when it is
+ * added. When the bound is exceeded, elements are evicted using a segmented LRU policy: elements
+ * that have been looked up since they were added are protected from eviction by elements that have
+ * not.
  *
  * @param <E> The element type.
  */
@@ -27,27 +38,42 @@ public final class ExpiringSet<E> implements Set<E> {
   private final Consumer<E> globalExpiryListener;
 
   // Uses object equality, to ensure uniqueness as a value in the storage map
-  private static final class ExpiringEntry<E> implements Comparable<ExpiringEntry<E>> {
+  private static final class ExpiringEntry<E> extends SegmentedLru.Node
+      implements ExpiryIndex.Entry {
     private E element;
     private long expiry;
+    private boolean scheduled;
     @Nullable private Consumer<E> expiryListener;
 
     ExpiringEntry(E element, long expiry, @Nullable Consumer<E> expiryListener) {
+      this(element, expiry, false, expiryListener);
+    }
+
+    ExpiringEntry(
+        E element, long expiry, boolean scheduled, @Nullable Consumer<E> expiryListener) {
       this.element = element;
       this.expiry = expiry;
+      this.scheduled = scheduled;
       this.expiryListener = expiryListener;
     }
 
     @Override
-    public int compareTo(ExpiringEntry<E> o) {
-      return Long.compare(expiry, o.expiry);
+    public long expiry() {
+      return expiry;
     }
   }
 
   private final ConcurrentHashMap<E, ExpiringEntry<E>> storage = new ConcurrentHashMap<>();
-  private final PriorityBlockingQueue<ExpiringEntry<E>> expiryQueue = new PriorityBlockingQueue<>();
+  private final ExpiryIndex<ExpiringEntry<E>> expiryIndex =
+      new ExpiryIndex<>(e -> storage.get(e.element) == e);
   private final LongSupplier currentTimeSupplier;
   private final long evictionTimeout;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  @Nullable private final SegmentedLru<ExpiringEntry<E>> evictionPolicy;
+  private final ToIntFunction<? super E> weigher;
+  @Nullable private final Consumer<E> evictionListener;
 
   /**
    * Construct an empty expiring set.
@@ -73,26 +99,84 @@ public final class ExpiringSet<E> implements Set<E> {
     this(Long.MAX_VALUE, System::currentTimeMillis, null);
   }
 
+  /**
+   * Construct an empty expiring set with a maximum number of elements.
+   *
+   * @param evictionTimeout the default eviction timeout for entries in milliseconds.
+   * @param maximumSize the maximum number of elements in the set
+   */
+  public ExpiringSet(long evictionTimeout, long maximumSize) {
+    this(evictionTimeout, System::currentTimeMillis, null, maximumSize, e -> 1, null);
+  }
+
+  /**
+   * Construct an empty expiring set with a maximum total weight of elements.
+   *
+   * @param evictionTimeout the default eviction timeout for entries in milliseconds.
+   * @param expiryListener a listener that will be called for each entry expiration
+   * @param maximumWeight the maximum total weight of the elements in the set
+   * @param weigher a function computing the weight of an element, which must not be negative
+   * @param evictionListener a listener that will be called for each element evicted to respect the
+   *     maximum weight
+   */
+  public ExpiringSet(
+      long evictionTimeout,
+      @Nullable Consumer<E> expiryListener,
+      long maximumWeight,
+      ToIntFunction<? super E> weigher,
+      @Nullable Consumer<E> evictionListener) {
+    this(
+        evictionTimeout,
+        System::currentTimeMillis,
+        expiryListener,
+        maximumWeight,
+        weigher,
+        evictionListener);
+  }
+
   ExpiringSet(long evictionTimeout, LongSupplier currentTimeSupplier, Consumer<E> expiryListener) {
+    this(evictionTimeout, currentTimeSupplier, expiryListener, Long.MAX_VALUE, e -> 1, null);
+  }
+
+  ExpiringSet(
+      long evictionTimeout,
+      LongSupplier currentTimeSupplier,
+      @Nullable Consumer<E> expiryListener,
+      long maximumWeight,
+      ToIntFunction<? super E> weigher,
+      @Nullable Consumer<E> evictionListener) {
     if (evictionTimeout <= 0) {
       throw new IllegalArgumentException("Invalid eviction timeout " + evictionTimeout);
     }
+    requireNonNull(weigher);
     this.evictionTimeout = evictionTimeout;
     this.currentTimeSupplier = currentTimeSupplier;
     this.globalExpiryListener = expiryListener;
+    this.evictionPolicy =
+        (maximumWeight == Long.MAX_VALUE) ? null : new SegmentedLru<>(maximumWeight);
+    this.weigher = weigher;
+    this.evictionListener = evictionListener;
   }
 
   @Override
   public boolean contains(Object element) {
-    purgeExpired();
-    return storage.containsKey(element);
+    ExpiringEntry<E> entry = liveEntry(storage.get(element), currentTimeSupplier.getAsLong());
+    if (entry == null) {
+      misses.increment();
+      return false;
+    }
+    hits.increment();
+    if (evictionPolicy != null) {
+      evictionPolicy.access(entry);
+    }
+    return true;
   }
 
   @Override
   public boolean containsAll(Collection<?> c) {
-    purgeExpired();
+    long now = currentTimeSupplier.getAsLong();
     for (Object element : c) {
-      if (!storage.containsKey(element)) {
+      if (liveEntry(storage.get(element), now) == null) {
         return false;
       }
     }
@@ -133,13 +217,15 @@ public final class ExpiringSet<E> implements Set<E> {
   @Override
   public boolean add(E e) {
     requireNonNull(e);
-    purgeExpired();
-    ExpiringEntry<E> oldEntry =
-        storage.put(
-            e,
-            new ExpiringEntry<>(
-                e, currentTimeSupplier.getAsLong() + evictionTimeout, globalExpiryListener));
-    return oldEntry == null;
+    long now = currentTimeSupplier.getAsLong();
+    if (evictionTimeout < Long.MAX_VALUE - now) {
+      return add(e, now + evictionTimeout, globalExpiryListener);
+    }
+    expiryIndex.expireBuckets(now, this::expire);
+    ExpiringEntry<E> newEntry = new ExpiringEntry<>(e, Long.MAX_VALUE, globalExpiryListener);
+    ExpiringEntry<E> oldEntry = storage.put(e, newEntry);
+    replaced(oldEntry, newEntry);
+    return oldEntry == null || wasExpired(oldEntry, now);
   }
 
   /**
@@ -167,7 +253,7 @@ public final class ExpiringSet<E> implements Set<E> {
     requireNonNull(element);
 
     long now = currentTimeSupplier.getAsLong();
-    purgeExpired(now);
+    expiryIndex.expireBuckets(now, this::expire);
 
     if (expiry <= now) {
       boolean removedPrevious = remove(element);
@@ -179,24 +265,24 @@ public final class ExpiringSet<E> implements Set<E> {
 
     ExpiringEntry<E> newEntry =
         new ExpiringEntry<>(
-            element, expiry, expiryListener == null ? globalExpiryListener : expiryListener);
+            element, expiry, true, expiryListener == null ? globalExpiryListener : expiryListener);
     ExpiringEntry<E> oldEntry = storage.put(element, newEntry);
-    expiryQueue.offer(newEntry);
-    if (oldEntry != null && oldEntry.expiry < Long.MAX_VALUE) {
-      expiryQueue.remove(oldEntry);
-    }
-    return oldEntry == null;
+    expiryIndex.add(newEntry);
+    replaced(oldEntry, newEntry);
+    return oldEntry == null || wasExpired(oldEntry, now);
   }
 
   @Override
   public boolean addAll(Collection<? extends E> c) {
     requireNonNull(c);
-    purgeExpired();
+    long now = currentTimeSupplier.getAsLong();
+    expiryIndex.expireBuckets(now, this::expire);
     boolean noOldElements = true;
     for (E element : c) {
-      ExpiringEntry<E> oldEntry =
-          storage.put(element, new ExpiringEntry<>(element, Long.MAX_VALUE, globalExpiryListener));
-      if (oldEntry != null) {
+      ExpiringEntry<E> newEntry = new ExpiringEntry<>(element, Long.MAX_VALUE, globalExpiryListener);
+      ExpiringEntry<E> oldEntry = storage.put(element, newEntry);
+      replaced(oldEntry, newEntry);
+      if (oldEntry != null && !wasExpired(oldEntry, now)) {
         noOldElements = false;
       }
     }
@@ -206,28 +292,23 @@ public final class ExpiringSet<E> implements Set<E> {
   @Override
   public boolean remove(Object element) {
     requireNonNull(element);
-    purgeExpired();
+    long now = currentTimeSupplier.getAsLong();
+    expiryIndex.expireBuckets(now, this::expire);
     ExpiringEntry<E> entry = storage.remove(element);
-    if (entry == null) {
-      return false;
-    }
-    if (entry.expiry < Long.MAX_VALUE) {
-      expiryQueue.remove(entry);
-    }
-    return true;
+    replaced(entry, null);
+    return entry != null && !wasExpired(entry, now);
   }
 
   @Override
   public boolean removeAll(Collection<?> c) {
     requireNonNull(c);
-    purgeExpired();
+    long now = currentTimeSupplier.getAsLong();
+    expiryIndex.expireBuckets(now, this::expire);
     boolean changed = false;
     for (Object element : c) {
       ExpiringEntry<E> entry = storage.remove(element);
-      if (entry != null) {
-        if (entry.expiry < Long.MAX_VALUE) {
-          expiryQueue.remove(entry);
-        }
+      replaced(entry, null);
+      if (entry != null && !wasExpired(entry, now)) {
         changed = true;
       }
     }
@@ -241,8 +322,11 @@ public final class ExpiringSet<E> implements Set<E> {
 
   @Override
   public void clear() {
-    expiryQueue.clear();
+    expiryIndex.clear();
     storage.clear();
+    if (evictionPolicy != null) {
+      evictionPolicy.clear();
+    }
   }
 
   /**
@@ -255,18 +339,130 @@ public final class ExpiringSet<E> implements Set<E> {
     return purgeExpired(currentTimeSupplier.getAsLong());
   }
 
-  private long purgeExpired(long oldest) {
-    ExpiringEntry<E> entry;
-    while ((entry = expiryQueue.peek()) != null && entry.expiry <= oldest) {
-      // only remove if it's still mapped to the same entry (object equality is used)
-      if (!expiryQueue.remove(entry) || !storage.remove(entry.element, entry)) {
-        continue;
-      }
-      if (entry.expiryListener != null) {
-        entry.expiryListener.accept(entry.element);
+  /**
+   * Schedule a periodic purge of expired elements, so that they are removed and their expiry
+   * listeners are invoked even if the set is not modified.
+   *
+   * @param executor The executor to schedule the purge on.
+   * @param period The period between the end of one purge and the start of the next.
+   * @param unit The time unit of the period.
+   * @return A future that can be cancelled to stop purging.
+   */
+  public ScheduledFuture<?> schedulePurge(
+      ScheduledExecutorService executor, long period, TimeUnit unit) {
+    requireNonNull(executor);
+    return executor.scheduleWithFixedDelay(this::purgeExpired, period, period, unit);
+  }
+
+  private long purgeExpired(long now) {
+    return expiryIndex.expire(now, this::expire);
+  }
+
+  /**
+   * Provides the number of lookups that found a live element.
+   *
+   * @return The number of lookups that found a live element.
+   */
+  public long hitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * Provides the number of lookups that did not find a live element.
+   *
+   * @return The number of lookups that did not find a live element.
+   */
+  public long missCount() {
+    return misses.sum();
+  }
+
+  /**
+   * Provides the ratio of lookups that found a live element.
+   *
+   * @return The ratio of lookups that found a live element, or {@code 1.0} if there have been no
+   *     lookups.
+   */
+  public double hitRate() {
+    long hitCount = hits.sum();
+    long total = hitCount + misses.sum();
+    return (total == 0) ? 1.0 : (double) hitCount / total;
+  }
+
+  /**
+   * Provides the number of elements evicted to respect the maximum weight of the set.
+   *
+   * @return The number of elements evicted to respect the maximum weight of the set.
+   */
+  public long evictionCount() {
+    return evictions.sum();
+  }
+
+  private void expire(ExpiringEntry<E> entry) {
+    // only remove if it's still mapped to the same entry (object equality is used)
+    if (!storage.remove(entry.element, entry)) {
+      return;
+    }
+    replaced(entry, null);
+    if (entry.expiryListener != null) {
+      entry.expiryListener.accept(entry.element);
+    }
+  }
+
+  private void replaced(@Nullable ExpiringEntry<E> oldEntry, @Nullable ExpiringEntry<E> newEntry) {
+    if (oldEntry == newEntry) {
+      return;
+    }
+    unindex(oldEntry);
+    if (evictionPolicy == null) {
+      return;
+    }
+    if (oldEntry != null) {
+      evictionPolicy.remove(oldEntry);
+    }
+    if (newEntry == null) {
+      return;
+    }
+    evictionPolicy.add(newEntry, weigher.applyAsInt(newEntry.element));
+    for (ExpiringEntry<E> victim : evictionPolicy.evict()) {
+      if (storage.remove(victim.element, victim)) {
+        unindex(victim);
+        evictions.increment();
+        if (evictionListener != null) {
+          evictionListener.accept(victim.element);
+        }
       }
     }
-    return entry == null ? Long.MAX_VALUE : entry.expiry;
+  }
+
+  private void unindex(@Nullable ExpiringEntry<E> entry) {
+    if (entry != null && entry.scheduled) {
+      expiryIndex.remove(entry);
+    }
+  }
+
+  // for testing
+  int indexSize() {
+    return expiryIndex.size();
+  }
+
+  @Nullable
+  private ExpiringEntry<E> liveEntry(@Nullable ExpiringEntry<E> entry, long now) {
+    if (entry == null || !entry.scheduled || entry.expiry > now) {
+      return entry;
+    }
+    expire(entry);
+    return null;
+  }
+
+  // for an entry that is no longer in the set, notifying its listener if it had expired
+  private static <E> boolean wasExpired(ExpiringEntry<E> entry, long now) {
+    if (!entry.scheduled || entry.expiry > now) {
+      return false;
+    }
+    if (entry.expiryListener != null) {
+      entry.expiryListener.accept(entry.element);
+    }
+    return true;
   }
 
   @SuppressWarnings("rawtypes")
@@ -0,0 +1,208 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.concurrent;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * An index of entries by expiry time, used by {@link ExpiringMap} and {@link ExpiringSet}.
+ *
+ * <p>Entries are grouped into buckets covering a fixed span of time. Adding an entry appends it to
+ * its bucket, and expiring a bucket whose span has fully passed hands over all of its entries at
+ * once, so both are amortised O(1) per entry. Only the bucket spanning the current time needs its
+ * entries examined individually. Each bucket is locked independently.
+ *
+ * <p>Entries replaced or removed from their owning collection are reported to the index, which
+ * counts them against their bucket. Once at least half of a bucket's entries are dead, the bucket
+ * is compacted using the liveness predicate supplied to the index, so the index holds at most about
+ * three times as many entries as the collection, however long the expiry times.
+ *
+ * @param <T> The entry type.
+ */
+final class ExpiryIndex<T extends ExpiryIndex.Entry> {
+
+  /** An entry with an expiry time. */
+  interface Entry {
+
+    /**
+     * Provides the expiry time of the entry.
+     *
+     * @return the expiry time of the entry, in milliseconds since the epoch
+     */
+    long expiry();
+  }
+
+  // buckets span 2^BUCKET_SHIFT milliseconds
+  private static final int BUCKET_SHIFT = 10;
+
+  private static final class Bucket<T> {
+    private final List<T> entries = new ArrayList<>();
+    private int dead;
+    private boolean drained;
+
+    synchronized boolean add(T entry) {
+      if (drained) {
+        return false;
+      }
+      entries.add(entry);
+      return true;
+    }
+
+    // returns true if the bucket is now empty, and has been drained
+    synchronized boolean removed(Predicate<T> isLive) {
+      if (drained) {
+        return false;
+      }
+      if (++dead * 2 < entries.size()) {
+        return false;
+      }
+      entries.removeIf(isLive.negate());
+      dead = 0;
+      if (entries.isEmpty()) {
+        drained = true;
+        return true;
+      }
+      return false;
+    }
+
+    synchronized int size() {
+      return entries.size();
+    }
+
+    synchronized List<T> drain() {
+      drained = true;
+      return entries;
+    }
+  }
+
+  private final ConcurrentSkipListMap<Long, Bucket<T>> buckets = new ConcurrentSkipListMap<>();
+  private final Predicate<T> isLive;
+
+  /**
+   * Construct an empty index.
+   *
+   * @param isLive a predicate indicating whether an entry is still present in its collection
+   */
+  ExpiryIndex(Predicate<T> isLive) {
+    this.isLive = isLive;
+  }
+
+  /**
+   * Add an entry to the index.
+   *
+   * @param entry the entry to add
+   */
+  void add(T entry) {
+    long key = entry.expiry() >> BUCKET_SHIFT;
+    while (true) {
+      Bucket<T> bucket = buckets.computeIfAbsent(key, k -> new Bucket<>());
+      if (bucket.add(entry)) {
+        return;
+      }
+      // the bucket was drained concurrently
+      buckets.remove(key, bucket);
+    }
+  }
+
+  /**
+   * Record that an entry has been replaced or removed from its owning collection.
+   *
+   * <p>The entry must already be absent from the collection, so that the liveness predicate no
+   * longer holds for it.
+   *
+   * @param entry the entry that was replaced or removed
+   */
+  void remove(T entry) {
+    long key = entry.expiry() >> BUCKET_SHIFT;
+    Bucket<T> bucket = buckets.get(key);
+    if (bucket != null && bucket.removed(isLive)) {
+      buckets.remove(key, bucket);
+    }
+  }
+
+  /**
+   * Provides the number of entries held in the index, including dead entries not yet compacted.
+   *
+   * @return the number of entries held in the index
+   */
+  int size() {
+    int size = 0;
+    for (Bucket<T> bucket : buckets.values()) {
+      size += bucket.size();
+    }
+    return size;
+  }
+
+  /** Remove all entries from the index. */
+  void clear() {
+    buckets.clear();
+  }
+
+  /**
+   * Expire the entries of all buckets whose time span has fully passed.
+   *
+   * <p>This is a cheap operation when no bucket is due, and may leave expired entries in the bucket
+   * spanning the current time.
+   *
+   * @param now the current time, in milliseconds since the epoch
+   * @param expired a consumer of expired entries
+   */
+  void expireBuckets(long now, Consumer<T> expired) {
+    Map.Entry<Long, Bucket<T>> first;
+    long current = now >> BUCKET_SHIFT;
+    while ((first = buckets.firstEntry()) != null && first.getKey() < current) {
+      if (buckets.remove(first.getKey(), first.getValue())) {
+        for (T entry : first.getValue().drain()) {
+          expired.accept(entry);
+        }
+      }
+    }
+  }
+
+  /**
+   * Expire all entries that have reached their expiry.
+   *
+   * @param now the current time, in milliseconds since the epoch
+   * @param expired a consumer of expired entries
+   * @return the earliest expiry time of the live entries remaining in the index, or {@code
+   *     Long.MAX_VALUE} if there are none
+   */
+  long expire(long now, Consumer<T> expired) {
+    expireBuckets(now, expired);
+    for (Map.Entry<Long, Bucket<T>> first : buckets.entrySet()) {
+      Bucket<T> bucket = first.getValue();
+      List<T> due = new ArrayList<>();
+      long earliest = Long.MAX_VALUE;
+      synchronized (bucket) {
+        for (Iterator<T> iterator = bucket.entries.iterator(); iterator.hasNext(); ) {
+          T entry = iterator.next();
+          if (entry.expiry() <= now) {
+            iterator.remove();
+            due.add(entry);
+          } else if (!isLive.test(entry)) {
+            iterator.remove();
+          } else if (entry.expiry() < earliest) {
+            earliest = entry.expiry();
+          }
+        }
+        if (bucket.entries.isEmpty()) {
+          bucket.drained = true;
+          buckets.remove(first.getKey(), bucket);
+        }
+      }
+      for (T entry : due) {
+        expired.accept(entry);
+      }
+      if (earliest < Long.MAX_VALUE) {
+        return earliest;
+      }
+    }
+    return Long.MAX_VALUE;
+  }
+}
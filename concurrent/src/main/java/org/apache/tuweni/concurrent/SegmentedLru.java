@@ -0,0 +1,273 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.concurrent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nullable;
+
+/**
+ * A weight-bounded segmented LRU eviction policy, used by {@link ExpiringMap} and {@link
+ * ExpiringSet}.
+ *
+ * <p>New entries are placed in a probationary segment. Entries that are accessed again while on
+ * probation are promoted to a protected segment, which holds at most 80% of the maximum weight and
+ * demotes its least recently used entries back to probation when full. When the total weight
+ * exceeds the maximum, entries are evicted from the least recently used end of the probationary
+ * segment first, so a flood of entries that are never accessed again cannot displace entries that
+ * are in regular use.
+ *
+ * <p>Accesses are recorded without locking, into a fixed-size buffer that is replayed against the
+ * segments under the policy's lock before each change, or by a reader that finds the buffer full.
+ * Accesses made while the buffer is full and the lock is held elsewhere are dropped, which only
+ * makes the recency order approximate.
+ *
+ * @param <T> The entry type.
+ */
+final class SegmentedLru<T extends SegmentedLru.Node> {
+
+  private static final byte NONE = 0;
+  private static final byte PROBATION = 1;
+  private static final byte PROTECTED = 2;
+
+  // must be a power of 2
+  private static final int ACCESS_BUFFER_SIZE = 128;
+  private static final int ACCESS_BUFFER_MASK = ACCESS_BUFFER_SIZE - 1;
+
+  /** A node in the policy, extended by the entries it tracks. */
+  abstract static class Node {
+    @Nullable Node prev;
+    @Nullable Node next;
+    int weight;
+    byte segment;
+  }
+
+  private static final class Sentinel extends Node {}
+
+  private final long maximumWeight;
+  private final long protectedMaximumWeight;
+  private final Node probation = new Sentinel();
+  private final Node protectedSegment = new Sentinel();
+  private long probationWeight;
+  private long protectedWeight;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final AtomicReferenceArray<Node> accessBuffer =
+      new AtomicReferenceArray<>(ACCESS_BUFFER_SIZE);
+  private final AtomicLong accessWrites = new AtomicLong();
+  // only advanced while holding the lock
+  private volatile long accessReads;
+
+  /**
+   * Construct an empty policy.
+   *
+   * @param maximumWeight the maximum total weight of the entries
+   */
+  SegmentedLru(long maximumWeight) {
+    if (maximumWeight <= 0) {
+      throw new IllegalArgumentException("Invalid maximum weight " + maximumWeight);
+    }
+    this.maximumWeight = maximumWeight;
+    this.protectedMaximumWeight = maximumWeight - maximumWeight / 5;
+    probation.prev = probation;
+    probation.next = probation;
+    protectedSegment.prev = protectedSegment;
+    protectedSegment.next = protectedSegment;
+  }
+
+  /**
+   * Track a new entry.
+   *
+   * @param node the entry
+   * @param weight the weight of the entry
+   */
+  void add(T node, int weight) {
+    if (weight < 0) {
+      throw new IllegalArgumentException("Invalid weight " + weight);
+    }
+    lock.lock();
+    try {
+      drainAccesses();
+      if (node.segment != NONE) {
+        return;
+      }
+      node.weight = weight;
+      node.segment = PROBATION;
+      linkLast(probation, node);
+      probationWeight += weight;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Record an access to an entry.
+   *
+   * <p>This does not block, and the access may be dropped under heavy contention.
+   *
+   * @param node the entry
+   */
+  void access(T node) {
+    while (true) {
+      long writes = accessWrites.get();
+      if (writes - accessReads >= ACCESS_BUFFER_SIZE) {
+        // the buffer is full, so replay it if no other thread is, and drop this access
+        if (lock.tryLock()) {
+          try {
+            drainAccesses();
+          } finally {
+            lock.unlock();
+          }
+        }
+        return;
+      }
+      if (accessWrites.compareAndSet(writes, writes + 1)) {
+        accessBuffer.lazySet((int) (writes & ACCESS_BUFFER_MASK), node);
+        return;
+      }
+    }
+  }
+
+  // must hold the lock
+  private void drainAccesses() {
+    long reads = accessReads;
+    long writes = accessWrites.get();
+    while (reads < writes) {
+      int index = (int) (reads & ACCESS_BUFFER_MASK);
+      Node node = accessBuffer.get(index);
+      if (node == null) {
+        // the slot has been claimed but not yet written
+        break;
+      }
+      accessBuffer.lazySet(index, null);
+      promote(node);
+      reads++;
+    }
+    accessReads = reads;
+  }
+
+  private void promote(Node node) {
+    if (node.segment == PROBATION) {
+      unlink(node);
+      probationWeight -= node.weight;
+      node.segment = PROTECTED;
+      linkLast(protectedSegment, node);
+      protectedWeight += node.weight;
+      while (protectedWeight > protectedMaximumWeight) {
+        Node demoted = protectedSegment.next;
+        unlink(demoted);
+        protectedWeight -= demoted.weight;
+        demoted.segment = PROBATION;
+        linkLast(probation, demoted);
+        probationWeight += demoted.weight;
+      }
+    } else if (node.segment == PROTECTED) {
+      unlink(node);
+      linkLast(protectedSegment, node);
+    }
+  }
+
+  /**
+   * Stop tracking an entry.
+   *
+   * @param node the entry
+   */
+  void remove(T node) {
+    lock.lock();
+    try {
+      drainAccesses();
+      unlinkNode(node);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void unlinkNode(Node node) {
+    if (node.segment == PROBATION) {
+      probationWeight -= node.weight;
+    } else if (node.segment == PROTECTED) {
+      protectedWeight -= node.weight;
+    } else {
+      return;
+    }
+    unlink(node);
+    node.segment = NONE;
+  }
+
+  /**
+   * Select and stop tracking the entries that must be evicted to bring the total weight back under
+   * the maximum.
+   *
+   * @return the entries to evict
+   */
+  @SuppressWarnings("unchecked")
+  List<T> evict() {
+    lock.lock();
+    try {
+      if (probationWeight + protectedWeight <= maximumWeight) {
+        return Collections.emptyList();
+      }
+      drainAccesses();
+      List<T> victims = new ArrayList<>();
+      while (probationWeight + protectedWeight > maximumWeight) {
+        Node victim = (probation.next != probation) ? probation.next : protectedSegment.next;
+        victims.add((T) victim);
+        unlinkNode(victim);
+      }
+      return victims;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Stop tracking all entries. */
+  void clear() {
+    lock.lock();
+    try {
+      drainAccesses();
+      for (Node head : new Node[] {probation, protectedSegment}) {
+        while (head.next != head) {
+          Node node = head.next;
+          unlink(node);
+          node.segment = NONE;
+        }
+      }
+      probationWeight = 0;
+      protectedWeight = 0;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Provides the total weight of the tracked entries.
+   *
+   * @return the total weight of the tracked entries
+   */
+  long weight() {
+    lock.lock();
+    try {
+      return probationWeight + protectedWeight;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static void linkLast(Node head, Node node) {
+    node.prev = head.prev;
+    node.next = head;
+    head.prev.next = node;
+    head.prev = node;
+  }
+
+  private static void unlink(Node node) {
+    node.prev.next = node.next;
+    node.next.prev = node.prev;
+    node.prev = null;
+    node.next = null;
+  }
+}
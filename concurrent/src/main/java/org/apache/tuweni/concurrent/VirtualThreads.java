@@ -0,0 +1,81 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.concurrent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Support for executing blocking operations on virtual threads, used by {@link AsyncResult} and
+ * {@link AsyncCompletion}.
+ */
+final class VirtualThreads {
+  private VirtualThreads() {}
+
+  /**
+   * The shared executor, starting a new virtual thread for each task. It is created on first use
+   * and never shut down, as virtual threads do not keep the JVM alive.
+   */
+  static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+  /**
+   * Execute all the given functions concurrently, each on its own virtual thread.
+   *
+   * <p>The returned result completes with the values of all functions, in order. If any function
+   * fails, the result completes exceptionally with the same exception and the functions still
+   * running are interrupted. If the returned result is cancelled, all functions still running are
+   * interrupted.
+   *
+   * @param fns The functions to execute.
+   * @param <T> The type of the values returned by the functions.
+   * @return A result.
+   */
+  static <T> AsyncResult<List<T>> executeAll(List<? extends Supplier<? extends T>> fns) {
+    CompletableAsyncResult<List<T>> asyncResult = AsyncResult.incomplete();
+    if (fns.isEmpty()) {
+      asyncResult.complete(new ArrayList<>());
+      return asyncResult;
+    }
+    Object[] values = new Object[fns.size()];
+    AtomicInteger remaining = new AtomicInteger(fns.size());
+    List<Future<?>> tasks = new ArrayList<>(fns.size());
+    for (int i = 0; i < fns.size(); ++i) {
+      int index = i;
+      Supplier<? extends T> fn = fns.get(i);
+      tasks.add(
+          EXECUTOR.submit(
+              () -> {
+                if (asyncResult.isDone()) {
+                  return;
+                }
+                try {
+                  values[index] = fn.get();
+                } catch (Throwable ex) {
+                  asyncResult.completeExceptionally(ex);
+                  return;
+                }
+                // the decrement publishes the value to the thread completing the result
+                if (remaining.decrementAndGet() == 0) {
+                  @SuppressWarnings("unchecked")
+                  List<T> result = (List<T>) new ArrayList<>(Arrays.asList(values));
+                  asyncResult.complete(result);
+                }
+              }));
+    }
+    asyncResult.whenComplete(
+        (v, ex) -> {
+          if (ex != null) {
+            for (Future<?> task : tasks) {
+              task.cancel(true);
+            }
+          }
+        });
+    return asyncResult;
+  }
+}
@@ -4,18 +4,23 @@ package org.apache.tuweni.concurrent;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.apache.tuweni.junit.VertxExtension;
 import org.apache.tuweni.junit.VertxInstance;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import io.vertx.core.Vertx;
@@ -365,6 +370,24 @@ class DefaultCompletableAsyncCompletionTest {
     assertCompletedWithException(completion, exception);
   }
 
+  @Test
+  void completesFutureWhenCompleted() throws Exception {
+    CompletableAsyncCompletion completion = AsyncCompletion.incomplete();
+    Future<Void> future = completion.toFuture();
+    assertThat(future.isDone()).isFalse();
+    completion.complete();
+    assertThat(future.isDone()).isTrue();
+  }
+
+  @Test
+  void completesWhenFutureCompleted() {
+    CompletableAsyncCompletion completion = AsyncCompletion.incomplete();
+    Future<Void> future = completion.toFuture();
+    future.cancel(false);
+    assertThat(completion.isDone()).isTrue();
+    assertThat(completion.isCancelled()).isTrue();
+  }
+
   @Test
   void invokesComposedWhenCanceled() {
     CompletableAsyncCompletion completion = AsyncCompletion.incomplete();
@@ -400,6 +423,49 @@ class DefaultCompletableAsyncCompletionTest {
     assertTrue(executed.get());
   }
 
+  @Test
+  void testExecutingOnVirtualThread() throws InterruptedException {
+    AtomicBoolean virtual = new AtomicBoolean();
+    AsyncCompletion completion =
+        AsyncCompletion.executeOnVirtualThread(
+            () -> virtual.set(Thread.currentThread().isVirtual()));
+    completion.join();
+    assertTrue(virtual.get());
+  }
+
+  @Test
+  void testAllOfOnVirtualThreads() throws InterruptedException {
+    AtomicInteger executed = new AtomicInteger();
+    List<Runnable> actions = new ArrayList<>();
+    for (int i = 0; i < 1000; ++i) {
+      actions.add(
+          () -> {
+            try {
+              Thread.sleep(100);
+            } catch (InterruptedException e) {
+              throw new RuntimeException(e);
+            }
+            executed.incrementAndGet();
+          });
+    }
+    AsyncCompletion completion = AsyncCompletion.allOfOnVirtualThreads(actions);
+    completion.join();
+    assertEquals(1000, executed.get());
+  }
+
+  @Test
+  void testAllOfOnVirtualThreadsFails() throws Exception {
+    RuntimeException exception = new RuntimeException();
+    AsyncCompletion completion =
+        AsyncCompletion.allOfOnVirtualThreads(
+            Arrays.asList(
+                () -> {},
+                () -> {
+                  throw exception;
+                }));
+    assertCompletedWithException(completion, exception);
+  }
+
   @Test
   void testRunOnContextSupplier(@VertxInstance Vertx vertx) throws InterruptedException {
     AsyncCompletion completion = AsyncCompletion.runOnContext(vertx, AsyncCompletion::completed);
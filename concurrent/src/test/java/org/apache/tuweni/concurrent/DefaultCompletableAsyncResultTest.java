@@ -10,13 +10,17 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 import org.apache.tuweni.junit.VertxExtension;
 import org.apache.tuweni.junit.VertxInstance;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
 
 import io.vertx.core.Vertx;
@@ -304,6 +308,194 @@ class DefaultCompletableAsyncResultTest {
     assertThat(strings).isEqualTo(Arrays.asList("one", "two"));
   }
 
+  @Test
+  void combinesLargeCollectionInOrder() throws Exception {
+    List<CompletableAsyncResult<Integer>> list = new ArrayList<>();
+    for (int i = 0; i < 100_000; ++i) {
+      list.add(AsyncResult.incomplete());
+    }
+    AsyncResult<List<Integer>> result = AsyncResult.combine(list);
+    for (int i = list.size() - 1; i >= 0; --i) {
+      list.get(i).complete(i);
+    }
+    assertThat(result.isDone()).isTrue();
+    List<Integer> values = result.get();
+    assertEquals(100_000, values.size());
+    for (int i = 0; i < values.size(); ++i) {
+      assertEquals(Integer.valueOf(i), values.get(i));
+    }
+  }
+
+  @Test
+  void combineCompletesWithFirstExceptionInCollection() throws Exception {
+    CompletableAsyncResult<String> asyncResult1 = AsyncResult.incomplete();
+    CompletableAsyncResult<String> asyncResult2 = AsyncResult.incomplete();
+    CompletableAsyncResult<String> asyncResult3 = AsyncResult.incomplete();
+    AsyncResult<List<String>> result =
+        AsyncResult.combine(Arrays.asList(asyncResult1, asyncResult2, asyncResult3));
+
+    Exception exception1 = new RuntimeException();
+    Exception exception2 = new RuntimeException();
+    asyncResult2.completeExceptionally(exception2);
+    asyncResult1.completeExceptionally(exception1);
+    assertThat(result.isDone()).isFalse();
+
+    asyncResult3.complete("three");
+    assertCompletedWithException(result, exception1);
+  }
+
+  @Test
+  void runsContinuationsOfCompletedResultImmediately() throws Exception {
+    AsyncResult<Integer> result = AsyncResult.completed(1).thenApply(i -> i + 1);
+    assertThat(result.isDone()).isTrue();
+    assertEquals(Integer.valueOf(2), result.get());
+  }
+
+  @Test
+  void runsContinuationsInOrderAdded() {
+    CompletableAsyncResult<String> asyncResult = AsyncResult.incomplete();
+    List<Integer> order = new ArrayList<>();
+    for (int i = 0; i < 5; ++i) {
+      int index = i;
+      asyncResult.thenAccept(s -> order.add(index));
+    }
+    asyncResult.complete("foo");
+    assertEquals(Arrays.asList(0, 1, 2, 3, 4), order);
+  }
+
+  @Test
+  void wrapsExceptionForDependentResults() {
+    CompletableAsyncResult<String> asyncResult = AsyncResult.incomplete();
+    AtomicReference<Throwable> completedThrowable = new AtomicReference<>();
+    asyncResult
+        .thenApply(String::length)
+        .whenComplete((result, throwable) -> completedThrowable.set(throwable));
+
+    Exception exception = new RuntimeException();
+    asyncResult.completeExceptionally(exception);
+    assertThat(completedThrowable.get()).isInstanceOf(CompletionException.class);
+    assertThat(completedThrowable.get().getCause()).isSameAs(exception);
+  }
+
+  @Test
+  void timesOutWaitingForIncompleteResult() throws Exception {
+    CompletableAsyncResult<String> asyncResult = AsyncResult.incomplete();
+    try {
+      asyncResult.get(10, TimeUnit.MILLISECONDS);
+      fail("Expected exception not thrown");
+    } catch (TimeoutException ex) {
+      // expected
+    }
+    asyncResult.complete("foo");
+    assertEquals("foo", asyncResult.get());
+  }
+
+  @Test
+  void waitsForResultCompletedByAnotherThread() throws Exception {
+    CompletableAsyncResult<String> asyncResult = AsyncResult.incomplete();
+    Thread thread =
+        new Thread(
+            () -> {
+              try {
+                Thread.sleep(50);
+              } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+              }
+              asyncResult.complete("foo");
+            });
+    thread.start();
+    assertEquals("foo", asyncResult.get());
+    thread.join();
+  }
+
+  @Test
+  void mapsConcurrentlyWithBoundedParallelism() throws Exception {
+    List<CompletableAsyncResult<String>> started = new ArrayList<>();
+    AsyncResult<List<String>> result =
+        AsyncResult.mapConcurrent(
+            Arrays.asList(1, 2, 3, 4, 5),
+            2,
+            i -> {
+              CompletableAsyncResult<String> r = AsyncResult.incomplete();
+              started.add(r);
+              return r.thenApply(s -> s + i);
+            });
+    assertEquals(2, started.size());
+
+    started.get(1).complete("b");
+    assertEquals(3, started.size());
+    started.get(0).complete("a");
+    assertEquals(4, started.size());
+    started.get(3).complete("d");
+    started.get(2).complete("c");
+    assertEquals(5, started.size());
+    assertThat(result.isDone()).isFalse();
+
+    started.get(4).complete("e");
+    assertThat(result.isDone()).isTrue();
+    assertEquals(Arrays.asList("a1", "b2", "c3", "d4", "e5"), result.get());
+  }
+
+  @Test
+  void mapsConcurrentlyOverCompletedResultsWithoutRecursing() throws Exception {
+    List<Integer> items = new ArrayList<>();
+    for (int i = 0; i < 100_000; ++i) {
+      items.add(i);
+    }
+    AsyncResult<List<Integer>> result =
+        AsyncResult.mapConcurrent(items, 4, i -> AsyncResult.completed(i * 2));
+    List<Integer> values = result.get();
+    assertEquals(100_000, values.size());
+    assertEquals(Integer.valueOf(199_998), values.get(99_999));
+  }
+
+  @Test
+  void mapsConcurrentlyOverEmptyCollection() throws Exception {
+    AsyncResult<List<String>> result =
+        AsyncResult.mapConcurrent(
+            Collections.<Integer>emptyList(), 2, i -> AsyncResult.completed("foo"));
+    assertThat(result.isDone()).isTrue();
+    assertEquals(Collections.emptyList(), result.get());
+  }
+
+  @Test
+  void stopsMappingAndCancelsOnFirstFailure() throws Exception {
+    List<CompletableAsyncResult<String>> started = new ArrayList<>();
+    AsyncResult<List<String>> result =
+        AsyncResult.mapConcurrent(
+            Arrays.asList(1, 2, 3, 4),
+            2,
+            i -> {
+              CompletableAsyncResult<String> r = AsyncResult.incomplete();
+              started.add(r);
+              return r;
+            });
+    Exception exception = new RuntimeException();
+    started.get(1).completeExceptionally(exception);
+
+    assertCompletedWithException(result, exception);
+    assertEquals(2, started.size());
+    assertThat(started.get(0).isCancelled()).isTrue();
+  }
+
+  @Test
+  void cancelsInFlightWhenMappingCancelled() {
+    List<CompletableAsyncResult<String>> started = new ArrayList<>();
+    AsyncResult<List<String>> result =
+        AsyncResult.mapConcurrent(
+            Arrays.asList(1, 2, 3),
+            2,
+            i -> {
+              CompletableAsyncResult<String> r = AsyncResult.incomplete();
+              started.add(r);
+              return r;
+            });
+    result.cancel();
+    assertThat(started.get(0).isCancelled()).isTrue();
+    assertThat(started.get(1).isCancelled()).isTrue();
+    assertEquals(2, started.size());
+  }
+
   @Test
   void invokesComposedWhenCanceled() {
     CompletableAsyncResult<String> asyncResult = AsyncResult.incomplete();
@@ -336,6 +528,48 @@ class DefaultCompletableAsyncResultTest {
     assertEquals("foo", result.get());
   }
 
+  @Test
+  void testExecutingOnVirtualThread() throws InterruptedException {
+    AsyncResult<Boolean> result =
+        AsyncResult.executeOnVirtualThread(() -> Thread.currentThread().isVirtual());
+    assertEquals(true, result.get());
+  }
+
+  @Test
+  void testCombiningOnVirtualThreads() throws InterruptedException {
+    AsyncResult<List<String>> result =
+        AsyncResult.combineOnVirtualThreads(
+            Arrays.asList(
+                () -> {
+                  sleep(50);
+                  return "foo";
+                },
+                () -> "bar"));
+    assertEquals(Arrays.asList("foo", "bar"), result.get());
+  }
+
+  @Test
+  void testCombiningOnVirtualThreadsInterruptsOthersOnFailure() throws Exception {
+    RuntimeException exception = new RuntimeException();
+    CompletableAsyncResult<Boolean> interrupted = AsyncResult.incomplete();
+    AsyncResult<List<Object>> result =
+        AsyncResult.combineOnVirtualThreads(
+            Arrays.asList(
+                () -> {
+                  try {
+                    Thread.sleep(10_000);
+                  } catch (InterruptedException e) {
+                    interrupted.complete(true);
+                  }
+                  return "foo";
+                },
+                () -> {
+                  throw exception;
+                }));
+    assertCompletedWithException(result, exception);
+    assertEquals(true, interrupted.get());
+  }
+
   @Test
   void testRunOnContext(@VertxInstance Vertx vertx) throws InterruptedException {
     AsyncResult<String> result =
@@ -343,6 +577,26 @@ class DefaultCompletableAsyncResultTest {
     assertEquals("foo", result.get());
   }
 
+  @Test
+  void shouldCompleteDeepChainOfDependents() throws Exception {
+    CompletableAsyncResult<Integer> head = AsyncResult.incomplete();
+    AsyncResult<Integer> tail = head;
+    for (int i = 0; i < 100_000; ++i) {
+      tail = tail.thenApply(n -> n + 1);
+    }
+    head.complete(0);
+    assertThat(tail.isDone()).isTrue();
+    assertEquals(Integer.valueOf(100_000), tail.get());
+
+    CompletableAsyncResult<Integer> failingHead = AsyncResult.incomplete();
+    AsyncResult<Integer> failingTail = failingHead;
+    for (int i = 0; i < 100_000; ++i) {
+      failingTail = failingTail.thenApply(n -> n + 1);
+    }
+    failingHead.completeExceptionally(new RuntimeException("foo"));
+    assertThat(failingTail.isCompletedExceptionally()).isTrue();
+  }
+
   @Test
   void testRunOnExecutor() throws InterruptedException {
     ExecutorService service = Executors.newSingleThreadExecutor();
@@ -365,6 +619,14 @@ class DefaultCompletableAsyncResultTest {
     assertEquals("foo", result.get());
   }
 
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   private void assertCompletedWithException(AsyncResult<?> asyncResult, Exception exception)
       throws Exception {
     try {
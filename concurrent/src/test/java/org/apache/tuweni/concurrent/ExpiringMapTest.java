@@ -8,8 +8,18 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -185,4 +195,190 @@ class ExpiringMapTest {
     Thread.sleep(11);
     assertEquals("bar", map.get("foo"));
   }
+
+  @Test
+  void readingExpiredItemCallsExpiryListener() {
+    AtomicReference<String> expired = new AtomicReference<>();
+    Instant futureTime = currentTime.plusSeconds(10);
+    map.put(1, "foo", futureTime.toEpochMilli(), (k, v) -> expired.set(v));
+    currentTime = futureTime;
+    assertNull(map.get(1));
+    assertEquals("foo", expired.get());
+    assertEquals(0, map.size());
+  }
+
+  @Test
+  void doesNotCallExpiryListenerForReplacedItem() {
+    AtomicInteger expired = new AtomicInteger();
+    Instant futureTime = currentTime.plusSeconds(10);
+    map.put(1, "foo", futureTime.toEpochMilli(), (k, v) -> expired.incrementAndGet());
+    map.put(1, "bar");
+    currentTime = futureTime.plusSeconds(10);
+    assertEquals(Long.MAX_VALUE, map.purgeExpired());
+    assertEquals(0, expired.get());
+    assertEquals("bar", map.get(1));
+  }
+
+  @Test
+  void expiresManyItemsInOrder() {
+    for (int i = 0; i < 10000; i++) {
+      map.put(i, "foo", currentTime.plusMillis(i + 1).toEpochMilli());
+    }
+    Instant start = currentTime;
+    currentTime = start.plusMillis(5000);
+    assertEquals(start.plusMillis(5001).toEpochMilli(), map.purgeExpired());
+    assertEquals(5000, map.size());
+    assertNull(map.get(4999));
+    assertEquals("foo", map.get(5000));
+    currentTime = start.plusMillis(10000);
+    assertEquals(Long.MAX_VALUE, map.purgeExpired());
+    assertTrue(map.isEmpty());
+  }
+
+  @Test
+  void schedulePurgeExpiresWithoutAccess() throws Exception {
+    ExpiringMap<String, String> map = new ExpiringMap<>();
+    CountDownLatch expired = new CountDownLatch(1);
+    map.put("foo", "bar", System.currentTimeMillis() + 10, (k, v) -> expired.countDown());
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    try {
+      ScheduledFuture<?> purge = map.schedulePurge(executor, 5, TimeUnit.MILLISECONDS);
+      assertTrue(expired.await(5, TimeUnit.SECONDS));
+      purge.cancel(false);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void supportsConcurrentAccess() throws Exception {
+    ExpiringMap<Integer, String> map = new ExpiringMap<>();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        int offset = t * 10000;
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int i = offset; i < offset + 10000; i++) {
+                    map.put(i, "foo", System.currentTimeMillis() - 1 + (i % 2) * 60000);
+                    map.get(i);
+                    map.containsKey(i - 1);
+                  }
+                }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    map.purgeExpired();
+    assertEquals(40000, map.size());
+  }
+
+  @Test
+  void supportsConcurrentReadsWhenBounded() throws Exception {
+    ExpiringMap<Integer, String> boundedMap =
+        new ExpiringMap<>(System::currentTimeMillis, Long.MAX_VALUE, null, 1000, (k, v) -> 1, null);
+    for (int i = 0; i < 1000; i++) {
+      boundedMap.put(i, "foo");
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        int offset = t * 10000;
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int i = 0; i < 10000; i++) {
+                    boundedMap.get(i % 1000);
+                    if (i % 100 == 0) {
+                      boundedMap.put(100000 + offset + i, "bar");
+                    }
+                  }
+                }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(1000, boundedMap.size());
+    assertEquals(800, boundedMap.evictionCount());
+    assertEquals(80000, boundedMap.hitCount() + boundedMap.missCount());
+  }
+
+  @Test
+  void evictsEntriesNotReadBeforeEntriesRead() {
+    List<Integer> evicted = new ArrayList<>();
+    ExpiringMap<Integer, String> boundedMap =
+        new ExpiringMap<>(
+            () -> currentTime.toEpochMilli(),
+            Long.MAX_VALUE,
+            null,
+            10,
+            (k, v) -> 1,
+            (k, v) -> evicted.add(k));
+    for (int i = 0; i < 5; i++) {
+      boundedMap.put(i, "hot");
+      assertEquals("hot", boundedMap.get(i));
+    }
+    for (int i = 100; i < 200; i++) {
+      boundedMap.put(i, "cold", currentTime.plusSeconds(10).toEpochMilli());
+    }
+    assertEquals(10, boundedMap.size());
+    for (int i = 0; i < 5; i++) {
+      assertEquals("hot", boundedMap.get(i));
+    }
+    assertEquals(95, evicted.size());
+    assertEquals(Integer.valueOf(100), evicted.get(0));
+    assertEquals(95, boundedMap.evictionCount());
+  }
+
+  @Test
+  void evictsByWeight() {
+    ExpiringMap<Integer, String> boundedMap =
+        new ExpiringMap<>(
+            () -> currentTime.toEpochMilli(), Long.MAX_VALUE, null, 10, (k, v) -> v.length(), null);
+    boundedMap.put(1, "aaaa");
+    boundedMap.put(2, "bbbb");
+    boundedMap.put(1, "aaaaa");
+    assertEquals(2, boundedMap.size());
+    boundedMap.compute(3, (k, v) -> "cc");
+    assertEquals(2, boundedMap.size());
+    assertNull(boundedMap.get(2));
+    boundedMap.remove(1);
+    boundedMap.merge(4, "dddd", (a, b) -> a + b);
+    assertEquals(2, boundedMap.size());
+    assertEquals("cc", boundedMap.get(3));
+  }
+
+  @Test
+  void indexStaysBoundedWhenEntriesAreReplacedOrRemoved() {
+    long expiry = currentTime.plusSeconds(3600).toEpochMilli();
+    for (int i = 0; i < 100_000; i++) {
+      map.put(i % 100, "foo", expiry + i);
+      if (i % 3 == 0) {
+        map.remove((i + 50) % 100);
+      }
+      assertTrue(map.indexSize() <= 3 * 100);
+    }
+    assertTrue(map.size() <= 100);
+  }
+
+  @Test
+  void tracksHitRate() {
+    map.put(1, "foo");
+    assertEquals("foo", map.get(1));
+    assertTrue(map.containsKey(1));
+    assertNull(map.get(2));
+    assertFalse(map.containsKey(3));
+    assertEquals(2, map.hitCount());
+    assertEquals(2, map.missCount());
+    assertEquals(0.5, map.hitRate());
+  }
 }
@@ -6,6 +6,8 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -117,4 +119,79 @@ class ExpiringSetTest {
     set.purgeExpired();
     assertTrue(removed2.get());
   }
+
+  @Test
+  void expiresItemAfterDefaultTimeout() {
+    ExpiringSet<String> timedSet = new ExpiringSet<>(1000L, () -> currentTime.toEpochMilli(), null);
+    timedSet.add("foo");
+    currentTime = currentTime.plusMillis(999);
+    assertTrue(timedSet.contains("foo"));
+    currentTime = currentTime.plusMillis(1);
+    assertFalse(timedSet.contains("foo"));
+  }
+
+  @Test
+  void evictsItemsNotLookedUpBeforeItemsLookedUp() {
+    List<String> evicted = new ArrayList<>();
+    ExpiringSet<String> boundedSet =
+        new ExpiringSet<>(
+            Long.MAX_VALUE, () -> currentTime.toEpochMilli(), null, 10, e -> 1, evicted::add);
+    for (int i = 0; i < 5; i++) {
+      boundedSet.add("hot" + i);
+      assertTrue(boundedSet.contains("hot" + i));
+    }
+    for (int i = 0; i < 100; i++) {
+      boundedSet.add("cold" + i);
+    }
+    assertEquals(10, boundedSet.size());
+    for (int i = 0; i < 5; i++) {
+      assertTrue(boundedSet.contains("hot" + i));
+    }
+    assertEquals(95, evicted.size());
+    assertEquals(95, boundedSet.evictionCount());
+    assertEquals("cold0", evicted.get(0));
+  }
+
+  @Test
+  void evictsByWeight() {
+    ExpiringSet<String> boundedSet =
+        new ExpiringSet<>(
+            Long.MAX_VALUE, () -> currentTime.toEpochMilli(), null, 10, String::length, null);
+    boundedSet.add("aaaa");
+    boundedSet.add("bbbb");
+    assertEquals(2, boundedSet.size());
+    boundedSet.add("cccc");
+    assertEquals(2, boundedSet.size());
+    assertFalse(boundedSet.contains("aaaa"));
+    boundedSet.remove("bbbb");
+    boundedSet.add("dddddd");
+    assertEquals(2, boundedSet.size());
+  }
+
+  @Test
+  void indexStaysBoundedUnderChurn() {
+    ExpiringSet<String> boundedSet =
+        new ExpiringSet<>(
+            24 * 60 * 60 * 1000L, () -> currentTime.toEpochMilli(), null, 1000, e -> 1, null);
+    for (int i = 0; i < 100_000; i++) {
+      boundedSet.add("node" + i);
+      if (i % 10 == 0) {
+        currentTime = currentTime.plusMillis(1);
+      }
+      assertTrue(boundedSet.indexSize() <= 3 * 1000);
+    }
+    assertEquals(1000, boundedSet.size());
+  }
+
+  @Test
+  void tracksHitRate() {
+    set.add("foo");
+    assertTrue(set.contains("foo"));
+    assertTrue(set.contains("foo"));
+    assertTrue(set.contains("foo"));
+    assertFalse(set.contains("bar"));
+    assertEquals(3, set.hitCount());
+    assertEquals(1, set.missCount());
+    assertEquals(0.75, set.hitRate());
+  }
 }
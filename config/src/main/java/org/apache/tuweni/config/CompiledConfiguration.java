@@ -0,0 +1,282 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.config;
+
+import static org.apache.tuweni.config.Configuration.canonicalKey;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * An immutable, flattened snapshot of a configuration.
+ *
+ * <p>Every key of the source configuration is assigned a slot, and scalar values are held in
+ * primitive arrays indexed by that slot. Anything the snapshot does not hold directly (lists and
+ * maps of a specific element type, sections, positions, and all error reporting) is answered by
+ * the source configuration, so that the results are identical.
+ */
+final class CompiledConfiguration implements Configuration {
+
+  private static final byte NONE = 0;
+  private static final byte LONG = 1;
+  private static final byte DOUBLE = 2;
+  private static final byte BOOLEAN = 3;
+  private static final byte STRING = 4;
+
+  private final Configuration source;
+  private final List<ConfigurationError> errors;
+  private final Set<String> keys;
+  private final Map<String, Integer> layout;
+  private final byte[] types;
+  private final long[] longs;
+  private final double[] doubles;
+  private final boolean[] booleans;
+  private final Object[] objects;
+
+  CompiledConfiguration(Configuration source) {
+    Set<String> sourceKeys = source.keySet();
+    int size = sourceKeys.size();
+    Map<String, Integer> layout = new HashMap<>(size * 4 / 3 + 1);
+    this.types = new byte[size];
+    this.longs = new long[size];
+    this.doubles = new double[size];
+    this.booleans = new boolean[size];
+    this.objects = new Object[size];
+
+    int slot = 0;
+    for (String key : sourceKeys) {
+      String canonical = canonicalKey(key);
+      if (layout.putIfAbsent(canonical, slot) != null) {
+        continue;
+      }
+      Object value = source.get(canonical);
+      if (value instanceof Long || value instanceof Integer) {
+        types[slot] = LONG;
+        longs[slot] = ((Number) value).longValue();
+      } else if (value instanceof Double) {
+        types[slot] = DOUBLE;
+        doubles[slot] = (Double) value;
+      } else if (value instanceof Boolean) {
+        types[slot] = BOOLEAN;
+        booleans[slot] = (Boolean) value;
+      } else if (value instanceof String) {
+        types[slot] = STRING;
+      }
+      objects[slot] = unmodifiable(value);
+      ++slot;
+    }
+
+    this.source = source;
+    this.errors = Collections.unmodifiableList(new ArrayList<>(source.errors()));
+    this.keys = Collections.unmodifiableSet(new HashSet<>(layout.keySet()));
+    this.layout = Collections.unmodifiableMap(layout);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Object unmodifiable(@Nullable Object value) {
+    if (value instanceof List) {
+      List<Object> list = new ArrayList<>(((List<Object>) value).size());
+      for (Object element : (List<Object>) value) {
+        list.add(unmodifiable(element));
+      }
+      return Collections.unmodifiableList(list);
+    }
+    if (value instanceof Map) {
+      Map<String, Object> map = new LinkedHashMap<>();
+      for (Map.Entry<String, Object> e : ((Map<String, Object>) value).entrySet()) {
+        map.put(e.getKey(), unmodifiable(e.getValue()));
+      }
+      return Collections.unmodifiableMap(map);
+    }
+    return value;
+  }
+
+  private int slotOf(String key) {
+    Integer slot = layout.get(key);
+    if (slot == null) {
+      slot = layout.get(canonicalKey(key));
+    }
+    return (slot == null) ? -1 : slot;
+  }
+
+  @Override
+  public List<ConfigurationError> errors() {
+    return errors;
+  }
+
+  @Override
+  public void toToml(Appendable appendable) throws IOException {
+    source.toToml(appendable);
+  }
+
+  @Override
+  public Set<String> keySet() {
+    return keys;
+  }
+
+  @Override
+  public Set<String> keySet(String prefix) {
+    return source.keySet(prefix);
+  }
+
+  @Override
+  public Set<String> sections(String prefix) {
+    return source.sections(prefix);
+  }
+
+  @Override
+  public Configuration getConfigurationSection(String name) {
+    return source.getConfigurationSection(name);
+  }
+
+  @Override
+  public Configuration compile() {
+    return this;
+  }
+
+  @Override
+  public boolean contains(String key) {
+    return slotOf(key) >= 0 || source.contains(key);
+  }
+
+  @Override
+  public boolean contains(ConfigKey<?> key) {
+    return key.slotIn(layout) >= 0 || source.contains(key);
+  }
+
+  @Nullable
+  @Override
+  public Object get(String key) {
+    int slot = slotOf(key);
+    return (slot >= 0) ? objects[slot] : source.get(key);
+  }
+
+  @Nullable
+  @Override
+  public Object get(ConfigKey<?> key) {
+    int slot = key.slotIn(layout);
+    return (slot >= 0) ? objects[slot] : source.get(key);
+  }
+
+  @Nullable
+  @Override
+  public DocumentPosition inputPositionOf(String key) {
+    return source.inputPositionOf(key);
+  }
+
+  @Override
+  public String getString(String key) {
+    int slot = slotOf(key);
+    return (slot >= 0 && types[slot] == STRING) ? (String) objects[slot] : source.getString(key);
+  }
+
+  @Override
+  public String getString(ConfigKey<?> key) {
+    int slot = key.slotIn(layout);
+    return (slot >= 0 && types[slot] == STRING) ? (String) objects[slot] : source.getString(key);
+  }
+
+  @Override
+  public int getInteger(String key) {
+    int slot = slotOf(key);
+    return isInteger(slot) ? (int) longs[slot] : source.getInteger(key);
+  }
+
+  @Override
+  public int getInteger(ConfigKey<?> key) {
+    int slot = key.slotIn(layout);
+    return isInteger(slot) ? (int) longs[slot] : source.getInteger(key);
+  }
+
+  private boolean isInteger(int slot) {
+    return slot >= 0
+        && types[slot] == LONG
+        && longs[slot] <= Integer.MAX_VALUE
+        && longs[slot] >= Integer.MIN_VALUE;
+  }
+
+  @Override
+  public long getLong(String key) {
+    int slot = slotOf(key);
+    return (slot >= 0 && types[slot] == LONG) ? longs[slot] : source.getLong(key);
+  }
+
+  @Override
+  public long getLong(ConfigKey<?> key) {
+    int slot = key.slotIn(layout);
+    return (slot >= 0 && types[slot] == LONG) ? longs[slot] : source.getLong(key);
+  }
+
+  @Override
+  public double getDouble(String key) {
+    int slot = slotOf(key);
+    return (slot >= 0 && types[slot] == DOUBLE) ? doubles[slot] : source.getDouble(key);
+  }
+
+  @Override
+  public double getDouble(ConfigKey<?> key) {
+    int slot = key.slotIn(layout);
+    return (slot >= 0 && types[slot] == DOUBLE) ? doubles[slot] : source.getDouble(key);
+  }
+
+  @Override
+  public boolean getBoolean(String key) {
+    int slot = slotOf(key);
+    return (slot >= 0 && types[slot] == BOOLEAN) ? booleans[slot] : source.getBoolean(key);
+  }
+
+  @Override
+  public boolean getBoolean(ConfigKey<?> key) {
+    int slot = key.slotIn(layout);
+    return (slot >= 0 && types[slot] == BOOLEAN) ? booleans[slot] : source.getBoolean(key);
+  }
+
+  @Override
+  public Map<String, Object> getMap(String key) {
+    return source.getMap(key);
+  }
+
+  @Override
+  public List<Object> getList(String key) {
+    return source.getList(key);
+  }
+
+  @Override
+  public List<String> getListOfString(String key) {
+    return source.getListOfString(key);
+  }
+
+  @Override
+  public List<Integer> getListOfInteger(String key) {
+    return source.getListOfInteger(key);
+  }
+
+  @Override
+  public List<Long> getListOfLong(String key) {
+    return source.getListOfLong(key);
+  }
+
+  @Override
+  public List<Double> getListOfDouble(String key) {
+    return source.getListOfDouble(key);
+  }
+
+  @Override
+  public List<Boolean> getListOfBoolean(String key) {
+    return source.getListOfBoolean(key);
+  }
+
+  @Override
+  public List<Map<String, Object>> getListOfMap(String key) {
+    return source.getListOfMap(key);
+  }
+}
@@ -0,0 +1,207 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.config;
+
+import static java.util.Objects.requireNonNull;
+import static org.apache.tuweni.toml.Toml.joinKeyPath;
+import static org.apache.tuweni.toml.Toml.parseDottedKey;
+
+import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A pre-resolved configuration key.
+ *
+ * <p>A key is parsed once, when it is created, and can then be held by the caller and used for
+ * repeated lookups in any {@link Configuration} without parsing the key again. A key is typed with
+ * the kind of value it reads through {@link Configuration#getValue(ConfigKey)}. Once used with a
+ * {@link Configuration#compile() compiled} configuration, the key also remembers its slot in that
+ * configuration, so that subsequent reads are simple array accesses.
+ *
+ * @param <T> The type of value read by this key.
+ */
+public final class ConfigKey<T> {
+
+  private enum Type {
+    OBJECT,
+    STRING,
+    INTEGER,
+    LONG,
+    DOUBLE,
+    BOOLEAN
+  }
+
+  /** The slot of a key within the layout of a compiled configuration. */
+  private static final class Binding {
+    final Map<String, Integer> layout;
+    final int slot;
+
+    Binding(Map<String, Integer> layout, int slot) {
+      this.layout = layout;
+      this.slot = slot;
+    }
+  }
+
+  private final List<String> path;
+  private final String canonical;
+  private final Type type;
+  @Nullable private volatile Binding binding;
+
+  /**
+   * Create a configuration key for a value of any type.
+   *
+   * @param key A configuration key (e.g. {@code "server.address.hostname"}).
+   * @return The resolved key.
+   * @throws IllegalArgumentException If the key cannot be parsed.
+   */
+  public static ConfigKey<Object> of(String key) {
+    return create(key, Type.OBJECT);
+  }
+
+  /**
+   * Create a configuration key for a string value.
+   *
+   * @param key A configuration key (e.g. {@code "server.address.hostname"}).
+   * @return The resolved key.
+   * @throws IllegalArgumentException If the key cannot be parsed.
+   */
+  public static ConfigKey<String> ofString(String key) {
+    return create(key, Type.STRING);
+  }
+
+  /**
+   * Create a configuration key for an integer value.
+   *
+   * @param key A configuration key (e.g. {@code "server.address.port"}).
+   * @return The resolved key.
+   * @throws IllegalArgumentException If the key cannot be parsed.
+   */
+  public static ConfigKey<Integer> ofInteger(String key) {
+    return create(key, Type.INTEGER);
+  }
+
+  /**
+   * Create a configuration key for a long value.
+   *
+   * @param key A configuration key (e.g. {@code "server.address.port"}).
+   * @return The resolved key.
+   * @throws IllegalArgumentException If the key cannot be parsed.
+   */
+  public static ConfigKey<Long> ofLong(String key) {
+    return create(key, Type.LONG);
+  }
+
+  /**
+   * Create a configuration key for a double value.
+   *
+   * @param key A configuration key (e.g. {@code "server.priority"}).
+   * @return The resolved key.
+   * @throws IllegalArgumentException If the key cannot be parsed.
+   */
+  public static ConfigKey<Double> ofDouble(String key) {
+    return create(key, Type.DOUBLE);
+  }
+
+  /**
+   * Create a configuration key for a boolean value.
+   *
+   * @param key A configuration key (e.g. {@code "server.active"}).
+   * @return The resolved key.
+   * @throws IllegalArgumentException If the key cannot be parsed.
+   */
+  public static ConfigKey<Boolean> ofBoolean(String key) {
+    return create(key, Type.BOOLEAN);
+  }
+
+  private static <T> ConfigKey<T> create(String key, Type type) {
+    requireNonNull(key);
+    return new ConfigKey<>(parseDottedKey(key), type);
+  }
+
+  private ConfigKey(List<String> path, Type type) {
+    this.path = path;
+    this.canonical = joinKeyPath(path);
+    this.type = type;
+  }
+
+  /**
+   * The individual keys in the path.
+   *
+   * @return An unmodifiable list of the individual keys in the path.
+   */
+  public List<String> path() {
+    return path;
+  }
+
+  /**
+   * The canonical form of the key.
+   *
+   * @return The canonical form of the key.
+   */
+  public String canonical() {
+    return canonical;
+  }
+
+  @SuppressWarnings("unchecked")
+  T readFrom(Configuration configuration) {
+    switch (type) {
+      case STRING:
+        return (T) configuration.getString(this);
+      case INTEGER:
+        return (T) Integer.valueOf(configuration.getInteger(this));
+      case LONG:
+        return (T) Long.valueOf(configuration.getLong(this));
+      case DOUBLE:
+        return (T) Double.valueOf(configuration.getDouble(this));
+      case BOOLEAN:
+        return (T) Boolean.valueOf(configuration.getBoolean(this));
+      default:
+        Object value = configuration.get(this);
+        if (value == null) {
+          throw new NoConfigurationPropertyException("No value for property '" + canonical + "'");
+        }
+        return (T) value;
+    }
+  }
+
+  /**
+   * Find the slot of this key in a compiled configuration layout.
+   *
+   * @param layout The layout, mapping canonical keys to slots.
+   * @return The slot, or -1 if the key is not present in the layout.
+   */
+  int slotIn(Map<String, Integer> layout) {
+    Binding b = binding;
+    if (b != null && b.layout == layout) {
+      return b.slot;
+    }
+    Integer slot = layout.get(canonical);
+    int s = (slot == null) ? -1 : slot;
+    binding = new Binding(layout, s);
+    return s;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == this) {
+      return true;
+    }
+    if (!(obj instanceof ConfigKey)) {
+      return false;
+    }
+    ConfigKey<?> other = (ConfigKey<?>) obj;
+    return this.type == other.type && this.canonical.equals(other.canonical);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * type.hashCode() + canonical.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return canonical;
+  }
+}
@@ -7,10 +7,14 @@ import static org.apache.tuweni.toml.Toml.canonicalDottedKey;
 
 import org.apache.tuweni.toml.Toml;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.UncheckedIOException;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
@@ -161,6 +165,20 @@ public interface Configuration {
     }
   }
 
+  /**
+   * Write a configuration in TOML format to an output stream, using the UTF-8 encoding.
+   *
+   * <p>The output stream is flushed, but not closed.
+   *
+   * @param out The output stream to write to.
+   * @throws IOException If the output cannot be written.
+   */
+  default void writeToml(OutputStream out) throws IOException {
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    toToml(writer);
+    writer.flush();
+  }
+
   /**
    * Writes a configuration in TOML format.
    *
@@ -372,6 +390,210 @@ public interface Configuration {
    */
   List<Map<String, Object>> getListOfMap(String key);
 
+  /**
+   * Check if a key is set in this configuration.
+   *
+   * @param key A pre-resolved configuration key.
+   * @return {@code true} if the entry is present in this configuration.
+   */
+  default boolean contains(ConfigKey<?> key) {
+    return contains(key.canonical());
+  }
+
+  /**
+   * Get an object from this configuration.
+   *
+   * @param key A pre-resolved configuration key.
+   * @return The value, or {@code null} if no value was set in the configuration.
+   */
+  @Nullable
+  default Object get(ConfigKey<?> key) {
+    return get(key.canonical());
+  }
+
+  /**
+   * Get a string from this configuration.
+   *
+   * @param key A pre-resolved configuration key.
+   * @return The value.
+   * @throws InvalidConfigurationPropertyTypeException If the value is not a string.
+   * @throws NoConfigurationPropertyException If the key was not set in the configuration.
+   */
+  default String getString(ConfigKey<?> key) {
+    return getString(key.canonical());
+  }
+
+  /**
+   * Get an integer from this configuration.
+   *
+   * @param key A pre-resolved configuration key.
+   * @return The value.
+   * @throws InvalidConfigurationPropertyTypeException If the value is not an integer.
+   * @throws NoConfigurationPropertyException If the key was not set in the configuration.
+   */
+  default int getInteger(ConfigKey<?> key) {
+    return getInteger(key.canonical());
+  }
+
+  /**
+   * Get a long from this configuration.
+   *
+   * @param key A pre-resolved configuration key.
+   * @return The value.
+   * @throws InvalidConfigurationPropertyTypeException If the value is not a long.
+   * @throws NoConfigurationPropertyException If the key was not set in the configuration.
+   */
+  default long getLong(ConfigKey<?> key) {
+    return getLong(key.canonical());
+  }
+
+  /**
+   * Get a double from this configuration.
+   *
+   * @param key A pre-resolved configuration key.
+   * @return The value.
+   * @throws InvalidConfigurationPropertyTypeException If the value is not a double.
+   * @throws NoConfigurationPropertyException If the key was not set in the configuration.
+   */
+  default double getDouble(ConfigKey<?> key) {
+    return getDouble(key.canonical());
+  }
+
+  /**
+   * Get a boolean from this configuration.
+   *
+   * @param key A pre-resolved configuration key.
+   * @return The value.
+   * @throws InvalidConfigurationPropertyTypeException If the value is not a boolean.
+   * @throws NoConfigurationPropertyException If the key was not set in the configuration.
+   */
+  default boolean getBoolean(ConfigKey<?> key) {
+    return getBoolean(key.canonical());
+  }
+
+  /**
+   * Get a map from this configuration.
+   *
+   * @param key A pre-resolved configuration key.
+   * @return The value.
+   * @throws InvalidConfigurationPropertyTypeException If the value is not a map.
+   * @throws NoConfigurationPropertyException If the key was not set in the configuration.
+   */
+  default Map<String, Object> getMap(ConfigKey<?> key) {
+    return getMap(key.canonical());
+  }
+
+  /**
+   * Get a list from this configuration.
+   *
+   * @param key A pre-resolved configuration key.
+   * @return The value.
+   * @throws InvalidConfigurationPropertyTypeException If the value is not a list.
+   * @throws NoConfigurationPropertyException If the key was not set in the configuration.
+   */
+  default List<Object> getList(ConfigKey<?> key) {
+    return getList(key.canonical());
+  }
+
+  /**
+   * Get a list of strings from this configuration.
+   *
+   * @param key A pre-resolved configuration key.
+   * @return The value.
+   * @throws InvalidConfigurationPropertyTypeException If the value is not a list of strings.
+   * @throws NoConfigurationPropertyException If the key was not set in the configuration.
+   */
+  default List<String> getListOfString(ConfigKey<?> key) {
+    return getListOfString(key.canonical());
+  }
+
+  /**
+   * Get a list of integers from this configuration.
+   *
+   * @param key A pre-resolved configuration key.
+   * @return The value.
+   * @throws InvalidConfigurationPropertyTypeException If the value is not a list of integers.
+   * @throws NoConfigurationPropertyException If the key was not set in the configuration.
+   */
+  default List<Integer> getListOfInteger(ConfigKey<?> key) {
+    return getListOfInteger(key.canonical());
+  }
+
+  /**
+   * Get a list of longs from this configuration.
+   *
+   * @param key A pre-resolved configuration key.
+   * @return The value.
+   * @throws InvalidConfigurationPropertyTypeException If the value is not a list of longs.
+   * @throws NoConfigurationPropertyException If the key was not set in the configuration.
+   */
+  default List<Long> getListOfLong(ConfigKey<?> key) {
+    return getListOfLong(key.canonical());
+  }
+
+  /**
+   * Get a list of doubles from this configuration.
+   *
+   * @param key A pre-resolved configuration key.
+   * @return The value.
+   * @throws InvalidConfigurationPropertyTypeException If the value is not a list of doubles.
+   * @throws NoConfigurationPropertyException If the key was not set in the configuration.
+   */
+  default List<Double> getListOfDouble(ConfigKey<?> key) {
+    return getListOfDouble(key.canonical());
+  }
+
+  /**
+   * Get a list of booleans from this configuration.
+   *
+   * @param key A pre-resolved configuration key.
+   * @return The value.
+   * @throws InvalidConfigurationPropertyTypeException If the value is not a list of booleans.
+   * @throws NoConfigurationPropertyException If the key was not set in the configuration.
+   */
+  default List<Boolean> getListOfBoolean(ConfigKey<?> key) {
+    return getListOfBoolean(key.canonical());
+  }
+
+  /**
+   * Get a list of maps from this configuration.
+   *
+   * @param key A pre-resolved configuration key.
+   * @return The value.
+   * @throws InvalidConfigurationPropertyTypeException If the value is not a list of maps.
+   * @throws NoConfigurationPropertyException If the key was not set in the configuration.
+   */
+  default List<Map<String, Object>> getListOfMap(ConfigKey<?> key) {
+    return getListOfMap(key.canonical());
+  }
+
+  /**
+   * Get a value from this configuration, of the type associated with the key.
+   *
+   * @param key A pre-resolved configuration key.
+   * @param <T> The type of the value.
+   * @return The value.
+   * @throws InvalidConfigurationPropertyTypeException If the value is not of the key's type.
+   * @throws NoConfigurationPropertyException If the key was not set in the configuration.
+   */
+  default <T> T getValue(ConfigKey<T> key) {
+    return key.readFrom(this);
+  }
+
+  /**
+   * Compile this configuration into an immutable snapshot.
+   *
+   * <p>All keys are resolved, along with any defaults from the schema, into a flattened table when
+   * the snapshot is created. Scalar values are then read from the snapshot without parsing keys,
+   * walking tables or re-checking types, and the snapshot can be shared between threads. Values
+   * returned by the snapshot may be shared between callers, and must not be modified.
+   *
+   * @return An immutable snapshot of this configuration.
+   */
+  default Configuration compile() {
+    return new CompiledConfiguration(this);
+  }
+
   /**
    * Get the canonical form of a configuration key.
    *
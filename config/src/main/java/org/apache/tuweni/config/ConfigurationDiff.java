@@ -0,0 +1,147 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.config;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/** The keys that differ between two snapshots of a configuration. */
+public final class ConfigurationDiff {
+
+  private final Configuration previous;
+  private final Configuration current;
+  private final Set<String> added;
+  private final Set<String> removed;
+  private final Set<String> changed;
+
+  /**
+   * Compare two configurations.
+   *
+   * @param previous The earlier configuration.
+   * @param current The later configuration.
+   * @return The keys that were added, removed or changed between the two configurations.
+   */
+  public static ConfigurationDiff between(Configuration previous, Configuration current) {
+    Set<String> previousKeys = previous.keySet();
+    Set<String> currentKeys = current.keySet();
+    Set<String> added = new HashSet<>();
+    Set<String> removed = new HashSet<>();
+    Set<String> changed = new HashSet<>();
+    for (String key : currentKeys) {
+      if (!previousKeys.contains(key)) {
+        added.add(key);
+      } else if (!Objects.equals(previous.get(key), current.get(key))) {
+        changed.add(key);
+      }
+    }
+    for (String key : previousKeys) {
+      if (!currentKeys.contains(key)) {
+        removed.add(key);
+      }
+    }
+    return new ConfigurationDiff(previous, current, added, removed, changed);
+  }
+
+  /**
+   * Compare two configurations, which are known to be identical except perhaps for some keys.
+   *
+   * @param previous The earlier configuration.
+   * @param current The later configuration.
+   * @param candidates The keys that may differ between the configurations.
+   * @return The candidate keys that were added, removed or changed between the two configurations.
+   */
+  static ConfigurationDiff between(
+      Configuration previous, Configuration current, Set<String> candidates) {
+    Set<String> previousKeys = previous.keySet();
+    Set<String> currentKeys = current.keySet();
+    Set<String> added = new HashSet<>();
+    Set<String> removed = new HashSet<>();
+    Set<String> changed = new HashSet<>();
+    for (String key : candidates) {
+      boolean inPrevious = previousKeys.contains(key);
+      boolean inCurrent = currentKeys.contains(key);
+      if (inCurrent && !inPrevious) {
+        added.add(key);
+      } else if (inPrevious && !inCurrent) {
+        removed.add(key);
+      } else if (inCurrent && !Objects.equals(previous.get(key), current.get(key))) {
+        changed.add(key);
+      }
+    }
+    return new ConfigurationDiff(previous, current, added, removed, changed);
+  }
+
+  ConfigurationDiff(
+      Configuration previous,
+      Configuration current,
+      Set<String> added,
+      Set<String> removed,
+      Set<String> changed) {
+    this.previous = previous;
+    this.current = current;
+    this.added = Collections.unmodifiableSet(added);
+    this.removed = Collections.unmodifiableSet(removed);
+    this.changed = Collections.unmodifiableSet(changed);
+  }
+
+  /**
+   * The earlier configuration.
+   *
+   * @return The configuration before the change.
+   */
+  public Configuration previous() {
+    return previous;
+  }
+
+  /**
+   * The later configuration.
+   *
+   * @return The configuration after the change.
+   */
+  public Configuration current() {
+    return current;
+  }
+
+  /**
+   * The keys present only in the later configuration.
+   *
+   * @return The added keys.
+   */
+  public Set<String> added() {
+    return added;
+  }
+
+  /**
+   * The keys present only in the earlier configuration.
+   *
+   * @return The removed keys.
+   */
+  public Set<String> removed() {
+    return removed;
+  }
+
+  /**
+   * The keys present in both configurations, with different values.
+   *
+   * @return The changed keys.
+   */
+  public Set<String> changed() {
+    return changed;
+  }
+
+  /**
+   * Check if the configurations are identical.
+   *
+   * @return {@code true} if no keys were added, removed or changed.
+   */
+  public boolean isEmpty() {
+    return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+  }
+
+  @Override
+  public String toString() {
+    return "added=" + added + ", removed=" + removed + ", changed=" + changed;
+  }
+}
@@ -0,0 +1,425 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.config;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+import static java.util.Objects.requireNonNull;
+
+import org.apache.tuweni.toml.Toml;
+import org.apache.tuweni.toml.TomlParseResult;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A configuration backed by a TOML file, which is reloaded whenever the file changes.
+ *
+ * <p>The file is watched from a background thread. On each change, the file is parsed and
+ * validated against the schema on that thread, and the result {@link Configuration#compile()
+ * compiled} into an immutable snapshot. The snapshot replaces the current one only if it has no
+ * errors; otherwise the current configuration is kept and the errors are reported to the error
+ * listeners. Readers always see a complete snapshot, and are never blocked by a reload.
+ *
+ * <p>Values read through this configuration always come from the latest snapshot, so two reads may
+ * observe different snapshots. Callers needing several consistent values should read them from a
+ * single snapshot obtained from {@link #compile()}.
+ */
+public final class ReloadableConfiguration implements Configuration, Closeable {
+  private static final long SETTLE_MILLIS = 50;
+
+  private final Path file;
+  @Nullable private final Schema schema;
+  private final List<Consumer<ConfigurationDiff>> listeners = new CopyOnWriteArrayList<>();
+  private final List<Consumer<List<ConfigurationError>>> errorListeners =
+      new CopyOnWriteArrayList<>();
+  private final WatchService watchService;
+  private final Thread watcher;
+  private volatile Configuration snapshot;
+  // the last accepted file, without schema defaults, as seen by the schema validators
+  private TomlBackedConfiguration unvalidated;
+
+  /**
+   * Load a configuration from a TOML-formatted file, and watch the file for changes.
+   *
+   * @param file The path of the TOML-formatted configuration file.
+   * @param schema The validation schema for the configuration.
+   * @return A configuration that tracks the contents of the file.
+   * @throws java.nio.file.NoSuchFileException If the file could not be found.
+   * @throws IOException If an IO error occurs.
+   */
+  public static ReloadableConfiguration watch(Path file, @Nullable Schema schema)
+      throws IOException {
+    ReloadableConfiguration configuration = load(file, schema);
+    configuration.watcher.start();
+    return configuration;
+  }
+
+  // load without starting the watcher, so that the configuration only changes on calls to reload()
+  static ReloadableConfiguration load(Path file, @Nullable Schema schema) throws IOException {
+    requireNonNull(file);
+    return new ReloadableConfiguration(file.toAbsolutePath(), schema);
+  }
+
+  private ReloadableConfiguration(Path file, @Nullable Schema schema) throws IOException {
+    this.file = file;
+    this.schema = schema;
+    TomlParseResult toml = Toml.parse(file);
+    this.unvalidated = new TomlBackedConfiguration(toml, null);
+    this.snapshot = new TomlBackedConfiguration(toml, schema).compile();
+    this.watchService = file.getFileSystem().newWatchService();
+    try {
+      // editors often save by replacing the file, so watch the directory rather than the file
+      file.getParent().register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+    } catch (IOException | RuntimeException e) {
+      watchService.close();
+      throw e;
+    }
+    this.watcher = new Thread(this::watchFile, "config-watcher-" + file.getFileName());
+    this.watcher.setDaemon(true);
+  }
+
+  /**
+   * Add a listener to be notified after each change to the configuration.
+   *
+   * <p>Listeners are called on the watcher thread, after the new configuration is in place. They
+   * are not called if a reload leaves every value unchanged.
+   *
+   * @param listener A listener, receiving the keys that differ between the old and new
+   *     configurations.
+   */
+  public void addListener(Consumer<ConfigurationDiff> listener) {
+    listeners.add(requireNonNull(listener));
+  }
+
+  /**
+   * Remove a change listener.
+   *
+   * @param listener The listener to remove.
+   */
+  public void removeListener(Consumer<ConfigurationDiff> listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Add a listener to be notified when a changed file is rejected.
+   *
+   * @param listener A listener, receiving the errors that prevented the reload.
+   */
+  public void addErrorListener(Consumer<List<ConfigurationError>> listener) {
+    errorListeners.add(requireNonNull(listener));
+  }
+
+  /**
+   * Remove an error listener.
+   *
+   * @param listener The listener to remove.
+   */
+  public void removeErrorListener(Consumer<List<ConfigurationError>> listener) {
+    errorListeners.remove(listener);
+  }
+
+  /**
+   * Reload the configuration file immediately.
+   *
+   * <p>This does not need to be called when the file is being watched, but may be used to force a
+   * reload on file systems where change notifications are slow or unavailable.
+   *
+   * @return {@code true} if the file was valid, and is now the current configuration.
+   */
+  public synchronized boolean reload() {
+    TomlParseResult toml;
+    try {
+      toml = Toml.parse(file);
+    } catch (IOException e) {
+      notifyErrors(
+          Collections.singletonList(
+              new ConfigurationError("Unable to read configuration file " + file, e)));
+      return false;
+    }
+    TomlBackedConfiguration loaded = new TomlBackedConfiguration(toml, null);
+    if (loaded.hasErrors()) {
+      notifyErrors(loaded.errors());
+      return false;
+    }
+
+    // only the keys that differ between the files can differ between the snapshots, as the schema
+    // defaults are unchanged
+    ConfigurationDiff fileChanges = TomlBackedConfiguration.diff(unvalidated, loaded);
+    if (fileChanges.isEmpty() && !snapshot.hasErrors()) {
+      return true;
+    }
+
+    if (schema != null) {
+      List<ConfigurationError> errors;
+      if (snapshot.hasErrors()) {
+        errors = schema.validator().validate(loaded);
+      } else {
+        // the previous file passed validation, so only the changed properties need to be checked
+        errors = schema.validator().validate(loaded, fileChanges);
+      }
+      if (!errors.isEmpty()) {
+        notifyErrors(errors);
+        return false;
+      }
+    }
+
+    Schema compiledSchema = (schema == null) ? Schema.EMPTY : schema;
+    Configuration compiled =
+        new TomlBackedConfiguration(toml, compiledSchema, Collections.emptyList()).compile();
+    unvalidated = loaded;
+    ConfigurationDiff diff =
+        snapshot.hasErrors()
+            ? ConfigurationDiff.between(snapshot, compiled)
+            : ConfigurationDiff.between(snapshot, compiled, changedKeys(fileChanges));
+    if (diff.isEmpty()) {
+      return true;
+    }
+    snapshot = compiled;
+    RuntimeException failure = null;
+    for (Consumer<ConfigurationDiff> listener : listeners) {
+      try {
+        listener.accept(diff);
+      } catch (RuntimeException e) {
+        if (failure == null) {
+          failure = e;
+        } else {
+          failure.addSuppressed(e);
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+    return true;
+  }
+
+  private static Set<String> changedKeys(ConfigurationDiff diff) {
+    Set<String> keys = new HashSet<>(diff.added());
+    keys.addAll(diff.removed());
+    keys.addAll(diff.changed());
+    return keys;
+  }
+
+  private void notifyErrors(List<ConfigurationError> errors) {
+    for (Consumer<List<ConfigurationError>> listener : errorListeners) {
+      listener.accept(errors);
+    }
+  }
+
+  private void watchFile() {
+    try {
+      while (true) {
+        WatchKey key = watchService.take();
+        boolean changed = drainEvents(key);
+        // a save is often several writes, so wait for the file to settle before reading it
+        WatchKey next;
+        while ((next = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+          changed |= drainEvents(next);
+        }
+        if (changed) {
+          try {
+            reload();
+          } catch (RuntimeException e) {
+            // a failing listener must not stop the configuration from tracking the file
+          }
+        }
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      // closed
+    }
+  }
+
+  private boolean drainEvents(WatchKey key) {
+    Path fileName = file.getFileName();
+    boolean changed = false;
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == OVERFLOW || fileName.equals(event.context())) {
+        changed = true;
+      }
+    }
+    key.reset();
+    return changed;
+  }
+
+  /** Stop watching the configuration file. The last loaded configuration remains available. */
+  @Override
+  public void close() throws IOException {
+    watcher.interrupt();
+    watchService.close();
+  }
+
+  /**
+   * Get the current snapshot of this configuration.
+   *
+   * @return An immutable snapshot, which does not change on later reloads.
+   */
+  @Override
+  public Configuration compile() {
+    return snapshot;
+  }
+
+  @Override
+  public List<ConfigurationError> errors() {
+    return snapshot.errors();
+  }
+
+  @Override
+  public void toToml(Appendable appendable) throws IOException {
+    snapshot.toToml(appendable);
+  }
+
+  @Override
+  public Set<String> keySet() {
+    return snapshot.keySet();
+  }
+
+  @Override
+  public Set<String> keySet(String prefix) {
+    return snapshot.keySet(prefix);
+  }
+
+  @Override
+  public Set<String> sections(String prefix) {
+    return snapshot.sections(prefix);
+  }
+
+  @Override
+  public Configuration getConfigurationSection(String name) {
+    return snapshot.getConfigurationSection(name);
+  }
+
+  @Override
+  public boolean contains(String key) {
+    return snapshot.contains(key);
+  }
+
+  @Override
+  public boolean contains(ConfigKey<?> key) {
+    return snapshot.contains(key);
+  }
+
+  @Nullable
+  @Override
+  public Object get(String key) {
+    return snapshot.get(key);
+  }
+
+  @Nullable
+  @Override
+  public Object get(ConfigKey<?> key) {
+    return snapshot.get(key);
+  }
+
+  @Nullable
+  @Override
+  public DocumentPosition inputPositionOf(String key) {
+    return snapshot.inputPositionOf(key);
+  }
+
+  @Override
+  public String getString(String key) {
+    return snapshot.getString(key);
+  }
+
+  @Override
+  public String getString(ConfigKey<?> key) {
+    return snapshot.getString(key);
+  }
+
+  @Override
+  public int getInteger(String key) {
+    return snapshot.getInteger(key);
+  }
+
+  @Override
+  public int getInteger(ConfigKey<?> key) {
+    return snapshot.getInteger(key);
+  }
+
+  @Override
+  public long getLong(String key) {
+    return snapshot.getLong(key);
+  }
+
+  @Override
+  public long getLong(ConfigKey<?> key) {
+    return snapshot.getLong(key);
+  }
+
+  @Override
+  public double getDouble(String key) {
+    return snapshot.getDouble(key);
+  }
+
+  @Override
+  public double getDouble(ConfigKey<?> key) {
+    return snapshot.getDouble(key);
+  }
+
+  @Override
+  public boolean getBoolean(String key) {
+    return snapshot.getBoolean(key);
+  }
+
+  @Override
+  public boolean getBoolean(ConfigKey<?> key) {
+    return snapshot.getBoolean(key);
+  }
+
+  @Override
+  public Map<String, Object> getMap(String key) {
+    return snapshot.getMap(key);
+  }
+
+  @Override
+  public List<Object> getList(String key) {
+    return snapshot.getList(key);
+  }
+
+  @Override
+  public List<String> getListOfString(String key) {
+    return snapshot.getListOfString(key);
+  }
+
+  @Override
+  public List<Integer> getListOfInteger(String key) {
+    return snapshot.getListOfInteger(key);
+  }
+
+  @Override
+  public List<Long> getListOfLong(String key) {
+    return snapshot.getListOfLong(key);
+  }
+
+  @Override
+  public List<Double> getListOfDouble(String key) {
+    return snapshot.getListOfDouble(key);
+  }
+
+  @Override
+  public List<Boolean> getListOfBoolean(String key) {
+    return snapshot.getListOfBoolean(key);
+  }
+
+  @Override
+  public List<Map<String, Object>> getListOfMap(String key) {
+    return snapshot.getListOfMap(key);
+  }
+}
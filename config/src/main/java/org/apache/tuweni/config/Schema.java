@@ -397,6 +397,15 @@ public final class Schema {
         null, "Property at '" + key + "' was not a list of " + typeName);
   }
 
+  /**
+   * Create a validator for this schema, with control over how validation is run.
+   *
+   * @return A validator for this schema.
+   */
+  public SchemaValidator validator() {
+    return new SchemaValidator(this);
+  }
+
   /**
    * Validate a configuration against this schema.
    *
@@ -438,6 +447,18 @@ public final class Schema {
     return Stream.concat(propertyErrors, configErrors);
   }
 
+  Map<String, PropertyValidator<Object>> propertyValidators() {
+    return propertyValidators;
+  }
+
+  List<ConfigurationValidator> configurationValidators() {
+    return configurationValidators;
+  }
+
+  boolean hasSubSections() {
+    return !subSections.isEmpty();
+  }
+
   public String getSubSectionPrefix(String key) {
     Schema schema = subSections.get(key);
     if (schema != null) {
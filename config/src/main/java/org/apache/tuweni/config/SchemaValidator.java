@@ -0,0 +1,188 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.config;
+
+import static java.util.Objects.requireNonNull;
+import static org.apache.tuweni.toml.Toml.joinKeyPath;
+import static org.apache.tuweni.toml.Toml.parseDottedKey;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Validates configurations against a {@link Schema}, with control over how the validation is run.
+ *
+ * <p>As with {@link Schema#validate(Configuration)}, all property validators are evaluated before
+ * any configuration validator. Property validators are independent of each other, and may be run in
+ * parallel; configuration validators are always run sequentially, in the order they were added to
+ * the schema.
+ */
+public final class SchemaValidator {
+
+  private final Schema schema;
+  private boolean parallel = false;
+  private int maxErrors = Integer.MAX_VALUE;
+  @Nullable private BiConsumer<String, Duration> timings;
+
+  SchemaValidator(Schema schema) {
+    this.schema = schema;
+  }
+
+  /**
+   * Run property validators in parallel.
+   *
+   * <p>The configuration being validated must be safe to read from multiple threads.
+   *
+   * @param parallel {@code true} to run property validators in parallel.
+   * @return This validator.
+   */
+  public SchemaValidator parallel(boolean parallel) {
+    this.parallel = parallel;
+    return this;
+  }
+
+  /**
+   * Stop validating once a number of errors have been found.
+   *
+   * <p>Validators that have already started are allowed to complete, but no further validators are
+   * evaluated and the result is truncated to the limit.
+   *
+   * @param maxErrors The maximum number of errors to report.
+   * @return This validator.
+   */
+  public SchemaValidator maxErrors(int maxErrors) {
+    if (maxErrors < 1) {
+      throw new IllegalArgumentException("maxErrors must be >= 1");
+    }
+    this.maxErrors = maxErrors;
+    return this;
+  }
+
+  /**
+   * Receive the time taken by each validator.
+   *
+   * <p>Property validators are identified by the key they validate, and configuration validators by
+   * their position in the schema (e.g. {@code "#0"}). When validating in parallel, the consumer may
+   * be called concurrently from multiple threads.
+   *
+   * @param timings A consumer for the name of each validator and the time it took.
+   * @return This validator.
+   */
+  public SchemaValidator timings(BiConsumer<String, Duration> timings) {
+    this.timings = requireNonNull(timings);
+    return this;
+  }
+
+  /**
+   * Validate a configuration.
+   *
+   * @param configuration The configuration to validate.
+   * @return The errors encountered during validation.
+   */
+  public List<ConfigurationError> validate(Configuration configuration) {
+    requireNonNull(configuration);
+    return validate(configuration, schema.propertyValidators().keySet());
+  }
+
+  /**
+   * Validate a configuration that differs from an earlier, valid configuration.
+   *
+   * <p>Only the property validators for keys that were added, removed or changed (or for tables
+   * containing such keys) are evaluated. All configuration validators are evaluated, as they may
+   * depend on any property.
+   *
+   * @param configuration The configuration to validate.
+   * @param changes The changes from a configuration that passed validation.
+   * @return The errors encountered during validation.
+   */
+  public List<ConfigurationError> validate(Configuration configuration, ConfigurationDiff changes) {
+    requireNonNull(configuration);
+    requireNonNull(changes);
+
+    Set<String> affected = new HashSet<>();
+    Stream.of(changes.added(), changes.removed(), changes.changed())
+        .flatMap(Set::stream)
+        .forEach(
+            key -> {
+              List<String> path = parseDottedKey(key);
+              for (int i = 1; i <= path.size(); ++i) {
+                affected.add(joinKeyPath(path.subList(0, i)));
+              }
+            });
+    // schema keys are held in canonical form
+    Set<String> keys =
+        schema.propertyValidators().keySet().stream()
+            .filter(affected::contains)
+            .collect(Collectors.toCollection(LinkedHashSet::new));
+    return validate(configuration, keys);
+  }
+
+  private List<ConfigurationError> validate(Configuration configuration, Set<String> keys) {
+    Map<String, PropertyValidator<Object>> propertyValidators = schema.propertyValidators();
+    AtomicInteger errorCount = new AtomicInteger();
+
+    Stream<String> keyStream = keys.stream();
+    if (parallel) {
+      keyStream = keyStream.parallel();
+    }
+    List<List<ConfigurationError>> propertyErrors =
+        keyStream
+            .map(
+                key ->
+                    run(
+                        key,
+                        errorCount,
+                        () ->
+                            propertyValidators
+                                .get(key)
+                                .validate(
+                                    key,
+                                    configuration.inputPositionOf(key),
+                                    configuration.get(key))))
+            .collect(Collectors.toList());
+
+    List<ConfigurationError> errors = new ArrayList<>();
+    propertyErrors.forEach(errors::addAll);
+
+    List<ConfigurationValidator> configurationValidators = schema.configurationValidators();
+    for (int i = 0; i < configurationValidators.size(); ++i) {
+      ConfigurationValidator validator = configurationValidators.get(i);
+      errors.addAll(run("#" + i, errorCount, () -> validator.validate(configuration)));
+    }
+
+    if (errors.size() > maxErrors) {
+      return new ArrayList<>(errors.subList(0, maxErrors));
+    }
+    return errors;
+  }
+
+  private List<ConfigurationError> run(
+      String name, AtomicInteger errorCount, Supplier<List<ConfigurationError>> validator) {
+    if (errorCount.get() >= maxErrors) {
+      return Collections.emptyList();
+    }
+    long start = System.nanoTime();
+    List<ConfigurationError> errors = validator.get();
+    if (timings != null) {
+      timings.accept(name, Duration.ofNanos(System.nanoTime() - start));
+    }
+    if (errors == null) {
+      return Collections.emptyList();
+    }
+    errorCount.addAndGet(errors.size());
+    return errors;
+  }
+}
@@ -13,6 +13,7 @@ import org.apache.tuweni.toml.TomlTable;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -49,6 +50,12 @@ final class TomlBackedConfiguration implements Configuration {
     this.errors = errors;
   }
 
+  TomlBackedConfiguration(TomlTable toml, Schema schema, List<ConfigurationError> errors) {
+    this.toml = toml;
+    this.schema = schema;
+    this.errors = errors;
+  }
+
   TomlBackedConfiguration(TomlTable toml, @Nullable Schema schema) {
     List<ConfigurationError> errors = new ArrayList<>();
     if (schema != null) {
@@ -112,10 +119,25 @@ final class TomlBackedConfiguration implements Configuration {
     return toml.contains(key) || schema.hasDefault(key);
   }
 
+  @Override
+  public boolean contains(ConfigKey<?> key) {
+    return toml.contains(key.path()) || schema.hasDefault(key.canonical());
+  }
+
   @Nullable
   @Override
   public Object get(String key) {
-    Object obj = toml.get(key);
+    return configValue(toml.get(key), key);
+  }
+
+  @Nullable
+  @Override
+  public Object get(ConfigKey<?> key) {
+    return configValue(toml.get(key.path()), key.canonical());
+  }
+
+  @Nullable
+  private Object configValue(@Nullable Object obj, String key) {
     if (obj != null) {
       if (obj instanceof TomlArray) {
         return deepToList((TomlArray) obj);
@@ -159,6 +181,14 @@ final class TomlBackedConfiguration implements Configuration {
     return getValue(subSectionKey, table::getString, section::getDefaultString);
   }
 
+  @Override
+  public String getString(ConfigKey<?> key) {
+    if (schema.hasSubSections()) {
+      return getString(key.canonical());
+    }
+    return getValue(key.path(), toml::getString, schema::getDefaultString);
+  }
+
   @Override
   public int getInteger(String key) {
     String sectionKey = schema.getSubSectionPrefix(key);
@@ -173,19 +203,26 @@ final class TomlBackedConfiguration implements Configuration {
       table = toml;
     }
 
-    return getValue(
-        key,
-        keyPath -> {
-          Long longValue = table.getLong(keyPath);
-          if (longValue != null
-              && (longValue > Integer.MAX_VALUE || longValue < Integer.MIN_VALUE)) {
-            throw new InvalidConfigurationPropertyTypeException(
-                inputPositionOf(keyPath),
-                "Value of property '" + joinKeyPath(keyPath) + "' is too large for an integer");
-          }
-          return (longValue != null) ? longValue.intValue() : null;
-        },
-        section::getDefaultInteger);
+    return getValue(key, keyPath -> getInteger(table, keyPath), section::getDefaultInteger);
+  }
+
+  @Override
+  public int getInteger(ConfigKey<?> key) {
+    if (schema.hasSubSections()) {
+      return getInteger(key.canonical());
+    }
+    return getValue(key.path(), keyPath -> getInteger(toml, keyPath), schema::getDefaultInteger);
+  }
+
+  @Nullable
+  private Integer getInteger(TomlTable table, List<String> keyPath) {
+    Long longValue = table.getLong(keyPath);
+    if (longValue != null && (longValue > Integer.MAX_VALUE || longValue < Integer.MIN_VALUE)) {
+      throw new InvalidConfigurationPropertyTypeException(
+          inputPositionOf(keyPath),
+          "Value of property '" + joinKeyPath(keyPath) + "' is too large for an integer");
+    }
+    return (longValue != null) ? longValue.intValue() : null;
   }
 
   @Override
@@ -201,6 +238,14 @@ final class TomlBackedConfiguration implements Configuration {
     return getValue(subSectionKey, table::getLong, section::getDefaultLong);
   }
 
+  @Override
+  public long getLong(ConfigKey<?> key) {
+    if (schema.hasSubSections()) {
+      return getLong(key.canonical());
+    }
+    return getValue(key.path(), toml::getLong, schema::getDefaultLong);
+  }
+
   @Override
   public double getDouble(String key) {
     String sectionKey = schema.getSubSectionPrefix(key);
@@ -214,6 +259,14 @@ final class TomlBackedConfiguration implements Configuration {
     return getValue(subSectionKey, table::getDouble, section::getDefaultDouble);
   }
 
+  @Override
+  public double getDouble(ConfigKey<?> key) {
+    if (schema.hasSubSections()) {
+      return getDouble(key.canonical());
+    }
+    return getValue(key.path(), toml::getDouble, schema::getDefaultDouble);
+  }
+
   @Override
   public boolean getBoolean(String key) {
     String sectionKey = schema.getSubSectionPrefix(key);
@@ -227,6 +280,14 @@ final class TomlBackedConfiguration implements Configuration {
     return getValue(subSectionKey, table::getBoolean, section::getDefaultBoolean);
   }
 
+  @Override
+  public boolean getBoolean(ConfigKey<?> key) {
+    if (schema.hasSubSections()) {
+      return getBoolean(key.canonical());
+    }
+    return getValue(key.path(), toml::getBoolean, schema::getDefaultBoolean);
+  }
+
   @Override
   public Map<String, Object> getMap(String key) {
     String sectionKey = schema.getSubSectionPrefix(key);
@@ -378,7 +439,11 @@ final class TomlBackedConfiguration implements Configuration {
 
   private <T> T getValue(
       String key, Function<List<String>, T> tomlGet, Function<String, T> defaultGet) {
-    List<String> keyPath = parseDottedKey(key);
+    return getValue(parseDottedKey(key), tomlGet, defaultGet);
+  }
+
+  private <T> T getValue(
+      List<String> keyPath, Function<List<String>, T> tomlGet, Function<String, T> defaultGet) {
     T value;
     try {
       value = tomlGet.apply(keyPath);
@@ -433,6 +498,79 @@ final class TomlBackedConfiguration implements Configuration {
         defaultGetFn);
   }
 
+  /**
+   * Compare the documents of two configurations without a schema.
+   *
+   * <p>Both documents are walked together, so unchanged values are compared in place rather than
+   * looked up by their dotted keys.
+   *
+   * @param previous The earlier configuration.
+   * @param current The later configuration.
+   * @return The keys that were added, removed or changed between the two configurations.
+   */
+  static ConfigurationDiff diff(TomlBackedConfiguration previous, TomlBackedConfiguration current) {
+    Set<String> added = new HashSet<>();
+    Set<String> removed = new HashSet<>();
+    Set<String> changed = new HashSet<>();
+    diffTables(previous.toml, current.toml, new ArrayList<>(), added, removed, changed);
+    return new ConfigurationDiff(previous, current, added, removed, changed);
+  }
+
+  private static void diffTables(
+      TomlTable previous,
+      TomlTable current,
+      List<String> path,
+      Set<String> added,
+      Set<String> removed,
+      Set<String> changed) {
+    for (String key : current.keySet()) {
+      List<String> keyPath = Collections.singletonList(key);
+      Object value = current.get(keyPath);
+      Object previousValue = previous.get(keyPath);
+      path.add(key);
+      if (previousValue == null) {
+        addKeys(value, path, added);
+      } else if (value instanceof TomlTable && previousValue instanceof TomlTable) {
+        diffTables((TomlTable) previousValue, (TomlTable) value, path, added, removed, changed);
+      } else if (value instanceof TomlTable || previousValue instanceof TomlTable) {
+        addKeys(previousValue, path, removed);
+        addKeys(value, path, added);
+      } else if (!sameValue(previousValue, value)) {
+        changed.add(joinKeyPath(path));
+      }
+      path.remove(path.size() - 1);
+    }
+    for (String key : previous.keySet()) {
+      List<String> keyPath = Collections.singletonList(key);
+      if (!current.contains(keyPath)) {
+        path.add(key);
+        addKeys(previous.get(keyPath), path, removed);
+        path.remove(path.size() - 1);
+      }
+    }
+  }
+
+  // adds the dotted keys of a value, or of all the values in a table
+  private static void addKeys(@Nullable Object value, List<String> path, Set<String> keys) {
+    if (!(value instanceof TomlTable)) {
+      keys.add(joinKeyPath(path));
+      return;
+    }
+    TomlTable table = (TomlTable) value;
+    for (String key : table.keySet()) {
+      path.add(key);
+      addKeys(table.get(Collections.singletonList(key)), path, keys);
+      path.remove(path.size() - 1);
+    }
+  }
+
+  private static boolean sameValue(Object previous, Object current) {
+    if (previous instanceof TomlArray && current instanceof TomlArray) {
+      return deepToList((TomlArray) previous).equals(deepToList((TomlArray) current));
+    }
+    return previous.equals(current);
+  }
+
   private static List<Object> deepToList(TomlArray array) {
     return array.toList().stream()
         .map(
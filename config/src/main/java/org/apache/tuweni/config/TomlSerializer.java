@@ -116,7 +116,7 @@ final class TomlSerializer {
   private void writeValue(Object obj, Appendable appendable) throws IOException {
     if (obj instanceof String) {
       appendable.append('\"');
-      appendable.append(Toml.tomlEscape((String) obj));
+      Toml.tomlEscape((String) obj, appendable);
       appendable.append('\"');
     } else if (obj instanceof List) {
       @SuppressWarnings("unchecked")
@@ -0,0 +1,115 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.config;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.apache.tuweni.junit.TempDirectory;
+import org.apache.tuweni.junit.TempDirectoryExtension;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(TempDirectoryExtension.class)
+class ReloadableConfigurationTest {
+
+  private static Schema schema() {
+    return SchemaBuilder.create()
+        .addInteger("peers", 25, null, PropertyValidator.inRange(1, 100))
+        .toSchema();
+  }
+
+  @Test
+  void reloadSwapsSnapshotAndReportsDiff(@TempDirectory Path tempDir) throws Exception {
+    Path file = tempDir.resolve("reload.toml");
+    Files.write(file, "name = 'a'\nport = 1\n".getBytes(UTF_8));
+    try (ReloadableConfiguration config = ReloadableConfiguration.load(file, schema())) {
+      List<ConfigurationDiff> diffs = new ArrayList<>();
+      config.addListener(diffs::add);
+      Configuration before = config.compile();
+      assertEquals(25, config.getInteger("peers"));
+
+      Files.write(file, "name = 'a'\nport = 2\npeers = 50\n".getBytes(UTF_8));
+      assertTrue(config.reload());
+      assertEquals(2, config.getInteger("port"));
+      assertEquals(50, config.getInteger("peers"));
+      assertEquals(1, before.getInteger("port"));
+
+      Files.write(file, "port = 2\npeers = 50\nlimit = 3\n".getBytes(UTF_8));
+      assertTrue(config.reload());
+
+      assertEquals(2, diffs.size());
+      assertEquals(Collections.emptySet(), diffs.get(0).added());
+      assertEquals(Collections.emptySet(), diffs.get(0).removed());
+      assertEquals(setOf("port", "peers"), diffs.get(0).changed());
+      assertEquals(setOf("limit"), diffs.get(1).added());
+      assertEquals(setOf("name"), diffs.get(1).removed());
+      assertEquals(Collections.emptySet(), diffs.get(1).changed());
+      assertSame(config.compile(), diffs.get(1).current());
+
+      // an unchanged file is not reported
+      assertTrue(config.reload());
+      assertEquals(2, diffs.size());
+    }
+  }
+
+  @Test
+  void invalidFileIsRejected(@TempDirectory Path tempDir) throws Exception {
+    Path file = tempDir.resolve("invalid.toml");
+    Files.write(file, "port = 1\n".getBytes(UTF_8));
+    try (ReloadableConfiguration config = ReloadableConfiguration.load(file, schema())) {
+      List<List<ConfigurationError>> rejected = new ArrayList<>();
+      config.addErrorListener(rejected::add);
+      config.addListener(diff -> rejected.add(null));
+
+      Files.write(file, "port = 2\npeers = 500\n".getBytes(UTF_8));
+      assertFalse(config.reload());
+      Files.write(file, "port = \n".getBytes(UTF_8));
+      assertFalse(config.reload());
+      Files.delete(file);
+      assertFalse(config.reload());
+
+      assertEquals(3, rejected.size());
+      assertEquals(
+          "Value of property 'peers' is outside range [1,100)",
+          rejected.get(0).get(0).getMessageWithoutPosition());
+      assertEquals(1, config.getInteger("port"));
+      assertEquals(25, config.getInteger("peers"));
+    }
+  }
+
+  @Test
+  void reloadsWhenFileChanges(@TempDirectory Path tempDir) throws Exception {
+    Path file = tempDir.resolve("watched.toml");
+    Files.write(file, "port = 1\n".getBytes(UTF_8));
+    try (ReloadableConfiguration config = ReloadableConfiguration.watch(file, null)) {
+      BlockingQueue<ConfigurationDiff> diffs = new LinkedBlockingQueue<>();
+      config.addListener(diffs::add);
+
+      Files.write(file, "port = 2\n".getBytes(UTF_8));
+      ConfigurationDiff diff = diffs.poll(30, TimeUnit.SECONDS);
+      assertEquals(setOf("port"), diff.changed());
+      assertEquals(2, config.getInteger("port"));
+    }
+  }
+
+  private static Set<String> setOf(String... keys) {
+    return new HashSet<>(Arrays.asList(keys));
+  }
+}
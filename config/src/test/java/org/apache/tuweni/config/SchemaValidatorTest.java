@@ -0,0 +1,123 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.config;
+
+import static org.apache.tuweni.config.ConfigurationErrors.noErrors;
+import static org.apache.tuweni.config.ConfigurationErrors.singleError;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+class SchemaValidatorTest {
+
+  private static Schema schema(int properties, AtomicInteger calls) {
+    SchemaBuilder builder = SchemaBuilder.create();
+    for (int i = 0; i < properties; ++i) {
+      builder.addLong(
+          "section.key" + i,
+          null,
+          null,
+          (key, position, value) -> {
+            calls.incrementAndGet();
+            if (value != null && value < 0) {
+              return singleError(position, "Value of property '" + key + "' is negative");
+            }
+            return noErrors();
+          });
+    }
+    builder.validateConfiguration(
+        config -> {
+          calls.incrementAndGet();
+          return config.contains("section.key0") ? noErrors() : singleError("key0 is required");
+        });
+    return builder.toSchema();
+  }
+
+  private static String toml(int properties, int negative) {
+    StringBuilder builder = new StringBuilder("[section]\n");
+    for (int i = 0; i < properties; ++i) {
+      builder.append("key").append(i).append(" = ").append(i < negative ? -i - 1 : i).append('\n');
+    }
+    return builder.toString();
+  }
+
+  private static Set<String> messages(List<ConfigurationError> errors) {
+    return errors.stream()
+        .map(ConfigurationError::getMessageWithoutPosition)
+        .collect(Collectors.toSet());
+  }
+
+  @Test
+  void parallelValidationMatchesSequential() {
+    Schema schema = schema(500, new AtomicInteger());
+    Configuration config = Configuration.fromToml(toml(500, 20));
+    List<ConfigurationError> expected = schema.validate(config).collect(Collectors.toList());
+    assertEquals(20, expected.size());
+    assertEquals(
+        expected.stream().map(ConfigurationError::toString).collect(Collectors.toList()),
+        schema.validator().validate(config).stream()
+            .map(ConfigurationError::toString)
+            .collect(Collectors.toList()));
+    assertEquals(messages(expected), messages(schema.validator().parallel(true).validate(config)));
+  }
+
+  @Test
+  void stopsAtErrorLimit() {
+    AtomicInteger calls = new AtomicInteger();
+    Schema schema = schema(100, calls);
+    Configuration config = Configuration.fromToml(toml(100, 100));
+
+    List<ConfigurationError> errors = schema.validator().maxErrors(5).validate(config);
+    assertEquals(5, errors.size());
+    assertEquals(5, calls.get());
+
+    calls.set(0);
+    errors = schema.validator().maxErrors(5).parallel(true).validate(config);
+    assertEquals(5, errors.size());
+    assertTrue(calls.get() < 101);
+  }
+
+  @Test
+  void validatesOnlyChangedProperties() {
+    AtomicInteger calls = new AtomicInteger();
+    Schema schema = schema(100, calls);
+    Configuration previous = Configuration.fromToml(toml(100, 0));
+    Configuration current = Configuration.fromToml(toml(100, 0).replace("key7 = 7", "key7 = -7"));
+
+    List<ConfigurationError> errors =
+        schema.validator().validate(current, ConfigurationDiff.between(previous, current));
+    assertEquals(
+        new HashSet<>(Arrays.asList("Value of property 'section.key7' is negative")),
+        messages(errors));
+    // one property validator, and the configuration validator
+    assertEquals(2, calls.get());
+
+    calls.set(0);
+    Configuration removed = Configuration.fromToml(toml(100, 0).replace("key0 = 0\n", ""));
+    errors = schema.validator().validate(removed, ConfigurationDiff.between(previous, removed));
+    assertEquals(new HashSet<>(Arrays.asList("key0 is required")), messages(errors));
+    assertEquals(2, calls.get());
+  }
+
+  @Test
+  void reportsTimings() {
+    Schema schema = schema(10, new AtomicInteger());
+    Configuration config = Configuration.fromToml(toml(10, 0));
+    Map<String, Duration> timings = new ConcurrentHashMap<>();
+    assertTrue(schema.validator().parallel(true).timings(timings::put).validate(config).isEmpty());
+    assertEquals(11, timings.size());
+    assertTrue(timings.containsKey("section.key3"));
+    assertTrue(timings.containsKey("#0"));
+  }
+}
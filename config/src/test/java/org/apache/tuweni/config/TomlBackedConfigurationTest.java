@@ -7,9 +7,12 @@ import static org.apache.tuweni.config.ConfigurationErrors.singleError;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Paths;
 import java.util.Arrays;
@@ -97,6 +100,122 @@ class TomlBackedConfigurationTest {
     assertTrue(config.contains("\"baz\" .   'foobar'"));
   }
 
+  @Test
+  void testFindsValuesWithConfigKey() throws Exception {
+    SchemaBuilder builder = SchemaBuilder.create();
+    builder.addLong("baz.count", 7L, null, null);
+    Configuration config =
+        Configuration.fromToml(
+            "foo=12\nbar=\"13\"\n[baz]\nfoobar = 156.34\nflag = true\nbig = 4294967296",
+            builder.toSchema());
+    assertFalse(config.hasErrors());
+
+    ConfigKey<Object> foobar = ConfigKey.of("baz .   'foobar'");
+    assertEquals("baz.foobar", foobar.canonical());
+    assertEquals(Arrays.asList("baz", "foobar"), foobar.path());
+    assertEquals(ConfigKey.of("baz.foobar"), foobar);
+
+    assertEquals(12, config.getInteger(ConfigKey.of("foo")));
+    assertEquals("13", config.getString(ConfigKey.of("bar")));
+    assertEquals(156.34d, config.getDouble(foobar));
+    assertEquals(156.34d, config.get(foobar));
+    assertTrue(config.getBoolean(ConfigKey.of("baz.flag")));
+    assertEquals(7L, config.getLong(ConfigKey.of("baz.count")));
+    assertTrue(config.contains(ConfigKey.of("baz.count")));
+    assertFalse(config.contains(ConfigKey.of("baz.missing")));
+
+    InvalidConfigurationPropertyTypeException e =
+        assertThrows(
+            InvalidConfigurationPropertyTypeException.class,
+            () -> config.getInteger(ConfigKey.of("baz.big")));
+    assertEquals(
+        "Value of property 'baz.big' is too large for an integer", e.getMessageWithoutPosition());
+    Exception missing =
+        assertThrows(
+            NoConfigurationPropertyException.class,
+            () -> config.getString(ConfigKey.of("baz.missing")));
+    assertEquals("No value for property 'baz.missing'", missing.getMessage());
+    assertThrows(IllegalArgumentException.class, () -> ConfigKey.of("baz..missing"));
+  }
+
+  @Test
+  void compiledConfigurationMatchesSource() throws Exception {
+    SchemaBuilder builder = SchemaBuilder.create();
+    builder.addString("name", "node", null, null);
+    builder.addInteger("baz.count", 7, null, null);
+    Configuration source =
+        Configuration.fromToml(
+            "foo=12\nbar=\"13\"\nlist=[1,2]\n[baz]\nfoobar = 156.34\nflag = true\nbig = 4294967296",
+            builder.toSchema());
+    Configuration config = source.compile();
+    assertFalse(config.hasErrors());
+    assertSame(config, config.compile());
+    assertEquals(source.keySet(), config.keySet());
+
+    assertEquals(12, config.getInteger("foo"));
+    assertEquals(12L, config.getLong(" 'foo' "));
+    assertEquals("13", config.getString("bar"));
+    assertEquals("node", config.getString("name"));
+    assertEquals(156.34d, config.getDouble("baz.foobar"));
+    assertTrue(config.getBoolean("baz.flag"));
+    assertEquals(7, config.getInteger("baz.count"));
+    assertEquals(4294967296L, config.getLong("baz.big"));
+    assertEquals(Arrays.asList(1L, 2L), config.get("list"));
+    assertEquals(Arrays.asList(1, 2), config.getListOfInteger("list"));
+    assertEquals(DocumentPosition.positionAt(1, 1), config.inputPositionOf("foo"));
+
+    assertTrue(config.contains("baz.count"));
+    assertFalse(config.contains("baz.missing"));
+
+    InvalidConfigurationPropertyTypeException e =
+        assertThrows(
+            InvalidConfigurationPropertyTypeException.class, () -> config.getString("foo"));
+    assertEquals("Value of 'foo' is a integer", e.getMessageWithoutPosition());
+    assertEquals(DocumentPosition.positionAt(1, 1), e.position());
+    e =
+        assertThrows(
+            InvalidConfigurationPropertyTypeException.class, () -> config.getInteger("baz.big"));
+    assertEquals(
+        "Value of property 'baz.big' is too large for an integer", e.getMessageWithoutPosition());
+    Exception missing =
+        assertThrows(
+            NoConfigurationPropertyException.class, () -> config.getString("baz.missing"));
+    assertEquals("No value for property 'baz.missing'", missing.getMessage());
+
+    @SuppressWarnings("unchecked")
+    List<Object> list = (List<Object>) config.get("list");
+    assertThrows(UnsupportedOperationException.class, () -> list.add(3L));
+  }
+
+  @Test
+  void readTypedKeysFromCompiledConfiguration() throws Exception {
+    ConfigKey<Integer> foo = ConfigKey.ofInteger("foo");
+    ConfigKey<String> bar = ConfigKey.ofString("bar");
+    ConfigKey<Double> foobar = ConfigKey.ofDouble("baz.foobar");
+    ConfigKey<Boolean> flag = ConfigKey.ofBoolean("baz.flag");
+    ConfigKey<Long> missing = ConfigKey.ofLong("baz.missing");
+
+    Configuration first =
+        Configuration.fromToml("foo=12\nbar=\"13\"\n[baz]\nfoobar = 156.34\nflag = true");
+    for (Configuration config : Arrays.asList(first, first.compile())) {
+      assertEquals(12, config.getValue(foo));
+      assertEquals("13", config.getValue(bar));
+      assertEquals(156.34d, config.getValue(foobar));
+      assertTrue(config.getValue(flag));
+      assertEquals(12L, config.getValue(ConfigKey.of("foo")));
+      assertThrows(NoConfigurationPropertyException.class, () -> config.getValue(missing));
+      assertThrows(
+          InvalidConfigurationPropertyTypeException.class,
+          () -> config.getValue(ConfigKey.ofString("foo")));
+    }
+
+    // keys bound to one snapshot resolve correctly against another
+    Configuration second = Configuration.fromToml("baz.missing = 3\nfoo = 21").compile();
+    assertEquals(21, second.getValue(foo));
+    assertEquals(3L, second.getValue(missing));
+    assertEquals(12, first.compile().getValue(foo));
+  }
+
   @Test
   void throwsForMissingValue() throws Exception {
     Configuration config = Configuration.fromToml("foo=12\nbar=\"13\"\n[baz]\nfoobar = 156.34");
@@ -661,4 +780,32 @@ class TomlBackedConfigurationTest {
     // @formatter:on
     assertEquals(expected.replace("\n", System.lineSeparator()), config.toToml());
   }
+
+  @Test
+  void writeConfigurationToTomlStream() throws Exception {
+    Configuration config =
+        Configuration.fromToml("greeting = \"héllo 'world'\"\n[boo]\nbaz = [1, 2, 3]\n");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    config.writeToml(out);
+    assertEquals(config.toToml(), out.toString(StandardCharsets.UTF_8));
+    assertTrue(config.toToml().contains("greeting = \"h\\u00e9llo \\'world\\'\""));
+  }
+
+  @Test
+  void diffComparesDocuments() {
+    TomlBackedConfiguration previous =
+        (TomlBackedConfiguration)
+            Configuration.fromToml(
+                "a = 1\nb = [1, [2]]\nc = 'x'\nd = 4\n[e]\nf = 5\ng = 6\n[h]\ni = 7\n");
+    TomlBackedConfiguration current =
+        (TomlBackedConfiguration)
+            Configuration.fromToml(
+                "a = 1\nb = [1, [2]]\nc = 'y'\n\"d.x\" = 4\nh = 8\n"
+                    + "[e]\nf = 5\ng = 9\n[d]\ny = 1\n");
+    ConfigurationDiff diff = TomlBackedConfiguration.diff(previous, current);
+    assertEquals(new HashSet<>(Arrays.asList("\"d.x\"", "h", "d.y")), diff.added());
+    assertEquals(new HashSet<>(Arrays.asList("d", "h.i")), diff.removed());
+    assertEquals(new HashSet<>(Arrays.asList("c", "e.g")), diff.changed());
+    assertTrue(TomlBackedConfiguration.diff(current, current).isEmpty());
+  }
 }
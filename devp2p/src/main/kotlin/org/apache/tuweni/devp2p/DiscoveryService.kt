@@ -13,6 +13,7 @@ import io.vertx.kotlin.coroutines.dispatcher
 import kotlinx.coroutines.CompletableDeferred
 import kotlinx.coroutines.CoroutineExceptionHandler
 import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.Job
 import kotlinx.coroutines.TimeoutCancellationException
 import kotlinx.coroutines.async
@@ -20,23 +21,24 @@ import kotlinx.coroutines.awaitAll
 import kotlinx.coroutines.delay
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.withTimeout
+import kotlinx.coroutines.withContext
 import kotlinx.coroutines.withTimeoutOrNull
 import org.apache.tuweni.bytes.Bytes
 import org.apache.tuweni.bytes.Bytes32
 import org.apache.tuweni.concurrent.AsyncCompletion
 import org.apache.tuweni.concurrent.AsyncResult
+import org.apache.tuweni.concurrent.coroutines.RetryBudget
+import org.apache.tuweni.concurrent.coroutines.RetryPolicy
 import org.apache.tuweni.concurrent.coroutines.asyncCompletion
 import org.apache.tuweni.concurrent.coroutines.asyncResult
 import org.apache.tuweni.concurrent.coroutines.await
+import org.apache.tuweni.concurrent.coroutines.retry
 import org.apache.tuweni.crypto.SECP256K1
-import org.apache.tuweni.kademlia.orderedInsert
-import org.apache.tuweni.kademlia.xorDistCmp
 import org.slf4j.LoggerFactory
 import java.net.InetAddress
 import java.net.URI
 import java.nio.ByteBuffer
 import java.time.Instant
-import java.util.Collections
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicBoolean
@@ -53,12 +55,14 @@ internal const val BOOTSTRAP_PEER_VERIFICATION_TIMEOUT_MS = (2 * 60 * 1000).toLo
 internal const val REFRESH_INTERVAL_MS = (60 * 1000).toLong() // 1 minute
 internal const val PING_RETRIES: Int = 20
 internal const val RESEND_DELAY_MS = 1000.toLong() // 1 second
-internal const val RESEND_DELAY_INCREASE_MS = 500.toLong() // 500 milliseconds
 internal const val RESEND_MAX_DELAY_MS = (30 * 1000).toLong() // 30 seconds
+internal const val RETRY_BUDGET_RATIO = 0.5 // half a resend per verification or findNode request
+internal const val RETRY_BUDGET_MAX_TOKENS = 500
 internal const val ENDPOINT_PROOF_LONGEVITY_MS = (12 * 60 * 60 * 1000).toLong() // 12 hours
 internal const val FIND_NODES_CACHE_EXPIRY = (3 * 60 * 1000).toLong() // 3 minutes
-internal const val FIND_NODES_QUERY_GAP_MS = (30 * 1000).toLong() // 30 seconds
 internal const val LOOKUP_RESPONSE_TIMEOUT_MS = 500.toLong() // 500 milliseconds
+internal const val LOOKUP_ALPHA = 3
+internal const val FIND_NODES_HEDGE_PERCENTILE = 0.9
 
 /**
  * An Ethereum ÐΞVp2p discovery service.
@@ -92,6 +96,7 @@ interface DiscoveryService {
      * @param packetFilter a filter for incoming packets
      \     * @param bufferAllocator a [ByteBuffer] allocator, which must return buffers of size 1280 bytes or larger
      * @param timeSupplier a function supplying the current time, in milliseconds since the epoch
+     * @param rateLimits the limits applied to incoming packets
      */
     @JvmOverloads
     fun open(
@@ -109,6 +114,7 @@ interface DiscoveryService {
       routingTable: PeerRoutingTable = DevP2PPeerRoutingTable(keyPair.publicKey()),
       packetFilter: ((SECP256K1.PublicKey, SocketAddress) -> Boolean)? = null,
       timeSupplier: () -> Long = CURRENT_TIME_SUPPLIER,
+      rateLimits: RateLimits = RateLimits(),
     ): DiscoveryService {
       val bindAddress =
         if (host == null) {
@@ -133,6 +139,7 @@ interface DiscoveryService {
         routingTable,
         packetFilter,
         timeSupplier,
+        rateLimits,
       )
     }
 
@@ -152,6 +159,7 @@ interface DiscoveryService {
      * @param routingTable a [PeerRoutingTable] which handles the ÐΞVp2p routing table
      * @param packetFilter a filter for incoming packets
      * @param timeSupplier a function supplying the current time, in milliseconds since the epoch
+     * @param rateLimits the limits applied to incoming packets
      */
     @JvmOverloads
     fun open(
@@ -168,11 +176,12 @@ interface DiscoveryService {
       routingTable: PeerRoutingTable = DevP2PPeerRoutingTable(keyPair.publicKey()),
       packetFilter: ((SECP256K1.PublicKey, SocketAddress) -> Boolean)? = null,
       timeSupplier: () -> Long = CURRENT_TIME_SUPPLIER,
+      rateLimits: RateLimits = RateLimits(),
     ): DiscoveryService {
       return CoroutineDiscoveryService(
         vertx,
         keyPair, seq, enrData, bindAddress, bootstrapURIs, advertiseAddress, advertiseUdpPort, advertiseTcpPort,
-        peerRepository, routingTable, packetFilter, timeSupplier,
+        peerRepository, routingTable, packetFilter, timeSupplier, rateLimits,
       )
     }
   }
@@ -269,6 +278,11 @@ interface DiscoveryService {
    * Counter of unexpected ENRResponse messages
    */
   val unexpectedENRResponses: Long
+
+  /**
+   * Counter of packets dropped by rate limiting
+   */
+  val rateLimitedPackets: Long
 }
 
 internal class CoroutineDiscoveryService(
@@ -285,6 +299,8 @@ internal class CoroutineDiscoveryService(
   private val routingTable: PeerRoutingTable = DevP2PPeerRoutingTable(keyPair.publicKey()),
   private val packetFilter: ((SECP256K1.PublicKey, SocketAddress) -> Boolean)? = null,
   private val timeSupplier: () -> Long = DiscoveryService.CURRENT_TIME_SUPPLIER,
+  rateLimits: RateLimits = RateLimits(),
+  private val signingContext: CoroutineContext = Dispatchers.Default,
   override val coroutineContext: CoroutineContext = vertx.dispatcher() + CoroutineExceptionHandler { _, _ -> },
 ) : DiscoveryService, CoroutineScope {
 
@@ -300,6 +316,8 @@ internal class CoroutineDiscoveryService(
   private val bootstrapped = AsyncCompletion.incomplete()
   private var refreshLoop: Job? = null
   private val server = vertx.createDatagramSocket()
+  private val outbound = OutboundQueue(server, this)
+  private val rateLimiter = RateLimiter(rateLimits)
 
   override val isShutdown: Boolean
     get() = shutdown.get()
@@ -315,7 +333,20 @@ internal class CoroutineDiscoveryService(
   private val requestingENRs: Cache<SocketAddress, ENRRequest> =
     CacheBuilder.newBuilder().expireAfterAccess(ENR_REQUEST_RETRY_DELAY_MS, TimeUnit.MILLISECONDS).build()
   private val awaitingPongs = ConcurrentHashMap<Bytes32, EndpointVerification>()
+  private val retryBudget = RetryBudget(RETRY_BUDGET_RATIO, RETRY_BUDGET_MAX_TOKENS)
+  private val pingRetryPolicy = RetryPolicy(PING_RETRIES, RESEND_DELAY_MS, RESEND_MAX_DELAY_MS, retryBudget)
+  private val findNodesRetryPolicy = RetryPolicy(
+    2,
+    LOOKUP_RESPONSE_TIMEOUT_MS,
+    LOOKUP_RESPONSE_TIMEOUT_MS,
+    retryBudget,
+    FIND_NODES_HEDGE_PERCENTILE,
+  )
   private val awaitingENRs = ConcurrentHashMap<Bytes32, ENRRequest>()
+
+  // hosts that have been sent a request within the lifetime of a request packet, and may be replying to it
+  private val awaitingReplies: Cache<String, Boolean> =
+    CacheBuilder.newBuilder().expireAfterWrite(PACKET_EXPIRATION_PERIOD_MS, TimeUnit.MILLISECONDS).build()
   private val findNodeStates: Cache<SECP256K1.PublicKey, FindNodeState> =
     CacheBuilder.newBuilder().expireAfterAccess(FIND_NODES_CACHE_EXPIRY, TimeUnit.MILLISECONDS)
       .removalListener<SECP256K1.PublicKey, FindNodeState> { it.value?.close() }
@@ -329,6 +360,7 @@ internal class CoroutineDiscoveryService(
   override var unexpectedPongs: Long by AtomicLong(0)
   override var unexpectedENRResponses: Long by AtomicLong(0)
   override var unexpectedNeighbors: Long by AtomicLong(0)
+  override var rateLimitedPackets: Long by AtomicLong(0)
 
   init {
     start()
@@ -351,6 +383,12 @@ internal class CoroutineDiscoveryService(
       endpoint.udpPort,
     )
     selfEndpoint = endpoint
+    // peers proven before a restart are still valid, so make them available to lookups straight away
+    for (peer in peerRepository.verifiedPeers(timeSupplier() - ENDPOINT_PROOF_LONGEVITY_MS)) {
+      if (peer.nodeId != nodeId) {
+        addToRoutingTable(peer)
+      }
+    }
     refreshLoop = launch {
       while (true) {
         delay(REFRESH_INTERVAL_MS)
@@ -388,7 +426,8 @@ internal class CoroutineDiscoveryService(
       }
       logger.info("{}: verified bootstrap peer {}", serviceDescriptor, uri)
       addToRoutingTable(peer)
-      findNodes(peer, nodeId).thenRun {
+      launch {
+        findNodes(peer, nodeId)
         logger.info("{}: completed bootstrapping from {}", serviceDescriptor, uri)
       }
       return true
@@ -412,11 +451,32 @@ internal class CoroutineDiscoveryService(
     }
 
     val arrivalTime = timeSupplier()
+    val sender = packet.sender()
+    // replies to our own requests are admitted from their own budget and never wait behind unsolicited packets; as the
+    // packet type is chosen by the sender, only hosts that have been sent a request are given that budget
+    val isReply = Packet.isReply(packet.data().getByte(Packet.PACKET_TYPE_INDEX)) &&
+      awaitingReplies.getIfPresent(sender.host()) != null
+    if (isReply) {
+      if (!rateLimiter.allowReply(sender.host(), arrivalTime)) {
+        logger.debug("{}: rate limiting replies from {}", serviceDescriptor, sender)
+        ++rateLimitedPackets
+        return
+      }
+    } else if (!rateLimiter.allowAddress(sender.host(), arrivalTime) || !rateLimiter.tryAcquire()) {
+      logger.debug("{}: rate limiting packets from {}", serviceDescriptor, sender)
+      ++rateLimitedPackets
+      return
+    }
+
     launch {
       try {
-        receivePacket(packet.data(), packet.sender(), arrivalTime)
+        receivePacket(packet.data(), sender, arrivalTime, isReply)
       } catch (e: Throwable) {
         logger.error("$serviceDescriptor: unexpected error during packet handling", e)
+      } finally {
+        if (!isReply) {
+          rateLimiter.release()
+        }
       }
     }
   }
@@ -428,6 +488,8 @@ internal class CoroutineDiscoveryService(
   override suspend fun shutdown() {
     if (shutdown.compareAndSet(false, true)) {
       logger.info("{}: shutdown", serviceDescriptor)
+      // let queued packets reach the socket before it is closed
+      outbound.close()
       server.close().coAwait()
       for (pending in awaitingPongs.values) {
         pending.complete(null)
@@ -444,46 +506,28 @@ internal class CoroutineDiscoveryService(
   override fun shutdownAsync(): AsyncCompletion = asyncCompletion { shutdown() }
 
   override suspend fun lookup(target: SECP256K1.PublicKey): List<Peer> {
-    val targetId = target.bytesArray()
-    val results = neighbors(target).toMutableList()
-    logger.debug("Initial neighbors query {}", results)
-
-    // maybe add ourselves to the set
-    val selfPeer = peerRepository.get(selfEndpoint!!.address, selfEndpoint!!.udpPort, nodeId)
-    results.orderedInsert(selfPeer) { a, _ -> targetId.xorDistCmp(a.nodeId.bytesArray(), nodeId.bytesArray()) }
-    results.removeAt(results.lastIndex)
-
-    withTimeout(LOOKUP_RESPONSE_TIMEOUT_MS) {
-      results.map { nodeToQuery ->
-        async {
-          val nodes = findNodes(nodeToQuery, target).await()
-          for (node in ArrayList(nodes)) {
-            val peer = peerRepository.get(selfEndpoint!!.address, selfEndpoint!!.udpPort, node.nodeId)
-            if (!results.contains(peer)) {
-              results.orderedInsert(peer) { a, _ ->
-                targetId.xorDistCmp(
-                  a.nodeId.bytesArray(),
-                  node.nodeId.bytesArray(),
-                )
-              }
-              results.removeAt(results.lastIndex)
-            }
-          }
-        }
+    val initial = neighbors(target).toMutableList()
+    logger.debug("Initial neighbors query {}", initial)
+
+    // include ourselves as a candidate, answered directly from the routing table
+    initial.add(peerRepository.get(selfEndpoint!!.address, selfEndpoint!!.udpPort, nodeId))
+
+    return routingTable.lookupNearest(target, initial) { peer ->
+      findNodes(peer, target)?.map { node ->
+        peerRepository.get(node.endpoint.address, node.endpoint.udpPort, node.nodeId)
       }
-    }.awaitAll()
-    return results
+    }
   }
 
   override fun lookupAsync(target: SECP256K1.PublicKey) = asyncResult { lookup(target) }
 
   private suspend fun refresh() {
     logger.debug("{}: table refresh triggered", serviceDescriptor)
-    // TODO: instead of a random target, choose a target to optimally fill the peer table
-    lookup(SECP256K1.KeyPair.random().publicKey())
+    // look up a random target while the table has buckets to fill, or ourselves if all buckets are full
+    lookup(routingTable.refreshTarget() ?: nodeId)
   }
 
-  private suspend fun receivePacket(datagram: Buffer, address: SocketAddress, arrivalTime: Long) {
+  private suspend fun receivePacket(datagram: Buffer, address: SocketAddress, arrivalTime: Long, isReply: Boolean) {
     val packet: Packet
     try {
       packet = Packet.decodeFrom(Bytes.wrap(datagram.bytes))
@@ -499,6 +543,12 @@ internal class CoroutineDiscoveryService(
       return
     }
 
+    if (!isReply && !rateLimiter.allowNodeId(packet.nodeId, arrivalTime)) {
+      logger.debug("{}: rate limiting packets from node {}", serviceDescriptor, packet.nodeId)
+      ++rateLimitedPackets
+      return
+    }
+
     if (packet.isExpired(arrivalTime - PACKET_EXPIRATION_CHECK_GRACE_MS)) {
       logger.debug("{}: ignoring expired packet", serviceDescriptor)
       ++expiredPackets
@@ -536,7 +586,7 @@ internal class CoroutineDiscoveryService(
       )
     }
 
-    val pong = PongPacket.create(keyPair, timeSupplier(), currentEndpoint, packet.hash, seq)
+    val pong = sign { PongPacket.create(keyPair, timeSupplier(), currentEndpoint, packet.hash, seq) }
     sendPacket(from, pong)
     // https://github.com/ethereum/devp2p/blob/master/discv4.md#ping-packet-0x01 also suggests sending a ping
     // packet if the peer is unknown, however sending two packets in response to a single incoming would allow a
@@ -603,10 +653,13 @@ internal class CoroutineDiscoveryService(
     val nodes = neighbors(packet.target).map { p -> p.toNode() }
 
     val address = endpoint.udpSocketAddress
-    NeighborsPacket.createRequired(keyPair, timeSupplier(), nodes).forEach { p ->
-      logger.debug("{}: sending {} neighbors to {}", serviceDescriptor, p.nodes.size, address)
-      sendPacket(address, p)
+    val now = timeSupplier()
+    val packets = withContext(signingContext) {
+      NeighborsPacket.partition(nodes).map { subset -> async { NeighborsPacket.create(keyPair, now, subset) } }
+        .awaitAll()
     }
+    logger.debug("{}: sending {} neighbors to {} in {} packets", serviceDescriptor, nodes.size, address, packets.size)
+    outbound.sendAll(address, packets)
   }
 
   private fun handleNeighbors(packet: NeighborsPacket, from: SocketAddress) {
@@ -649,7 +702,7 @@ internal class CoroutineDiscoveryService(
     logger.debug("{}: received enrRequest from {}", serviceDescriptor, from)
 
     val address = endpoint.udpSocketAddress
-    sendPacket(address, ENRResponsePacket.create(keyPair, timeSupplier(), packet.hash, enr!!))
+    sendPacket(address, sign { ENRResponsePacket.create(keyPair, timeSupplier(), packet.hash, enr!!) })
   }
 
   private suspend fun handleENRResponse(packet: ENRResponsePacket, from: SocketAddress, arrivalTime: Long) {
@@ -720,7 +773,6 @@ internal class CoroutineDiscoveryService(
     @Volatile
     private var active: Job? = null
     private var nextPingMs: Long = 0
-    private var retryDelay: Long = 0
 
     suspend fun verify(now: Long = timeSupplier()): VerificationResult? {
       if (!deferred.isCompleted) {
@@ -741,13 +793,17 @@ internal class CoroutineDiscoveryService(
         synchronized(this) {
           if (active?.isCompleted != false) {
             active = launch {
-              repeat(PING_RETRIES) {
+              // resends back off with jitter, and are limited by a budget shared by all verifications so that
+              // unresponsive peers do not multiply the outbound traffic
+              pingRetryPolicy.budget?.deposit()
+              var resendDelay = 0L
+              for (attempt in 1..pingRetryPolicy.maxAttempts) {
                 delay(nextPingMs - timeSupplier())
-                nextPingMs = timeSupplier() + RESEND_DELAY_MS
-                retryDelay += RESEND_DELAY_INCREASE_MS
-                if (retryDelay > RESEND_MAX_DELAY_MS) {
-                  retryDelay = RESEND_MAX_DELAY_MS
+                if (attempt > 1 && pingRetryPolicy.budget?.tryWithdraw() == false) {
+                  break
                 }
+                resendDelay = pingRetryPolicy.nextDelay(resendDelay)
+                nextPingMs = timeSupplier() + resendDelay
                 sendPing()
               }
             }
@@ -758,7 +814,7 @@ internal class CoroutineDiscoveryService(
     }
 
     private suspend fun sendPing(now: Long = timeSupplier()) {
-      val pingPacket = PingPacket.create(keyPair, now, selfEndpoint!!, endpoint, seq)
+      val pingPacket = sign { PingPacket.create(keyPair, now, selfEndpoint!!, endpoint, seq) }
 
       // create local references to be captured in the closure, rather than the whole packet instance
       val hash = pingPacket.hash
@@ -819,7 +875,7 @@ internal class CoroutineDiscoveryService(
     }
 
     private suspend fun sendENRRequest(now: Long = timeSupplier()) {
-      val enrRequestPacket = ENRRequestPacket.create(keyPair, now)
+      val enrRequestPacket = sign { ENRRequestPacket.create(keyPair, now) }
 
       // create local references to be captured in the closure, rather than the whole packet instance
       val hash = enrRequestPacket.hash
@@ -848,12 +904,17 @@ internal class CoroutineDiscoveryService(
     val enr: EthereumNodeRecord,
   )
 
-  private suspend fun findNodes(peer: Peer, target: SECP256K1.PublicKey): AsyncResult<List<Node>> {
+  private suspend fun findNodes(peer: Peer, target: SECP256K1.PublicKey): List<Node>? {
     if (peer.nodeId == nodeId) {
       // for queries to self, respond directly
-      return AsyncResult.completed(neighbors(target).map { p -> p.toNode() })
-    }
-    return findNodeStates.get(peer.nodeId) { FindNodeState(peer) }.findNodes(target)
+      return neighbors(target).map { p -> p.toNode() }
+    }
+    val state = findNodeStates.get(peer.nodeId) { FindNodeState(peer) }
+    // the request is resent if no response arrives within the usual response time, and a response that was still
+    // arriving when the timeout expired is used as far as it got
+    return withTimeoutOrNull(LOOKUP_RESPONSE_TIMEOUT_MS) {
+      retry(findNodesRetryPolicy) { state.findNodes(target).await() }
+    } ?: state.collected().ifEmpty { null }
   }
 
   private fun neighbors(target: SECP256K1.PublicKey) = routingTable.nearest(target, DEVP2P_BUCKET_SIZE)
@@ -862,19 +923,14 @@ internal class CoroutineDiscoveryService(
 
   private inner class FindNodeState(val peer: Peer) {
 
-    private val nodesCollected = Collections.synchronizedList(ArrayList<Node>())
-    private val result = AsyncResult.incomplete<List<Node>>()
-    private val start = timeSupplier()
-
-    @Volatile
-    private var lastReceive: Long = 0
+    private var nodesCollected = ArrayList<Node>()
+    private var result = AsyncResult.incomplete<List<Node>>()
 
     private suspend fun send(request: FindNodeRequest) {
       try {
         val endpoint = peer.endpoint
         val now = timeSupplier()
-        lastReceive = now
-        val findNodePacket = FindNodePacket.create(keyPair, now, request.target)
+        val findNodePacket = sign { FindNodePacket.create(keyPair, now, request.target) }
         sendPacket(endpoint.udpSocketAddress, findNodePacket)
         logger.debug("{}: sent findNode to {} for {}", serviceDescriptor, endpoint.udpSocketAddress, request.target)
 
@@ -898,24 +954,43 @@ internal class CoroutineDiscoveryService(
     }
 
     suspend fun findNodes(target: SECP256K1.PublicKey): AsyncResult<List<Node>> {
+      // neighbors packets do not identify the request they answer, so a new request starts a new collection only
+      // once the previous one has completed
+      val pending = synchronized(this) {
+        if (result.isDone) {
+          nodesCollected = ArrayList()
+          result = AsyncResult.incomplete()
+        }
+        result
+      }
       send(FindNodeRequest(target))
-      return result
+      return pending
     }
 
+    @Synchronized
     fun receive(nodes: List<Node>) {
-      lastReceive = timeSupplier()
       nodesCollected.addAll(nodes)
-      if (lastReceive - start > FIND_NODES_QUERY_GAP_MS) {
+      if (nodesCollected.size >= DEVP2P_BUCKET_SIZE) {
         close()
       }
     }
 
+    @Synchronized
+    fun collected(): List<Node> = ArrayList(nodesCollected)
+
+    @Synchronized
     fun close() {
-      result.complete(nodesCollected)
+      result.complete(ArrayList(nodesCollected))
     }
   }
 
+  // packet signatures are computed off the event loop, so that signing for concurrent requests can run in parallel
+  private suspend fun <T : Packet> sign(create: () -> T): T = withContext(signingContext) { create() }
+
   private suspend fun sendPacket(address: SocketAddress, packet: Packet) {
-    server.send(Buffer.buffer(packet.encode().toArrayUnsafe()), address.port(), address.host()).coAwait()
+    if (packet is PingPacket || packet is FindNodePacket || packet is ENRRequestPacket) {
+      awaitingReplies.put(address.host(), true)
+    }
+    outbound.send(address, packet)
   }
 }
@@ -124,8 +124,26 @@ class EthereumNodeRecord(
       writer: RLPWriter,
     ) {
       writer.writeLong(seq)
+      writeEntries(entries(signatureKeyPair, ip, tcp, udp, data), listData, writer)
+    }
+
+    /**
+     * Creates a builder for a new record.
+     *
+     * @return a builder
+     */
+    @JvmStatic
+    fun builder(): Builder = Builder(null)
+
+    private fun entries(
+      signatureKeyPair: SECP256K1.KeyPair?,
+      ip: InetAddress?,
+      tcp: Int?,
+      udp: Int?,
+      data: Map<String, Bytes>?,
+    ): Map<String, Bytes> {
       val mutableData = data?.toMutableMap() ?: mutableMapOf()
-      mutableData["id"] = Bytes.wrap("v4".toByteArray())
+      mutableData["id"] = ID_V4
       signatureKeyPair?.let {
         mutableData["secp256k1"] = Bytes.wrap(it.publicKey().asEcPoint().getEncoded(true))
       }
@@ -138,11 +156,15 @@ class EthereumNodeRecord(
       udp?.let {
         mutableData["udp"] = Bytes.ofUnsignedShort(it)
       }
+      return mutableData
+    }
+
+    private fun writeEntries(data: Map<String, Bytes>, listData: Map<String, List<Bytes>>?, writer: RLPWriter) {
       val keys = mutableListOf<String>()
-      keys.addAll(mutableData.keys)
+      keys.addAll(data.keys)
       listData?.let { keys.addAll(it.keys) }
       keys.sorted().forEach { key ->
-        mutableData[key]?.let { value ->
+        data[key]?.let { value ->
           writer.writeString(key)
           writer.writeValue(value)
         }
@@ -153,6 +175,44 @@ class EthereumNodeRecord(
       }
     }
 
+    // sign a record whose entries are already encoded, encoding them only once
+    private fun sign(
+      signatureKeyPair: SECP256K1.KeyPair,
+      seq: Long,
+      data: Map<String, Bytes>,
+      listData: Map<String, List<Bytes>>,
+      encodedEntries: Bytes,
+    ): EthereumNodeRecord {
+      val signature = SECP256K1.sign(
+        RLP.encodeList { writer ->
+          writer.writeLong(seq)
+          writer.writeRLP(encodedEntries)
+        },
+        signatureKeyPair,
+      )
+      val sigBytes = MutableBytes.create(64)
+      UInt256.valueOf(signature.r()).toBytes().copyTo(sigBytes, 0)
+      UInt256.valueOf(signature.s()).toBytes().copyTo(sigBytes, 32)
+
+      val rlp = RLP.encodeList { writer ->
+        writer.writeValue(sigBytes)
+        writer.writeLong(seq)
+        writer.writeRLP(encodedEntries)
+      }
+      if (rlp.size() > 300) {
+        throw IllegalArgumentException("Record too long")
+      }
+      return EthereumNodeRecord(sigBytes, seq, data, listData, rlp)
+    }
+
+    private fun sign(
+      signatureKeyPair: SECP256K1.KeyPair,
+      seq: Long,
+      data: Map<String, Bytes>,
+      listData: Map<String, List<Bytes>>,
+    ): EthereumNodeRecord =
+      sign(signatureKeyPair, seq, data, listData, RLP.encode { writeEntries(data, listData, it) })
+
     /**
      * Creates the serialized form of a ENR
      * @param signatureKeyPair the key pair to use to sign the ENR
@@ -174,9 +234,8 @@ class EthereumNodeRecord(
       ip: InetAddress,
       tcp: Int? = null,
       udp: Int? = null,
-    ): EthereumNodeRecord {
-      return fromRLP(toRLP(signatureKeyPair, seq, data, listData, ip, tcp, udp))
-    }
+    ): EthereumNodeRecord =
+      sign(signatureKeyPair, seq, entries(signatureKeyPair, ip, tcp, udp, data), listData?.toMap() ?: emptyMap())
 
     /**
      * Creates the serialized form of a ENR
@@ -199,22 +258,30 @@ class EthereumNodeRecord(
       ip: InetAddress,
       tcp: Int? = null,
       udp: Int? = null,
-    ): Bytes {
-      val encoded = RLP.encodeList { writer ->
-        encode(signatureKeyPair, seq, ip, tcp, udp, data, listData, writer)
-      }
-      val signature = SECP256K1.sign(encoded, signatureKeyPair)
-      val sigBytes = MutableBytes.create(64)
-      UInt256.valueOf(signature.r()).toBytes().copyTo(sigBytes, 0)
-      UInt256.valueOf(signature.s()).toBytes().copyTo(sigBytes, 32)
+    ): Bytes = create(signatureKeyPair, seq, data, listData, ip, tcp, udp).rlp
 
-      val completeEncoding = RLP.encodeList { writer ->
-        writer.writeValue(sigBytes)
-        encode(signatureKeyPair, seq, ip, tcp, udp, data, listData, writer)
-      }
-      return completeEncoding
-    }
+    private val ID_V4 = Bytes.wrap("v4".toByteArray())
+  }
+
+  // decoded fields, computed on first use
+  private val encodedEntries: Bytes by lazy { RLP.encode { writeEntries(data, listData, it) } }
+  private val decodedPublicKeyBytes: Bytes by lazy {
+    val keyBytes = data["secp256k1"] ?: throw InvalidNodeRecordException("Missing secp256k1 entry")
+    val ecPoint = SECP256K1.Parameters.CURVE.curve.decodePoint(keyBytes.toArrayUnsafe())
+    Bytes.wrap(ecPoint.getEncoded(false)).slice(1)
+  }
+  private val decodedPublicKey: SECP256K1.PublicKey by lazy { SECP256K1.PublicKey.fromBytes(decodedPublicKeyBytes) }
+
+  // the node id is the hash of the uncompressed public key, which is already available without decoding the point
+  private val decodedNodeId: Bytes32 by lazy { Hash.keccak256(decodedPublicKeyBytes) }
+  private val decodedIp: InetAddress by lazy {
+    data["ip"]?.let { InetAddress.getByAddress(it.toArrayUnsafe()) } ?: InetAddress.getLoopbackAddress()
   }
+  private val decodedTcp: Int? by lazy { data["tcp"]?.toInt() }
+  private val decodedUdp: Int? by lazy { data["udp"]?.toInt() ?: decodedTcp }
+
+  @Volatile
+  private var validated = false
 
   /**
    * Validates an ENR to check that it conforms to a valid ENR scheme.
@@ -222,12 +289,16 @@ class EthereumNodeRecord(
    * Only the v4 scheme is supported at this time.
    */
   fun validate() {
-    if (Bytes.wrap("v4".toByteArray()) != data["id"]) {
+    if (validated) {
+      return
+    }
+    if (ID_V4 != data["id"]) {
       throw InvalidNodeRecordException("id attribute is not set to v4")
     }
 
     val encoded = RLP.encodeList {
-      encode(data = data, seq = seq, writer = it)
+      it.writeLong(seq)
+      it.writeRLP(encodedEntries)
     }
 
     val sig = SECP256K1.Signature.create(
@@ -250,55 +321,38 @@ class EthereumNodeRecord(
         throw InvalidNodeRecordException("Public key does not match signature")
       }
     }
+    validated = true
   }
 
   /**
    * The ENR public key entry
    * @return the ENR public key
    */
-  fun publicKey(): SECP256K1.PublicKey {
-    return SECP256K1.PublicKey.fromBytes(publicKeyBytes())
-  }
-
-  /**
-   * The ENR public key entry bytes
-   * @return the ENR public key bytes
-   */
-  private fun publicKeyBytes(): Bytes {
-    val keyBytes = data["secp256k1"] ?: throw InvalidNodeRecordException("Missing secp256k1 entry")
-    val ecPoint = SECP256K1.Parameters.CURVE.curve.decodePoint(keyBytes.toArrayUnsafe())
-    return Bytes.wrap(ecPoint.getEncoded(false)).slice(1)
-  }
+  fun publicKey(): SECP256K1.PublicKey = decodedPublicKey
 
   /**
    * Derives the public key of an ethereum node record into a unique 32 bytes hash.
    * @return the hash of the public key
    */
-  fun nodeId() = nodeId(publicKey())
+  fun nodeId(): Bytes32 = decodedNodeId
 
   /**
    * The ip associated with the ENR
    * @return The IP adress of the ENR
    */
-  fun ip(): InetAddress {
-    return data["ip"]?.let { InetAddress.getByAddress(it.toArrayUnsafe()) } ?: InetAddress.getLoopbackAddress()
-  }
+  fun ip(): InetAddress = decodedIp
 
   /**
    * The TCP port of the ENR
    * @return the TCP port associated with this ENR
    */
-  fun tcp(): Int? {
-    return data["tcp"]?.toInt()
-  }
+  fun tcp(): Int? = decodedTcp
 
   /**
    * The UDP port of the ENR
    * @return the UDP port associated with this ENR
    */
-  fun udp(): Int? {
-    return data["udp"]?.toInt() ?: tcp()
-  }
+  fun udp(): Int? = decodedUdp
 
   fun seq(): Long {
     return seq
@@ -313,6 +367,31 @@ class EthereumNodeRecord(
 
   fun toRLP(): Bytes = rlp
 
+  /**
+   * Creates a copy of this record with a new sequence number, signed again.
+   *
+   * The entries of the record are unchanged, so their encoding is reused and only the signature is computed.
+   *
+   * @param signatureKeyPair the key pair of this record
+   * @param seq the new sequence number, which must be greater than the current one
+   * @return the updated record
+   * @throws IllegalArgumentException if the key pair is not that of this record, or the sequence number is not greater
+   *         than the current one
+   */
+  @JvmOverloads
+  fun updateSeq(signatureKeyPair: SECP256K1.KeyPair, seq: Long = this.seq + 1): EthereumNodeRecord {
+    require(seq > this.seq) { "sequence number must be greater than ${this.seq}" }
+    require(signatureKeyPair.publicKey() == publicKey()) { "key pair does not match the record" }
+    return sign(signatureKeyPair, seq, data, listData, encodedEntries)
+  }
+
+  /**
+   * Creates a builder initialized with the entries of this record.
+   *
+   * @return a builder
+   */
+  fun toBuilder(): Builder = Builder(this)
+
   override fun equals(other: Any?): Boolean {
     if (this === other) return true
     if (javaClass != other?.javaClass) return false
@@ -325,6 +404,106 @@ class EthereumNodeRecord(
   override fun hashCode(): Int {
     return rlp.hashCode()
   }
+
+  /**
+   * A builder of records, created with [EthereumNodeRecord.builder] or [EthereumNodeRecord.toBuilder].
+   *
+   * A builder created from a record only signs a new record if the entries or the sequence number were changed. If
+   * the entries were changed but the sequence number was not, the sequence number of the new record is incremented.
+   */
+  class Builder internal constructor(private val original: EthereumNodeRecord?) {
+
+    private var seq: Long = original?.seq ?: Instant.now().toEpochMilli()
+    private val data: MutableMap<String, Bytes> = original?.data?.toMutableMap() ?: mutableMapOf()
+    private val listData: MutableMap<String, List<Bytes>> = original?.listData?.toMutableMap() ?: mutableMapOf()
+
+    /**
+     * Sets the sequence number of the record.
+     *
+     * @param seq the sequence number
+     * @return this builder
+     */
+    fun seq(seq: Long): Builder = apply { this.seq = seq }
+
+    /**
+     * Sets the IP address of the record.
+     *
+     * @param ip the IP address
+     * @return this builder
+     */
+    fun ip(ip: InetAddress): Builder = set("ip", Bytes.wrap(ip.address))
+
+    /**
+     * Sets the TCP port of the record.
+     *
+     * @param tcp the TCP port
+     * @return this builder
+     */
+    fun tcp(tcp: Int): Builder = set("tcp", Bytes.ofUnsignedShort(tcp))
+
+    /**
+     * Sets the UDP port of the record.
+     *
+     * @param udp the UDP port
+     * @return this builder
+     */
+    fun udp(udp: Int): Builder = set("udp", Bytes.ofUnsignedShort(udp))
+
+    /**
+     * Sets an entry of the record.
+     *
+     * @param key the key of the entry
+     * @param value the value of the entry
+     * @return this builder
+     */
+    fun set(key: String, value: Bytes): Builder = apply {
+      listData.remove(key)
+      data[key] = value
+    }
+
+    /**
+     * Sets an entry of the record to a list of values.
+     *
+     * @param key the key of the entry
+     * @param values the values of the entry
+     * @return this builder
+     */
+    fun setList(key: String, values: List<Bytes>): Builder = apply {
+      data.remove(key)
+      listData[key] = values.toList()
+    }
+
+    /**
+     * Removes an entry of the record.
+     *
+     * @param key the key of the entry
+     * @return this builder
+     */
+    fun remove(key: String): Builder = apply {
+      data.remove(key)
+      listData.remove(key)
+    }
+
+    /**
+     * Builds the record.
+     *
+     * @param signatureKeyPair the key pair to sign the record with
+     * @return the record, which is the original record if neither its entries nor its sequence number were changed
+     */
+    fun build(signatureKeyPair: SECP256K1.KeyPair): EthereumNodeRecord {
+      data["id"] = ID_V4
+      if (original == null || original.publicKey() != signatureKeyPair.publicKey()) {
+        data["secp256k1"] = Bytes.wrap(signatureKeyPair.publicKey().asEcPoint().getEncoded(true))
+      }
+      if (original != null && data == original.data && listData == original.listData) {
+        return if (seq == original.seq) original else original.updateSeq(signatureKeyPair, seq)
+      }
+      if (original != null && seq == original.seq) {
+        ++seq
+      }
+      return sign(signatureKeyPair, seq, data.toMap(), listData.toMap())
+    }
+  }
 }
 
 internal class InvalidNodeRecordException(message: String?) : RuntimeException(message)
@@ -0,0 +1,135 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.devp2p
+
+import io.vertx.core.Future
+import io.vertx.core.buffer.Buffer
+import io.vertx.core.datagram.DatagramSocket
+import io.vertx.core.net.SocketAddress
+import io.vertx.kotlin.coroutines.coAwait
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.channels.ClosedSendChannelException
+import kotlinx.coroutines.launch
+import org.slf4j.LoggerFactory
+import java.util.concurrent.atomic.AtomicLong
+
+internal const val OUTBOUND_QUEUE_CAPACITY = 4096
+internal const val OUTBOUND_MAX_BATCH = 256
+
+/**
+ * A queue of outbound packets, written to a datagram socket in batches.
+ *
+ * Packets queued while a batch is being written are collected into the next batch. Each batch is encoded and handed
+ * to the socket in a single pass, and only then are the writes awaited, so a burst of packets costs one scheduling
+ * step rather than one suspension per packet. Senders suspend only when the queue is full. Packets sent after the
+ * queue is closed are dropped.
+ *
+ * @param socket the socket to write to
+ * @param scope the scope in which the queue is drained
+ * @param capacity the number of packets that may be queued before senders suspend
+ */
+internal class OutboundQueue(
+  private val socket: DatagramSocket,
+  scope: CoroutineScope,
+  capacity: Int = OUTBOUND_QUEUE_CAPACITY,
+) {
+
+  companion object {
+    private val logger = LoggerFactory.getLogger(OutboundQueue::class.java)
+  }
+
+  private class Outbound(val address: SocketAddress, val packet: Packet)
+
+  private val queue = Channel<Outbound>(capacity)
+
+  /**
+   * Counter of packets handed to the socket
+   */
+  var sentPackets: Long by AtomicLong(0)
+
+  /**
+   * Counter of batches handed to the socket
+   */
+  var sentBatches: Long by AtomicLong(0)
+
+  /**
+   * Counter of packets that failed to send
+   */
+  var failedPackets: Long by AtomicLong(0)
+
+  /**
+   * Counter of packets dropped because the queue was closed
+   */
+  var droppedPackets: Long by AtomicLong(0)
+
+  private val drainer: Job = scope.launch { drain() }
+
+  /**
+   * Queue a packet for sending.
+   *
+   * @param address the destination of the packet
+   * @param packet the packet to send
+   */
+  suspend fun send(address: SocketAddress, packet: Packet) {
+    enqueue(Outbound(address, packet))
+  }
+
+  /**
+   * Queue several packets for sending to the same destination, so that they are written as part of the same batch
+   * wherever possible.
+   *
+   * @param address the destination of the packets
+   * @param packets the packets to send
+   */
+  suspend fun sendAll(address: SocketAddress, packets: List<Packet>) {
+    for (packet in packets) {
+      enqueue(Outbound(address, packet))
+    }
+  }
+
+  /**
+   * Stop accepting packets, and wait for the packets already queued to be written.
+   */
+  suspend fun close() {
+    queue.close()
+    drainer.join()
+  }
+
+  private suspend fun enqueue(outbound: Outbound) {
+    try {
+      queue.send(outbound)
+    } catch (e: ClosedSendChannelException) {
+      ++droppedPackets
+      logger.debug("Dropped packet to {} after the queue was closed", outbound.address)
+    }
+  }
+
+  private suspend fun drain() {
+    val batch = ArrayList<Outbound>(OUTBOUND_MAX_BATCH)
+    val writes = ArrayList<Future<Void>>(OUTBOUND_MAX_BATCH)
+    for (first in queue) {
+      batch.add(first)
+      while (batch.size < OUTBOUND_MAX_BATCH) {
+        batch.add(queue.tryReceive().getOrNull() ?: break)
+      }
+      for (outbound in batch) {
+        val address = outbound.address
+        writes.add(socket.send(Buffer.buffer(outbound.packet.encode().toArrayUnsafe()), address.port(), address.host()))
+      }
+      ++sentBatches
+      for (i in writes.indices) {
+        try {
+          writes[i].coAwait()
+          ++sentPackets
+        } catch (e: Exception) {
+          ++failedPackets
+          logger.debug("Failed to send packet to {}", batch[i].address, e)
+        }
+      }
+      batch.clear()
+      writes.clear()
+    }
+  }
+}
@@ -31,9 +31,19 @@ internal sealed class Packet(
 
     private const val HASH_INDEX = 0
     private const val SIGNATURE_INDEX = 32
-    private const val PACKET_TYPE_INDEX = 97
+    const val PACKET_TYPE_INDEX = 97
     private const val PACKET_DATA_INDEX = 98
 
+    /**
+     * Check whether a packet type is a reply to a request: a pong, neighbors or ENR response.
+     *
+     * @param typeByte the packet type, as found at [PACKET_TYPE_INDEX] of a datagram
+     */
+    fun isReply(typeByte: Byte): Boolean =
+      typeByte == PacketType.PONG.typeId ||
+        typeByte == PacketType.NEIGHBORS.typeId ||
+        typeByte == PacketType.ENRRESPONSE.typeId
+
     fun decodeFrom(datagram: ByteBuffer) =
       decodeFrom(Bytes.wrapByteBuffer(datagram))
 
@@ -315,21 +325,27 @@ internal class NeighborsPacket private constructor(
       )
     }
 
-    fun createRequired(keyPair: SECP256K1.KeyPair, now: Long, nodes: List<Node>): List<NeighborsPacket> {
-      val result = mutableListOf<NeighborsPacket>()
+    fun createRequired(keyPair: SECP256K1.KeyPair, now: Long, nodes: List<Node>): List<NeighborsPacket> =
+      partition(nodes).map { subset -> create(keyPair, now, subset) }
+
+    /**
+     * Split nodes into the subsets that each fit into a single neighbors packet.
+     */
+    fun partition(nodes: List<Node>): List<List<Node>> {
+      val result = mutableListOf<List<Node>>()
       var nodeSubset = mutableListOf<Node>()
       var size = RLP_MIN_SIZE
       for (node in nodes) {
         val nodeSize = node.rlpSize()
         size += nodeSize
         if (size > MAX_SIZE) {
-          result.add(create(keyPair, now, nodeSubset))
+          result.add(nodeSubset)
           nodeSubset = mutableListOf()
           size = RLP_MIN_SIZE + nodeSize
         }
         nodeSubset.add(node)
       }
-      result.add(create(keyPair, now, nodeSubset))
+      result.add(nodeSubset)
       return result
     }
 
@@ -84,6 +84,17 @@ interface PeerRepository {
    * @throws IllegalArgumentException if the URI is not a valid enode URI
    */
   fun getAsync(uri: String): AsyncResult<Peer>
+
+  /**
+   * Get the peers whose endpoint was verified on or after a specified time, most recently verified first.
+   *
+   * Repositories that retain peers across restarts use this to let the routing table be populated without
+   * re-verifying every peer.
+   *
+   * @param since the earliest time, in milliseconds since the epoch, of the last endpoint verification
+   * @return the peers verified on or after the specified time
+   */
+  fun verifiedPeers(since: Long): List<Peer> = emptyList()
 }
 
 /**
@@ -137,6 +148,9 @@ class EphemeralPeerRepository(
 
   override fun getAsync(uri: String): AsyncResult<Peer> = asyncResult { get(uri) }
 
+  override fun verifiedPeers(since: Long): List<Peer> =
+    peers.values.filter { (it.lastVerified ?: 0) >= since }.sortedByDescending { it.lastVerified }
+
   private inner class EphemeralPeer(
     override val nodeId: SECP256K1.PublicKey,
     knownEndpoint: Endpoint,
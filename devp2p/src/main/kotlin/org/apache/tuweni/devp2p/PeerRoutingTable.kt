@@ -4,10 +4,11 @@ package org.apache.tuweni.devp2p
 
 import com.google.common.cache.Cache
 import com.google.common.cache.CacheBuilder
-import com.google.common.util.concurrent.UncheckedExecutionException
+import org.apache.tuweni.bytes.Bytes
+import org.apache.tuweni.crypto.Hash
 import org.apache.tuweni.crypto.SECP256K1
 import org.apache.tuweni.kademlia.KademliaRoutingTable
-import java.lang.IllegalArgumentException
+import org.apache.tuweni.kademlia.iterativeLookup
 
 /**
  * A routing table for ÐΞVp2p peers.
@@ -42,8 +43,44 @@ interface PeerRoutingTable : Set<Peer> {
    * @param `true` if the node was removed
    */
   fun evict(node: Peer): Boolean
+
+  /**
+   * Choose a target for a lookup refreshing the table, while it has buckets that are not yet full.
+   *
+   * @return a target node-id, or `null` if there is no bucket the table should fill
+   */
+  fun refreshTarget(): SECP256K1.PublicKey? = null
+
+  /**
+   * Return the id by which a node is ranked in distance, which is the keccak256 hash of its public key.
+   *
+   * @param nodeId the public key of the node, or a lookup target
+   * @return the id used to compute distances
+   */
+  fun distanceId(nodeId: SECP256K1.PublicKey): ByteArray = Hash.keccak256(nodeId.bytes()).toArrayUnsafe()
 }
 
+/**
+ * Perform an iterative lookup for the peers nearest to a target, ranked by their [PeerRoutingTable.distanceId].
+ *
+ * @param target the node-id to find peers nearest to
+ * @param initial the peers to start the lookup from
+ * @param query a function querying a peer for the peers it knows nearest to the target
+ * @return up to [DEVP2P_BUCKET_SIZE] peers that responded to the lookup, in order from closest to furthest
+ */
+internal suspend fun PeerRoutingTable.lookupNearest(
+  target: SECP256K1.PublicKey,
+  initial: Collection<Peer>,
+  query: suspend (Peer) -> Collection<Peer>?,
+): List<Peer> = iterativeLookup(
+  distanceId(target),
+  initial,
+  DEVP2P_BUCKET_SIZE,
+  LOOKUP_ALPHA,
+  nodeId = { peer -> distanceId(peer.nodeId) },
+  query,
+)
+
 internal const val DEVP2P_BUCKET_SIZE = 16
 
 /**
@@ -59,10 +96,12 @@ internal class DevP2PPeerRoutingTable(selfId: SECP256K1.PublicKey) : PeerRouting
   private val idHashCache: Cache<SECP256K1.PublicKey, ByteArray> =
     CacheBuilder.newBuilder().maximumSize((1L + 256) * 16).weakKeys().build()
 
+  private val selfHash = hashForId(selfId)
+
   private val table = KademliaRoutingTable<Peer>(
-    selfId = hashForId(selfId)!!,
+    selfId = selfHash,
     k = DEVP2P_BUCKET_SIZE,
-    nodeId = { p -> hashForId(p.nodeId)!! },
+    nodeId = { p -> hashForId(p.nodeId) },
   )
 
   override val size: Int
@@ -77,20 +116,26 @@ internal class DevP2PPeerRoutingTable(selfId: SECP256K1.PublicKey) : PeerRouting
   override fun iterator(): Iterator<Peer> = table.iterator()
 
   override fun nearest(targetId: SECP256K1.PublicKey, limit: Int): List<Peer> =
-    hashForId(targetId)?.let { table.nearest(it, limit) } ?: listOf()
+    table.nearest(hashForId(targetId), limit)
 
   override fun add(node: Peer): Peer? = table.add(node)
 
   override fun evict(node: Peer): Boolean = table.evict(node)
 
-  private fun hashForId(id: SECP256K1.PublicKey): ByteArray? {
-    try {
-      return idHashCache.get(id) { EthereumNodeRecord.nodeId(id).toArrayUnsafe() }
-    } catch (e: UncheckedExecutionException) {
-      if (e.cause is IllegalArgumentException) {
-        return null
-      }
-      throw e
-    }
-  }
+  /**
+   * Choose a target for a lookup refreshing the table.
+   *
+   * Node-ids in the table are hashes of public keys, so an id made by [KademliaRoutingTable.idAtDistance] has no key
+   * to send as a target. A FINDNODE target is only compared by its hash, so it need not be a valid key, and 64 random
+   * bytes are used instead of generating a key pair. The bucket chosen by [KademliaRoutingTable.sparseDistance] only
+   * decides whether a refresh is needed at all.
+   */
+  override fun refreshTarget(): SECP256K1.PublicKey? =
+    table.sparseDistance()?.let { SECP256K1.PublicKey.fromBytes(Bytes.random(64)) }
+
+  override fun distanceId(nodeId: SECP256K1.PublicKey): ByteArray = hashForId(nodeId)
+
+  // the hash of the encoded key, which is the node-id for a valid key, and also defined for random targets
+  private fun hashForId(id: SECP256K1.PublicKey): ByteArray =
+    idHashCache.get(id) { Hash.keccak256(id.bytes()).toArrayUnsafe() }
 }
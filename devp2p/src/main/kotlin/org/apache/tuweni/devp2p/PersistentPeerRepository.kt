@@ -0,0 +1,352 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.devp2p
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+import org.apache.tuweni.bytes.Bytes
+import org.apache.tuweni.concurrent.AsyncResult
+import org.apache.tuweni.concurrent.coroutines.asyncResult
+import org.apache.tuweni.crypto.SECP256K1
+import org.apache.tuweni.rlp.RLP
+import org.apache.tuweni.rlp.RLPException
+import org.slf4j.LoggerFactory
+import java.io.Closeable
+import java.io.IOException
+import java.net.URI
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import kotlin.coroutines.CoroutineContext
+
+internal const val PEER_LOG_FLUSH_INTERVAL_MS = 1000.toLong() // 1 second
+internal const val PEER_LOG_COMPACTION_FACTOR = 4
+internal const val PEER_LOG_MIN_COMPACTION_RECORDS = 1024
+
+/**
+ * A peer repository persisted to an append-only log file.
+ *
+ * Each change to the endpoint, verification times or ENR of a peer is recorded as a length-prefixed RLP record keyed
+ * by node id. Changes are collected and appended to the log in a single write every [flushIntervalMs] milliseconds.
+ *
+ * On creation, the log is memory-mapped and scanned once, keeping only the most recent record for each node id. This
+ * makes the peers verified before a restart available immediately, see [PeerRepository.verifiedPeers]. When
+ * superseded records outnumber live ones by [PEER_LOG_COMPACTION_FACTOR], the log is rewritten with live records only.
+ *
+ * @param path the path of the log file, which will be created if missing
+ * @param flushIntervalMs the interval between writes of pending changes to the log, in milliseconds
+ * @param coroutineContext the context in which writes to the log are performed
+ * @throws IOException if the log file cannot be read or created
+ */
+class PersistentPeerRepository @JvmOverloads constructor(
+  private val path: Path,
+  private val flushIntervalMs: Long = PEER_LOG_FLUSH_INTERVAL_MS,
+  override val coroutineContext: CoroutineContext = Dispatchers.IO,
+) : PeerRepository, CoroutineScope, Closeable {
+
+  companion object {
+    private val logger = LoggerFactory.getLogger(PersistentPeerRepository::class.java)
+  }
+
+  private val peers = ConcurrentHashMap<SECP256K1.PublicKey, PersistentPeer>()
+  private val pending: MutableSet<PersistentPeer> = ConcurrentHashMap.newKeySet()
+  private val listeners = CopyOnWriteArrayList<(Peer) -> Unit>()
+  private var channel: FileChannel
+  private var records: Int = 0
+  private var closed = false
+  private val flushLoop: Job
+
+  init {
+    val absolutePath = path.toAbsolutePath()
+    absolutePath.parent?.let { Files.createDirectories(it) }
+    val validLength = load()
+    channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)
+    if (channel.size() > validLength) {
+      logger.warn("Truncating {} incomplete bytes from the end of peer log {}", channel.size() - validLength, path)
+      channel.truncate(validLength)
+    }
+    channel.position(validLength)
+    flushLoop = launch {
+      while (isActive) {
+        delay(flushIntervalMs)
+        try {
+          flush()
+        } catch (e: IOException) {
+          logger.error("Failed to write peer log $path", e)
+        }
+      }
+    }
+  }
+
+  /**
+   * The number of peers known to this repository.
+   */
+  val size: Int
+    get() = peers.size
+
+  override fun addListener(listener: (Peer) -> Unit) {
+    listeners.add(listener)
+  }
+
+  /**
+   * Get a peer from node ID and endpoint information
+   * @param nodeId the peer public key
+   * @param endpoint the peer endpoint
+   * @return the peer
+   */
+  fun get(nodeId: SECP256K1.PublicKey, endpoint: Endpoint): Peer {
+    peers[nodeId]?.let { return it }
+    var created: PersistentPeer? = null
+    val peer = peers.computeIfAbsent(nodeId) {
+      PersistentPeer(nodeId, endpoint).also { created = it }
+    }
+    created?.let { newPeer ->
+      pending.add(newPeer)
+      for (listener in listeners) {
+        listener(newPeer)
+      }
+    }
+    return peer
+  }
+
+  override suspend fun get(host: String, port: Int, nodeId: SECP256K1.PublicKey): Peer {
+    return get(nodeId, Endpoint(host, port))
+  }
+
+  override suspend fun get(uri: URI): Peer {
+    val (nodeId, endpoint) = parseEnodeUri(uri)
+    return get(nodeId, endpoint)
+  }
+
+  override fun getAsync(uri: URI): AsyncResult<Peer> = asyncResult { get(uri) }
+
+  override fun getAsync(uri: String): AsyncResult<Peer> = asyncResult { get(uri) }
+
+  override fun verifiedPeers(since: Long): List<Peer> =
+    peers.values.filter { (it.lastVerified ?: 0) >= since }.sortedByDescending { it.lastVerified }
+
+  /**
+   * Append all pending peer changes to the log, compacting it if required.
+   *
+   * @throws IOException if the log cannot be written
+   */
+  @Synchronized
+  fun flush() {
+    if (closed || pending.isEmpty()) {
+      return
+    }
+    val batch = ArrayList<Bytes>(pending.size)
+    val iterator = pending.iterator()
+    while (iterator.hasNext()) {
+      val peer = iterator.next()
+      // unmark the peer before encoding it, so that a concurrent update marks it again and is written later
+      iterator.remove()
+      batch.add(peer.encode())
+    }
+    writeFully(channel, frame(batch))
+    channel.force(false)
+    records += batch.size
+    if (records > PEER_LOG_MIN_COMPACTION_RECORDS && records > PEER_LOG_COMPACTION_FACTOR * peers.size) {
+      compact()
+    }
+  }
+
+  /**
+   * Write pending changes and close the log.
+   */
+  @Synchronized
+  override fun close() {
+    if (closed) {
+      return
+    }
+    flushLoop.cancel()
+    flush()
+    closed = true
+    channel.close()
+  }
+
+  private fun load(): Long {
+    if (!Files.exists(path)) {
+      return 0
+    }
+    val start = System.nanoTime()
+    var validLength = 0L
+    FileChannel.open(path, StandardOpenOption.READ).use { ch ->
+      val buffer = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size())
+      while (buffer.remaining() >= 4) {
+        val length = buffer.getInt()
+        if (length <= 0 || length > buffer.remaining()) {
+          break
+        }
+        val offset = buffer.position()
+        try {
+          val peer = decode(Bytes.wrapByteBuffer(buffer, offset, length))
+          peers[peer.nodeId] = peer
+        } catch (e: RLPException) {
+          logger.warn("Stopped reading peer log {} at corrupt record (offset {})", path, offset - 4)
+          break
+        } catch (e: IllegalArgumentException) {
+          logger.warn("Stopped reading peer log {} at invalid record (offset {})", path, offset - 4)
+          break
+        }
+        buffer.position(offset + length)
+        validLength = buffer.position().toLong()
+        records++
+      }
+    }
+    logger.info(
+      "Loaded {} peers from {} records in {} ms",
+      peers.size,
+      records,
+      (System.nanoTime() - start) / 1_000_000,
+    )
+    return validLength
+  }
+
+  private fun compact() {
+    val tempFile = path.resolveSibling(path.fileName.toString() + ".compact")
+    val snapshot = peers.values.map { it.encode() }
+    FileChannel.open(
+      tempFile,
+      StandardOpenOption.CREATE,
+      StandardOpenOption.WRITE,
+      StandardOpenOption.TRUNCATE_EXISTING,
+    ).use { ch ->
+      writeFully(ch, frame(snapshot))
+      ch.force(true)
+    }
+    Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+    // the open channel still refers to the replaced file
+    channel.close()
+    channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND)
+    logger.debug("Compacted peer log {} from {} to {} records", path, records, snapshot.size)
+    records = snapshot.size
+  }
+
+  private fun writeFully(target: FileChannel, buffer: ByteBuffer) {
+    while (buffer.hasRemaining()) {
+      target.write(buffer)
+    }
+  }
+
+  private fun frame(encoded: List<Bytes>): ByteBuffer {
+    val buffer = ByteBuffer.allocate(encoded.sumOf { 4 + it.size() })
+    for (record in encoded) {
+      buffer.putInt(record.size())
+      record.appendTo(buffer)
+    }
+    buffer.flip()
+    return buffer
+  }
+
+  private fun decode(record: Bytes): PersistentPeer = RLP.decodeList(record) { reader ->
+    val nodeId = SECP256K1.PublicKey.fromBytes(reader.readValue().copy())
+    val address = reader.readString()
+    val udpPort = reader.readInt()
+    val tcpPort = reader.readInt()
+    val lastVerified = reader.readLong()
+    val lastSeen = reader.readLong()
+    val enrRlp = reader.readValue()
+    PersistentPeer(nodeId, Endpoint(address, udpPort, if (tcpPort == 0) null else tcpPort)).apply {
+      this.lastVerified = if (lastVerified == 0L) null else lastVerified
+      this.lastSeen = if (lastSeen == 0L) null else lastSeen
+      this.enr = if (enrRlp.isEmpty) null else EthereumNodeRecord.fromRLP(enrRlp.copy())
+    }
+  }
+
+  private inner class PersistentPeer(
+    override val nodeId: SECP256K1.PublicKey,
+    knownEndpoint: Endpoint,
+  ) : Peer {
+    @Volatile
+    override var endpoint: Endpoint = knownEndpoint
+
+    @Volatile
+    override var enr: EthereumNodeRecord? = null
+
+    @Volatile
+    override var lastVerified: Long? = null
+
+    @Volatile
+    override var lastSeen: Long? = null
+
+    @Synchronized
+    override fun getEndpoint(ifVerifiedOnOrAfter: Long): Endpoint? {
+      if ((lastVerified ?: 0) >= ifVerifiedOnOrAfter) {
+        return this.endpoint
+      }
+      return null
+    }
+
+    @Synchronized
+    override fun updateEndpoint(endpoint: Endpoint, time: Long, ifVerifiedBefore: Long?): Endpoint {
+      val currentEndpoint = this.endpoint
+      if (currentEndpoint == endpoint) {
+        this.seenAt(time)
+        return currentEndpoint
+      }
+
+      if (ifVerifiedBefore == null || (lastVerified ?: 0) < ifVerifiedBefore) {
+        if (currentEndpoint.address != endpoint.address || currentEndpoint.udpPort != endpoint.udpPort) {
+          lastVerified = null
+        }
+        this.endpoint = endpoint
+        this.seenAt(time)
+        pending.add(this)
+        return endpoint
+      }
+
+      return currentEndpoint
+    }
+
+    @Synchronized
+    override fun verifyEndpoint(endpoint: Endpoint, time: Long): Boolean {
+      if (endpoint != this.endpoint) {
+        return false
+      }
+      seenAt(time)
+      if ((lastVerified ?: 0) < time) {
+        lastVerified = time
+        pending.add(this)
+      }
+      return true
+    }
+
+    @Synchronized
+    override fun seenAt(time: Long) {
+      if ((lastSeen ?: 0) < time) {
+        lastSeen = time
+        pending.add(this)
+      }
+    }
+
+    @Synchronized
+    override fun updateENR(record: EthereumNodeRecord, time: Long) {
+      if (enr == null || enr!!.seq() < record.seq()) {
+        enr = record
+        pending.add(this)
+        updateEndpoint(Endpoint(record.ip().hostAddress, record.udp()!!, record.tcp()), time)
+      }
+    }
+
+    @Synchronized
+    fun encode(): Bytes = RLP.encodeList { writer ->
+      writer.writeValue(nodeId.bytes())
+      writer.writeString(endpoint.address)
+      writer.writeInt(endpoint.udpPort)
+      writer.writeInt(endpoint.tcpPort ?: 0)
+      writer.writeLong(lastVerified ?: 0)
+      writer.writeLong(lastSeen ?: 0)
+      writer.writeValue(enr?.toRLP() ?: Bytes.EMPTY)
+    }
+  }
+}
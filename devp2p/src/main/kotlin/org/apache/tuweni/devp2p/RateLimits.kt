@@ -0,0 +1,144 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.devp2p
+
+import java.util.concurrent.Semaphore
+
+/**
+ * Limits on the work a discovery service performs for incoming packets.
+ *
+ * Unsolicited packets (pings, node queries, handshakes) are limited per source IP address and per node id using
+ * token buckets, and the number of such packets being verified or handshaked concurrently is capped. Replies to
+ * requests made by the local node have their own, more generous, per-source budget and are not subject to the
+ * concurrency cap, so they continue to be processed while unsolicited traffic is being shed.
+ *
+ * @param packetsPerSecond the sustained rate of unsolicited packets accepted from a single source
+ * @param burst the number of unsolicited packets accepted from a single source in a burst
+ * @param replyPacketsPerSecond the sustained rate of reply packets accepted from a single source
+ * @param replyBurst the number of reply packets accepted from a single source in a burst
+ * @param maxInFlight the maximum number of unsolicited packets processed concurrently
+ * @param maxSources the maximum number of sources tracked by each rate limiting table
+ */
+data class RateLimits @JvmOverloads constructor(
+  val packetsPerSecond: Double = 20.0,
+  val burst: Int = 40,
+  val replyPacketsPerSecond: Double = 200.0,
+  val replyBurst: Int = 400,
+  val maxInFlight: Int = 256,
+  val maxSources: Int = 65536,
+) {
+  init {
+    require(packetsPerSecond > 0 && replyPacketsPerSecond > 0) { "packet rates must be positive" }
+    require(burst >= 1 && replyBurst >= 1) { "bursts must be at least 1" }
+    require(maxInFlight >= 1) { "maxInFlight must be at least 1" }
+    require(maxSources >= 1) { "maxSources must be at least 1" }
+  }
+
+  companion object {
+    /**
+     * Limits that accept all traffic.
+     */
+    @JvmField
+    val UNLIMITED = RateLimits(Double.MAX_VALUE, Int.MAX_VALUE, Double.MAX_VALUE, Int.MAX_VALUE, Int.MAX_VALUE, 1)
+  }
+}
+
+/**
+ * Admission control for incoming packets, applying [RateLimits].
+ */
+internal class RateLimiter(limits: RateLimits) {
+
+  private val unlimited = limits == RateLimits.UNLIMITED
+  private val addresses = TokenBucketTable<String>(limits.packetsPerSecond, limits.burst, limits.maxSources)
+  private val nodeIds = TokenBucketTable<Any>(limits.packetsPerSecond, limits.burst, limits.maxSources)
+  private val replies = TokenBucketTable<String>(limits.replyPacketsPerSecond, limits.replyBurst, limits.maxSources)
+  private val inFlight = Semaphore(limits.maxInFlight)
+
+  /**
+   * Check whether an unsolicited packet from an address may be processed.
+   */
+  fun allowAddress(address: String, now: Long): Boolean = unlimited || addresses.tryAcquire(address, now)
+
+  /**
+   * Check whether an unsolicited packet from a node id may be processed.
+   */
+  fun allowNodeId(nodeId: Any, now: Long): Boolean = unlimited || nodeIds.tryAcquire(nodeId, now)
+
+  /**
+   * Check whether a reply packet from an address may be processed.
+   */
+  fun allowReply(address: String, now: Long): Boolean = unlimited || replies.tryAcquire(address, now)
+
+  /**
+   * Reserve a slot for processing an unsolicited packet. If this returns `true`, [release] must be called when
+   * processing completes.
+   */
+  fun tryAcquire(): Boolean = unlimited || inFlight.tryAcquire()
+
+  /**
+   * Release a slot reserved by [tryAcquire].
+   */
+  fun release() {
+    if (!unlimited) {
+      inFlight.release()
+    }
+  }
+}
+
+/**
+ * A bounded table of token buckets, one per key.
+ *
+ * The table is split into independently locked stripes, each evicting its least recently used bucket when full. An
+ * evicted or new key starts with a full bucket, which is the state an idle bucket would have reached anyway.
+ */
+internal class TokenBucketTable<K : Any>(
+  private val ratePerSecond: Double,
+  burst: Int,
+  maxEntries: Int,
+  stripeCount: Int = 16,
+) {
+
+  private class Bucket(var tokens: Double, var updated: Long)
+
+  private val burst = burst.toDouble()
+  private val stripes = Array(stripeCount) {
+    val stripeSize = ((maxEntries + stripeCount - 1) / stripeCount).coerceAtLeast(1)
+    object : LinkedHashMap<K, Bucket>(16, 0.75f, true) {
+      override fun removeEldestEntry(eldest: MutableMap.MutableEntry<K, Bucket>?): Boolean = size > stripeSize
+    }
+  }
+
+  /**
+   * Take a token for a key.
+   *
+   * @param key the key
+   * @param now the current time, in milliseconds since the epoch
+   * @return `true` if a token was available
+   */
+  fun tryAcquire(key: K, now: Long): Boolean {
+    val hash = key.hashCode()
+    val stripe = stripes[((hash xor (hash ushr 16)) and Int.MAX_VALUE) % stripes.size]
+    synchronized(stripe) {
+      val bucket = stripe[key]
+      if (bucket == null) {
+        stripe[key] = Bucket(burst - 1, now)
+        return true
+      }
+      if (now > bucket.updated) {
+        bucket.tokens = (bucket.tokens + (now - bucket.updated) * ratePerSecond / 1000).coerceAtMost(burst)
+        bucket.updated = now
+      }
+      if (bucket.tokens < 1) {
+        return false
+      }
+      bucket.tokens -= 1
+      return true
+    }
+  }
+
+  /**
+   * The number of keys currently tracked.
+   */
+  val size: Int
+    get() = stripes.sumOf { synchronized(it) { it.size } }
+}
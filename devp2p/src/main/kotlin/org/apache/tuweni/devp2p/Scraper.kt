@@ -66,11 +66,12 @@ class Scraper(
   val repository: PeerRepository,
   val listeners: List<(Peer) -> Unit>? = null,
   private val waitSecondsBetweenScrapes: Long = 30,
+  private val maxTrackedPeers: Long = 100_000L,
 ) : CoroutineScope {
 
   private var service: DiscoveryService? = null
   private val started = AtomicBoolean(false)
-  private val nodes = ExpiringSet<Peer>(24 * 60 * 60 * 1000L)
+  private val nodes = ExpiringSet<Peer>(24 * 60 * 60 * 1000L, maxTrackedPeers)
 
   fun start() = async {
     repository.addListener {
@@ -10,33 +10,68 @@ import io.vertx.kotlin.coroutines.coAwait
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.Job
-import kotlinx.coroutines.async
-import kotlinx.coroutines.awaitAll
 import kotlinx.coroutines.launch
+import kotlinx.coroutines.withTimeoutOrNull
 import org.apache.tuweni.bytes.Bytes
+import org.apache.tuweni.bytes.Bytes32
 import org.apache.tuweni.concurrent.AsyncCompletion
 import org.apache.tuweni.concurrent.AsyncResult
 import org.apache.tuweni.concurrent.ExpiringMap
 import org.apache.tuweni.concurrent.coroutines.asyncCompletion
 import org.apache.tuweni.concurrent.coroutines.asyncResult
 import org.apache.tuweni.concurrent.coroutines.await
+import org.apache.tuweni.concurrent.coroutines.mapConcurrent
 import org.apache.tuweni.crypto.Hash
 import org.apache.tuweni.crypto.SECP256K1
 import org.apache.tuweni.devp2p.EthereumNodeRecord
 import org.apache.tuweni.devp2p.Packet
+import org.apache.tuweni.devp2p.RateLimiter
+import org.apache.tuweni.devp2p.RateLimits
+import org.apache.tuweni.devp2p.v5.encrypt.EphemeralKeyPool
 import org.apache.tuweni.devp2p.v5.encrypt.SessionKey
 import org.apache.tuweni.devp2p.v5.topic.TopicTable
+import org.apache.tuweni.kademlia.iterativeLookup
 import org.apache.tuweni.io.Base64URLSafe
 import org.slf4j.LoggerFactory
 import java.net.InetAddress
 import java.net.InetSocketAddress
-import java.nio.ByteBuffer
 import java.time.Instant
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicBoolean
 import kotlin.coroutines.CoroutineContext
 
+/**
+ * The default maximum number of peers queried concurrently for nodes.
+ */
+const val DEFAULT_MAX_CONCURRENT_REQUESTS = 16
+
+/**
+ * The time allowed for a peer to answer a FINDNODE request during a lookup, including any handshake needed to
+ * establish a session with it.
+ */
+internal const val LOOKUP_RESPONSE_TIMEOUT_MS = 2000L
+
+/**
+ * The default time for which the keys of a session are kept, so that the session can be resumed without a handshake.
+ */
+const val DEFAULT_SESSION_LIFETIME_MS = 60 * 60 * 1000L
+
+/**
+ * The default maximum number of sessions kept for resumption.
+ */
+const val DEFAULT_MAX_CACHED_SESSIONS = 1024
+
+/**
+ * The number of ephemeral key pairs generated ahead of handshakes.
+ */
+private const val EPHEMERAL_KEY_POOL_SIZE = 16
+
+/**
+ * The number of consecutive missed pings after which a session is closed.
+ */
+private const val MAX_MISSED_PINGS = 5
+
 /**
  * A creator of discovery service objects.
  */
@@ -51,6 +86,10 @@ object DiscoveryService {
    * @param bootstrapENRList the list of other nodes to connect to on bootstrap.
    * @param enrStorage the permanent storage of ENRs. Defaults to an in-memory store.
    * @param coroutineContext the coroutine context associated with the store.
+   * @param rateLimits the limits applied to incoming packets
+   * @param maxConcurrentRequests the maximum number of peers queried concurrently by [DiscoveryV5Service.requestNodes]
+   * @param sessionLifetimeMs the time for which the keys of a session are kept for resumption, in milliseconds
+   * @param maxCachedSessions the maximum number of sessions kept for resumption
    */
   @JvmStatic
   @JvmOverloads
@@ -63,6 +102,10 @@ object DiscoveryService {
     bootstrapENRList: List<String> = emptyList(),
     enrStorage: ENRStorage = DefaultENRStorage(),
     coroutineContext: CoroutineContext = Dispatchers.Default,
+    rateLimits: RateLimits = RateLimits(),
+    maxConcurrentRequests: Int = DEFAULT_MAX_CONCURRENT_REQUESTS,
+    sessionLifetimeMs: Long = DEFAULT_SESSION_LIFETIME_MS,
+    maxCachedSessions: Int = DEFAULT_MAX_CACHED_SESSIONS,
   ): DiscoveryV5Service {
     val selfENR = EthereumNodeRecord.create(
       keyPair,
@@ -82,6 +125,10 @@ object DiscoveryService {
       keyPair,
       selfENR,
       coroutineContext = coroutineContext,
+      rateLimits = rateLimits,
+      maxConcurrentRequests = maxConcurrentRequests,
+      sessionLifetimeMs = sessionLifetimeMs,
+      maxCachedSessions = maxCachedSessions,
     )
   }
 }
@@ -139,7 +186,7 @@ interface DiscoveryV5Service : CoroutineScope {
   ): AsyncCompletion
 
   /**
-   * Requests nodes from all connected peers.
+   * Requests nodes from all connected peers. A limited number of peers are queried at a time.
    *
    * @param distance the distance between the node and the peer. Helps pick a Kademlia bucket.
    * @param maxSecondsToWait number of seconds to wait for a response.
@@ -148,6 +195,22 @@ interface DiscoveryV5Service : CoroutineScope {
     distance: Int = 1,
     maxSecondsToWait: Long = 10,
   ): AsyncResult<Map<EthereumNodeRecord, List<EthereumNodeRecord>>>
+
+  /**
+   * Looks up the nodes nearest to a node id, iteratively querying nodes closer to it.
+   *
+   * @param target the node id to search for
+   * @return up to 16 nodes that responded to the lookup, ordered by their distance to the target node id
+   */
+  suspend fun lookup(target: Bytes): List<EthereumNodeRecord>
+
+  /**
+   * Looks up the nodes nearest to a node id, providing a handle to the result.
+   *
+   * @param target the node id to search for
+   * @return a handle to the nodes that responded to the lookup, ordered by their distance to the target node id
+   */
+  fun lookupAsync(target: Bytes) = asyncResult { lookup(target) }
 }
 
 internal class DefaultDiscoveryV5Service(
@@ -160,6 +223,10 @@ internal class DefaultDiscoveryV5Service(
   private val routingTable: RoutingTable = RoutingTable(selfEnr),
   private val topicTable: TopicTable = TopicTable(),
   override val coroutineContext: CoroutineContext = Dispatchers.Default,
+  rateLimits: RateLimits = RateLimits(),
+  private val maxConcurrentRequests: Int = DEFAULT_MAX_CONCURRENT_REQUESTS,
+  private val sessionLifetimeMs: Long = DEFAULT_SESSION_LIFETIME_MS,
+  maxCachedSessions: Int = DEFAULT_MAX_CACHED_SESSIONS,
 ) : DiscoveryV5Service {
 
   companion object {
@@ -169,13 +236,23 @@ internal class DefaultDiscoveryV5Service(
   private val server = vertx.createDatagramSocket()
   private val handshakes = ExpiringMap<SocketAddress, HandshakeSession>()
   private val sessions = ConcurrentHashMap<SocketAddress, Session>()
+
+  // keys of established sessions, so that a closed session can be resumed without a new handshake
+  private val resumableSessions = ExpiringMap<ResumableSessionKey, ResumableSession>(
+    Long.MAX_VALUE,
+    maxCachedSessions.toLong(),
+  )
+  private val ephemeralKeys = EphemeralKeyPool(EPHEMERAL_KEY_POOL_SIZE, this)
   private val started = AtomicBoolean(false)
   private val nodeId = EthereumNodeRecord.nodeId(keyPair.publicKey())
   private val whoAreYouHeader = Hash.sha2_256(Bytes.concatenate(nodeId, Bytes.wrap("WHOAREYOU".toByteArray())))
+  private val nodeIdHash = Hash.sha2_256(nodeId)
+  private val rateLimiter = RateLimiter(rateLimits)
 
   private lateinit var receiveJob: Job
 
   override suspend fun start(): AsyncCompletion {
+    ephemeralKeys.refill()
     server.handler(this::receiveDatagram).listen(bindAddress.port, bindAddress.hostString).coAwait()
     return bootstrap()
   }
@@ -190,7 +267,7 @@ internal class DefaultDiscoveryV5Service(
   override fun enr(): EthereumNodeRecord = selfEnr
 
   override suspend fun addPeer(enr: EthereumNodeRecord, address: SocketAddress): AsyncCompletion {
-    val session = sessions[address]
+    val session = sessions[address] ?: resumeSession(enr.nodeId(), address)
     if (session == null) {
       logger.trace("Creating new session for peer {}", enr)
       val handshakeSession = handshakes.computeIfAbsent(address) { addr -> createHandshake(addr, enr.publicKey(), enr) }
@@ -224,27 +301,90 @@ internal class DefaultDiscoveryV5Service(
   )
 
   private fun receiveDatagram(packet: DatagramPacket) {
+    val data = packet.data()
+    if (data.length() < whoAreYouHeader.size() || data.length() > Packet.MAX_SIZE) {
+      logger.trace("Dropping datagram of {} bytes from {}", data.length(), packet.sender())
+      return
+    }
+    // Vert.x delivers datagrams in unpooled heap buffers owned by the packet, so the message can be a view over the
+    // buffer rather than a copy; nothing needs releasing once the message has been processed.
+    val message = Bytes.wrapBuffer(data)
+    val isWhoAreYou = startsWith(message, whoAreYouHeader)
     var session = sessions[packet.sender()]
-    val size = Packet.MAX_SIZE.coerceAtMost(packet.data().length())
-    val buffer = ByteBuffer.allocate(size)
-    buffer.put(packet.data().bytes)
-    buffer.flip()
-    val message = Bytes.wrapByteBuffer(buffer)
-    if (message.slice(0, 32) == whoAreYouHeader && session != null) {
+    if (isWhoAreYou && session != null) {
+      // the peer no longer has the keys of the session, so it cannot be resumed either
       sessions.remove(packet.sender())
+      resumableSessions.remove(ResumableSessionKey(session.enr.nodeId(), packet.sender()))
       session = null
     }
+    val now = System.currentTimeMillis()
     if (session == null) {
-      val handshakeSession =
-        handshakes.computeIfAbsent(packet.sender()) { createHandshake(it) }
+      // a WHOAREYOU answers a handshake we started; anything else may cost us an ECDH agreement, or a decryption to
+      // resume a previous session, and is limited before any of that work is done
+      val peerNodeId = nodeIdHash.xor(message.slice(0, 32))
+      val solicited = isWhoAreYou && handshakes[packet.sender()] != null
+      if (solicited) {
+        if (!rateLimiter.allowReply(packet.sender().host(), now)) {
+          logger.trace("Rate limiting handshake replies from {}", packet.sender())
+          return
+        }
+      } else if (
+        !rateLimiter.allowAddress(packet.sender().host(), now) ||
+        !rateLimiter.allowNodeId(peerNodeId, now) ||
+        !rateLimiter.tryAcquire()
+      ) {
+        logger.trace("Rate limiting handshakes from {}", packet.sender())
+        return
+      }
       launch {
-        handshakeSession.processMessage(message)
+        try {
+          val resumed = if (isWhoAreYou) null else resumeSession(peerNodeId, packet.sender(), message)
+          if (resumed != null) {
+            resumed.first.processMessage(resumed.second)
+          } else {
+            handshakes.computeIfAbsent(packet.sender()) { createHandshake(it) }.processMessage(message)
+          }
+        } finally {
+          if (!solicited) {
+            rateLimiter.release()
+          }
+        }
       }
     } else {
+      // any peer with a session can send messages, so only one we have sent a request to is given the reply budget
+      val awaited = session.isAwaitingReply(now)
+      if (awaited) {
+        if (!rateLimiter.allowReply(packet.sender().host(), now)) {
+          logger.trace("Rate limiting session replies from {}", packet.sender())
+          return
+        }
+      } else if (
+        !rateLimiter.allowAddress(packet.sender().host(), now) ||
+        !rateLimiter.allowNodeId(session.enr.nodeId(), now) ||
+        !rateLimiter.tryAcquire()
+      ) {
+        logger.trace("Rate limiting session messages from {}", packet.sender())
+        return
+      }
       launch {
-        session.processMessage(message)
+        try {
+          session.processMessage(message)
+        } finally {
+          if (!awaited) {
+            rateLimiter.release()
+          }
+        }
+      }
+    }
+  }
+
+  private fun startsWith(message: Bytes, prefix: Bytes): Boolean {
+    for (i in 0 until prefix.size()) {
+      if (message.get(i) != prefix.get(i)) {
+        return false
       }
     }
+    return true
   }
 
   private fun createHandshake(
@@ -253,7 +393,15 @@ internal class DefaultDiscoveryV5Service(
     receivedEnr: EthereumNodeRecord? = null,
   ): HandshakeSession {
     logger.trace("Creating new handshake with {}", address)
-    val newSession = HandshakeSession(keyPair, address, publicKey, this::send, this::enr, coroutineContext)
+    val newSession = HandshakeSession(
+      keyPair,
+      address,
+      publicKey,
+      this::send,
+      this::enr,
+      coroutineContext,
+      ephemeralKeys::take,
+    )
     newSession.awaitConnection().thenAccept {
       val peerEnr = receivedEnr ?: newSession.receivedEnr!!
       logger.trace("Handshake connection done {}", peerEnr)
@@ -271,11 +419,28 @@ internal class DefaultDiscoveryV5Service(
     sessionKey: SessionKey,
     receivedEnr: EthereumNodeRecord,
   ): Session {
-    val session = Session(
+    logger.trace("Adding ENR discovered by connecting to peer")
+    enrStorage.set(receivedEnr)
+    resumableSessions.put(
+      ResumableSessionKey(receivedEnr.nodeId(), address),
+      ResumableSession(receivedEnr, sessionKey),
+      System.currentTimeMillis() + sessionLifetimeMs,
+    )
+    return openSession(receivedEnr, newSession.tag(), sessionKey, address)
+  }
+
+  private fun openSession(
+    receivedEnr: EthereumNodeRecord,
+    tag: Bytes32,
+    sessionKey: SessionKey,
+    address: SocketAddress,
+  ): Session {
+    lateinit var session: Session
+    session = Session(
       receivedEnr,
       keyPair,
-      newSession.nodeId,
-      newSession.tag(),
+      nodeId,
+      tag,
       sessionKey,
       address,
       this::send,
@@ -283,16 +448,56 @@ internal class DefaultDiscoveryV5Service(
       routingTable,
       topicTable,
       { missedPings ->
-        missedPings > 5
+        val closed = missedPings > MAX_MISSED_PINGS
+        if (closed) {
+          // the keys are kept, in case the peer comes back before they expire
+          sessions.remove(address, session)
+        }
+        closed
       },
       coroutineContext,
     )
-    logger.trace("Adding ENR discovered by connecting to peer")
-    enrStorage.set(receivedEnr)
     sessions[address] = session
     return session
   }
 
+  /**
+   * Reopens a session from the keys of a previous session with the same peer, avoiding a new handshake.
+   *
+   * @param peerNodeId the node id of the peer
+   * @param address the address of the peer
+   * @return the reopened session, or `null` if there are no keys for the peer
+   */
+  private fun resumeSession(peerNodeId: Bytes, address: SocketAddress): Session? {
+    val resumable = resumableSessions[ResumableSessionKey(peerNodeId, address)] ?: return null
+    logger.trace("Resumed session with {}", address)
+    return openSession(resumable.enr, Message.tag(nodeId, resumable.enr.nodeId()), resumable.sessionKey, address)
+  }
+
+  /**
+   * Reopens a session from the keys of a previous session with the same peer, to read a message received from it.
+   *
+   * @param peerNodeId the node id of the peer
+   * @param address the address of the peer
+   * @param message a message received from the peer, which must be readable with the keys of the previous session
+   * @return the reopened session and the decoded message, or `null` if there are no keys for the peer or they cannot
+   *   read the message
+   */
+  private fun resumeSession(peerNodeId: Bytes, address: SocketAddress, message: Bytes): Pair<Session, Message>? {
+    val resumable = resumableSessions[ResumableSessionKey(peerNodeId, address)] ?: return null
+    val session = openSession(resumable.enr, Message.tag(nodeId, resumable.enr.nodeId()), resumable.sessionKey, address)
+    val decoded = try {
+      session.decode(message)
+    } catch (e: Exception) {
+      // the peer has moved on to new keys, or is starting a handshake
+      logger.trace("Cannot resume session with {}", address)
+      sessions.remove(address, session)
+      return null
+    }
+    logger.trace("Resumed session with {}", address)
+    return Pair(session, decoded)
+  }
+
   override suspend fun requestNodes(
     distance: Int,
     maxSecondsToWait: Long,
@@ -300,17 +505,41 @@ internal class DefaultDiscoveryV5Service(
     asyncResult {
       val results = ConcurrentHashMap<EthereumNodeRecord, List<EthereumNodeRecord>>()
       logger.debug("Requesting from ${sessions.size} sessions with distance $distance")
-      sessions.values.map { session ->
-        async {
-          try {
-            val oneResult = session.sendFindNodes(distance).get(maxSecondsToWait, TimeUnit.SECONDS)
-            logger.debug("Received ${oneResult!!.size} results")
-            results.put(session.enr, oneResult)
-          } catch (e: Exception) {
+      sessions.values.toList().mapConcurrent(maxConcurrentRequests) { session ->
+        try {
+          val oneResult = withTimeoutOrNull(TimeUnit.SECONDS.toMillis(maxSecondsToWait)) {
+            session.sendFindNodes(distance).await()
+          }
+          if (oneResult == null) {
             logger.debug("Timeout waiting for nodes")
+          } else {
+            logger.debug("Received ${oneResult.size} results")
+            results.put(session.enr, oneResult)
           }
+        } catch (e: Exception) {
+          logger.debug("Error waiting for nodes", e)
         }
-      }.awaitAll()
+      }
       results
     }
+  override suspend fun lookup(target: Bytes): List<EthereumNodeRecord> =
+    iterativeLookup(
+      target.toArrayUnsafe(),
+      routingTable.nearest(target, RoutingTable.BUCKET_SIZE),
+      RoutingTable.BUCKET_SIZE,
+      nodeId = { enr -> enr.nodeId().toArrayUnsafe() },
+    ) { enr -> findNodes(enr, target) }
+
+  private suspend fun findNodes(enr: EthereumNodeRecord, target: Bytes): List<EthereumNodeRecord>? {
+    val address = SocketAddress.inetSocketAddress(enr.udp() ?: return null, enr.ip().hostAddress)
+    val distance = RoutingTable.logDistance(enr.nodeId().toArrayUnsafe(), target.toArrayUnsafe())
+    return withTimeoutOrNull(LOOKUP_RESPONSE_TIMEOUT_MS) {
+      addPeer(enr, address).await()
+      sessions[address]?.sendFindNodes(distance)?.await()
+    }
+  }
 }
+
+private data class ResumableSessionKey(val nodeId: Bytes, val address: SocketAddress)
+
+private class ResumableSession(val enr: EthereumNodeRecord, val sessionKey: SessionKey)
@@ -28,6 +28,7 @@ internal class HandshakeSession(
   private val sendFn: (SocketAddress, Bytes) -> Unit,
   private val enr: () -> EthereumNodeRecord,
   override val coroutineContext: CoroutineContext,
+  private val ephemeralKeyPair: () -> SECP256K1.KeyPair = { SECP256K1.KeyPair.random() },
 ) : CoroutineScope {
 
   var requestId: Bytes? = null
@@ -75,8 +76,8 @@ internal class HandshakeSession(
         return
       }
       // Use the WHOAREYOU info to send handshake.
-      // Generate ephemeral key pair
-      val ephemeralKeyPair = SECP256K1.KeyPair.random()
+      // Obtain an ephemeral key pair
+      val ephemeralKeyPair = ephemeralKeyPair()
       val ephemeralKey = ephemeralKeyPair.secretKey()
 
       val destNodeId = EthereumNodeRecord.nodeId(publicKey!!)
@@ -102,8 +103,7 @@ internal class HandshakeSession(
       val newTag = tag()
       val findNode = FindNodeMessage()
       requestId = findNode.requestId
-      val encryptedMessage = AES128GCM.encrypt(
-        newSession.initiatorKey,
+      val encryptedMessage = newSession.initiatorCipher.encrypt(
         authTag,
         Bytes.concatenate(Bytes.of(MessageType.FINDNODE.byte()), findNode.toRLP()),
         newTag,
@@ -13,17 +13,14 @@ internal class RoutingTable(
   private val selfEnr: EthereumNodeRecord,
 ) {
 
-  private val selfNodeId = EthereumNodeRecord.nodeId(selfEnr.publicKey()).toArrayUnsafe()
-  private val nodeIdCalculation: (Bytes) -> ByteArray = { enr -> key(enr) }
+  private val selfNodeId = selfEnr.nodeId().toArrayUnsafe()
 
-  private val table = KademliaRoutingTable(
+  // records cache their decoded node id, so ids are not decoded again on each distance computation
+  private val table = KademliaRoutingTable<EthereumNodeRecord>(
     selfId = selfNodeId,
     k = BUCKET_SIZE,
-    nodeId = nodeIdCalculation,
-    distanceToSelf = {
-      val xorResult = key(it) xorDist selfNodeId
-      if (xorResult == 0) 0 else IntMath.log2(xorResult, RoundingMode.FLOOR)
-    },
+    nodeId = { it.nodeId().toArrayUnsafe() },
+    distanceToSelf = { logDistance(it.nodeId().toArrayUnsafe(), selfNodeId) },
   )
 
   val size: Int
@@ -32,31 +29,38 @@ internal class RoutingTable(
   fun getSelfEnr(): EthereumNodeRecord = selfEnr
 
   fun add(enr: EthereumNodeRecord) {
-    add(enr.toRLP())
-  }
-
-  fun add(enr: Bytes) {
-    if (enr != selfEnr.toRLP()) {
+    if (enr != selfEnr) {
       table.add(enr)
     }
   }
 
-  fun distanceToSelf(targetId: Bytes): Int = table.logDistToSelf(targetId)
+  fun add(enr: Bytes) = add(EthereumNodeRecord.fromRLP(enr))
+
+  fun distanceToSelf(enr: Bytes): Int = table.logDistToSelf(EthereumNodeRecord.fromRLP(enr))
+
+  fun evict(enr: EthereumNodeRecord): Boolean = table.evict(enr)
 
-  fun evict(enr: Bytes): Boolean = table.evict(enr)
+  fun evict(enr: Bytes): Boolean = evict(EthereumNodeRecord.fromRLP(enr))
 
-  fun random(): Bytes = table.getRandom()
+  fun random(): EthereumNodeRecord = table.getRandom()
 
   fun isEmpty(): Boolean = table.isEmpty()
 
-  fun nodesOfDistance(distance: Int): List<EthereumNodeRecord> =
-    table.peersOfDistance(distance).map { EthereumNodeRecord.fromRLP(it) }
+  fun nearest(targetId: Bytes, limit: Int): List<EthereumNodeRecord> = table.nearest(targetId.toArrayUnsafe(), limit)
 
-  fun clear() = table.clear()
+  fun nodesOfDistance(distance: Int): List<EthereumNodeRecord> = table.peersOfDistance(distance)
 
-  private fun key(enr: Bytes): ByteArray = EthereumNodeRecord.fromRLP(enr).nodeId().toArrayUnsafe()
+  fun clear() = table.clear()
 
   companion object {
-    private const val BUCKET_SIZE: Int = 16
+    const val BUCKET_SIZE: Int = 16
+
+    /**
+     * The distance between two node ids, as used to index buckets and in FINDNODE requests.
+     */
+    fun logDistance(a: ByteArray, b: ByteArray): Int {
+      val xorResult = a xorDist b
+      return if (xorResult == 0) 0 else IntMath.log2(xorResult, RoundingMode.FLOOR)
+    }
   }
 }
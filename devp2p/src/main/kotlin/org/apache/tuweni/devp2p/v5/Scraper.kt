@@ -7,10 +7,12 @@ import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.asCoroutineDispatcher
 import kotlinx.coroutines.async
 import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.asFlow
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.runBlocking
 import org.apache.tuweni.concurrent.ExpiringSet
 import org.apache.tuweni.concurrent.coroutines.await
+import org.apache.tuweni.concurrent.coroutines.mapConcurrent
 import org.apache.tuweni.crypto.SECP256K1
 import org.apache.tuweni.devp2p.EthereumNodeRecord
 import org.apache.tuweni.io.Base64URLSafe
@@ -64,6 +66,8 @@ object ScraperApp {
   }
 }
 
+private const val DISTANCES_IN_FLIGHT = 4
+
 /**
  * Discovery scraper that will continue asking peers for peers, and iterate over them, until told to stop.
  *
@@ -77,6 +81,8 @@ class Scraper(
   val listeners: List<(EthereumNodeRecord, List<EthereumNodeRecord>) -> Unit>,
   val maxWaitForNewPeers: Long = 20L,
   val waitBetweenScrapes: Long = (5 * 60).toLong(),
+  val maxTrackedNodes: Long = 100_000L,
+  val maxConcurrentRequests: Int = DEFAULT_MAX_CONCURRENT_REQUESTS,
 ) : CoroutineScope {
 
   private var service: DiscoveryV5Service? = null
@@ -90,6 +96,7 @@ class Scraper(
       localPort = 0,
       bindAddress = bindAddress,
       bootstrapENRList = emptyList(),
+      maxConcurrentRequests = maxConcurrentRequests,
     )
     newService.start().await()
     for (enr in initialENRs) {
@@ -105,24 +112,24 @@ class Scraper(
 
   fun discover(maxWaitForNewPeers: Long) = async {
     var newPeersDetected = true
-    val nodes = ExpiringSet<EthereumNodeRecord>(24 * 60 * 60 * 1000L)
+    val nodes = ExpiringSet<EthereumNodeRecord>(24 * 60 * 60 * 1000L, maxTrackedNodes)
     while (newPeersDetected) {
       newPeersDetected = false
-      for (i in 1..255) {
-        service?.requestNodes(i)?.thenAccept {
-          for (node in it.entries) {
-            if (node.value.isNotEmpty()) {
-              for (listener in listeners) {
-                launch {
-                  listener(node.key, node.value)
-                }
+      // each request queries up to maxConcurrentRequests peers, so a few distances at a time keeps the total number of
+      // requests in flight bounded
+      (1..255).asFlow().mapConcurrent(DISTANCES_IN_FLIGHT) { i -> service?.requestNodes(i)?.await() }.collect {
+        for (node in it?.entries ?: emptySet()) {
+          if (node.value.isNotEmpty()) {
+            for (listener in listeners) {
+              launch {
+                listener(node.key, node.value)
               }
-              for (newENR in node.value) {
-                if (nodes.add(newENR)) {
-                  newPeersDetected = true
-                  launch {
-                    service?.addPeer(newENR)
-                  }
+            }
+            for (newENR in node.value) {
+              if (nodes.add(newENR)) {
+                newPeersDetected = true
+                launch {
+                  service?.addPeer(newENR)
                 }
               }
             }
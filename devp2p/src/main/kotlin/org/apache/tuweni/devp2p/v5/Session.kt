@@ -16,7 +16,6 @@ import org.apache.tuweni.concurrent.ExpiringMap
 import org.apache.tuweni.crypto.SECP256K1
 import org.apache.tuweni.devp2p.DiscoveryService
 import org.apache.tuweni.devp2p.EthereumNodeRecord
-import org.apache.tuweni.devp2p.v5.encrypt.AES128GCM
 import org.apache.tuweni.devp2p.v5.encrypt.SessionKey
 import org.apache.tuweni.devp2p.v5.topic.Ticket
 import org.apache.tuweni.devp2p.v5.topic.Topic
@@ -54,6 +53,9 @@ internal class Session(
     private val logger = LoggerFactory.getLogger(Session::class.java)
 
     const val PING_REFRESH = 10000L
+
+    // how long after a request is sent that replies to it are expected
+    private const val REPLY_WINDOW_MS = 20000L
   }
 
   val activeFindNodes = HashMap<Bytes, CompletableAsyncResult<List<EthereumNodeRecord>>>()
@@ -63,6 +65,16 @@ internal class Session(
   private val ticketHolder = HashMap<Bytes, Bytes>()
   private var peerSeq: Long = -1
 
+  @Volatile
+  private var awaitingRepliesUntil = 0L
+
+  /**
+   * Check whether a request was sent to the peer recently enough that its messages may be replies.
+   *
+   * @param now the current time, in milliseconds since the epoch
+   */
+  fun isAwaitingReply(now: Long): Boolean = now < awaitingRepliesUntil
+
   private fun launchPing() {
     launch {
       delay(PING_REFRESH)
@@ -107,13 +119,22 @@ internal class Session(
     }
     logger.trace("Received message from {}", address)
 
-    var message: Message
+    val message: Message
     try {
       message = decode(messageBytes)
     } catch (e: InvalidRLPTypeException) {
       logger.trace("Bad message content, dropping from {}: {}", address, messageBytes)
       return
     }
+    processMessage(message)
+  }
+
+  /**
+   * Handle a message received from the peer, already decoded with the keys of this session.
+   *
+   * @param message the message
+   */
+  suspend fun processMessage(message: Message) {
     logger.trace("Received message of type {}", message.type())
     when (message.type()) {
       MessageType.FINDNODE -> handleFindNode(message as FindNodeMessage)
@@ -233,9 +254,14 @@ internal class Session(
 
   private suspend fun send(message: Message) {
     logger.trace("Sending an encrypted message of type {}", message.type())
+    when (message.type()) {
+      MessageType.PING, MessageType.FINDNODE, MessageType.REGTOPIC, MessageType.TOPICQUERY ->
+        awaitingRepliesUntil = now() + REPLY_WINDOW_MS
+      else -> {}
+    }
     val messagePlain = Bytes.concatenate(Bytes.of(message.type().byte()), message.toRLP())
     val authTag = Message.authTag()
-    val encryptionResult = AES128GCM.encrypt(sessionKey.initiatorKey, authTag, messagePlain, tag)
+    val encryptionResult = sessionKey.initiatorCipher.encrypt(authTag, messagePlain, tag)
     sendFn(address, Bytes.concatenate(tag, RLP.encodeValue(authTag), encryptionResult))
   }
 
@@ -268,8 +294,7 @@ internal class Session(
     val authTag = reader.readValue()
 
     val encryptedContent = contentWithHeader.slice(reader.position())
-    val decryptionKey = sessionKey.recipientKey
-    val decryptedContent = AES128GCM.decrypt(decryptionKey, authTag, encryptedContent, tag)
+    val decryptedContent = sessionKey.recipientCipher.decrypt(authTag, encryptedContent, tag)
     val type = decryptedContent.slice(0, 1)
     val message = decryptedContent.slice(1)
 
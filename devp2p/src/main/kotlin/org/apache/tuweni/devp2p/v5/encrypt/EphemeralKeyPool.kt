@@ -0,0 +1,64 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.devp2p.v5.encrypt
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.launch
+import org.apache.tuweni.crypto.SECP256K1
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * A pool of pre-generated ephemeral key pairs for handshakes.
+ *
+ * Key pairs are generated in the background, in the scope given, so that a handshake does not wait for one to be
+ * generated. Each key pair is handed out at most once. If the pool is empty, a key pair is generated on the spot.
+ *
+ * @param capacity the number of key pairs kept ready
+ * @param scope the scope in which the pool is refilled
+ * @param generate the function generating key pairs
+ */
+internal class EphemeralKeyPool(
+  capacity: Int,
+  private val scope: CoroutineScope,
+  private val generate: () -> SECP256K1.KeyPair = { SECP256K1.KeyPair.random() },
+) {
+
+  private val pool = ArrayBlockingQueue<SECP256K1.KeyPair>(capacity)
+  private val refilling = AtomicBoolean(false)
+
+  /**
+   * The number of key pairs ready in the pool.
+   */
+  val size: Int
+    get() = pool.size
+
+  /**
+   * Takes a key pair from the pool, and starts refilling the pool if it is not already being refilled.
+   *
+   * @return a key pair that has not been handed out before
+   */
+  fun take(): SECP256K1.KeyPair {
+    val keyPair = pool.poll() ?: generate()
+    refill()
+    return keyPair
+  }
+
+  /**
+   * Starts refilling the pool in the background, unless it is full or already being refilled.
+   */
+  fun refill() {
+    if (pool.remainingCapacity() == 0 || !refilling.compareAndSet(false, true)) {
+      return
+    }
+    scope.launch {
+      try {
+        while (pool.remainingCapacity() > 0) {
+          pool.offer(generate())
+        }
+      } finally {
+        refilling.set(false)
+      }
+    }
+  }
+}
@@ -0,0 +1,103 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.devp2p.v5.encrypt
+
+import org.apache.tuweni.bytes.Bytes
+import java.util.concurrent.ConcurrentLinkedQueue
+import javax.crypto.Cipher
+import javax.crypto.spec.GCMParameterSpec
+import javax.crypto.spec.SecretKeySpec
+
+/**
+ * AES-GCM encryption and decryption under a single, long-lived session key.
+ *
+ * Unlike [AES128GCM], the key is set up once and cipher instances are pooled and reused across messages, so the
+ * provider lookup and key schedule are not repeated for every packet. Instances are safe for concurrent use.
+ *
+ * A cipher instance refuses to encrypt twice in a row with the same nonce, so this class is meant for messages
+ * carrying random nonces, not for fixed-nonce payloads such as tickets.
+ *
+ * @param key 16-byte encryption key
+ */
+internal class SessionCipher(key: Bytes) {
+
+  companion object {
+    private const val CIPHER_NAME: String = "AES/GCM/NoPadding"
+    private const val TAG_SIZE: Int = 16
+  }
+
+  private val keySpec = SecretKeySpec(key.toArray(), "AES")
+  private val ciphers = ConcurrentLinkedQueue<Cipher>()
+
+  /**
+   * Encrypts a message.
+   *
+   * @param nonce initialization vector
+   * @param message content for encryption
+   * @param additionalAuthenticatedData the AAD that should be authenticated alongside
+   * @return the encrypted content, followed by the authentication tag
+   */
+  fun encrypt(nonce: Bytes, message: Bytes, additionalAuthenticatedData: Bytes): Bytes {
+    val cipher = acquire()
+    try {
+      cipher.init(Cipher.ENCRYPT_MODE, keySpec, GCMParameterSpec(TAG_SIZE * 8, nonce.toArrayUnsafe()))
+      cipher.updateAAD(additionalAuthenticatedData.toArrayUnsafe())
+      return Bytes.wrap(cipher.doFinal(message.toArrayUnsafe()))
+    } finally {
+      ciphers.offer(cipher)
+    }
+  }
+
+  /**
+   * Decrypts a message.
+   *
+   * @param nonce the nonce of the encrypted data
+   * @param encoded the encrypted content, followed by the authentication tag
+   * @param additionalAuthenticatedData the AAD that should be authenticated alongside
+   * @return the decrypted data
+   */
+  fun decrypt(nonce: Bytes, encoded: Bytes, additionalAuthenticatedData: Bytes): Bytes {
+    val output = ByteArray(decryptedSize(encoded))
+    decrypt(nonce, encoded, additionalAuthenticatedData, output, 0)
+    return Bytes.wrap(output)
+  }
+
+  /**
+   * Decrypts a message into a caller-supplied buffer.
+   *
+   * The output may be the array backing `encoded`, in which case the message is decrypted in place. If the message
+   * fails authentication, the content of the output range is unspecified.
+   *
+   * @param nonce the nonce of the encrypted data
+   * @param encoded the encrypted content, followed by the authentication tag
+   * @param additionalAuthenticatedData the AAD that should be authenticated alongside
+   * @param output the array to write the decrypted data to
+   * @param offset the offset in `output` at which to write
+   * @return the number of bytes written
+   */
+  fun decrypt(
+    nonce: Bytes,
+    encoded: Bytes,
+    additionalAuthenticatedData: Bytes,
+    output: ByteArray,
+    offset: Int,
+  ): Int {
+    val size = decryptedSize(encoded)
+    require(offset >= 0 && offset + size <= output.size) { "Output buffer too small" }
+    val cipher = acquire()
+    try {
+      cipher.init(Cipher.DECRYPT_MODE, keySpec, GCMParameterSpec(TAG_SIZE * 8, nonce.toArrayUnsafe()))
+      cipher.updateAAD(additionalAuthenticatedData.toArrayUnsafe())
+      return cipher.doFinal(encoded.toArrayUnsafe(), 0, encoded.size(), output, offset)
+    } finally {
+      ciphers.offer(cipher)
+    }
+  }
+
+  private fun decryptedSize(encoded: Bytes): Int {
+    require(encoded.size() >= TAG_SIZE) { "Encrypted content is shorter than the authentication tag" }
+    return encoded.size() - TAG_SIZE
+  }
+
+  private fun acquire(): Cipher = ciphers.poll() ?: Cipher.getInstance(CIPHER_NAME)
+}
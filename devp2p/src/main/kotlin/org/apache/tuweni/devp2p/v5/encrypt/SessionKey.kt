@@ -8,4 +8,15 @@ internal data class SessionKey(
   val initiatorKey: Bytes,
   val recipientKey: Bytes,
   val authRespKey: Bytes,
-)
+) {
+
+  /**
+   * Cipher for messages encrypted with the initiator key.
+   */
+  val initiatorCipher: SessionCipher by lazy { SessionCipher(initiatorKey) }
+
+  /**
+   * Cipher for messages encrypted with the recipient key.
+   */
+  val recipientCipher: SessionCipher by lazy { SessionCipher(recipientKey) }
+}
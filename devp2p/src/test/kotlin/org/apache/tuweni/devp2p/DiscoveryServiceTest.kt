@@ -18,6 +18,7 @@ import org.apache.tuweni.junit.VertxExtension
 import org.apache.tuweni.junit.VertxInstance
 import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNotEquals
 import org.junit.jupiter.api.Assertions.assertNotNull
 import org.junit.jupiter.api.Assertions.assertNull
 import org.junit.jupiter.api.Assertions.assertTrue
@@ -377,6 +378,25 @@ internal class DiscoveryServiceTest {
     client.close()
   }
 
+  @Test
+  fun lookupShouldConvergeOnHashedNodeIds(): Unit = runBlocking {
+    val peerRepository = EphemeralPeerRepository()
+    val peers = (1..100).map { i ->
+      peerRepository.get("127.0.0.1", 30000 + i, SECP256K1.KeyPair.random().publicKey())
+    }
+    val routingTable = DevP2PPeerRoutingTable(SECP256K1.KeyPair.random().publicKey())
+    val target = SECP256K1.KeyPair.random().publicKey()
+
+    // every peer knows the whole network, so the lookup should find the peers nearest in the network's metric
+    val result = routingTable.lookupNearest(target, peers.take(3)) { peers }
+
+    val targetId = EthereumNodeRecord.nodeId(target)
+    val expected = peers.sortedBy { peer -> EthereumNodeRecord.nodeId(peer.nodeId).xor(targetId) }
+    assertEquals(expected.take(DEVP2P_BUCKET_SIZE), result)
+    val byPublicKey = peers.sortedBy { peer -> peer.nodeId.bytes().xor(target.bytes()) }
+    assertNotEquals(byPublicKey.take(DEVP2P_BUCKET_SIZE), result)
+  }
+
   @Disabled
   @Test
   fun shouldConnectToNetworkAndDoALookup(@VertxInstance vertx: Vertx) {
@@ -6,6 +6,7 @@ import org.apache.tuweni.bytes.Bytes
 import org.apache.tuweni.crypto.SECP256K1
 import org.apache.tuweni.junit.BouncyCastleExtension
 import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertSame
 import org.junit.jupiter.api.Test
 import org.junit.jupiter.api.assertThrows
 import org.junit.jupiter.api.extension.ExtendWith
@@ -59,4 +60,62 @@ class EthereumNodeRecordTest {
     assertEquals(Bytes.fromHexString("deadbeef"), record.data["key"])
     assertEquals(Bytes.fromHexString("deadbeef"), (record.listData["foo"] ?: error("None"))[0])
   }
+
+  @Test
+  fun createMatchesParsedRecord() {
+    val keypair = SECP256K1.KeyPair.random()
+    val enr = EthereumNodeRecord.create(
+      keypair,
+      seq = 3L,
+      data = mapOf(Pair("key", Bytes.fromHexString("deadbeef"))),
+      listData = mapOf(Pair("foo", listOf(Bytes.fromHexString("deadbeef")))),
+      ip = InetAddress.getByName("127.0.0.1"),
+      tcp = 30303,
+    )
+    val parsed = EthereumNodeRecord.fromRLP(enr.toRLP())
+    parsed.validate()
+    assertEquals(enr, parsed)
+    assertEquals(enr.data, parsed.data)
+    assertEquals(enr.listData, parsed.listData)
+    assertEquals(EthereumNodeRecord.nodeId(keypair.publicKey()), parsed.nodeId())
+    assertEquals(30303, parsed.tcp())
+    assertEquals(30303, parsed.udp())
+  }
+
+  @Test
+  fun updateSeq() {
+    val keypair = SECP256K1.KeyPair.random()
+    val enr = EthereumNodeRecord.create(keypair, seq = 1L, ip = InetAddress.getLoopbackAddress(), udp = 10000)
+    val updated = enr.updateSeq(keypair)
+    updated.validate()
+    assertEquals(2L, updated.seq())
+    assertEquals(enr.data, updated.data)
+    assertThrows<IllegalArgumentException> { enr.updateSeq(keypair, 1L) }
+    assertThrows<IllegalArgumentException> { enr.updateSeq(SECP256K1.KeyPair.random()) }
+  }
+
+  @Test
+  fun builderReusesUnchangedRecord() {
+    val keypair = SECP256K1.KeyPair.random()
+    val enr = EthereumNodeRecord.create(keypair, seq = 1L, ip = InetAddress.getLoopbackAddress(), udp = 10000)
+    assertSame(enr, enr.toBuilder().udp(10000).build(keypair))
+
+    val changed = enr.toBuilder().udp(10001).set("key", Bytes.fromHexString("deadbeef")).build(keypair)
+    changed.validate()
+    assertEquals(2L, changed.seq())
+    assertEquals(10001, changed.udp())
+    assertEquals(Bytes.fromHexString("deadbeef"), changed.data["key"])
+    assertEquals(enr.publicKey(), changed.publicKey())
+  }
+
+  @Test
+  fun builderCreatesRecord() {
+    val keypair = SECP256K1.KeyPair.random()
+    val enr = EthereumNodeRecord.builder().seq(5L).ip(InetAddress.getLoopbackAddress()).tcp(30303).build(keypair)
+    enr.validate()
+    assertEquals(5L, enr.seq())
+    assertEquals(keypair.publicKey(), enr.publicKey())
+    assertEquals(InetAddress.getLoopbackAddress(), enr.ip())
+    assertEquals(30303, enr.tcp())
+  }
 }
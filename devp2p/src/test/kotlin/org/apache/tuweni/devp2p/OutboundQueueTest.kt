@@ -0,0 +1,52 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.devp2p
+
+import io.vertx.core.Vertx
+import io.vertx.core.net.SocketAddress
+import io.vertx.kotlin.coroutines.coAwait
+import kotlinx.coroutines.runBlocking
+import org.apache.tuweni.crypto.SECP256K1
+import org.apache.tuweni.junit.BouncyCastleExtension
+import org.apache.tuweni.junit.VertxExtension
+import org.apache.tuweni.junit.VertxInstance
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.Timeout
+import org.junit.jupiter.api.extension.ExtendWith
+
+@Timeout(10)
+@ExtendWith(BouncyCastleExtension::class, VertxExtension::class)
+internal class OutboundQueueTest {
+
+  @Test
+  fun shouldWriteQueuedPacketsBeforeClosing(@VertxInstance vertx: Vertx): Unit = runBlocking {
+    val receiver = vertx.createDatagramSocket().handler { }.listen(0, "127.0.0.1").coAwait()
+    val socket = vertx.createDatagramSocket().listen(0, "127.0.0.1").coAwait()
+    val address = SocketAddress.inetSocketAddress(receiver.localAddress().port(), "127.0.0.1")
+    val ping = PingPacket.create(
+      SECP256K1.KeyPair.random(),
+      System.currentTimeMillis(),
+      Endpoint("127.0.0.1", socket.localAddress().port()),
+      Endpoint(address),
+      null,
+    )
+
+    // a small capacity, so that senders wait on the queue and packets are written over several batches
+    val queue = OutboundQueue(socket, this, capacity = 4)
+    repeat(10) { queue.send(address, ping) }
+    queue.sendAll(address, List(10) { ping })
+    queue.close()
+
+    assertEquals(20L, queue.sentPackets)
+    assertEquals(0L, queue.failedPackets)
+    assertEquals(0L, queue.droppedPackets)
+
+    queue.send(address, ping)
+    assertEquals(20L, queue.sentPackets)
+    assertEquals(1L, queue.droppedPackets)
+
+    socket.close().coAwait()
+    receiver.close().coAwait()
+  }
+}
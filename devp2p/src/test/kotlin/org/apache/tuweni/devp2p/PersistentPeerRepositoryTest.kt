@@ -0,0 +1,85 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.devp2p
+
+import kotlinx.coroutines.runBlocking
+import org.apache.tuweni.crypto.SECP256K1
+import org.apache.tuweni.junit.BouncyCastleExtension
+import org.apache.tuweni.junit.TempDirectory
+import org.apache.tuweni.junit.TempDirectoryExtension
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.extension.ExtendWith
+import java.net.InetAddress
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+
+@ExtendWith(BouncyCastleExtension::class, TempDirectoryExtension::class)
+internal class PersistentPeerRepositoryTest {
+
+  @Test
+  fun shouldReloadPeerState(@TempDirectory tempDir: Path) = runBlocking {
+    val logFile = tempDir.resolve("peers.log")
+    val keyPair = SECP256K1.KeyPair.random()
+    val enr = EthereumNodeRecord.create(
+      keyPair,
+      seq = 3,
+      ip = InetAddress.getByName("10.0.0.1"),
+      tcp = 30303,
+      udp = 30301,
+    )
+
+    val repository = PersistentPeerRepository(logFile)
+    val peer = repository.get("10.0.0.1", 30301, keyPair.publicKey())
+    peer.updateENR(enr, 1000)
+    peer.verifyEndpoint(peer.endpoint, 2000)
+    repository.close()
+
+    val reloaded = PersistentPeerRepository(logFile)
+    val reloadedPeer = reloaded.get("127.0.0.1", 1234, keyPair.publicKey())
+    assertEquals(Endpoint("10.0.0.1", 30301, 30303), reloadedPeer.endpoint)
+    assertEquals(2000L, reloadedPeer.lastVerified)
+    assertEquals(2000L, reloadedPeer.lastSeen)
+    assertEquals(enr, reloadedPeer.enr)
+    reloaded.close()
+  }
+
+  @Test
+  fun shouldReturnVerifiedPeersMostRecentFirst(@TempDirectory tempDir: Path) = runBlocking {
+    val logFile = tempDir.resolve("peers.log")
+    val repository = PersistentPeerRepository(logFile)
+    val first = repository.get("10.0.0.1", 30303, SECP256K1.KeyPair.random().publicKey())
+    val second = repository.get("10.0.0.2", 30303, SECP256K1.KeyPair.random().publicKey())
+    val unverified = repository.get("10.0.0.3", 30303, SECP256K1.KeyPair.random().publicKey())
+    first.verifyEndpoint(first.endpoint, 5000)
+    second.verifyEndpoint(second.endpoint, 6000)
+    unverified.seenAt(7000)
+    repository.close()
+
+    val reloaded = PersistentPeerRepository(logFile)
+    assertEquals(3, reloaded.size)
+    assertEquals(listOf(second.nodeId, first.nodeId), reloaded.verifiedPeers(1000).map { it.nodeId })
+    assertEquals(listOf(second.nodeId), reloaded.verifiedPeers(5500).map { it.nodeId })
+    reloaded.close()
+  }
+
+  @Test
+  fun shouldIgnoreIncompleteTrailingRecord(@TempDirectory tempDir: Path) = runBlocking {
+    val logFile = tempDir.resolve("peers.log")
+    val keyPair = SECP256K1.KeyPair.random()
+    val repository = PersistentPeerRepository(logFile)
+    repository.get("10.0.0.1", 30303, keyPair.publicKey()).verifyEndpoint(Endpoint("10.0.0.1", 30303), 5000)
+    repository.close()
+    val validSize = Files.size(logFile)
+    Files.write(logFile, byteArrayOf(0, 0, 0, 100, 1, 2, 3), StandardOpenOption.APPEND)
+
+    val reloaded = PersistentPeerRepository(logFile)
+    assertEquals(5000L, reloaded.get("10.0.0.1", 30303, keyPair.publicKey()).lastVerified)
+    assertEquals(validSize, Files.size(logFile))
+    val other = reloaded.get("10.0.0.2", 30303, SECP256K1.KeyPair.random().publicKey())
+    assertNull(other.lastVerified)
+    reloaded.close()
+  }
+}
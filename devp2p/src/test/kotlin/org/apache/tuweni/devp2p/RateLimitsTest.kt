@@ -0,0 +1,60 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.devp2p
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+internal class RateLimitsTest {
+
+  @Test
+  fun shouldAllowBurstThenRefillAtRate() {
+    val table = TokenBucketTable<String>(10.0, 3, 100)
+    assertTrue(table.tryAcquire("a", 1000))
+    assertTrue(table.tryAcquire("a", 1000))
+    assertTrue(table.tryAcquire("a", 1000))
+    assertFalse(table.tryAcquire("a", 1000))
+    assertTrue(table.tryAcquire("b", 1000))
+    assertFalse(table.tryAcquire("a", 1050))
+    assertTrue(table.tryAcquire("a", 1100))
+    assertFalse(table.tryAcquire("a", 1100))
+  }
+
+  @Test
+  fun shouldNotRefillAboveBurst() {
+    val table = TokenBucketTable<String>(10.0, 2, 100)
+    assertTrue(table.tryAcquire("a", 0))
+    assertTrue(table.tryAcquire("a", 60_000))
+    assertTrue(table.tryAcquire("a", 60_000))
+    assertFalse(table.tryAcquire("a", 60_000))
+  }
+
+  @Test
+  fun shouldBoundTrackedSources() {
+    val table = TokenBucketTable<Int>(1.0, 1, 64, stripeCount = 4)
+    for (i in 0 until 1000) {
+      table.tryAcquire(i, 0)
+    }
+    assertEquals(64, table.size)
+  }
+
+  @Test
+  fun shouldLimitInFlightWork() {
+    val limiter = RateLimiter(RateLimits(maxInFlight = 2))
+    assertTrue(limiter.tryAcquire())
+    assertTrue(limiter.tryAcquire())
+    assertFalse(limiter.tryAcquire())
+    limiter.release()
+    assertTrue(limiter.tryAcquire())
+  }
+
+  @Test
+  fun shouldKeepReplyBudgetSeparate() {
+    val limiter = RateLimiter(RateLimits(packetsPerSecond = 1.0, burst = 1))
+    assertTrue(limiter.allowAddress("10.0.0.1", 0))
+    assertFalse(limiter.allowAddress("10.0.0.1", 0))
+    assertTrue(limiter.allowReply("10.0.0.1", 0))
+  }
+}
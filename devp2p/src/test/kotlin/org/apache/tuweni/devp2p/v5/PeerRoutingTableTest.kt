@@ -7,6 +7,8 @@ import org.apache.tuweni.crypto.SECP256K1
 import org.apache.tuweni.devp2p.DevP2PPeerRoutingTable
 import org.apache.tuweni.junit.BouncyCastleExtension
 import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotEquals
+import org.junit.jupiter.api.Assertions.assertNotNull
 import org.junit.jupiter.api.Test
 import org.junit.jupiter.api.extension.ExtendWith
 
@@ -20,4 +22,14 @@ class PeerRoutingTableTest {
     val peers = routingTable.nearest(invalidPublicKey, 3)
     assertEquals(0, peers.size)
   }
+
+  @Test
+  fun refreshTargetsAreRandomIds() {
+    val routingTable = DevP2PPeerRoutingTable(SECP256K1.KeyPair.random().publicKey())
+    val target = routingTable.refreshTarget()
+    assertNotNull(target)
+    assertNotEquals(target, routingTable.refreshTarget())
+    // a target is looked up by its hash, even if it is not a point on the curve
+    assertEquals(0, routingTable.nearest(target!!, 3).size)
+  }
 }
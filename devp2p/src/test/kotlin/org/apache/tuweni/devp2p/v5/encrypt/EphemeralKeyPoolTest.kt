@@ -0,0 +1,41 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.devp2p.v5.encrypt
+
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.runBlocking
+import org.apache.tuweni.crypto.SECP256K1
+import org.apache.tuweni.junit.BouncyCastleExtension
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.extension.ExtendWith
+import java.util.concurrent.atomic.AtomicInteger
+
+@ExtendWith(BouncyCastleExtension::class)
+class EphemeralKeyPoolTest {
+
+  @Test
+  fun refillsInBackground() = runBlocking {
+    val generated = AtomicInteger()
+    coroutineScope {
+      val pool = EphemeralKeyPool(4, this) {
+        generated.incrementAndGet()
+        SECP256K1.KeyPair.random()
+      }
+      pool.refill()
+    }
+    assertEquals(4, generated.get())
+  }
+
+  @Test
+  fun handsOutEachKeyPairOnce() = runBlocking {
+    val keyPairs = mutableSetOf<SECP256K1.KeyPair>()
+    lateinit var pool: EphemeralKeyPool
+    coroutineScope {
+      pool = EphemeralKeyPool(4, this)
+      repeat(20) { keyPairs.add(pool.take()) }
+    }
+    assertEquals(20, keyPairs.size)
+    assertEquals(4, pool.size)
+  }
+}
@@ -0,0 +1,68 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.devp2p.v5.encrypt
+
+import org.apache.tuweni.bytes.Bytes
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Test
+import javax.crypto.AEADBadTagException
+
+internal class SessionCipherTest {
+
+  private val key = Bytes.fromHexString("0xA924872EAE2DA2C0057ED6DEBD8CAAB8")
+
+  @Test
+  fun matchesAES128GCM() {
+    val cipher = SessionCipher(key)
+    val nonce = Bytes.random(12)
+    val tag = Bytes.random(32)
+    val message = Bytes.random(300)
+
+    val encrypted = cipher.encrypt(nonce, message, tag)
+
+    assertEquals(AES128GCM.encrypt(key, nonce, message, tag), encrypted)
+    assertEquals(message, cipher.decrypt(nonce, encrypted, tag))
+  }
+
+  @Test
+  fun decryptsInPlace() {
+    val cipher = SessionCipher(key)
+    val nonce = Bytes.random(12)
+    val message = Bytes.random(100)
+    val buffer = cipher.encrypt(nonce, message, Bytes.EMPTY).toArray()
+
+    val written = cipher.decrypt(nonce, Bytes.wrap(buffer), Bytes.EMPTY, buffer, 0)
+
+    assertEquals(message.size(), written)
+    assertEquals(message, Bytes.wrap(buffer, 0, written))
+  }
+
+  @Test
+  fun rejectsTamperedContent() {
+    val cipher = SessionCipher(key)
+    val nonce = Bytes.random(12)
+    val tag = Bytes.random(32)
+    val encrypted = cipher.encrypt(nonce, Bytes.random(100), tag)
+
+    assertThrows(AEADBadTagException::class.java) { cipher.decrypt(nonce, encrypted, tag.not()) }
+    // the cipher remains usable after a failure
+    assertEquals(100, cipher.decrypt(nonce, encrypted, tag).size())
+  }
+
+  @Test
+  fun roundTripsManyMessages() {
+    val cipher = SessionCipher(key)
+    val tag = Bytes.random(32)
+    // messages of different sizes through the same cipher, each with its own nonce
+    for (size in 0..300 step 7) {
+      val nonce = Bytes.random(12)
+      val message = Bytes.random(size)
+
+      val encrypted = cipher.encrypt(nonce, message, tag)
+
+      assertEquals(AES128GCM.encrypt(key, nonce, message, tag), encrypted)
+      assertEquals(message, cipher.decrypt(nonce, encrypted, tag))
+    }
+  }
+}
@@ -0,0 +1,127 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.kademlia
+
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.launch
+import java.nio.ByteBuffer
+
+/**
+ * The default number of queries a lookup keeps in flight (alpha value).
+ */
+const val DEFAULT_LOOKUP_ALPHA = 3
+
+/**
+ * Perform an iterative Kademlia lookup for the nodes nearest to a target id.
+ *
+ * Candidates are kept ordered by their XOR-distance to the target. Up to [alpha] queries are kept in flight, each to
+ * the nearest candidate not yet queried, and the nodes returned by each response are added to the candidates as it
+ * arrives, so that later queries go to nodes closer to the target. The lookup ends once the [k] nearest candidates
+ * that have not failed have all responded, or no candidates remain to be queried.
+ *
+ * A query fails if it returns `null` or throws an exception; the [query] function is responsible for applying any
+ * timeout.
+ *
+ * @param targetId the id to find nodes nearest to
+ * @param initial the nodes to start the lookup from, such as the nearest nodes in the local routing table
+ * @param k the number of nodes to find
+ * @param alpha the maximum number of queries in flight at any time
+ * @param nodeId a function for obtaining the id of a node
+ * @param query a function querying a node for the nodes it knows nearest to the target, returning `null` if the node
+ *        does not respond
+ * @param <T> the network node type
+ * @return up to [k] nodes that responded to the lookup, in order from closest to furthest
+ */
+suspend fun <T> iterativeLookup(
+  targetId: ByteArray,
+  initial: Collection<T>,
+  k: Int,
+  alpha: Int = DEFAULT_LOOKUP_ALPHA,
+  nodeId: (T) -> ByteArray,
+  query: suspend (T) -> Collection<T>?,
+): List<T> {
+  require(k > 0) { "k value must be positive" }
+  require(alpha > 0) { "alpha value must be positive" }
+  val candidates = LookupCandidates(targetId, nodeId)
+  candidates.addAll(initial)
+
+  return coroutineScope {
+    val responses = Channel<Pair<LookupCandidate<T>, Collection<T>?>>(Channel.UNLIMITED)
+    var inFlight = 0
+    while (true) {
+      for (candidate in candidates.toQuery(k, alpha - inFlight)) {
+        candidate.state = LookupState.QUERYING
+        ++inFlight
+        launch {
+          val nodes = try {
+            query(candidate.node)
+          } catch (e: CancellationException) {
+            throw e
+          } catch (e: Exception) {
+            null
+          }
+          responses.send(Pair(candidate, nodes))
+        }
+      }
+      if (inFlight == 0) {
+        break
+      }
+      val (candidate, nodes) = responses.receive()
+      --inFlight
+      if (nodes == null) {
+        candidate.state = LookupState.FAILED
+      } else {
+        candidate.state = LookupState.RESPONDED
+        candidates.addAll(nodes)
+      }
+    }
+    candidates.responded(k)
+  }
+}
+
+private enum class LookupState { PENDING, QUERYING, RESPONDED, FAILED }
+
+private class LookupCandidate<T>(val node: T, val id: ByteArray) {
+  var state = LookupState.PENDING
+}
+
+private class LookupCandidates<T>(private val targetId: ByteArray, private val nodeId: (T) -> ByteArray) {
+
+  // ordered from closest to the target to furthest
+  private val candidates = mutableListOf<LookupCandidate<T>>()
+  private val seen = HashSet<ByteBuffer>()
+
+  fun addAll(nodes: Collection<T>) {
+    for (node in nodes) {
+      val id = nodeId(node)
+      require(id.size == targetId.size) { "id obtained for node is not the correct length" }
+      if (seen.add(ByteBuffer.wrap(id))) {
+        candidates.orderedInsert(LookupCandidate(node, id)) { a, b -> targetId.xorDistCmp(a.id, b.id) }
+      }
+    }
+  }
+
+  // the nearest candidates still to be queried, considering only the k nearest that have not failed
+  fun toQuery(k: Int, limit: Int): List<LookupCandidate<T>> {
+    val result = mutableListOf<LookupCandidate<T>>()
+    var considered = 0
+    for (candidate in candidates) {
+      if (result.size >= limit || considered >= k) {
+        break
+      }
+      if (candidate.state == LookupState.FAILED) {
+        continue
+      }
+      ++considered
+      if (candidate.state == LookupState.PENDING) {
+        result.add(candidate)
+      }
+    }
+    return result
+  }
+
+  fun responded(k: Int): List<T> =
+    candidates.asSequence().filter { it.state == LookupState.RESPONDED }.take(k).map { it.node }.toList()
+}
@@ -6,6 +6,7 @@ import com.google.common.cache.Cache
 import com.google.common.cache.CacheBuilder
 import java.util.Collections
 import java.util.function.Function
+import kotlin.random.Random
 
 /**
  * Determine the XOR-distance between this and an equal-length byte array.
@@ -78,7 +79,7 @@ fun <E> MutableList<E>.orderedInsert(element: E, comparison: (E, E) -> Int) {
  */
 class KademliaRoutingTable<T>(
   private val selfId: ByteArray,
-  k: Int,
+  private val k: Int,
   maxReplacements: Int = k,
   private val nodeId: (T) -> ByteArray,
   private val distanceToSelf: (T) -> Int = { nodeId(it) xorDist selfId },
@@ -228,6 +229,88 @@ class KademliaRoutingTable<T>(
     return buckets[value].toList()
   }
 
+  /**
+   * Provides the number of nodes in each bucket.
+   *
+   * @return the number of nodes in each bucket, indexed by the distance of the bucket from the local node
+   */
+  fun bucketOccupancy(): IntArray = IntArray(buckets.size) { i -> buckets[i].size }
+
+  /**
+   * Choose the distance of a bucket that is not yet full, to direct a table refresh towards it.
+   *
+   * Buckets nearer to the local node than the nearest occupied bucket are not considered, as each covers half the ids
+   * of the next and they are unlikely to have any nodes to find. Among the other buckets, one that is not full is
+   * chosen at random, weighted by the number of nodes it is missing. If the table is empty, the furthest bucket is
+   * chosen.
+   *
+   * @param random the source of randomness
+   * @return the distance of a bucket that is not full, or `null` if all buckets considered are full
+   */
+  @JvmOverloads
+  fun sparseDistance(random: Random = Random.Default): Int? {
+    val occupancy = bucketOccupancy()
+    var nearest = idBitSize
+    for (distance in 1..idBitSize) {
+      if (occupancy[distance] > 0) {
+        nearest = distance
+        break
+      }
+    }
+    var missing = 0
+    for (distance in nearest..idBitSize) {
+      missing += maxOf(0, k - occupancy[distance])
+    }
+    if (missing == 0) {
+      return null
+    }
+    var choice = random.nextInt(missing)
+    for (distance in nearest..idBitSize) {
+      choice -= maxOf(0, k - occupancy[distance])
+      if (choice < 0) {
+        return distance
+      }
+    }
+    throw IllegalStateException("no bucket chosen")
+  }
+
+  /**
+   * Generate an id at a given distance from the local node.
+   *
+   * The id is the local id with the bit selected by the distance flipped, and all less significant bits randomized, so
+   * it falls anywhere in the range covered by the bucket at that distance. This matches the buckets of tables using
+   * the default XOR-distance to the local node.
+   *
+   * @param distance the distance of the id from the local node, between 1 and the number of bits in an id
+   * @param random the source of randomness
+   * @return an id at the given distance from the local node
+   */
+  @JvmOverloads
+  fun idAtDistance(distance: Int, random: Random = Random.Default): ByteArray {
+    require(distance in 1..idBitSize) { "distance must be between 1 and $idBitSize" }
+    val id = selfId.copyOf()
+    val bit = idBitSize - distance
+    val index = bit / 8
+    val mask = 0x80 ushr (bit % 8)
+    val lower = mask - 1
+    val randomBits = random.nextBytes(id.size - index)
+    id[index] = ((id[index].toInt() xor mask) and lower.inv() or (randomBits[0].toInt() and lower)).toByte()
+    for (i in index + 1 until id.size) {
+      id[i] = randomBits[i - index]
+    }
+    return id
+  }
+
+  /**
+   * Choose a target id for refreshing the table, falling in the range of a bucket that is not yet full.
+   *
+   * @param random the source of randomness
+   * @return a target id, or `null` if all buckets considered by [sparseDistance] are full
+   */
+  @JvmOverloads
+  fun refreshTarget(random: Random = Random.Default): ByteArray? =
+    sparseDistance(random)?.let { distance -> idAtDistance(distance, random) }
+
   /**
    * Provides a peer at random
    * @return a random peer from a random bucket
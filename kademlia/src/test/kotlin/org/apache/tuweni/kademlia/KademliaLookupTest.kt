@@ -0,0 +1,86 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.kademlia
+
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.random.Random
+
+internal class KademliaLookupTest {
+
+  private class Node(val id: ByteArray) {
+    lateinit var table: KademliaRoutingTable<Node>
+  }
+
+  private val random = Random(42)
+
+  private fun network(size: Int, k: Int): List<Node> {
+    val nodes = List(size) { Node(random.nextBytes(4)) }
+    for (node in nodes) {
+      node.table = KademliaRoutingTable(node.id, k, nodeId = { n -> n.id })
+      nodes.filter { it !== node }.forEach { node.table.add(it) }
+    }
+    return nodes
+  }
+
+  private fun closest(nodes: List<Node>, targetId: ByteArray, k: Int): List<Node> =
+    nodes.sortedWith { a, b -> targetId.xorDistCmp(a.id, b.id) }.take(k)
+
+  @Test
+  fun shouldFindClosestNodes() = runBlocking {
+    val nodes = network(300, 4)
+    val targetId = random.nextBytes(4)
+    val queried = AtomicInteger()
+    val result = iterativeLookup(targetId, nodes[0].table.nearest(targetId, 4), 4, nodeId = { n -> n.id }) { node ->
+      queried.incrementAndGet()
+      node.table.nearest(targetId, 4)
+    }
+    assertEquals(closest(nodes, targetId, 4), result)
+    assertTrue(queried.get() < 50, "lookup queried ${queried.get()} nodes")
+  }
+
+  @Test
+  fun shouldLimitQueriesInFlight() = runBlocking {
+    val nodes = network(100, 8)
+    val targetId = random.nextBytes(4)
+    val running = AtomicInteger()
+    val maxRunning = AtomicInteger()
+    iterativeLookup(targetId, nodes[0].table.nearest(targetId, 8), 8, alpha = 2, nodeId = { n -> n.id }) { node ->
+      maxRunning.accumulateAndGet(running.incrementAndGet()) { a, b -> maxOf(a, b) }
+      delay(5)
+      running.decrementAndGet()
+      node.table.nearest(targetId, 8)
+    }
+    assertEquals(2, maxRunning.get())
+  }
+
+  @Test
+  fun shouldSkipNodesThatDoNotRespond() = runBlocking {
+    val nodes = network(100, 4)
+    val targetId = random.nextBytes(4)
+    val unresponsive = closest(nodes, targetId, 2).toSet()
+    val result = iterativeLookup(targetId, nodes[0].table.nearest(targetId, 4), 4, nodeId = { n -> n.id }) { node ->
+      if (node in unresponsive) {
+        null
+      } else if (node === nodes[1]) {
+        throw IllegalStateException("failed")
+      } else {
+        node.table.nearest(targetId, 4)
+      }
+    }
+    assertEquals(4, result.size)
+    result.forEach { assertFalse(it in unresponsive || it === nodes[1]) }
+    assertEquals(result.sortedWith { a, b -> targetId.xorDistCmp(a.id, b.id) }, result)
+  }
+
+  @Test
+  fun shouldReturnEmptyListWithoutCandidates() = runBlocking {
+    val result = iterativeLookup<Node>(byteArrayOf(0), emptyList(), 4, nodeId = { n -> n.id }) { emptyList() }
+    assertTrue(result.isEmpty())
+  }
+}
@@ -7,6 +7,8 @@ import org.junit.jupiter.api.Assertions.assertFalse
 import org.junit.jupiter.api.Assertions.assertNull
 import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import kotlin.random.Random
 
 internal class KademliaRoutingTableTest {
 
@@ -132,6 +134,60 @@ internal class KademliaRoutingTableTest {
     assertEquals(0, table.size)
   }
 
+  @Test
+  fun shouldTrackBucketOccupancy() {
+    val table = KademliaRoutingTable<Node>(shortId, 16, nodeId = { n -> n.nodeId })
+    table.add(Node(0x01))
+    table.add(Node(0x02))
+    table.add(Node(0x03))
+    table.add(Node(0x05))
+    val occupancy = table.bucketOccupancy()
+    assertEquals(9, occupancy.size)
+    assertEquals(listOf(0, 1, 2, 1, 0, 0, 0, 0, 0), occupancy.toList())
+  }
+
+  @Test
+  fun shouldGenerateIdsAtDistance() {
+    val selfId = Random(1).nextBytes(32)
+    val table = KademliaRoutingTable<Node>(selfId, 16, nodeId = { n -> n.nodeId })
+    for (distance in 1..256) {
+      repeat(10) {
+        assertEquals(distance, table.idAtDistance(distance) xorDist selfId)
+      }
+    }
+    assertThrows<IllegalArgumentException> { table.idAtDistance(0) }
+    assertThrows<IllegalArgumentException> { table.idAtDistance(257) }
+  }
+
+  @Test
+  fun shouldChooseFurthestBucketWhenEmpty() {
+    val table = KademliaRoutingTable<Node>(shortId, 16, nodeId = { n -> n.nodeId })
+    assertEquals(8, table.sparseDistance())
+    assertEquals(8, table.refreshTarget()!! xorDist shortId)
+  }
+
+  @Test
+  fun shouldChooseBucketsThatAreNotFull() {
+    val table = KademliaRoutingTable<Node>(shortId, 2, nodeId = { n -> n.nodeId })
+    // fill the buckets at distances 3 and 8
+    table.add(Node(0x04))
+    table.add(Node(0x05))
+    table.add(Node(0x80.toByte()))
+    table.add(Node(0x81.toByte()))
+    val chosen = (1..200).map { table.sparseDistance()!! }.toSet()
+    assertEquals(setOf(4, 5, 6, 7), chosen)
+  }
+
+  @Test
+  fun shouldNotChooseBucketsWhenAllFull() {
+    val table = KademliaRoutingTable<Node>(shortId, 1, nodeId = { n -> n.nodeId })
+    for (distance in 1..8) {
+      table.add(Node((1 shl (distance - 1)).toByte()))
+    }
+    assertNull(table.sparseDistance())
+    assertNull(table.refreshTarget())
+  }
+
   private fun assertOrderedByLogDist(target: ByteArray, nodes: List<Node>) {
     var dist = 0
     for (n in nodes) {
@@ -0,0 +1,152 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.net.tls;
+
+import static org.apache.tuweni.net.tls.TLS.certificateFingerprint;
+
+import org.apache.tuweni.bytes.Bytes;
+
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of certificate fingerprints.
+ *
+ * <p>Certificates are keyed by their encoding, so a certificate presented again in a new handshake
+ * is found even though it is decoded into a new object. When the cache is full, an arbitrary entry
+ * is evicted to make room for a new fingerprint.
+ */
+public final class CertificateFingerprintCache {
+
+  /** The default maximum number of fingerprints held. */
+  public static final int DEFAULT_MAXIMUM_SIZE = 1024;
+
+  private final ConcurrentHashMap<X509Certificate, Bytes> fingerprints = new ConcurrentHashMap<>();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private volatile int maximumSize;
+
+  /** Construct a cache holding up to {@link #DEFAULT_MAXIMUM_SIZE} fingerprints. */
+  public CertificateFingerprintCache() {
+    this(DEFAULT_MAXIMUM_SIZE);
+  }
+
+  /**
+   * Construct a cache.
+   *
+   * @param maximumSize The maximum number of fingerprints held, or 0 to disable caching.
+   */
+  public CertificateFingerprintCache(int maximumSize) {
+    setMaximumSize(maximumSize);
+  }
+
+  /**
+   * Provides the fingerprint of a certificate, computing it if it is not already cached.
+   *
+   * @param certificate The certificate.
+   * @return The SHA-256 fingerprint of the certificate.
+   * @throws CertificateEncodingException If the certificate cannot be encoded.
+   */
+  public Bytes fingerprint(X509Certificate certificate) throws CertificateEncodingException {
+    Bytes fingerprint = fingerprints.get(certificate);
+    if (fingerprint != null) {
+      hits.increment();
+      return fingerprint;
+    }
+    misses.increment();
+    fingerprint = Bytes.wrap(certificateFingerprint(certificate));
+    if (maximumSize > 0) {
+      fingerprints.put(certificate, fingerprint);
+      evictExcess();
+    }
+    return fingerprint;
+  }
+
+  /**
+   * Set the maximum number of fingerprints held, evicting fingerprints if there are more.
+   *
+   * @param maximumSize The maximum number of fingerprints held, or 0 to disable caching.
+   */
+  public void setMaximumSize(int maximumSize) {
+    if (maximumSize < 0) {
+      throw new IllegalArgumentException("maximumSize must be non-negative");
+    }
+    this.maximumSize = maximumSize;
+    evictExcess();
+  }
+
+  /**
+   * Provides the maximum number of fingerprints held.
+   *
+   * @return The maximum number of fingerprints held.
+   */
+  public int maximumSize() {
+    return maximumSize;
+  }
+
+  /**
+   * Provides the number of fingerprints held.
+   *
+   * @return The number of fingerprints held.
+   */
+  public int size() {
+    return fingerprints.size();
+  }
+
+  /** Remove all fingerprints from the cache. */
+  public void clear() {
+    fingerprints.clear();
+  }
+
+  /**
+   * Provides the number of lookups that found a cached fingerprint.
+   *
+   * @return The number of lookups that found a cached fingerprint.
+   */
+  public long hitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * Provides the number of lookups that computed a fingerprint.
+   *
+   * @return The number of lookups that computed a fingerprint.
+   */
+  public long missCount() {
+    return misses.sum();
+  }
+
+  /**
+   * Provides the ratio of lookups that found a cached fingerprint, or 1.0 if there have been no
+   * lookups.
+   *
+   * @return The ratio of lookups that found a cached fingerprint.
+   */
+  public double hitRate() {
+    long hitCount = hits.sum();
+    long total = hitCount + misses.sum();
+    return (total == 0) ? 1.0 : (double) hitCount / total;
+  }
+
+  /**
+   * Provides the number of fingerprints evicted to respect the maximum size of the cache.
+   *
+   * @return The number of fingerprints evicted.
+   */
+  public long evictionCount() {
+    return evictions.sum();
+  }
+
+  private void evictExcess() {
+    Iterator<X509Certificate> iterator = fingerprints.keySet().iterator();
+    while (fingerprints.size() > maximumSize && iterator.hasNext()) {
+      if (fingerprints.remove(iterator.next()) != null) {
+        evictions.increment();
+      }
+    }
+  }
+}
@@ -3,7 +3,6 @@
 package org.apache.tuweni.net.tls;
 
 import static java.lang.String.format;
-import static org.apache.tuweni.net.tls.TLS.certificateFingerprint;
 
 import org.apache.tuweni.bytes.Bytes;
 
@@ -24,25 +23,33 @@ final class ClientFingerprintTrustManager extends X509ExtendedTrustManager {
 
   private static final X509Certificate[] EMPTY_X509_CERTIFICATES = new X509Certificate[0];
 
-  static ClientFingerprintTrustManager record(FingerprintRepository repository) {
-    return new ClientFingerprintTrustManager(repository, true, true);
+  static ClientFingerprintTrustManager record(
+      FingerprintRepository repository, CertificateFingerprintCache fingerprintCache) {
+    return new ClientFingerprintTrustManager(repository, fingerprintCache, true, true);
   }
 
-  static ClientFingerprintTrustManager tofa(FingerprintRepository repository) {
-    return new ClientFingerprintTrustManager(repository, true, false);
+  static ClientFingerprintTrustManager tofa(
+      FingerprintRepository repository, CertificateFingerprintCache fingerprintCache) {
+    return new ClientFingerprintTrustManager(repository, fingerprintCache, true, false);
   }
 
-  static ClientFingerprintTrustManager allowlist(FingerprintRepository repository) {
-    return new ClientFingerprintTrustManager(repository, false, false);
+  static ClientFingerprintTrustManager allowlist(
+      FingerprintRepository repository, CertificateFingerprintCache fingerprintCache) {
+    return new ClientFingerprintTrustManager(repository, fingerprintCache, false, false);
   }
 
   private final FingerprintRepository repository;
+  private final CertificateFingerprintCache fingerprintCache;
   private final boolean acceptNewFingerprints;
   private final boolean updateFingerprints;
 
   private ClientFingerprintTrustManager(
-      FingerprintRepository repository, boolean acceptNewFingerprints, boolean updateFingerprints) {
+      FingerprintRepository repository,
+      CertificateFingerprintCache fingerprintCache,
+      boolean acceptNewFingerprints,
+      boolean updateFingerprints) {
     this.repository = repository;
+    this.fingerprintCache = fingerprintCache;
     this.acceptNewFingerprints = acceptNewFingerprints;
     this.updateFingerprints = updateFingerprints;
   }
@@ -89,7 +96,7 @@ final class ClientFingerprintTrustManager extends X509ExtendedTrustManager {
 
   private void checkTrusted(X509Certificate[] chain, String host) throws CertificateException {
     X509Certificate cert = chain[0];
-    Bytes fingerprint = Bytes.wrap(certificateFingerprint(cert));
+    Bytes fingerprint = fingerprintCache.fingerprint(cert);
     if (repository.contains(host, fingerprint)) {
       return;
     }
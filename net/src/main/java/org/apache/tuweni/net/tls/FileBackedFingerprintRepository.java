@@ -2,6 +2,7 @@
 // SPDX-License-Identifier: Apache-2.0
 package org.apache.tuweni.net.tls;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.nio.file.Files.createDirectories;
 import static org.apache.tuweni.io.file.Files.atomicReplace;
 import static org.apache.tuweni.io.file.Files.createFileIfMissing;
@@ -9,20 +10,48 @@ import static org.apache.tuweni.io.file.Files.createFileIfMissing;
 import org.apache.tuweni.bytes.Bytes;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
 import java.util.AbstractMap.SimpleImmutableEntry;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A fingerprint repository backed by a file of identifier and fingerprint lines.
+ *
+ * <p>The file is a journal: new and updated fingerprints are appended to it, and the last line for
+ * an identifier wins. Fingerprints added concurrently are appended and synced to disk together.
+ * Once the file holds as many superseded lines as current ones, it is compacted by rewriting each
+ * identifier in place with its current fingerprint.
+ */
 final class FileBackedFingerprintRepository implements FingerprintRepository {
 
   private final Path fingerprintFile;
-  private volatile Map<String, Bytes> fingerprints;
+  // replaced when the file is reloaded, and otherwise updated in place
+  private volatile ConcurrentHashMap<String, Bytes> fingerprints;
+
+  // fingerprints waiting to be appended, and the sequence number of the last of them
+  private final Map<String, Bytes> pending = new LinkedHashMap<>();
+  private long appended;
+
+  // the state of the file, guarded by this
+  private long committed;
+  private int records;
+  private long fileSize;
+  @Nullable private FileTime lastModified;
+  private boolean needsLineSeparator;
 
   FileBackedFingerprintRepository(Path fingerprintFile) {
     try {
@@ -32,7 +61,9 @@ final class FileBackedFingerprintRepository implements FingerprintRepository {
       throw new TLSEnvironmentException("Cannot create fingerprint file " + fingerprintFile, e);
     }
     this.fingerprintFile = fingerprintFile;
-    this.fingerprints = parseFingerprintFile(fingerprintFile);
+    synchronized (this) {
+      load();
+    }
   }
 
   @Override
@@ -47,49 +78,117 @@ final class FileBackedFingerprintRepository implements FingerprintRepository {
 
   @Override
   public void addFingerprint(String identifier, Bytes fingerprint) {
-    if (!contains(identifier, fingerprint)) {
-      synchronized (this) {
-        if (!contains(identifier, fingerprint)) {
-          // put into a copy first, then atomically replace
-          HashMap<String, Bytes> fingerprintsCopy = new HashMap<>(fingerprints);
-          fingerprintsCopy.put(identifier, fingerprint);
-          fingerprints = writeFingerprintFile(fingerprintFile, fingerprintsCopy);
-        }
+    if (contains(identifier, fingerprint)) {
+      return;
+    }
+    long sequence;
+    synchronized (pending) {
+      if (!fingerprint.equals(pending.get(identifier))) {
+        pending.put(identifier, fingerprint);
+        ++appended;
       }
+      sequence = appended;
     }
+    commit(sequence);
   }
 
-  private static Map<String, Bytes> parseFingerprintFile(Path fingerprintFile) {
-    List<String> lines;
+  // Appends every pending fingerprint, unless another thread has already appended this one
+  private synchronized void commit(long sequence) {
+    if (committed >= sequence) {
+      return;
+    }
+    Map<String, Bytes> batch;
+    long batchSequence;
+    synchronized (pending) {
+      batch = new LinkedHashMap<>(pending);
+      pending.clear();
+      batchSequence = appended;
+    }
+
     try {
-      lines = Files.readAllLines(fingerprintFile);
+      reloadIfModified();
+      append(batch);
+    } catch (TLSEnvironmentException e) {
+      // leave the batch to be retried by a later commit
+      synchronized (pending) {
+        batch.forEach(pending::putIfAbsent);
+      }
+      throw e;
+    }
+
+    fingerprints.putAll(batch);
+    committed = batchSequence;
+
+    int size = fingerprints.size();
+    if (records - size >= size) {
+      try {
+        compact();
+      } catch (TLSEnvironmentException e) {
+        // the journal is still valid, so compaction is attempted again after the next append
+      }
+    }
+  }
+
+  private void load() {
+    String content;
+    try {
+      content = Files.readString(fingerprintFile);
     } catch (IOException e) {
       throw new TLSEnvironmentException("Cannot read fingerprint file " + fingerprintFile, e);
     }
 
-    Map<String, Bytes> fingerprints = new HashMap<>();
-
+    ConcurrentHashMap<String, Bytes> loaded = new ConcurrentHashMap<>();
+    List<String> lines = content.lines().collect(Collectors.toList());
+    int count = 0;
     for (int i = 0; i < lines.size(); ++i) {
-      String line = lines.get(i).trim();
-      if (line.isEmpty() || line.startsWith("#")) {
-        continue;
+      Map.Entry<String, Bytes> entry = parseEntry(lines.get(i), i);
+      if (entry != null) {
+        loaded.put(entry.getKey(), entry.getValue());
+        ++count;
       }
+    }
 
-      Map.Entry<String, Bytes> entry;
-      try {
-        entry = parseLine(line);
-      } catch (IOException e) {
-        throw new TLSEnvironmentException(
-            e.getMessage() + " in " + fingerprintFile + " (line " + (i + 1) + ")");
+    fingerprints = loaded;
+    records = count;
+    needsLineSeparator = !content.isEmpty() && !content.endsWith("\n") && !content.endsWith("\r");
+    updateFileState();
+  }
+
+  private void reloadIfModified() {
+    try {
+      if (Files.size(fingerprintFile) == fileSize
+          && Files.getLastModifiedTime(fingerprintFile).equals(lastModified)) {
+        return;
       }
-      fingerprints.put(entry.getKey(), entry.getValue());
+    } catch (IOException e) {
+      throw new TLSEnvironmentException("Cannot read fingerprint file " + fingerprintFile, e);
+    }
+    load();
+  }
+
+  private void append(Map<String, Bytes> batch) {
+    StringBuilder text = new StringBuilder();
+    if (needsLineSeparator) {
+      text.append(System.lineSeparator());
     }
+    batch.forEach((identifier, fingerprint) -> appendLine(text, identifier, fingerprint));
 
-    return Collections.unmodifiableMap(fingerprints);
+    ByteBuffer buffer = ByteBuffer.wrap(text.toString().getBytes(UTF_8));
+    try (FileChannel channel =
+        FileChannel.open(fingerprintFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(false);
+    } catch (IOException e) {
+      throw new TLSEnvironmentException("Cannot write fingerprint file " + fingerprintFile, e);
+    }
+    needsLineSeparator = false;
+    records += batch.size();
+    updateFileState();
   }
 
-  private static Map<String, Bytes> writeFingerprintFile(
-      Path fingerprintFile, Map<String, Bytes> updatedFingerprints) {
+  private void compact() {
     List<String> lines;
     try {
       lines = Files.readAllLines(fingerprintFile);
@@ -97,56 +196,62 @@ final class FileBackedFingerprintRepository implements FingerprintRepository {
       throw new TLSEnvironmentException("Cannot read fingerprint file " + fingerprintFile, e);
     }
 
-    Map<String, Bytes> fingerprints = new HashMap<>();
-    HashSet<String> updatedIdentifiers = new HashSet<>(updatedFingerprints.keySet());
-
+    Map<String, Bytes> current = fingerprints;
+    Set<String> written = new HashSet<>();
     try {
       atomicReplace(
           fingerprintFile,
           writer -> {
-            // copy lines, replacing any updated fingerprints
+            // copy comments, and write each identifier where it first appears
             for (int i = 0; i < lines.size(); ++i) {
-              String line = lines.get(i).trim();
-              if (line.isEmpty() || line.startsWith("#")) {
+              Map.Entry<String, Bytes> entry = parseEntry(lines.get(i), i);
+              if (entry == null) {
                 writer.write(lines.get(i));
                 writer.write(System.lineSeparator());
-                continue;
-              }
-
-              Map.Entry<String, Bytes> entry;
-              try {
-                entry = parseLine(line);
-              } catch (IOException e) {
-                throw new TLSEnvironmentException(
-                    e.getMessage() + " in " + fingerprintFile + " (line " + (i + 1) + ")");
+              } else if (written.add(entry.getKey())) {
+                appendLine(writer, entry.getKey(), current.get(entry.getKey()));
               }
-
-              String identifier = entry.getKey();
-              Bytes fingerprint = updatedFingerprints.getOrDefault(identifier, entry.getValue());
-              fingerprints.put(identifier, fingerprint);
-              updatedIdentifiers.remove(identifier);
-
-              writer.write(identifier);
-              writer.write(' ');
-              writer.write(fingerprint.toHexString().substring(2).toLowerCase(Locale.ENGLISH));
-              writer.write(System.lineSeparator());
-            }
-
-            // write any new fingerprints at the end
-            for (String identifier : updatedIdentifiers) {
-              Bytes fingerprint = updatedFingerprints.get(identifier);
-              fingerprints.put(identifier, fingerprint);
-              writer.write(identifier);
-              writer.write(' ');
-              writer.write(fingerprint.toHexString().substring(2).toLowerCase(Locale.ENGLISH));
-              writer.write(System.lineSeparator());
             }
           });
-
-      return Collections.unmodifiableMap(fingerprints);
     } catch (IOException e) {
       throw new TLSEnvironmentException("Cannot write fingerprint file " + fingerprintFile, e);
     }
+    records = written.size();
+    updateFileState();
+  }
+
+  private void updateFileState() {
+    try {
+      fileSize = Files.size(fingerprintFile);
+      lastModified = Files.getLastModifiedTime(fingerprintFile);
+    } catch (IOException e) {
+      throw new TLSEnvironmentException("Cannot read fingerprint file " + fingerprintFile, e);
+    }
+  }
+
+  private static void appendLine(Appendable out, String identifier, Bytes fingerprint) {
+    try {
+      out.append(identifier);
+      out.append(' ');
+      out.append(fingerprint.toHexString().substring(2).toLowerCase(Locale.ENGLISH));
+      out.append(System.lineSeparator());
+    } catch (IOException e) {
+      throw new TLSEnvironmentException("Cannot write fingerprint", e);
+    }
+  }
+
+  @Nullable
+  private Map.Entry<String, Bytes> parseEntry(String line, int index) {
+    String trimmed = line.trim();
+    if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+      return null;
+    }
+    try {
+      return parseLine(trimmed);
+    } catch (IOException e) {
+      throw new TLSEnvironmentException(
+          e.getMessage() + " in " + fingerprintFile + " (line " + (index + 1) + ")");
+    }
   }
 
   private static Map.Entry<String, Bytes> parseLine(String line) throws IOException {
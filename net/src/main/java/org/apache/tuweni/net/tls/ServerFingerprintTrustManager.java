@@ -3,7 +3,6 @@
 package org.apache.tuweni.net.tls;
 
 import static java.lang.String.format;
-import static org.apache.tuweni.net.tls.TLS.certificateFingerprint;
 
 import org.apache.tuweni.bytes.Bytes;
 
@@ -19,25 +18,33 @@ final class ServerFingerprintTrustManager extends X509ExtendedTrustManager {
 
   private static final X509Certificate[] EMPTY_X509_CERTIFICATES = new X509Certificate[0];
 
-  static ServerFingerprintTrustManager record(FingerprintRepository repository) {
-    return new ServerFingerprintTrustManager(repository, true, true);
+  static ServerFingerprintTrustManager record(
+      FingerprintRepository repository, CertificateFingerprintCache fingerprintCache) {
+    return new ServerFingerprintTrustManager(repository, fingerprintCache, true, true);
   }
 
-  static ServerFingerprintTrustManager tofu(FingerprintRepository repository) {
-    return new ServerFingerprintTrustManager(repository, true, false);
+  static ServerFingerprintTrustManager tofu(
+      FingerprintRepository repository, CertificateFingerprintCache fingerprintCache) {
+    return new ServerFingerprintTrustManager(repository, fingerprintCache, true, false);
   }
 
-  static ServerFingerprintTrustManager allowlist(FingerprintRepository repository) {
-    return new ServerFingerprintTrustManager(repository, false, false);
+  static ServerFingerprintTrustManager allowlist(
+      FingerprintRepository repository, CertificateFingerprintCache fingerprintCache) {
+    return new ServerFingerprintTrustManager(repository, fingerprintCache, false, false);
   }
 
   private final FingerprintRepository repository;
+  private final CertificateFingerprintCache fingerprintCache;
   private final boolean acceptNewFingerprints;
   private final boolean updateFingerprints;
 
   private ServerFingerprintTrustManager(
-      FingerprintRepository repository, boolean acceptNewFingerprints, boolean updateFingerprints) {
+      FingerprintRepository repository,
+      CertificateFingerprintCache fingerprintCache,
+      boolean acceptNewFingerprints,
+      boolean updateFingerprints) {
     this.repository = repository;
+    this.fingerprintCache = fingerprintCache;
     this.acceptNewFingerprints = acceptNewFingerprints;
     this.updateFingerprints = updateFingerprints;
   }
@@ -83,7 +90,7 @@ final class ServerFingerprintTrustManager extends X509ExtendedTrustManager {
       throws CertificateException {
     X509Certificate cert = chain[0];
     String identifier = hostIdentifier(host, port);
-    Bytes fingerprint = Bytes.wrap(certificateFingerprint(cert));
+    Bytes fingerprint = fingerprintCache.fingerprint(cert);
     if (repository.contains(identifier, fingerprint)) {
       return;
     }
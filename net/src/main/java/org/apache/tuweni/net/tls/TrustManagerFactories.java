@@ -15,8 +15,24 @@ import org.jetbrains.annotations.Nullable;
 
 /** Trust manager factories for fingerprinting clients and servers. */
 public final class TrustManagerFactories {
+  private static final CertificateFingerprintCache FINGERPRINT_CACHE =
+      new CertificateFingerprintCache();
+
   private TrustManagerFactories() {}
 
+  /**
+   * Provides the cache of certificate fingerprints shared by the trust managers of all factories
+   * created by this class.
+   *
+   * <p>The cache holds up to {@link CertificateFingerprintCache#DEFAULT_MAXIMUM_SIZE} fingerprints,
+   * which can be changed with {@link CertificateFingerprintCache#setMaximumSize(int)}.
+   *
+   * @return The shared fingerprint cache.
+   */
+  public static CertificateFingerprintCache fingerprintCache() {
+    return FINGERPRINT_CACHE;
+  }
+
   /**
    * Accept all server certificates, recording certificate fingerprints for those that are not
    * CA-signed.
@@ -85,7 +101,7 @@ public final class TrustManagerFactories {
   public static TrustManagerFactory recordServerFingerprints(
       FingerprintRepository repository, boolean skipCASigned) {
     requireNonNull(repository);
-    return wrap(ServerFingerprintTrustManager.record(repository), skipCASigned);
+    return wrap(ServerFingerprintTrustManager.record(repository, FINGERPRINT_CACHE), skipCASigned);
   }
 
   /**
@@ -125,7 +141,7 @@ public final class TrustManagerFactories {
       FingerprintRepository repository, TrustManagerFactory tmf) {
     requireNonNull(repository);
     requireNonNull(tmf);
-    return wrap(ServerFingerprintTrustManager.record(repository), tmf);
+    return wrap(ServerFingerprintTrustManager.record(repository, FINGERPRINT_CACHE), tmf);
   }
 
   /**
@@ -194,7 +210,7 @@ public final class TrustManagerFactories {
   public static TrustManagerFactory trustServerOnFirstUse(
       FingerprintRepository repository, boolean acceptCASigned) {
     requireNonNull(repository);
-    return wrap(ServerFingerprintTrustManager.tofu(repository), acceptCASigned);
+    return wrap(ServerFingerprintTrustManager.tofu(repository, FINGERPRINT_CACHE), acceptCASigned);
   }
 
   /**
@@ -232,7 +248,7 @@ public final class TrustManagerFactories {
       FingerprintRepository repository, TrustManagerFactory tmf) {
     requireNonNull(repository);
     requireNonNull(tmf);
-    return wrap(ServerFingerprintTrustManager.tofu(repository), tmf);
+    return wrap(ServerFingerprintTrustManager.tofu(repository, FINGERPRINT_CACHE), tmf);
   }
 
   /**
@@ -292,7 +308,8 @@ public final class TrustManagerFactories {
   public static TrustManagerFactory allowlistServers(
       FingerprintRepository repository, boolean acceptCASigned) {
     requireNonNull(repository);
-    return wrap(ServerFingerprintTrustManager.allowlist(repository), acceptCASigned);
+    return wrap(
+        ServerFingerprintTrustManager.allowlist(repository, FINGERPRINT_CACHE), acceptCASigned);
   }
 
   /**
@@ -326,7 +343,7 @@ public final class TrustManagerFactories {
       FingerprintRepository repository, TrustManagerFactory tmf) {
     requireNonNull(repository);
     requireNonNull(tmf);
-    return wrap(ServerFingerprintTrustManager.allowlist(repository), tmf);
+    return wrap(ServerFingerprintTrustManager.allowlist(repository, FINGERPRINT_CACHE), tmf);
   }
 
   /**
@@ -397,7 +414,7 @@ public final class TrustManagerFactories {
   public static TrustManagerFactory recordClientFingerprints(
       FingerprintRepository repository, boolean skipCASigned) {
     requireNonNull(repository);
-    return wrap(ClientFingerprintTrustManager.record(repository), skipCASigned);
+    return wrap(ClientFingerprintTrustManager.record(repository, FINGERPRINT_CACHE), skipCASigned);
   }
 
   /**
@@ -437,7 +454,7 @@ public final class TrustManagerFactories {
       FingerprintRepository repository, TrustManagerFactory tmf) {
     requireNonNull(repository);
     requireNonNull(tmf);
-    return wrap(ClientFingerprintTrustManager.record(repository), tmf);
+    return wrap(ClientFingerprintTrustManager.record(repository, FINGERPRINT_CACHE), tmf);
   }
 
   /**
@@ -534,7 +551,7 @@ public final class TrustManagerFactories {
   public static TrustManagerFactory trustClientOnFirstAccess(
       FingerprintRepository repository, boolean acceptCASigned) {
     requireNonNull(repository);
-    return wrap(ClientFingerprintTrustManager.tofa(repository), acceptCASigned);
+    return wrap(ClientFingerprintTrustManager.tofa(repository, FINGERPRINT_CACHE), acceptCASigned);
   }
 
   /**
@@ -586,7 +603,7 @@ public final class TrustManagerFactories {
       FingerprintRepository repository, TrustManagerFactory tmf) {
     requireNonNull(repository);
     requireNonNull(tmf);
-    return wrap(ClientFingerprintTrustManager.tofa(repository), tmf);
+    return wrap(ClientFingerprintTrustManager.tofa(repository, FINGERPRINT_CACHE), tmf);
   }
 
   /**
@@ -644,7 +661,8 @@ public final class TrustManagerFactories {
   public static TrustManagerFactory allowlistClients(
       FingerprintRepository repository, boolean acceptCASigned) {
     requireNonNull(repository);
-    return wrap(ClientFingerprintTrustManager.allowlist(repository), acceptCASigned);
+    return wrap(
+        ClientFingerprintTrustManager.allowlist(repository, FINGERPRINT_CACHE), acceptCASigned);
   }
 
   /**
@@ -678,7 +696,7 @@ public final class TrustManagerFactories {
       FingerprintRepository repository, TrustManagerFactory tmf) {
     requireNonNull(repository);
     requireNonNull(tmf);
-    return wrap(ClientFingerprintTrustManager.allowlist(repository), tmf);
+    return wrap(ClientFingerprintTrustManager.allowlist(repository, FINGERPRINT_CACHE), tmf);
   }
 
   private static TrustManagerFactory wrap(X509TrustManager trustManager, boolean acceptCASigned) {
@@ -0,0 +1,86 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.net.tls;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.apache.tuweni.bytes.Bytes;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+
+import io.vertx.core.net.SelfSignedCertificate;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class CertificateFingerprintCacheTest {
+
+  private static SelfSignedCertificate fooCert;
+  private static SelfSignedCertificate barCert;
+  private static SelfSignedCertificate bazCert;
+
+  @BeforeAll
+  static void generateCertificates() {
+    fooCert = SelfSignedCertificate.create("foo.com");
+    barCert = SelfSignedCertificate.create("bar.com");
+    bazCert = SelfSignedCertificate.create("baz.com");
+  }
+
+  private static X509Certificate readCertificate(SelfSignedCertificate certificate)
+      throws Exception {
+    try (InputStream is = Files.newInputStream(Paths.get(certificate.certificatePath()))) {
+      return (X509Certificate) CertificateFactory.getInstance("X.509").generateCertificate(is);
+    }
+  }
+
+  @Test
+  void shouldCacheFingerprintsByEncoding() throws Exception {
+    CertificateFingerprintCache cache = new CertificateFingerprintCache();
+    X509Certificate certificate = readCertificate(fooCert);
+    Bytes fingerprint = cache.fingerprint(certificate);
+    assertEquals(Bytes.wrap(TLS.certificateFingerprint(certificate)), fingerprint);
+    assertEquals(0, cache.hitCount());
+    assertEquals(1, cache.missCount());
+
+    // the same certificate, decoded again as for a new handshake
+    assertSame(fingerprint, cache.fingerprint(readCertificate(fooCert)));
+    assertEquals(1, cache.hitCount());
+    assertEquals(0.5, cache.hitRate());
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  void shouldEvictToRespectMaximumSize() throws Exception {
+    CertificateFingerprintCache cache = new CertificateFingerprintCache(2);
+    cache.fingerprint(readCertificate(fooCert));
+    cache.fingerprint(readCertificate(barCert));
+    cache.fingerprint(readCertificate(bazCert));
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.evictionCount());
+
+    cache.setMaximumSize(1);
+    assertEquals(1, cache.size());
+    assertEquals(2, cache.evictionCount());
+
+    cache.setMaximumSize(0);
+    X509Certificate certificate = readCertificate(fooCert);
+    assertEquals(cache.fingerprint(certificate), cache.fingerprint(certificate));
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.hitCount());
+    assertEquals(5, cache.missCount());
+
+    assertThrows(IllegalArgumentException.class, () -> cache.setMaximumSize(-1));
+  }
+
+  @Test
+  void trustManagerFactoriesShareACache() {
+    CertificateFingerprintCache cache = TrustManagerFactories.fingerprintCache();
+    assertSame(cache, TrustManagerFactories.fingerprintCache());
+    assertEquals(CertificateFingerprintCache.DEFAULT_MAXIMUM_SIZE, cache.maximumSize());
+  }
+}
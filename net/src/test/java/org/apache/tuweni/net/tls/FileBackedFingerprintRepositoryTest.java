@@ -5,6 +5,7 @@ package org.apache.tuweni.net.tls;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.apache.tuweni.io.file.Files.deleteRecursively;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -17,7 +18,15 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -27,6 +36,10 @@ class FileBackedFingerprintRepositoryTest {
 
   private SecureRandom secureRandom = new SecureRandom();
 
+  private static String hex(Bytes fingerprint) {
+    return fingerprint.toHexString().substring(2).toLowerCase(Locale.ENGLISH);
+  }
+
   private Bytes generateFingerprint() {
     byte[] bytes = new byte[32];
     secureRandom.nextBytes(bytes);
@@ -85,6 +98,94 @@ class FileBackedFingerprintRepositoryTest {
         Files.readAllLines(tempFolder.resolve("repo")).get(0));
   }
 
+  @Test
+  void testAppendsNewFingerprints(@TempDirectory Path tempFolder) throws IOException {
+    Path repoFile = tempFolder.resolve("repo-append");
+    Bytes fingerprint1 = generateFingerprint();
+    Files.writeString(repoFile, "# known hosts\nfoo " + hex(fingerprint1));
+    FileBackedFingerprintRepository repo = new FileBackedFingerprintRepository(repoFile);
+    Bytes fingerprint2 = generateFingerprint();
+    repo.addFingerprint("bar", fingerprint2);
+    repo.addFingerprint("bar", fingerprint2);
+    assertEquals(
+        Arrays.asList("# known hosts", "foo " + hex(fingerprint1), "bar " + hex(fingerprint2)),
+        Files.readAllLines(repoFile));
+
+    FileBackedFingerprintRepository reopened = new FileBackedFingerprintRepository(repoFile);
+    assertTrue(reopened.contains("foo", fingerprint1));
+    assertTrue(reopened.contains("bar", fingerprint2));
+  }
+
+  @Test
+  void testCompactsSupersededFingerprints(@TempDirectory Path tempFolder) throws IOException {
+    Path repoFile = tempFolder.resolve("repo-compact");
+    Files.writeString(repoFile, "# known hosts" + System.lineSeparator());
+    FileBackedFingerprintRepository repo = new FileBackedFingerprintRepository(repoFile);
+    repo.addFingerprint("foo", generateFingerprint());
+    repo.addFingerprint("bar", generateFingerprint());
+    Bytes fingerprint1 = generateFingerprint();
+    repo.addFingerprint("foo", fingerprint1);
+    assertEquals(4, Files.readAllLines(repoFile).size());
+    assertTrue(new FileBackedFingerprintRepository(repoFile).contains("foo", fingerprint1));
+
+    Bytes fingerprint2 = generateFingerprint();
+    repo.addFingerprint("bar", fingerprint2);
+    assertEquals(
+        Arrays.asList("# known hosts", "foo " + hex(fingerprint1), "bar " + hex(fingerprint2)),
+        Files.readAllLines(repoFile));
+    assertTrue(repo.contains("foo", fingerprint1));
+    assertTrue(repo.contains("bar", fingerprint2));
+  }
+
+  @Test
+  void testReloadsExternalChanges(@TempDirectory Path tempFolder) throws IOException {
+    Path repoFile = tempFolder.resolve("repo-reload");
+    FileBackedFingerprintRepository repo = new FileBackedFingerprintRepository(repoFile);
+    repo.addFingerprint("foo", generateFingerprint());
+    Bytes fingerprint1 = generateFingerprint();
+    Files.writeString(repoFile, "bar " + hex(fingerprint1));
+    Bytes fingerprint2 = generateFingerprint();
+    repo.addFingerprint("baz", fingerprint2);
+    assertFalse(repo.contains("foo"));
+    assertTrue(repo.contains("bar", fingerprint1));
+    assertTrue(repo.contains("baz", fingerprint2));
+    assertEquals(
+        Arrays.asList("bar " + hex(fingerprint1), "baz " + hex(fingerprint2)),
+        Files.readAllLines(repoFile));
+  }
+
+  @Test
+  void testConcurrentAdds(@TempDirectory Path tempFolder) throws Exception {
+    Path repoFile = tempFolder.resolve("repo-concurrent");
+    FileBackedFingerprintRepository repo = new FileBackedFingerprintRepository(repoFile);
+    Map<String, Bytes> expected = new ConcurrentHashMap<>();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 400; ++i) {
+        String identifier = "host" + i + ":443";
+        futures.add(
+            executor.submit(
+                () -> {
+                  Bytes fingerprint = generateFingerprint();
+                  expected.put(identifier, fingerprint);
+                  repo.addFingerprint(identifier, fingerprint);
+                  assertTrue(repo.contains(identifier, fingerprint));
+                }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    assertEquals(400, Files.readAllLines(repoFile).size());
+    FileBackedFingerprintRepository reopened = new FileBackedFingerprintRepository(repoFile);
+    expected.forEach(
+        (identifier, fingerprint) -> assertTrue(reopened.contains(identifier, fingerprint)));
+  }
+
   @Test
   void testInvalidFingerprintAddedToFile(@TempDirectory Path tempFolder) throws IOException {
     FileBackedFingerprintRepository repo =
@@ -4,11 +4,8 @@ package org.apache.tuweni.toml;
 
 import static org.apache.tuweni.toml.TomlPosition.positionAt;
 
-import org.apache.tuweni.toml.internal.TomlLexer;
-
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import org.antlr.v4.runtime.BaseErrorListener;
@@ -66,19 +63,10 @@ final class AccumulatingErrorListener extends BaseErrorListener implements Error
   }
 
   private String getMessage(Token token, String expected) {
-    return "Unexpected " + getTokenName(token) + ", expected " + expected;
-  }
-
-  private static String getTokenName(Token token) {
-    int tokenType = token.getType();
-    switch (tokenType) {
-      case TomlLexer.NewLine:
-        return "end of line";
-      case TomlLexer.EOF:
-        return "end of input";
-      default:
-        return "'" + Toml.tomlEscape(token.getText()) + '\'';
-    }
+    return "Unexpected "
+        + TokenName.describeToken(token.getType(), token.getText())
+        + ", expected "
+        + expected;
   }
 
   private static String getExpected(RecognitionException e) {
@@ -87,29 +75,7 @@ final class AccumulatingErrorListener extends BaseErrorListener implements Error
   }
 
   private static String getExpected(IntervalSet expectedTokens) {
-    List<String> sortedNames =
-        expectedTokens.getIntervals().stream()
-            .flatMap(i -> IntStream.rangeClosed(i.a, i.b).boxed())
-            .flatMap(TokenName::namesForToken)
-            .sorted()
-            .distinct()
-            .map(TokenName::displayName)
-            .collect(Collectors.toList());
-
-    StringBuilder builder = new StringBuilder();
-    int count = sortedNames.size();
-    for (int i = 0; i < count; ++i) {
-      builder.append(sortedNames.get(i));
-      if (i < (count - 2)) {
-        builder.append(", ");
-      } else if (i == (count - 2)) {
-        if (count >= 3) {
-          builder.append(',');
-        }
-        builder.append(" or ");
-      }
-    }
-
-    return builder.toString();
+    return TokenName.describeExpected(
+        expectedTokens.getIntervals().stream().flatMapToInt(i -> IntStream.rangeClosed(i.a, i.b)));
   }
 }
@@ -0,0 +1,897 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.toml;
+
+import static org.apache.tuweni.toml.TomlPosition.positionAt;
+
+import org.apache.tuweni.toml.internal.TomlLexer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+
+/**
+ * A lexer for TOML documents, reading directly from a {@link Reader}.
+ *
+ * <p>This lexer produces the same tokens, with the same lexer modes, as the ANTLR generated {@link
+ * TomlLexer}, except that whitespace and comments are skipped and the content of a string is
+ * returned as a single {@link TomlLexer#StringChar} token holding the decoded string.
+ */
+final class DocumentLexer {
+
+  static final class Token {
+    int type;
+    String text;
+    int line;
+    int column;
+    // the first invalid escape sequence in a string
+    @Nullable TomlParseError error;
+
+    TomlPosition position() {
+      return positionAt(line, column + 1);
+    }
+
+    Token copy() {
+      Token token = new Token();
+      token.type = type;
+      token.text = text;
+      token.line = line;
+      token.column = column;
+      token.error = error;
+      return token;
+    }
+  }
+
+  private static final String LINE_SEPARATOR = System.lineSeparator();
+
+  private static final int DEFAULT_MODE = 0;
+  private static final int VALUE_MODE = 1;
+  private static final int BASIC_STRING_MODE = 2;
+  private static final int ML_BASIC_STRING_MODE = 3;
+  private static final int LITERAL_STRING_MODE = 4;
+  private static final int ML_LITERAL_STRING_MODE = 5;
+  private static final int DATE_MODE = 6;
+  private static final int INLINE_TABLE_MODE = 7;
+
+  // rule order of the value mode rules that can match a number, boolean or date
+  private static final int[] VALUE_TOKENS = {
+    TomlLexer.DecimalInteger,
+    TomlLexer.HexInteger,
+    TomlLexer.OctalInteger,
+    TomlLexer.BinaryInteger,
+    TomlLexer.FloatingPoint,
+    TomlLexer.FloatingPointInf,
+    TomlLexer.FloatingPointNaN,
+    TomlLexer.TrueBoolean,
+    TomlLexer.FalseBoolean,
+    TomlLexer.DateDigits
+  };
+
+  @Nullable private final Reader reader;
+  private char[] buffer;
+  private int position;
+  private int limit;
+  private boolean endOfInput;
+
+  private long offset;
+  private int line = 1;
+  private int column = 0;
+  private boolean afterHighSurrogate;
+
+  private int mode = DEFAULT_MODE;
+  private int[] modeStack = new int[8];
+  private int modeStackSize;
+  private int arrayDepth;
+  private int[] arrayDepthStack = new int[8];
+  private int arrayDepthStackSize;
+
+  private final StringBuilder text = new StringBuilder();
+
+  DocumentLexer(Reader reader) {
+    this(reader, 1, 8192);
+  }
+
+  /**
+   * Create a lexer for input that starts part way through a document.
+   *
+   * @param reader The reader, positioned at the start of a line.
+   * @param line The line number of the first line read.
+   * @param bufferSize The initial size of the read buffer.
+   */
+  DocumentLexer(Reader reader, int line, int bufferSize) {
+    this.reader = reader;
+    this.buffer = new char[bufferSize];
+    this.line = line;
+  }
+
+  DocumentLexer(String input) {
+    this.reader = null;
+    this.buffer = input.toCharArray();
+    this.limit = buffer.length;
+    this.endOfInput = true;
+  }
+
+  /**
+   * Read the next token.
+   *
+   * @param token The token to populate.
+   * @throws IOException If an IO error occurs.
+   */
+  void next(Token token) throws IOException {
+    do {
+      token.error = null;
+      token.line = line;
+      token.column = column;
+      if (peek(0) < 0) {
+        token.type = TomlLexer.EOF;
+        token.text = "<EOF>";
+        return;
+      }
+    } while (!nextInMode(token));
+  }
+
+  private boolean nextInMode(Token token) throws IOException {
+    switch (mode) {
+      case DEFAULT_MODE:
+        return nextInDefaultMode(token);
+      case VALUE_MODE:
+        return nextInValueMode(token);
+      case BASIC_STRING_MODE:
+        return nextInBasicStringMode(token);
+      case ML_BASIC_STRING_MODE:
+        return nextInMLBasicStringMode(token);
+      case LITERAL_STRING_MODE:
+        return nextInLiteralStringMode(token);
+      case ML_LITERAL_STRING_MODE:
+        return nextInMLLiteralStringMode(token);
+      case DATE_MODE:
+        return nextInDateMode(token);
+      case INLINE_TABLE_MODE:
+        return nextInInlineTableMode(token);
+      default:
+        throw new IllegalStateException("Unknown lexer mode " + mode);
+    }
+  }
+
+  private boolean nextInDefaultMode(Token token) throws IOException {
+    int c = peek(0);
+    switch (c) {
+      case '.':
+        return fixed(token, TomlLexer.Dot, ".");
+      case '=':
+        resetArrayDepth();
+        pushMode(VALUE_MODE);
+        return fixed(token, TomlLexer.Equals, "=");
+      case '"':
+        pushMode(BASIC_STRING_MODE);
+        return fixed(token, TomlLexer.QuotationMark, "\"");
+      case '\'':
+        pushMode(LITERAL_STRING_MODE);
+        return fixed(token, TomlLexer.Apostrophe, "'");
+      case '[':
+        if (peek(1) == '[') {
+          return fixed(token, TomlLexer.ArrayTableKeyStart, "[[");
+        }
+        return fixed(token, TomlLexer.TableKeyStart, "[");
+      case ']':
+        if (peek(1) == ']') {
+          return fixed(token, TomlLexer.ArrayTableKeyEnd, "]]");
+        }
+        return fixed(token, TomlLexer.TableKeyEnd, "]");
+      case ' ':
+      case '\t':
+        skipWhitespace();
+        return false;
+      case '#':
+        skipComment();
+        return false;
+      default:
+        if (isUnquotedKeyChar(c)) {
+          return unquotedKey(token);
+        }
+        if (newLine(token)) {
+          return true;
+        }
+        return error(token);
+    }
+  }
+
+  private boolean nextInValueMode(Token token) throws IOException {
+    int c = peek(0);
+    switch (c) {
+      case '"':
+        if (peek(1) == '"' && peek(2) == '"') {
+          mode = ML_BASIC_STRING_MODE;
+          return tripleQuote(token, TomlLexer.TripleQuotationMark);
+        }
+        mode = BASIC_STRING_MODE;
+        return fixed(token, TomlLexer.QuotationMark, "\"");
+      case '\'':
+        if (peek(1) == '\'' && peek(2) == '\'') {
+          mode = ML_LITERAL_STRING_MODE;
+          return tripleQuote(token, TomlLexer.TripleApostrophe);
+        }
+        mode = LITERAL_STRING_MODE;
+        return fixed(token, TomlLexer.Apostrophe, "'");
+      case '[':
+        arrayDepth++;
+        pushMode(VALUE_MODE);
+        return fixed(token, TomlLexer.ArrayStart, "[");
+      case ']':
+        arrayDepth--;
+        popMode();
+        return fixed(token, TomlLexer.ArrayEnd, "]");
+      case ',':
+        if (arrayDepth > 0) {
+          pushMode(VALUE_MODE);
+          return fixed(token, TomlLexer.Comma, ",");
+        }
+        popMode();
+        return error(token);
+      case '{':
+        pushArrayDepth();
+        mode = INLINE_TABLE_MODE;
+        return fixed(token, TomlLexer.InlineTableStart, "{");
+      case ' ':
+      case '\t':
+        skipWhitespace();
+        return false;
+      case '#':
+        skipComment();
+        return false;
+      default:
+        if (value(token)) {
+          return true;
+        }
+        int length = newLineLength(0);
+        if (length > 0 && arrayDepth > 0) {
+          return newLine(token);
+        }
+        if (length > 0 && arrayDepth == 0) {
+          popMode();
+          return newLine(token);
+        }
+        popMode();
+        return error(token);
+    }
+  }
+
+  // Match the longest number, boolean or date start, preferring the earliest rule on a tie
+  private boolean value(Token token) throws IOException {
+    int bestType = 0;
+    int bestLength = 0;
+    for (int type : VALUE_TOKENS) {
+      int length = valueLength(type);
+      if (length > bestLength) {
+        bestType = type;
+        bestLength = length;
+      }
+    }
+    if (bestLength == 0) {
+      return false;
+    }
+    token.type = bestType;
+    token.text = take(bestLength);
+    if (bestType == TomlLexer.DateDigits) {
+      mode = DATE_MODE;
+    } else {
+      popMode();
+    }
+    return true;
+  }
+
+  private int valueLength(int type) throws IOException {
+    switch (type) {
+      case TomlLexer.DecimalInteger:
+        return decimalIntegerLength();
+      case TomlLexer.HexInteger:
+        return prefixedIntegerLength('x', 16);
+      case TomlLexer.OctalInteger:
+        return prefixedIntegerLength('o', 8);
+      case TomlLexer.BinaryInteger:
+        return prefixedIntegerLength('b', 2);
+      case TomlLexer.FloatingPoint:
+        return floatLength();
+      case TomlLexer.FloatingPointInf:
+        return signedWordLength("inf");
+      case TomlLexer.FloatingPointNaN:
+        return signedWordLength("nan");
+      case TomlLexer.TrueBoolean:
+        return wordLength(0, "true");
+      case TomlLexer.FalseBoolean:
+        return wordLength(0, "false");
+      case TomlLexer.DateDigits:
+        int length = 0;
+        while (isDigit(peek(length))) {
+          length++;
+        }
+        return (length > 0 && isDateSeparator(peek(length))) ? length : 0;
+      default:
+        throw new IllegalArgumentException("Not a value token " + type);
+    }
+  }
+
+  // DecInt : [-+]? (Digit | Digit1_9 ('_'? Digit)+), not followed by a date separator
+  private int decimalIntegerLength() throws IOException {
+    int start = (peek(0) == '-' || peek(0) == '+') ? 1 : 0;
+    int c = peek(start);
+    if (!isDigit(c)) {
+      return 0;
+    }
+    int length = 0;
+    int end = start + 1;
+    while (true) {
+      if (!isDateSeparator(peek(end))) {
+        length = end;
+      }
+      if (c == '0') {
+        return length;
+      }
+      if (isDigit(peek(end))) {
+        end++;
+      } else if (peek(end) == '_' && isDigit(peek(end + 1))) {
+        end += 2;
+      } else {
+        return length;
+      }
+    }
+  }
+
+  // The length of the longest DecInt at the offset, or 0
+  private int decIntLength(int offset) throws IOException {
+    int start = (peek(offset) == '-' || peek(offset) == '+') ? offset + 1 : offset;
+    int c = peek(start);
+    if (!isDigit(c)) {
+      return 0;
+    }
+    int end = start + 1;
+    if (c == '0') {
+      return end - offset;
+    }
+    return digitsLength(end, 10) - offset;
+  }
+
+  // The offset after a run of ('_'? digit)*
+  private int digitsLength(int offset, int radix) throws IOException {
+    int end = offset;
+    while (true) {
+      if (isDigit(peek(end), radix)) {
+        end++;
+      } else if (peek(end) == '_' && isDigit(peek(end + 1), radix)) {
+        end += 2;
+      } else {
+        return end;
+      }
+    }
+  }
+
+  private int prefixedIntegerLength(char prefix, int radix) throws IOException {
+    if (peek(0) != '0' || peek(1) != prefix || !isDigit(peek(2), radix)) {
+      return 0;
+    }
+    return digitsLength(3, radix);
+  }
+
+  // FloatingPoint : DecInt (Exp | Frac Exp?)
+  private int floatLength() throws IOException {
+    int end = decIntLength(0);
+    if (end == 0) {
+      return 0;
+    }
+    int c = peek(end);
+    if (c == 'e' || c == 'E') {
+      int exponent = decIntLength(end + 1);
+      return (exponent == 0) ? 0 : end + 1 + exponent;
+    }
+    if (c != '.' || !isDigit(peek(end + 1))) {
+      return 0;
+    }
+    end = digitsLength(end + 2, 10);
+    c = peek(end);
+    if (c == 'e' || c == 'E') {
+      int exponent = decIntLength(end + 1);
+      if (exponent > 0) {
+        return end + 1 + exponent;
+      }
+    }
+    return end;
+  }
+
+  private int signedWordLength(String word) throws IOException {
+    if (peek(0) == '-' || peek(0) == '+') {
+      int length = wordLength(1, word);
+      return (length == 0) ? 0 : length + 1;
+    }
+    return wordLength(0, word);
+  }
+
+  private int wordLength(int offset, String word) throws IOException {
+    for (int i = 0; i < word.length(); ++i) {
+      if (peek(offset + i) != word.charAt(i)) {
+        return 0;
+      }
+    }
+    return word.length();
+  }
+
+  private boolean tripleQuote(Token token, int type) throws IOException {
+    int length = 3 + newLineLength(3);
+    token.type = type;
+    token.text = take(length);
+    return true;
+  }
+
+  private boolean nextInBasicStringMode(Token token) throws IOException {
+    int c = peek(0);
+    if (c == '"') {
+      popMode();
+      return fixed(token, TomlLexer.QuotationMark, "\"");
+    }
+    text.setLength(0);
+    long start = offset;
+    while (true) {
+      c = peek(0);
+      if (c == '\\' && peek(1) >= 0 && peek(1) != '\n') {
+        escape(token);
+      } else if (c >= 0x20 && c != '"' && c != '\\' && c != 0x7F) {
+        text.append(consume());
+      } else {
+        break;
+      }
+    }
+    if (offset > start) {
+      return string(token);
+    }
+    if (newLine(token)) {
+      popMode();
+      return true;
+    }
+    popMode();
+    return error(token);
+  }
+
+  private boolean nextInMLBasicStringMode(Token token) throws IOException {
+    if (peek(0) == '"' && peek(1) == '"' && peek(2) == '"') {
+      popMode();
+      return fixed(token, TomlLexer.TripleQuotationMark, "\"\"\"");
+    }
+    text.setLength(0);
+    long start = offset;
+    while (true) {
+      int c = peek(0);
+      int length;
+      if (c == '"' && peek(1) == '"' && peek(2) == '"') {
+        break;
+      } else if (c == '\\' && (length = lineEndLength()) > 0) {
+        skip(length);
+        text.append(LINE_SEPARATOR);
+      } else if (c == '\\' && peek(1) >= 0) {
+        escape(token);
+      } else if ((length = newLineLength(0)) > 0) {
+        skip(length);
+        text.append(LINE_SEPARATOR);
+      } else if (c >= 0x20 && c != '\\' && c != 0x7F) {
+        text.append(consume());
+      } else {
+        break;
+      }
+    }
+    if (offset > start) {
+      return string(token);
+    }
+    popMode();
+    return error(token);
+  }
+
+  // MLBasicStringLineEnd : '\\' [ \t]* NL
+  private int lineEndLength() throws IOException {
+    int offset = 1;
+    while (peek(offset) == ' ' || peek(offset) == '\t') {
+      offset++;
+    }
+    int length = newLineLength(offset);
+    return (length == 0) ? 0 : offset + length;
+  }
+
+  private boolean nextInLiteralStringMode(Token token) throws IOException {
+    int c = peek(0);
+    if (c == '\'') {
+      popMode();
+      return fixed(token, TomlLexer.Apostrophe, "'");
+    }
+    text.setLength(0);
+    long start = offset;
+    while (true) {
+      c = peek(0);
+      if (c != '\'' && (c == '\t' || (c >= 0x20 && c != 0x7F))) {
+        text.append(consume());
+      } else {
+        break;
+      }
+    }
+    if (offset > start) {
+      return string(token);
+    }
+    if (newLine(token)) {
+      popMode();
+      return true;
+    }
+    popMode();
+    return error(token);
+  }
+
+  private boolean nextInMLLiteralStringMode(Token token) throws IOException {
+    if (peek(0) == '\'' && peek(1) == '\'' && peek(2) == '\'') {
+      popMode();
+      return fixed(token, TomlLexer.TripleApostrophe, "'''");
+    }
+    text.setLength(0);
+    long start = offset;
+    while (true) {
+      int c = peek(0);
+      int length;
+      if (c == '\'' && peek(1) == '\'' && peek(2) == '\'') {
+        break;
+      } else if ((length = newLineLength(0)) > 0) {
+        skip(length);
+        text.append(LINE_SEPARATOR);
+      } else if (c == '\t' || (c >= 0x20 && c != 0x7F)) {
+        text.append(consume());
+      } else {
+        break;
+      }
+    }
+    if (offset > start) {
+      return string(token);
+    }
+    popMode();
+    return error(token);
+  }
+
+  private boolean nextInDateMode(Token token) throws IOException {
+    int c = peek(0);
+    switch (c) {
+      case '-':
+        return fixed(token, TomlLexer.Dash, "-");
+      case '+':
+        return fixed(token, TomlLexer.Plus, "+");
+      case ':':
+        return fixed(token, TomlLexer.Colon, ":");
+      case '.':
+        return fixed(token, TomlLexer.Dot, ".");
+      case 'Z':
+        return fixed(token, TomlLexer.Z, "Z");
+      case 'T':
+        return fixed(token, TomlLexer.TimeDelimiter, "T");
+      case 't':
+        return fixed(token, TomlLexer.TimeDelimiter, "t");
+      case ',':
+        popMode();
+        return fixed(token, TomlLexer.Comma, ",");
+      case ' ':
+        if (isDigit(peek(1))) {
+          return fixed(token, TomlLexer.TimeDelimiter, " ");
+        }
+        skipWhitespace();
+        popMode();
+        return false;
+      case '\t':
+        skipWhitespace();
+        popMode();
+        return false;
+      case '#':
+        skipComment();
+        popMode();
+        return false;
+      default:
+        if (isDigit(c)) {
+          int length = 1;
+          while (isDigit(peek(length))) {
+            length++;
+          }
+          token.type = TomlLexer.DateDigits;
+          token.text = take(length);
+          return true;
+        }
+        popMode();
+        if (newLine(token)) {
+          return true;
+        }
+        return error(token);
+    }
+  }
+
+  private boolean nextInInlineTableMode(Token token) throws IOException {
+    int c = peek(0);
+    switch (c) {
+      case '}':
+        popArrayDepth();
+        popMode();
+        return fixed(token, TomlLexer.InlineTableEnd, "}");
+      case '.':
+        return fixed(token, TomlLexer.Dot, ".");
+      case '=':
+        pushMode(VALUE_MODE);
+        return fixed(token, TomlLexer.Equals, "=");
+      case ',':
+        return fixed(token, TomlLexer.Comma, ",");
+      case '"':
+        pushMode(BASIC_STRING_MODE);
+        return fixed(token, TomlLexer.QuotationMark, "\"");
+      case '\'':
+        pushMode(LITERAL_STRING_MODE);
+        return fixed(token, TomlLexer.Apostrophe, "'");
+      case ' ':
+      case '\t':
+        skipWhitespace();
+        return false;
+      case '#':
+        skipComment();
+        popMode();
+        return false;
+      default:
+        if (isUnquotedKeyChar(c)) {
+          return unquotedKey(token);
+        }
+        popMode();
+        if (newLine(token)) {
+          return true;
+        }
+        return error(token);
+    }
+  }
+
+  private boolean fixed(Token token, int type, String tokenText) throws IOException {
+    skip(tokenText.length());
+    token.type = type;
+    token.text = tokenText;
+    return true;
+  }
+
+  private boolean unquotedKey(Token token) throws IOException {
+    int length = 1;
+    while (isUnquotedKeyChar(peek(length))) {
+      length++;
+    }
+    token.type = TomlLexer.UnquotedKey;
+    token.text = take(length);
+    return true;
+  }
+
+  private boolean string(Token token) {
+    token.type = TomlLexer.StringChar;
+    token.text = text.toString();
+    return true;
+  }
+
+  private boolean newLine(Token token) throws IOException {
+    int length = newLineLength(0);
+    if (length == 0) {
+      return false;
+    }
+    skip(length);
+    token.type = TomlLexer.NewLine;
+    token.text = LINE_SEPARATOR;
+    return true;
+  }
+
+  private boolean error(Token token) throws IOException {
+    int length =
+        (Character.isHighSurrogate((char) peek(0)) && peek(1) >= 0
+                && Character.isLowSurrogate((char) peek(1)))
+            ? 2
+            : 1;
+    token.type = TomlLexer.Error;
+    token.text = take(length);
+    return true;
+  }
+
+  private void escape(Token token) throws IOException {
+    int escapeLine = line;
+    int escapeColumn = column;
+    int length = 2;
+    if (peek(1) == 'u' && hexDigits(2, 4)) {
+      length = 6;
+    } else if (peek(1) == 'U' && hexDigits(2, 8)) {
+      length = 10;
+    } else if (Character.isHighSurrogate((char) peek(1))
+        && peek(2) >= 0
+        && Character.isLowSurrogate((char) peek(2))) {
+      length = 3;
+    }
+    String escape = take(length);
+    switch (escape.charAt(1)) {
+      case '"':
+        text.append('"');
+        return;
+      case '\\':
+        text.append('\\');
+        return;
+      case 'b':
+        text.append('\b');
+        return;
+      case 'f':
+        text.append('\f');
+        return;
+      case 'n':
+        text.append('\n');
+        return;
+      case 'r':
+        text.append('\r');
+        return;
+      case 't':
+        text.append('\t');
+        return;
+      case 'u':
+      case 'U':
+        try {
+          text.append(Character.toChars(Integer.parseInt(escape.substring(2), 16)));
+        } catch (IllegalArgumentException e) {
+          escapeError(
+              token, "Invalid unicode escape sequence", positionAt(escapeLine, escapeColumn + 1));
+        }
+        return;
+      default:
+        escapeError(
+            token,
+            "Invalid escape sequence '" + escape + "'",
+            positionAt(escapeLine, escapeColumn + 1));
+    }
+  }
+
+  private static void escapeError(Token token, String message, TomlPosition position) {
+    if (token.error == null) {
+      token.error = new TomlParseError(message, position);
+    }
+  }
+
+  private boolean hexDigits(int offset, int count) throws IOException {
+    for (int i = 0; i < count; ++i) {
+      if (!isDigit(peek(offset + i), 16)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int newLineLength(int offset) throws IOException {
+    int c = peek(offset);
+    if (c == '\n') {
+      return 1;
+    }
+    if (c == '\r' && peek(offset + 1) == '\n') {
+      return 2;
+    }
+    return 0;
+  }
+
+  private void skipWhitespace() throws IOException {
+    while (peek(0) == ' ' || peek(0) == '\t') {
+      consume();
+    }
+  }
+
+  private void skipComment() throws IOException {
+    int c;
+    while ((c = peek(0)) >= 0 && c != '\n') {
+      consume();
+    }
+  }
+
+  private void pushMode(int newMode) {
+    if (modeStackSize == modeStack.length) {
+      modeStack = Arrays.copyOf(modeStack, modeStackSize * 2);
+    }
+    modeStack[modeStackSize++] = mode;
+    mode = newMode;
+  }
+
+  private void popMode() {
+    // the default mode is never pushed over, so the stack is only empty in the default mode
+    if (modeStackSize > 0) {
+      mode = modeStack[--modeStackSize];
+    }
+  }
+
+  private void resetArrayDepth() {
+    arrayDepthStackSize = 0;
+    arrayDepth = 0;
+  }
+
+  private void pushArrayDepth() {
+    if (arrayDepthStackSize == arrayDepthStack.length) {
+      arrayDepthStack = Arrays.copyOf(arrayDepthStack, arrayDepthStackSize * 2);
+    }
+    arrayDepthStack[arrayDepthStackSize++] = arrayDepth;
+    arrayDepth = 0;
+  }
+
+  private void popArrayDepth() {
+    if (arrayDepthStackSize > 0) {
+      arrayDepth = arrayDepthStack[--arrayDepthStackSize];
+    }
+  }
+
+  private static boolean isUnquotedKeyChar(int c) {
+    return (c >= 'a' && c <= 'z')
+        || (c >= 'A' && c <= 'Z')
+        || (c >= '0' && c <= '9')
+        || c == '-'
+        || c == '_';
+  }
+
+  private static boolean isDigit(int c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isDigit(int c, int radix) {
+    return c >= 0 && Character.digit(c, radix) >= 0 && c < 0x80;
+  }
+
+  private static boolean isDateSeparator(int c) {
+    return c == '-' || c == ':';
+  }
+
+  // Input handling
+
+  private int peek(int offset) throws IOException {
+    if (position + offset >= limit && !fill(offset + 1)) {
+      return -1;
+    }
+    return buffer[position + offset];
+  }
+
+  private boolean fill(int required) throws IOException {
+    if (endOfInput) {
+      return false;
+    }
+    if (position > 0) {
+      System.arraycopy(buffer, position, buffer, 0, limit - position);
+      limit -= position;
+      position = 0;
+    }
+    if (required > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length * 2));
+    }
+    while (limit < required) {
+      int read = reader.read(buffer, limit, buffer.length - limit);
+      if (read < 0) {
+        endOfInput = true;
+        return false;
+      }
+      limit += read;
+    }
+    return true;
+  }
+
+  private char consume() throws IOException {
+    char c = buffer[position++];
+    offset++;
+    if (c == '\n') {
+      line++;
+      column = 0;
+      afterHighSurrogate = false;
+    } else if (afterHighSurrogate && Character.isLowSurrogate(c)) {
+      afterHighSurrogate = false;
+    } else {
+      column++;
+      afterHighSurrogate = Character.isHighSurrogate(c);
+    }
+    return c;
+  }
+
+  private void skip(int length) throws IOException {
+    for (int i = 0; i < length; ++i) {
+      consume();
+    }
+  }
+
+  private String take(int length) throws IOException {
+    peek(length - 1);
+    String s = new String(buffer, position, length);
+    skip(length);
+    return s;
+  }
+}
@@ -0,0 +1,914 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.toml;
+
+import static org.apache.tuweni.toml.TomlPosition.positionAt;
+import static org.apache.tuweni.toml.TomlVersion.V0_4_0;
+
+import org.apache.tuweni.toml.DocumentLexer.Token;
+import org.apache.tuweni.toml.internal.TomlLexer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntToLongFunction;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+/**
+ * A recursive descent parser for TOML documents.
+ *
+ * <p>This parser accepts the same documents as the grammar in {@code TomlParser.g4}, and reports
+ * the first syntax error in a document with the same message and position as the ANTLR generated
+ * parser. After a syntax error, parsing resumes at the next line.
+ */
+final class DocumentParser {
+
+  private static final Pattern zeroFloat = Pattern.compile("[+-]?0+(\\.[+-]?0*)?([eE].*)?");
+
+  private static final long KEY_START =
+      set(TomlLexer.QuotationMark, TomlLexer.Apostrophe, TomlLexer.UnquotedKey);
+  private static final long EXPRESSION_START =
+      KEY_START | set(TomlLexer.TableKeyStart, TomlLexer.ArrayTableKeyStart);
+  private static final long VALUE_START =
+      set(
+          TomlLexer.TripleQuotationMark,
+          TomlLexer.TripleApostrophe,
+          TomlLexer.QuotationMark,
+          TomlLexer.Apostrophe,
+          TomlLexer.DecimalInteger,
+          TomlLexer.HexInteger,
+          TomlLexer.OctalInteger,
+          TomlLexer.BinaryInteger,
+          TomlLexer.FloatingPoint,
+          TomlLexer.FloatingPointInf,
+          TomlLexer.FloatingPointNaN,
+          TomlLexer.TrueBoolean,
+          TomlLexer.FalseBoolean,
+          TomlLexer.DateDigits,
+          TomlLexer.ArrayStart,
+          TomlLexer.InlineTableStart);
+  private static final long END_OF_LINE = set(TomlLexer.NewLine, TomlLexer.EOF);
+  private static final long ARRAY_VALUE_FOLLOW =
+      set(TomlLexer.Comma, TomlLexer.NewLine, TomlLexer.ArrayEnd);
+  private static final long INLINE_TABLE_VALUE_FOLLOW =
+      set(TomlLexer.Comma, TomlLexer.InlineTableEnd);
+  private static final long OFFSET_START = set(TomlLexer.Z, TomlLexer.Dash, TomlLexer.Plus);
+
+  private final DocumentLexer lexer;
+  private final TomlVersion version;
+  // when indexing, maps a line number to the offset of the line in the input
+  @Nullable private final IntToLongFunction lineOffsets;
+  private final boolean trackPositions;
+  private final MutableTomlTable table;
+  // a single instance of each distinct key, shared by all tables in the document
+  private final Map<String, String> keys = new HashMap<>();
+  private final List<TomlParseError> syntaxErrors = new ArrayList<>();
+  private final List<TomlParseError> errors = new ArrayList<>();
+
+  private Token token = new Token();
+  private Token lookahead = new Token();
+  private boolean hasLookahead;
+
+  private MutableTomlTable currentTable;
+  // the first error in the current expression that is not a syntax error
+  @Nullable private TomlParseError expressionError;
+  // the tokens expected by the last rule exited without matching a token, as reported by ANTLR
+  private long pending;
+  // the value read so far by the rule that threw the last syntax error, which is still kept
+  @Nullable private Object partialValue;
+
+  static TomlParseResult parse(String input, TomlVersion version, boolean trackPositions) {
+    try {
+      return new DocumentParser(new DocumentLexer(input), version, trackPositions, null).parse();
+    } catch (IOException e) {
+      throw new AssertionError("unexpected IOException reading a string", e);
+    }
+  }
+
+  static TomlParseResult parse(Reader reader, TomlVersion version, boolean trackPositions)
+      throws IOException {
+    return new DocumentParser(new DocumentLexer(reader), version, trackPositions, null).parse();
+  }
+
+  /**
+   * Parse a document, keeping only the location of each value that is not a table.
+   *
+   * <p>The document is fully parsed, and the result reports the same errors as {@link
+   * #parse(Reader, TomlVersion, boolean)}. Each key-value pair that is not nested in an inline
+   * table is stored as a {@link LazyTomlDocument.Value}, holding the line on which the pair starts.
+   *
+   * @param reader The reader to obtain the document from.
+   * @param version The version level to parse at.
+   * @param lineOffsets A function from a line number to the offset of that line in the input,
+   *     which is called with non-decreasing line numbers.
+   * @return The parse result, holding tables and value locations.
+   * @throws IOException If an IO error occurs.
+   */
+  static TomlParseResult index(Reader reader, TomlVersion version, IntToLongFunction lineOffsets)
+      throws IOException {
+    return new DocumentParser(new DocumentLexer(reader), version, true, lineOffsets).parse();
+  }
+
+  /**
+   * Parse the value of the key-value pair starting at the current position of a reader.
+   *
+   * @param reader The reader, positioned at the start of the line holding the key-value pair.
+   * @param line The line number of the key-value pair.
+   * @param version The version level to parse at.
+   * @return The value.
+   * @throws TomlParseError If the key-value pair is invalid.
+   * @throws IOException If an IO error occurs.
+   */
+  static Object parseValue(Reader reader, int line, TomlVersion version) throws IOException {
+    // most values are short, so start with a small buffer
+    DocumentLexer lexer = new DocumentLexer(reader, line, 256);
+    DocumentParser parser = new DocumentParser(lexer, version, true, null);
+    return parser.parseValueOfKeyval();
+  }
+
+  private DocumentParser(
+      DocumentLexer lexer,
+      TomlVersion version,
+      boolean trackPositions,
+      @Nullable IntToLongFunction lineOffsets) {
+    this.lexer = lexer;
+    this.version = version;
+    this.trackPositions = trackPositions;
+    this.lineOffsets = lineOffsets;
+    this.table = new MutableTomlTable(trackPositions);
+    this.currentTable = table;
+  }
+
+  private TomlParseResult parse() throws IOException {
+    lexer.next(token);
+    parseDocument();
+
+    MutableTomlTable table = this.table;
+    List<TomlParseError> errors = new ArrayList<>(syntaxErrors.size() + this.errors.size());
+    errors.addAll(syntaxErrors);
+    errors.addAll(this.errors);
+
+    return new TomlParseResult() {
+      @Override
+      public int size() {
+        return table.size();
+      }
+
+      @Override
+      public boolean isEmpty() {
+        return table.isEmpty();
+      }
+
+      @Override
+      public Set<String> keySet() {
+        return table.keySet();
+      }
+
+      @Override
+      public Set<List<String>> keyPathSet(boolean includeTables) {
+        return table.keyPathSet(includeTables);
+      }
+
+      @Override
+      @Nullable
+      public Object get(List<String> path) {
+        return table.get(path);
+      }
+
+      @Override
+      @Nullable
+      public TomlPosition inputPositionOf(List<String> path) {
+        return table.inputPositionOf(path);
+      }
+
+      @Override
+      public Map<String, Object> toMap() {
+        return table.toMap();
+      }
+
+      @Override
+      public List<TomlParseError> errors() {
+        return errors;
+      }
+    };
+  }
+
+  private Object parseValueOfKeyval() throws IOException {
+    lexer.next(token);
+    parseKey(set(TomlLexer.Equals));
+    match(TomlLexer.Equals, VALUE_START);
+    Object value = parseValue(END_OF_LINE);
+    if (expressionError != null) {
+      throw expressionError;
+    }
+    assert value != null;
+    return value;
+  }
+
+  // toml : NewLine* (expression (NewLine+ expression)* NewLine*)? EOF;
+  private void parseDocument() throws IOException {
+    long expected = set(TomlLexer.NewLine, TomlLexer.EOF) | EXPRESSION_START;
+    while (true) {
+      while (token.type == TomlLexer.NewLine) {
+        consume();
+      }
+      if (token.type == TomlLexer.EOF) {
+        return;
+      }
+      try {
+        if (!isAny(EXPRESSION_START)) {
+          throw unexpected(expected);
+        }
+        parseExpression();
+        if (!isAny(END_OF_LINE)) {
+          throw unexpected(END_OF_LINE);
+        }
+      } catch (TomlParseError e) {
+        syntaxErrors.add(e);
+        while (!isAny(END_OF_LINE)) {
+          consume();
+        }
+      }
+      expected = END_OF_LINE;
+    }
+  }
+
+  private void parseExpression() throws IOException {
+    expressionError = null;
+    pending = 0;
+    switch (token.type) {
+      case TomlLexer.TableKeyStart:
+        parseTable(TomlLexer.TableKeyEnd);
+        break;
+      case TomlLexer.ArrayTableKeyStart:
+        parseTable(TomlLexer.ArrayTableKeyEnd);
+        break;
+      default:
+        parseKeyval(currentTable, END_OF_LINE, true);
+        break;
+    }
+    if (expressionError != null) {
+      errors.add(expressionError);
+    }
+  }
+
+  // standardTable : TableKeyStart key? TableKeyEnd;
+  // arrayTable : ArrayTableKeyStart key? ArrayTableKeyEnd;
+  private void parseTable(int end) throws IOException {
+    TomlPosition position = token.position();
+    consume();
+    if (!isAny(KEY_START | set(end))) {
+      throw unexpected(KEY_START | set(end));
+    }
+    List<String> path = null;
+    if (token.type != end) {
+      path = parseKey(set(end));
+    }
+    try {
+      match(end, END_OF_LINE);
+    } catch (TomlParseError e) {
+      // the table is still defined, so the following lines are not added to the previous table
+      if (path != null) {
+        defineTable(path, end, position);
+      }
+      throw e;
+    }
+
+    if (path == null) {
+      error(new TomlParseError("Empty table key", position));
+      return;
+    }
+    defineTable(path, end, position);
+  }
+
+  private void defineTable(List<String> path, int end, TomlPosition position) {
+    if (expressionError != null) {
+      return;
+    }
+    try {
+      if (end == TomlLexer.ArrayTableKeyEnd) {
+        currentTable = table.createArrayTable(path, position);
+      } else {
+        currentTable = table.createTable(path, position);
+      }
+    } catch (TomlParseError e) {
+      error(e);
+    }
+  }
+
+  // keyval : key Equals val;
+  private void parseKeyval(MutableTomlTable target, long follow, boolean topLevel)
+      throws IOException {
+    TomlPosition position = token.position();
+    List<String> path = parseKey(set(TomlLexer.Equals));
+    // TOML 0.4.0 doesn't support dotted keys
+    if (topLevel && !version.after(V0_4_0) && path.size() > 1) {
+      error(new TomlParseError("Dotted keys are not supported", position));
+    }
+    match(TomlLexer.Equals, VALUE_START);
+    partialValue = null;
+    Object value;
+    try {
+      value = parseValue(follow);
+    } catch (TomlParseError e) {
+      // a partial value cannot be parsed again from its line, so it is never read lazily
+      setValue(target, path, takePartialValue(), position);
+      throw e;
+    }
+    if (topLevel && lineOffsets != null && !(value instanceof TomlTable)) {
+      int line = position.line();
+      value =
+          new LazyTomlDocument.Value(
+              lineOffsets.applyAsLong(line), line, value instanceof TomlArray);
+    }
+    setValue(target, path, value, position);
+  }
+
+  private void setValue(
+      MutableTomlTable target, List<String> path, @Nullable Object value, TomlPosition position) {
+    if (value == null || expressionError != null) {
+      return;
+    }
+    try {
+      target.set(path, value, position);
+    } catch (TomlParseError e) {
+      error(e);
+    }
+  }
+
+  @Nullable
+  private Object takePartialValue() {
+    Object value = partialValue;
+    partialValue = null;
+    return value;
+  }
+
+  // key : simpleKey (Dot simpleKey)*;
+  private List<String> parseKey(long follow) throws IOException {
+    List<String> path = new ArrayList<>();
+    path.add(parseSimpleKey(follow));
+    while (token.type == TomlLexer.Dot) {
+      pending = 0;
+      consume();
+      path.add(parseSimpleKey(follow));
+    }
+    if (pending == 0) {
+      pending = set(TomlLexer.Dot) | follow;
+    }
+    return path;
+  }
+
+  // simpleKey : quotedKey | unquotedKey;
+  private String parseSimpleKey(long follow) throws IOException {
+    String key;
+    switch (token.type) {
+      case TomlLexer.UnquotedKey:
+        pending = 0;
+        key = token.text;
+        consume();
+        break;
+      case TomlLexer.QuotationMark:
+        pending = 0;
+        key = parseBasicString();
+        break;
+      case TomlLexer.Apostrophe:
+        pending = 0;
+        key = parseLiteralString(set(TomlLexer.Dot) | follow);
+        break;
+      default:
+        throw unexpected(KEY_START);
+    }
+    String shared = keys.putIfAbsent(key, key);
+    return (shared == null) ? key : shared;
+  }
+
+  @Nullable
+  private Object parseValue(long follow) throws IOException {
+    if (!isAny(VALUE_START)) {
+      throw unexpected(VALUE_START);
+    }
+    pending = 0;
+    String text = token.text;
+    int line = token.line;
+    int column = token.column;
+    switch (token.type) {
+      case TomlLexer.TripleQuotationMark:
+        return parseMLBasicString();
+      case TomlLexer.QuotationMark:
+        return parseBasicString();
+      case TomlLexer.TripleApostrophe:
+        return parseMLLiteralString(follow);
+      case TomlLexer.Apostrophe:
+        return parseLiteralString(follow);
+      case TomlLexer.DecimalInteger:
+        consume();
+        return toLong(text, 10, line, column);
+      case TomlLexer.HexInteger:
+        consume();
+        return toLong(text.substring(2), 16, line, column);
+      case TomlLexer.OctalInteger:
+        consume();
+        return toLong(text.substring(2), 8, line, column);
+      case TomlLexer.BinaryInteger:
+        consume();
+        return toLong(text.substring(2), 2, line, column);
+      case TomlLexer.FloatingPoint:
+        consume();
+        return toDouble(text, line, column);
+      case TomlLexer.FloatingPointInf:
+        consume();
+        return text.startsWith("-") ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+      case TomlLexer.FloatingPointNaN:
+        consume();
+        return Double.NaN;
+      case TomlLexer.TrueBoolean:
+        consume();
+        return Boolean.TRUE;
+      case TomlLexer.FalseBoolean:
+        consume();
+        return Boolean.FALSE;
+      case TomlLexer.DateDigits:
+        return parseDateTime(follow);
+      case TomlLexer.ArrayStart:
+        return parseArray();
+      default:
+        return parseInlineTable(follow);
+    }
+  }
+
+  // basicString : QuotationMark basicChar* QuotationMark;
+  private String parseBasicString() throws IOException {
+    consume();
+    String value = parseStringChars();
+    if (token.type != TomlLexer.QuotationMark) {
+      partialValue = value;
+      throw unexpected(
+          set(TomlLexer.QuotationMark, TomlLexer.StringChar, TomlLexer.EscapeSequence));
+    }
+    pending = 0;
+    consume();
+    return value;
+  }
+
+  // mlBasicString : TripleQuotationMark mlBasicChar* TripleQuotationMark;
+  private String parseMLBasicString() throws IOException {
+    consume();
+    String value = parseStringChars();
+    if (token.type != TomlLexer.TripleQuotationMark) {
+      partialValue = value;
+      throw unexpected(
+          set(
+              TomlLexer.TripleQuotationMark,
+              TomlLexer.StringChar,
+              TomlLexer.NewLine,
+              TomlLexer.EscapeSequence));
+    }
+    pending = 0;
+    consume();
+    return value;
+  }
+
+  // literalString : Apostrophe literalBody Apostrophe;
+  private String parseLiteralString(long follow) throws IOException {
+    consume();
+    String value = parseStringChars();
+    if (pending == 0) {
+      pending = set(TomlLexer.StringChar, TomlLexer.Apostrophe);
+    }
+    partialValue = value;
+    match(TomlLexer.Apostrophe, follow);
+    partialValue = null;
+    return value;
+  }
+
+  // mlLiteralString : TripleApostrophe mlLiteralBody TripleApostrophe;
+  private String parseMLLiteralString(long follow) throws IOException {
+    consume();
+    String value = parseStringChars();
+    if (pending == 0) {
+      pending = set(TomlLexer.StringChar, TomlLexer.NewLine, TomlLexer.TripleApostrophe);
+    }
+    partialValue = value;
+    match(TomlLexer.TripleApostrophe, follow);
+    partialValue = null;
+    return value;
+  }
+
+  private String parseStringChars() throws IOException {
+    if (token.type != TomlLexer.StringChar) {
+      return "";
+    }
+    pending = 0;
+    String value = token.text;
+    if (token.error != null) {
+      error(token.error);
+    }
+    consume();
+    return value;
+  }
+
+  // dateTime : offsetDateTime | localDateTime | localDate | localTime;
+  @Nullable
+  private Object parseDateTime(long follow) throws IOException {
+    pending = 0;
+    if (lookahead() == TomlLexer.Colon) {
+      // a local time is predicted from its first two tokens, and matched token by token
+      Token hour = take(TomlLexer.DateDigits, false);
+      take(TomlLexer.Colon, false);
+      Token minute = take(TomlLexer.DateDigits, false);
+      take(TomlLexer.Colon, false);
+      Token second = take(TomlLexer.DateDigits, false);
+      Token fraction = parseSecondFraction(follow);
+      try {
+        return toLocalTime(hour, minute, second, fraction);
+      } catch (TomlParseError e) {
+        return error(e);
+      }
+    }
+
+    // a date or date-time is predicted from all tokens up to the time offset
+    Token year = take(TomlLexer.DateDigits, true);
+    take(TomlLexer.Dash, true);
+    Token month = take(TomlLexer.DateDigits, true);
+    take(TomlLexer.Dash, true);
+    Token day = take(TomlLexer.DateDigits, true);
+    if (token.type != TomlLexer.TimeDelimiter) {
+      try {
+        return toLocalDate(year, month, day);
+      } catch (TomlParseError e) {
+        return error(e);
+      }
+    }
+    consume();
+    Token hour = take(TomlLexer.DateDigits, true);
+    take(TomlLexer.Colon, true);
+    Token minute = take(TomlLexer.DateDigits, true);
+    take(TomlLexer.Colon, true);
+    Token second = take(TomlLexer.DateDigits, true);
+    Token fraction = null;
+    if (token.type == TomlLexer.Dot) {
+      consume();
+      fraction = take(TomlLexer.DateDigits, true);
+    }
+
+    if (!isAny(OFFSET_START)) {
+      if (fraction == null) {
+        pending = set(TomlLexer.Dot) | follow;
+      }
+      try {
+        return LocalDateTime.of(
+            toLocalDate(year, month, day), toLocalTime(hour, minute, second, fraction));
+      } catch (TomlParseError e) {
+        return error(e);
+      }
+    }
+
+    pending = 0;
+    Token sign = null;
+    Token offsetHours = null;
+    Token offsetMinutes = null;
+    if (token.type == TomlLexer.Z) {
+      consume();
+    } else {
+      sign = take(token.type, false);
+      offsetHours = take(TomlLexer.DateDigits, false);
+      take(TomlLexer.Colon, false);
+      offsetMinutes = take(TomlLexer.DateDigits, false);
+    }
+    try {
+      return OffsetDateTime.of(
+          toLocalDate(year, month, day),
+          toLocalTime(hour, minute, second, fraction),
+          (sign == null) ? ZoneOffset.UTC : toZoneOffset(sign, offsetHours, offsetMinutes));
+    } catch (TomlParseError e) {
+      return error(e);
+    }
+  }
+
+  @Nullable
+  private Token parseSecondFraction(long follow) throws IOException {
+    if (token.type != TomlLexer.Dot) {
+      pending = set(TomlLexer.Dot) | follow;
+      return null;
+    }
+    consume();
+    return take(TomlLexer.DateDigits, false);
+  }
+
+  // array : ArrayStart (arrayValues Comma?)? NewLine* ArrayEnd;
+  @Nullable
+  private Object parseArray() throws IOException {
+    consume();
+    long expected = set(TomlLexer.NewLine, TomlLexer.ArrayEnd) | VALUE_START;
+    if (!isAny(expected)) {
+      partialValue = MutableTomlArray.EMPTY;
+      throw unexpected(expected);
+    }
+    pending = 0;
+    MutableTomlArray array = null;
+    try {
+      while (true) {
+        // arrayValue : NewLine* val;
+        int line = token.line;
+        int column = token.column;
+        while (token.type == TomlLexer.NewLine) {
+          consume();
+        }
+        if (token.type == TomlLexer.ArrayEnd) {
+          consume();
+          return (array == null) ? MutableTomlArray.EMPTY : array;
+        }
+        if (!isAny(VALUE_START)) {
+          throw unexpected(expected);
+        }
+        if (array == null) {
+          array = new MutableTomlArray(true, trackPositions);
+        }
+        TomlPosition position = positionAt(line, column + 1);
+        partialValue = null;
+        try {
+          appendValue(array, parseValue(ARRAY_VALUE_FOLLOW), position);
+        } catch (TomlParseError e) {
+          appendValue(array, takePartialValue(), position);
+          throw e;
+        }
+        if (token.type != TomlLexer.Comma) {
+          if (!isAny(ARRAY_VALUE_FOLLOW)) {
+            throw unexpected(ARRAY_VALUE_FOLLOW);
+          }
+          pending = 0;
+          while (token.type == TomlLexer.NewLine) {
+            consume();
+          }
+          if (token.type != TomlLexer.ArrayEnd) {
+            throw unexpected(set(TomlLexer.NewLine, TomlLexer.ArrayEnd));
+          }
+          consume();
+          return array;
+        }
+        pending = 0;
+        consume();
+        expected = set(TomlLexer.NewLine, TomlLexer.ArrayEnd);
+      }
+    } catch (TomlParseError e) {
+      partialValue = (array == null) ? MutableTomlArray.EMPTY : array;
+      throw e;
+    }
+  }
+
+  private void appendValue(MutableTomlArray array, @Nullable Object value, TomlPosition position) {
+    if (value == null || expressionError != null) {
+      return;
+    }
+    try {
+      array.append(value, position);
+    } catch (TomlInvalidTypeException e) {
+      error(new TomlParseError(e.getMessage(), position));
+    }
+  }
+
+  // inlineTable : InlineTableStart inlineTableValues? InlineTableEnd;
+  private Object parseInlineTable(long follow) throws IOException {
+    consume();
+    if (!isAny(KEY_START | set(TomlLexer.InlineTableEnd))) {
+      throw unexpected(KEY_START | set(TomlLexer.InlineTableEnd));
+    }
+    pending = 0;
+    if (token.type == TomlLexer.InlineTableEnd) {
+      consume();
+      return MutableTomlTable.EMPTY;
+    }
+    MutableTomlTable inlineTable = new MutableTomlTable(trackPositions);
+    try {
+      parseKeyval(inlineTable, INLINE_TABLE_VALUE_FOLLOW, false);
+      while (token.type == TomlLexer.Comma) {
+        pending = 0;
+        consume();
+        parseKeyval(inlineTable, INLINE_TABLE_VALUE_FOLLOW, false);
+      }
+      if (pending == 0) {
+        pending = INLINE_TABLE_VALUE_FOLLOW;
+      }
+      match(TomlLexer.InlineTableEnd, follow);
+    } catch (TomlParseError e) {
+      partialValue = inlineTable;
+      throw e;
+    }
+    return inlineTable;
+  }
+
+  private Long toLong(String s, int radix, int line, int column) {
+    try {
+      return Long.valueOf(s.replace("_", ""), radix);
+    } catch (NumberFormatException e) {
+      return error(new TomlParseError("Integer is too large", positionAt(line, column + 1)));
+    }
+  }
+
+  private Double toDouble(String text, int line, int column) {
+    String s = text.replace("_", "");
+    try {
+      Double value = Double.valueOf(s);
+      if (value == Double.POSITIVE_INFINITY || value == Double.NEGATIVE_INFINITY) {
+        return error(new TomlParseError("Float is too large", positionAt(line, column + 1)));
+      }
+      if (value == 0d && !zeroFloat.matcher(s).matches()) {
+        return error(new TomlParseError("Float is too small", positionAt(line, column + 1)));
+      }
+      return value;
+    } catch (NumberFormatException e) {
+      return error(
+          new TomlParseError(
+              "Invalid floating point number: " + e.getMessage(), positionAt(line, column + 1)));
+    }
+  }
+
+  private static LocalDate toLocalDate(Token year, Token month, Token day) {
+    LocalDate date =
+        LocalDate.of(
+            toDatePart(year, 4, 0, 9999, "year (valid range 0000..9999)"),
+            toDatePart(month, 2, 1, 12, "month (valid range 01..12)"),
+            1);
+    int dayOfMonth = toDatePart(day, 2, 1, 31, "day (valid range 01..28/31)");
+    try {
+      return date.withDayOfMonth(dayOfMonth);
+    } catch (DateTimeException e) {
+      throw new TomlParseError(e.getMessage(), day.position(), e);
+    }
+  }
+
+  private static LocalTime toLocalTime(
+      Token hour, Token minute, Token second, @Nullable Token fraction) {
+    LocalTime time =
+        LocalTime.of(
+            toDatePart(hour, 2, 0, 23, "hour (valid range 00..23)"),
+            toDatePart(minute, 2, 0, 59, "minutes (valid range 00..59)"),
+            toDatePart(second, 2, 0, 59, "seconds (valid range 00..59)"));
+    if (fraction == null) {
+      return time;
+    }
+    String text = fraction.text;
+    if (text.isEmpty() || text.length() > 9) {
+      throw new TomlParseError("Invalid nanoseconds (valid range 0..999999999)", fraction.position());
+    }
+    if (text.length() < 9) {
+      text = text + "000000000".substring(text.length());
+    }
+    try {
+      return time.withNano(Integer.parseInt(text));
+    } catch (NumberFormatException e) {
+      throw new TomlParseError("Invalid nanoseconds", fraction.position(), e);
+    }
+  }
+
+  private static int toDatePart(Token token, int length, int min, int max, String description) {
+    String text = token.text;
+    if (text.length() != length) {
+      throw new TomlParseError("Invalid " + description, token.position());
+    }
+    int value;
+    try {
+      value = Integer.parseInt(text);
+    } catch (NumberFormatException e) {
+      throw new TomlParseError(
+          "Invalid " + description.substring(0, description.indexOf(' ')), token.position(), e);
+    }
+    if (value < min || value > max) {
+      throw new TomlParseError("Invalid " + description, token.position());
+    }
+    return value;
+  }
+
+  private static ZoneOffset toZoneOffset(Token sign, Token hoursToken, Token minutesToken) {
+    int hours;
+    try {
+      hours = Integer.parseInt(sign.text + hoursToken.text);
+    } catch (NumberFormatException e) {
+      throw new TomlParseError("Invalid zone offset", sign.position(), e);
+    }
+    if (hours < -18 || hours > 18) {
+      throw new TomlParseError(
+          "Invalid zone offset hours (valid range -18..+18)", sign.position());
+    }
+    int minutes;
+    try {
+      minutes = Integer.parseInt(minutesToken.text);
+    } catch (NumberFormatException e) {
+      throw new TomlParseError("Invalid zone offset", minutesToken.position(), e);
+    }
+    if (minutes < 0 || minutes > 59) {
+      throw new TomlParseError(
+          "Invalid zone offset minutes (valid range 0..59)", minutesToken.position());
+    }
+    try {
+      return ZoneOffset.ofHoursMinutes(hours, (hours < 0) ? -minutes : minutes);
+    } catch (DateTimeException e) {
+      throw new TomlParseError(
+          "Invalid zone offset (valid range -18:00..+18:00)",
+          positionAt(minutesToken.line, minutesToken.column - 3),
+          e);
+    }
+  }
+
+  // Record an error that is not a syntax error, keeping only the first in each expression
+  @Nullable
+  private <T> T error(TomlParseError error) {
+    if (expressionError == null) {
+      expressionError = error;
+    }
+    return null;
+  }
+
+  private void consume() throws IOException {
+    if (hasLookahead) {
+      Token next = lookahead;
+      lookahead = token;
+      token = next;
+      hasLookahead = false;
+    } else {
+      lexer.next(token);
+    }
+  }
+
+  private int lookahead() throws IOException {
+    if (!hasLookahead) {
+      lexer.next(lookahead);
+      hasLookahead = true;
+    }
+    return lookahead.type;
+  }
+
+  /**
+   * Match a token, reporting an error as the ANTLR default error strategy would.
+   *
+   * @param type The token type.
+   * @param follow The tokens that may follow the matched token.
+   */
+  private void match(int type, long follow) throws IOException {
+    if (token.type == type) {
+      consume();
+      return;
+    }
+    // single token deletion or insertion
+    if (lookahead() == type || isAny(follow)) {
+      throw unexpected(set(type));
+    }
+    throw unexpected((pending != 0) ? pending : set(type));
+  }
+
+  /**
+   * Match and return a token that is part of a date or time.
+   *
+   * @param type The token type.
+   * @param predicted If the token is matched while predicting the alternative, in which case a
+   *     mismatch reports the expected start of a date/time.
+   */
+  private Token take(int type, boolean predicted) throws IOException {
+    if (token.type != type) {
+      throw unexpected(set(predicted ? TomlLexer.DateDigits : type));
+    }
+    Token taken = token.copy();
+    consume();
+    return taken;
+  }
+
+  private boolean isAny(long types) {
+    return (types & set(token.type)) != 0;
+  }
+
+  private TomlParseError unexpected(long expected) {
+    String message =
+        "Unexpected "
+            + TokenName.describeToken(token.type, token.text)
+            + ", expected "
+            + TokenName.describeExpected(
+                BitSet.valueOf(new long[] {expected}).stream().map(i -> i - 1));
+    return new TomlParseError(message, token.position());
+  }
+
+  // token types are offset by 1 to account for EOF being -1
+  private static long set(int type) {
+    return 1L << (type + 1);
+  }
+
+  private static long set(int... types) {
+    long set = 0;
+    for (int type : types) {
+      set |= set(type);
+    }
+    return set;
+  }
+}
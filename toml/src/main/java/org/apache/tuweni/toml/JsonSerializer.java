@@ -6,157 +6,254 @@ import static java.util.Objects.requireNonNull;
 import static org.apache.tuweni.toml.TomlType.typeFor;
 
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.Optional;
 
+/**
+ * Writes JSON through a fixed-size char buffer, which is flushed to the output as it fills.
+ *
+ * <p>Keys, strings and indentation are copied directly into the buffer, so serialization allocates
+ * no temporary strings other than the textual form of numbers and dates.
+ */
 final class JsonSerializer {
-  private JsonSerializer() {}
+  private static final int BUFFER_SIZE = 8192;
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+  // escape sequences for the characters below 0x20, and for the double quote
+  private static final String[] ESCAPES = new String['\"' + 1];
+
+  static {
+    for (char ch = 0; ch < 0x20; ++ch) {
+      ESCAPES[ch] = "\\u00" + HEX[ch >> 4] + HEX[ch & 0xF];
+    }
+    ESCAPES['\t'] = "\\t";
+    ESCAPES['\b'] = "\\b";
+    ESCAPES['\n'] = "\\n";
+    ESCAPES['\r'] = "\\r";
+    ESCAPES['\f'] = "\\f";
+    ESCAPES['\"'] = "\\\"";
+  }
+
+  private final Appendable appendable;
+  private final char[] buffer = new char[BUFFER_SIZE];
+  private final String lineSeparator = System.lineSeparator();
+  private int position;
+
+  private JsonSerializer(Appendable appendable) {
+    this.appendable = appendable;
+  }
 
   static void toJson(TomlTable table, Appendable appendable) throws IOException {
     requireNonNull(table);
     requireNonNull(appendable);
-    toJson(table, appendable, 0);
-    appendable.append(System.lineSeparator());
+    JsonSerializer serializer = new JsonSerializer(appendable);
+    serializer.toJson(table, 0);
+    serializer.newLine();
+    serializer.flush();
+  }
+
+  static void toJson(TomlArray array, Appendable appendable) throws IOException {
+    requireNonNull(array);
+    requireNonNull(appendable);
+    JsonSerializer serializer = new JsonSerializer(appendable);
+    serializer.toJson(array, 0);
+    serializer.newLine();
+    serializer.flush();
   }
 
-  private static void toJson(TomlTable table, Appendable appendable, int indent)
-      throws IOException {
+  private void toJson(TomlTable table, int indent) throws IOException {
     if (table.isEmpty()) {
-      appendable.append("{}");
+      write("{}");
       return;
     }
-    appendLine(appendable, "{");
+    write('{');
+    newLine();
     for (Iterator<String> iterator = table.keySet().stream().sorted().iterator();
         iterator.hasNext(); ) {
       String key = iterator.next();
-      append(appendable, indent + 2, "\"" + escape(key) + "\" : ");
+      indent(indent + 2);
+      writeString(key);
+      write(" : ");
       Object value = table.get(Collections.singletonList(key));
       assert value != null;
-      appendTomlValue(value, appendable, indent);
+      writeTomlValue(value, indent);
       if (iterator.hasNext()) {
-        appendable.append(",");
-        appendable.append(System.lineSeparator());
+        write(',');
+        newLine();
       }
     }
-    appendable.append(System.lineSeparator());
-    append(appendable, indent, "}");
+    newLine();
+    indent(indent);
+    write('}');
   }
 
-  static void toJson(TomlArray array, Appendable appendable) throws IOException {
-    toJson(array, appendable, 0);
-    appendable.append(System.lineSeparator());
-  }
-
-  private static void toJson(TomlArray array, Appendable appendable, int indent)
-      throws IOException {
+  private void toJson(TomlArray array, int indent) throws IOException {
     if (array.isEmpty()) {
-      appendable.append("[]");
+      write("[]");
       return;
     }
     if (array.containsTables()) {
-      append(appendable, 0, "[");
+      write('[');
       for (Iterator<Object> iterator = array.toList().iterator(); iterator.hasNext(); ) {
-        toJson((TomlTable) iterator.next(), appendable, indent);
+        toJson((TomlTable) iterator.next(), indent);
         if (iterator.hasNext()) {
-          appendable.append(",");
+          write(',');
         }
       }
-      append(appendable, 0, "]");
+      write(']');
     } else {
-      appendLine(appendable, "[");
+      write('[');
+      newLine();
       for (Iterator<Object> iterator = array.toList().iterator(); iterator.hasNext(); ) {
-        indentLine(appendable, indent + 2);
-        appendTomlValue(iterator.next(), appendable, indent);
+        indent(indent + 2);
+        writeTomlValue(iterator.next(), indent);
         if (iterator.hasNext()) {
-          appendable.append(",");
-          appendable.append(System.lineSeparator());
+          write(',');
+          newLine();
         }
       }
-      appendable.append(System.lineSeparator());
-      append(appendable, indent, "]");
+      newLine();
+      indent(indent);
+      write(']');
     }
   }
 
-  private static void appendTomlValue(Object value, Appendable appendable, int indent)
-      throws IOException {
+  private void writeTomlValue(Object value, int indent) throws IOException {
     Optional<TomlType> tomlType = typeFor(value);
     assert tomlType.isPresent();
     switch (tomlType.get()) {
       case STRING:
-        append(appendable, 0, "\"" + escape((String) value) + "\"");
+        writeString((String) value);
         break;
       case INTEGER:
+        if (value instanceof Long) {
+          writeLong((Long) value);
+        } else {
+          write(value.toString());
+        }
+        break;
       case FLOAT:
-        append(appendable, 0, value.toString());
+        write(value.toString());
         break;
       case BOOLEAN:
-        append(appendable, 0, ((Boolean) value) ? "true" : "false");
+        write(((Boolean) value) ? "true" : "false");
         break;
       case OFFSET_DATE_TIME:
       case LOCAL_DATE_TIME:
       case LOCAL_DATE:
       case LOCAL_TIME:
-        append(appendable, 0, "\"" + value.toString() + "\"");
+        write('\"');
+        write(value.toString());
+        write('\"');
         break;
       case ARRAY:
-        toJson((TomlArray) value, appendable, indent + 2);
+        toJson((TomlArray) value, indent + 2);
         break;
       case TABLE:
-        toJson((TomlTable) value, appendable, indent + 2);
+        toJson((TomlTable) value, indent + 2);
         break;
     }
   }
 
-  private static void append(Appendable appendable, int indent, String line) throws IOException {
-    indentLine(appendable, indent);
-    appendable.append(line);
+  private void writeString(String text) throws IOException {
+    write('\"');
+    int length = text.length();
+    int start = 0;
+    for (int i = 0; i < length; ++i) {
+      char ch = text.charAt(i);
+      if (ch < ESCAPES.length && ESCAPES[ch] != null) {
+        write(text, start, i);
+        write(ESCAPES[ch]);
+        start = i + 1;
+      }
+    }
+    write(text, start, length);
+    write('\"');
   }
 
-  private static void appendLine(Appendable appendable, String line) throws IOException {
-    appendable.append(line);
-    appendable.append(System.lineSeparator());
+  private void writeLong(long value) throws IOException {
+    if (value == Long.MIN_VALUE) {
+      write(Long.toString(value));
+      return;
+    }
+    if (BUFFER_SIZE - position < 20) {
+      flush();
+    }
+    if (value < 0) {
+      buffer[position++] = '-';
+      value = -value;
+    }
+    int end = position + digits(value);
+    int i = end;
+    do {
+      buffer[--i] = (char) ('0' + (value % 10));
+      value /= 10;
+    } while (value != 0);
+    position = end;
   }
 
-  private static void indentLine(Appendable appendable, int indent) throws IOException {
-    for (int i = 0; i < indent; ++i) {
-      appendable.append(' ');
+  private static int digits(long value) {
+    int digits = 1;
+    while (value >= 10) {
+      value /= 10;
+      ++digits;
     }
+    return digits;
   }
 
-  private static StringBuilder escape(String text) {
-    StringBuilder out = new StringBuilder(text.length());
-    for (int i = 0; i < text.length(); i++) {
-      char ch = text.charAt(i);
-      if (ch == '\"') {
-        out.append("\\\"");
-        continue;
-      }
-      if (ch >= 0x20) {
-        out.append(ch);
-        continue;
+  private void indent(int indent) throws IOException {
+    while (indent > 0) {
+      if (position == BUFFER_SIZE) {
+        flush();
       }
+      int count = Math.min(indent, BUFFER_SIZE - position);
+      Arrays.fill(buffer, position, position + count, ' ');
+      position += count;
+      indent -= count;
+    }
+  }
+
+  private void newLine() throws IOException {
+    write(lineSeparator);
+  }
 
-      switch (ch) {
-        case '\t':
-          out.append("\\t");
-          break;
-        case '\b':
-          out.append("\\b");
-          break;
-        case '\n':
-          out.append("\\n");
-          break;
-        case '\r':
-          out.append("\\r");
-          break;
-        case '\f':
-          out.append("\\f");
-          break;
-        default:
-          out.append("\\u").append(String.format("%04x", text.codePointAt(i)));
+  private void write(char ch) throws IOException {
+    if (position == BUFFER_SIZE) {
+      flush();
+    }
+    buffer[position++] = ch;
+  }
+
+  private void write(String text) throws IOException {
+    write(text, 0, text.length());
+  }
+
+  private void write(String text, int start, int end) throws IOException {
+    while (start < end) {
+      if (position == BUFFER_SIZE) {
+        flush();
       }
+      int count = Math.min(end - start, BUFFER_SIZE - position);
+      text.getChars(start, start + count, buffer, position);
+      position += count;
+      start += count;
+    }
+  }
+
+  private void flush() throws IOException {
+    if (position == 0) {
+      return;
+    }
+    if (appendable instanceof Writer) {
+      ((Writer) appendable).write(buffer, 0, position);
+    } else if (appendable instanceof StringBuilder) {
+      ((StringBuilder) appendable).append(buffer, 0, position);
+    } else {
+      appendable.append(CharBuffer.wrap(buffer, 0, position));
     }
-    return out;
+    position = 0;
   }
 }
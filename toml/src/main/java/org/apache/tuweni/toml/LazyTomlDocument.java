@@ -0,0 +1,300 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.toml;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntToLongFunction;
+import javax.annotation.Nullable;
+
+/**
+ * A TOML document that decodes its values from a memory-mapped file when they are read.
+ *
+ * <p>The document is indexed by {@link DocumentParser#index}, which keeps the tables of the
+ * document, including inline tables, but replaces every other value by a {@link Value} locating it
+ * in the file. The tables and arrays of tables returned by this document are views over the index,
+ * which decode values as they are read. Decoded values are not retained.
+ */
+final class LazyTomlDocument {
+
+  /** The location of a value in the mapped file. */
+  static final class Value {
+    // the offset of the line holding the key-value pair
+    private final long offset;
+    private final int line;
+    private final boolean array;
+
+    Value(long offset, int line, boolean array) {
+      this.offset = offset;
+      this.line = line;
+      this.array = array;
+    }
+
+    boolean isArray() {
+      return array;
+    }
+  }
+
+  private final ByteBuffer buffer;
+  private final TomlVersion version;
+
+  static TomlParseResult parse(Path file, TomlVersion version) throws IOException {
+    ByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("File is too large to map: " + file);
+      }
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+    LazyTomlDocument document = new LazyTomlDocument(buffer, version);
+    TomlParseResult index;
+    try (Reader reader = document.reader(0, 8192)) {
+      index = DocumentParser.index(reader, version, new LineOffsets(buffer));
+    }
+    return document.new Result(index);
+  }
+
+  private LazyTomlDocument(ByteBuffer buffer, TomlVersion version) {
+    this.buffer = buffer;
+    this.version = version;
+  }
+
+  @Nullable
+  private Object decode(@Nullable Object value) {
+    if (value instanceof Value) {
+      Value location = (Value) value;
+      try (Reader reader = reader(location.offset, 256)) {
+        return DocumentParser.parseValue(reader, location.line, version);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    if (value instanceof TomlTable) {
+      return new Table((TomlTable) value);
+    }
+    if (value instanceof TomlArray) {
+      // literal arrays are stored as values, so this is an array of tables
+      return new ArrayOfTables((TomlArray) value);
+    }
+    return value;
+  }
+
+  private Reader reader(long offset, int bufferSize) {
+    ByteBuffer bytes = buffer.duplicate().position((int) offset);
+    ReadableByteChannel channel =
+        new ReadableByteChannel() {
+          @Override
+          public int read(ByteBuffer dst) {
+            if (!bytes.hasRemaining()) {
+              return -1;
+            }
+            int length = Math.min(dst.remaining(), bytes.remaining());
+            dst.put(dst.position(), bytes, bytes.position(), length);
+            dst.position(dst.position() + length);
+            bytes.position(bytes.position() + length);
+            return length;
+          }
+
+          @Override
+          public boolean isOpen() {
+            return true;
+          }
+
+          @Override
+          public void close() {}
+        };
+    return Channels.newReader(channel, Toml.decoder(), bufferSize);
+  }
+
+  // Finds line offsets by scanning forward from the last line found
+  private static final class LineOffsets implements IntToLongFunction {
+    private final ByteBuffer buffer;
+    private int line = 1;
+    private int offset = 0;
+
+    LineOffsets(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public long applyAsLong(int targetLine) {
+      assert targetLine >= line;
+      while (line < targetLine) {
+        // a newline byte never occurs within a multi-byte UTF-8 sequence
+        while (buffer.get(offset) != '\n') {
+          offset++;
+        }
+        offset++;
+        line++;
+      }
+      return offset;
+    }
+  }
+
+  private class Table implements TomlTable {
+    private final TomlTable table;
+
+    Table(TomlTable table) {
+      this.table = table;
+    }
+
+    @Override
+    public int size() {
+      return table.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return table.isEmpty();
+    }
+
+    @Override
+    public Set<String> keySet() {
+      return table.keySet();
+    }
+
+    @Override
+    public Set<List<String>> keyPathSet(boolean includeTables) {
+      return table.keyPathSet(includeTables);
+    }
+
+    @Override
+    @Nullable
+    public Object get(List<String> path) {
+      if (path.isEmpty()) {
+        return this;
+      }
+      return decode(table.get(path));
+    }
+
+    @Override
+    @Nullable
+    public TomlPosition inputPositionOf(List<String> path) {
+      return table.inputPositionOf(path);
+    }
+
+    @Override
+    public Map<String, Object> toMap() {
+      Map<String, Object> map = new HashMap<>();
+      for (String key : table.keySet()) {
+        map.put(key, decode(table.get(Collections.singletonList(key))));
+      }
+      return map;
+    }
+  }
+
+  private final class Result extends Table implements TomlParseResult {
+    private final List<TomlParseError> errors;
+
+    Result(TomlParseResult index) {
+      super(index);
+      this.errors = index.errors();
+    }
+
+    @Override
+    public List<TomlParseError> errors() {
+      return errors;
+    }
+  }
+
+  private final class ArrayOfTables implements TomlArray {
+    private final TomlArray array;
+
+    ArrayOfTables(TomlArray array) {
+      this.array = array;
+    }
+
+    @Override
+    public int size() {
+      return array.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return array.isEmpty();
+    }
+
+    @Override
+    public boolean containsStrings() {
+      return array.containsStrings();
+    }
+
+    @Override
+    public boolean containsLongs() {
+      return array.containsLongs();
+    }
+
+    @Override
+    public boolean containsDoubles() {
+      return array.containsDoubles();
+    }
+
+    @Override
+    public boolean containsBooleans() {
+      return array.containsBooleans();
+    }
+
+    @Override
+    public boolean containsOffsetDateTimes() {
+      return array.containsOffsetDateTimes();
+    }
+
+    @Override
+    public boolean containsLocalDateTimes() {
+      return array.containsLocalDateTimes();
+    }
+
+    @Override
+    public boolean containsLocalDates() {
+      return array.containsLocalDates();
+    }
+
+    @Override
+    public boolean containsLocalTimes() {
+      return array.containsLocalTimes();
+    }
+
+    @Override
+    public boolean containsArrays() {
+      return array.containsArrays();
+    }
+
+    @Override
+    public boolean containsTables() {
+      return array.containsTables();
+    }
+
+    @Override
+    public Object get(int index) {
+      return decode(array.get(index));
+    }
+
+    @Override
+    public TomlPosition inputPositionOf(int index) {
+      return array.inputPositionOf(index);
+    }
+
+    @Override
+    public List<Object> toList() {
+      List<Object> list = new ArrayList<>(array.size());
+      for (int i = 0; i < array.size(); ++i) {
+        list.add(decode(array.get(i)));
+      }
+      return list;
+    }
+  }
+}
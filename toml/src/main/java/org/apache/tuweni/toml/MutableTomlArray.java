@@ -3,37 +3,53 @@
 package org.apache.tuweni.toml;
 
 import static java.util.Objects.requireNonNull;
+import static org.apache.tuweni.toml.TomlPosition.positionAt;
 import static org.apache.tuweni.toml.TomlType.typeFor;
 import static org.apache.tuweni.toml.TomlType.typeNameFor;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 
+/**
+ * An array of TOML values.
+ *
+ * <p>Integers, floats and booleans are held unboxed, in an array of the primitive type. Positions
+ * are packed into a {@code long[]}, and are not held at all if position tracking is disabled.
+ */
 final class MutableTomlArray implements TomlArray {
 
-  private static class Element {
-    final Object value;
-    final TomlPosition position;
-
-    private Element(Object value, TomlPosition position) {
-      this.value = value;
-      this.position = position;
-    }
-  }
+  private static final Object[] NO_VALUES = new Object[0];
+  private static final long[] NO_LONGS = new long[0];
+  private static final double[] NO_DOUBLES = new double[0];
+  private static final boolean[] NO_BOOLEANS = new boolean[0];
 
   static final TomlArray EMPTY = new MutableTomlArray(true);
-  private final List<Element> elements = new ArrayList<>();
   private final boolean definedAsLiteral;
+  private final boolean trackPositions;
   private TomlType type = null;
+  private int size;
+  // only the array for the type of this array is used
+  private Object[] values = NO_VALUES;
+  private long[] longs = NO_LONGS;
+  private double[] doubles = NO_DOUBLES;
+  private boolean[] booleans = NO_BOOLEANS;
+  private long[] positions = NO_LONGS;
 
   MutableTomlArray() {
     this(false);
   }
 
   MutableTomlArray(boolean definedAsLiteral) {
+    this(definedAsLiteral, true);
+  }
+
+  MutableTomlArray(boolean definedAsLiteral, boolean trackPositions) {
     this.definedAsLiteral = definedAsLiteral;
+    this.trackPositions = trackPositions;
   }
 
   boolean wasDefinedAsLiteral() {
@@ -42,7 +58,7 @@ final class MutableTomlArray implements TomlArray {
 
   @Override
   public int size() {
-    return elements.size();
+    return size;
   }
 
   @Override
@@ -102,12 +118,79 @@ final class MutableTomlArray implements TomlArray {
 
   @Override
   public Object get(int index) {
-    return elements.get(index).value;
+    Objects.checkIndex(index, size);
+    switch (type) {
+      case INTEGER:
+        return longs[index];
+      case FLOAT:
+        return doubles[index];
+      case BOOLEAN:
+        return booleans[index];
+      default:
+        return values[index];
+    }
   }
 
   @Override
+  @Nullable
   public TomlPosition inputPositionOf(int index) {
-    return elements.get(index).position;
+    Objects.checkIndex(index, size);
+    if (!trackPositions) {
+      return null;
+    }
+    long position = positions[index];
+    return positionAt((int) (position >>> 32), (int) position);
+  }
+
+  @Override
+  public long getLong(int index) {
+    Objects.checkIndex(index, size);
+    if (type != TomlType.INTEGER) {
+      return TomlArray.super.getLong(index);
+    }
+    return longs[index];
+  }
+
+  @Override
+  public double getDouble(int index) {
+    Objects.checkIndex(index, size);
+    if (type != TomlType.FLOAT) {
+      return TomlArray.super.getDouble(index);
+    }
+    return doubles[index];
+  }
+
+  @Override
+  public boolean getBoolean(int index) {
+    Objects.checkIndex(index, size);
+    if (type != TomlType.BOOLEAN) {
+      return TomlArray.super.getBoolean(index);
+    }
+    return booleans[index];
+  }
+
+  @Override
+  public long[] getLongArray() {
+    if (type != TomlType.INTEGER) {
+      return TomlArray.super.getLongArray();
+    }
+    return Arrays.copyOf(longs, size);
+  }
+
+  @Override
+  public double[] getDoubleArray() {
+    if (type != TomlType.FLOAT) {
+      return TomlArray.super.getDoubleArray();
+    }
+    return Arrays.copyOf(doubles, size);
+  }
+
+  @Override
+  public boolean[] getBooleanArray() {
+    if (type != TomlType.BOOLEAN) {
+      return TomlArray.super.getBooleanArray();
+    }
+    return Arrays.copyOf(booleans, size);
   }
 
   MutableTomlArray append(Object value, TomlPosition position) {
@@ -116,7 +199,6 @@ final class MutableTomlArray implements TomlArray {
       value = ((Integer) value).longValue();
     }
 
-    TomlType origType = type;
     Optional<TomlType> valueType = typeFor(value);
     if (!valueType.isPresent()) {
       throw new IllegalArgumentException("Unsupported type " + value.getClass().getSimpleName());
@@ -134,17 +216,51 @@ final class MutableTomlArray implements TomlArray {
       type = valueType.get();
     }
 
-    try {
-      elements.add(new Element(value, position));
-    } catch (Throwable e) {
-      type = origType;
-      throw e;
+    switch (type) {
+      case INTEGER:
+        if (size == longs.length) {
+          longs = Arrays.copyOf(longs, newCapacity());
+        }
+        longs[size] = (Long) value;
+        break;
+      case FLOAT:
+        if (size == doubles.length) {
+          doubles = Arrays.copyOf(doubles, newCapacity());
+        }
+        doubles[size] = (Double) value;
+        break;
+      case BOOLEAN:
+        if (size == booleans.length) {
+          booleans = Arrays.copyOf(booleans, newCapacity());
+        }
+        booleans[size] = (Boolean) value;
+        break;
+      default:
+        if (size == values.length) {
+          values = Arrays.copyOf(values, newCapacity());
+        }
+        values[size] = value;
     }
+    if (trackPositions) {
+      if (size == positions.length) {
+        positions = Arrays.copyOf(positions, newCapacity());
+      }
+      positions[size] = ((long) position.line() << 32) | position.column();
+    }
+    size++;
     return this;
   }
 
+  private int newCapacity() {
+    return (size < 4) ? 4 : size + (size >> 1);
+  }
+
   @Override
   public List<Object> toList() {
-    return elements.stream().map(e -> e.value).collect(Collectors.toList());
+    List<Object> list = new ArrayList<>(size);
+    for (int i = 0; i < size; ++i) {
+      list.add(get(i));
+    }
+    return list;
   }
 }
@@ -6,97 +6,137 @@ import static org.apache.tuweni.toml.Parser.parseDottedKey;
 import static org.apache.tuweni.toml.TomlPosition.positionAt;
 import static org.apache.tuweni.toml.TomlType.typeFor;
 
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import javax.annotation.Nullable;
 
+/**
+ * A table of TOML values.
+ *
+ * <p>Entries are held in insertion order in parallel arrays of keys, values and packed positions.
+ * Small tables are searched linearly; larger tables add an open-addressed index of entry numbers.
+ * Positions are not held at all if position tracking is disabled.
+ */
 final class MutableTomlTable implements TomlTable {
 
-  private static class Element {
-    final Object value;
-    final TomlPosition position;
+  // tables with up to this many entries are searched without an index
+  private static final int MAX_LINEAR_SEARCH = 8;
+  private static final String[] NO_KEYS = new String[0];
+  private static final Object[] NO_VALUES = new Object[0];
+  private static final long[] NO_POSITIONS = new long[0];
 
-    private Element(Object value, TomlPosition position) {
-      this.value = value;
-      this.position = position;
-    }
-  }
-
-  static final TomlTable EMPTY = new MutableTomlTable(true);
-  private Map<String, Element> properties = new HashMap<>();
+  static final TomlTable EMPTY = new MutableTomlTable(true, true);
+  private final boolean trackPositions;
+  private String[] keys = NO_KEYS;
+  private Object[] values = NO_VALUES;
+  private long[] positions = NO_POSITIONS;
+  private int size;
+  // open-addressed, holding (entry number + 1), or 0 for an empty slot
+  @Nullable private int[] index;
   private boolean implicitlyDefined;
 
   MutableTomlTable() {
-    this(false);
+    this(true);
+  }
+
+  MutableTomlTable(boolean trackPositions) {
+    this(false, trackPositions);
   }
 
-  private MutableTomlTable(boolean implicitlyDefined) {
+  private MutableTomlTable(boolean implicitlyDefined, boolean trackPositions) {
     this.implicitlyDefined = implicitlyDefined;
+    this.trackPositions = trackPositions;
   }
 
   @Override
   public int size() {
-    return properties.size();
+    return size;
   }
 
   @Override
   public boolean isEmpty() {
-    return properties.isEmpty();
+    return size == 0;
   }
 
   @Override
   public Set<String> keySet() {
-    return properties.keySet();
+    return new AbstractSet<String>() {
+      @Override
+      public Iterator<String> iterator() {
+        return new Iterator<String>() {
+          private int next = 0;
+
+          @Override
+          public boolean hasNext() {
+            return next < size;
+          }
+
+          @Override
+          public String next() {
+            if (next >= size) {
+              throw new NoSuchElementException();
+            }
+            return keys[next++];
+          }
+        };
+      }
+
+      @Override
+      public boolean contains(Object o) {
+        return (o instanceof String) && find((String) o) >= 0;
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
   }
 
   @Override
   public Set<List<String>> keyPathSet(boolean includeTables) {
-    return properties.entrySet().stream()
-        .flatMap(
-            entry -> {
-              String key = entry.getKey();
-              List<String> basePath = Collections.singletonList(key);
-
-              Element element = entry.getValue();
-              if (!(element.value instanceof TomlTable)) {
-                return Stream.of(basePath);
-              }
-
-              Stream<List<String>> subKeys =
-                  ((TomlTable) element.value)
-                      .keyPathSet(includeTables).stream()
-                          .map(
-                              subPath -> {
-                                List<String> path = new ArrayList<>(subPath.size() + 1);
-                                path.add(key);
-                                path.addAll(subPath);
-                                return path;
-                              });
-
-              if (includeTables) {
-                return Stream.concat(Stream.of(basePath), subKeys);
-              } else {
-                return subKeys;
-              }
-            })
-        .collect(Collectors.toSet());
+    Set<List<String>> paths = new HashSet<>();
+    for (int i = 0; i < size; ++i) {
+      String key = keys[i];
+      List<String> basePath = Collections.singletonList(key);
+      if (!(values[i] instanceof TomlTable)) {
+        paths.add(basePath);
+        continue;
+      }
+      if (includeTables) {
+        paths.add(basePath);
+      }
+      for (List<String> subPath : ((TomlTable) values[i]).keyPathSet(includeTables)) {
+        List<String> path = new ArrayList<>(subPath.size() + 1);
+        path.add(key);
+        path.addAll(subPath);
+        paths.add(path);
+      }
+    }
+    return paths;
   }
 
   @Override
   @Nullable
-  @SuppressWarnings("unchecked")
   public Object get(List<String> path) {
     if (path.isEmpty()) {
       return this;
     }
-    Element element = getElement(path);
-    return (element != null) ? element.value : null;
+    MutableTomlTable table = parentOf(path);
+    if (table == null) {
+      return null;
+    }
+    int i = table.find(path.get(path.size() - 1));
+    return (i >= 0) ? table.values[i] : null;
   }
 
   @Override
@@ -105,32 +145,36 @@ final class MutableTomlTable implements TomlTable {
     if (path.isEmpty()) {
       return positionAt(1, 1);
     }
-    Element element = getElement(path);
-    return (element != null) ? element.position : null;
+    MutableTomlTable table = parentOf(path);
+    if (table == null) {
+      return null;
+    }
+    int i = table.find(path.get(path.size() - 1));
+    return (i >= 0) ? table.position(i) : null;
   }
 
-  private Element getElement(List<String> path) {
+  @Nullable
+  private MutableTomlTable parentOf(List<String> path) {
     MutableTomlTable table = this;
     int depth = path.size();
     assert depth > 0;
     for (int i = 0; i < (depth - 1); ++i) {
-      Element element = table.properties.get(path.get(i));
-      if (element == null) {
+      int entry = table.find(path.get(i));
+      if (entry < 0 || !(table.values[entry] instanceof MutableTomlTable)) {
         return null;
       }
-      if (element.value instanceof MutableTomlTable) {
-        table = (MutableTomlTable) element.value;
-        continue;
-      }
-      return null;
+      table = (MutableTomlTable) table.values[entry];
     }
-    return table.properties.get(path.get(depth - 1));
+    return table;
   }
 
   @Override
   public Map<String, Object> toMap() {
-    return properties.entrySet().stream()
-        .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().value));
+    Map<String, Object> map = new HashMap<>();
+    for (int i = 0; i < size; ++i) {
+      map.put(keys[i], values[i]);
+    }
+    return map;
   }
 
   MutableTomlTable createTable(List<String> path, TomlPosition position) {
@@ -142,21 +186,21 @@ final class MutableTomlTable implements TomlTable {
     MutableTomlTable table = ensureTable(path.subList(0, depth - 1), position, true);
 
     String key = path.get(depth - 1);
-    Element element = table.properties.get(key);
-    if (element == null) {
-      MutableTomlTable newTable = new MutableTomlTable();
-      table.properties.put(key, new Element(newTable, position));
+    int i = table.find(key);
+    if (i < 0) {
+      MutableTomlTable newTable = new MutableTomlTable(trackPositions);
+      table.add(key, newTable, position);
       return newTable;
     }
-    if (element.value instanceof MutableTomlTable) {
-      table = (MutableTomlTable) element.value;
-      if (table.implicitlyDefined) {
-        table.implicitlyDefined = false;
-        table.properties.put(key, new Element(table, position));
-        return table;
+    if (table.values[i] instanceof MutableTomlTable) {
+      MutableTomlTable existing = (MutableTomlTable) table.values[i];
+      if (existing.implicitlyDefined) {
+        existing.implicitlyDefined = false;
+        table.setPosition(i, position);
+        return existing;
       }
     }
-    String message = Toml.joinKeyPath(path) + " previously defined at " + element.position;
+    String message = Toml.joinKeyPath(path) + " previously defined at " + table.describe(i);
     throw new TomlParseError(message, position);
   }
 
@@ -169,23 +213,31 @@ final class MutableTomlTable implements TomlTable {
     MutableTomlTable table = ensureTable(path.subList(0, depth - 1), position, true);
 
     String key = path.get(depth - 1);
-    Element element =
-        table.properties.computeIfAbsent(key, k -> new Element(new MutableTomlArray(), position));
-    if (!(element.value instanceof MutableTomlArray)) {
+    int i = table.find(key);
+    if (i < 0) {
+      i = table.add(key, new MutableTomlArray(false, trackPositions), position);
+    }
+    Object value = table.values[i];
+    if (value instanceof LazyTomlDocument.Value && ((LazyTomlDocument.Value) value).isArray()) {
+      String message =
+          Toml.joinKeyPath(path) + " previously defined as a literal array at " + table.describe(i);
+      throw new TomlParseError(message, position);
+    }
+    if (!(value instanceof MutableTomlArray)) {
       String message =
           Toml.joinKeyPath(path)
               + " is not an array (previously defined at "
-              + element.position
+              + table.describe(i)
               + ")";
       throw new TomlParseError(message, position);
     }
-    MutableTomlArray array = (MutableTomlArray) element.value;
+    MutableTomlArray array = (MutableTomlArray) value;
     if (array.wasDefinedAsLiteral()) {
       String message =
-          Toml.joinKeyPath(path) + " previously defined as a literal array at " + element.position;
+          Toml.joinKeyPath(path) + " previously defined as a literal array at " + table.describe(i);
       throw new TomlParseError(message, position);
     }
-    MutableTomlTable newTable = new MutableTomlTable();
+    MutableTomlTable newTable = new MutableTomlTable(trackPositions);
     array.append(newTable, position);
     return newTable;
   }
@@ -201,16 +253,18 @@ final class MutableTomlTable implements TomlTable {
     if (value instanceof Integer) {
       value = ((Integer) value).longValue();
     }
-    assert (typeFor(value).isPresent()) : "Unexpected value of type " + value.getClass();
+    assert (value instanceof LazyTomlDocument.Value || typeFor(value).isPresent())
+        : "Unexpected value of type " + value.getClass();
 
     MutableTomlTable table = ensureTable(path.subList(0, depth - 1), position, false);
-    Element prevElem =
-        table.properties.putIfAbsent(path.get(depth - 1), new Element(value, position));
-    if (prevElem != null) {
+    String key = path.get(depth - 1);
+    int i = table.find(key);
+    if (i >= 0) {
       String pathString = Toml.joinKeyPath(path);
-      String message = pathString + " previously defined at " + prevElem.position;
+      String message = pathString + " previously defined at " + table.describe(i);
       throw new TomlParseError(message, position);
     }
+    table.add(key, value, position);
     return this;
   }
 
@@ -219,15 +273,17 @@ final class MutableTomlTable implements TomlTable {
     MutableTomlTable table = this;
     int depth = path.size();
     for (int i = 0; i < depth; ++i) {
-      Element element =
-          table.properties.computeIfAbsent(
-              path.get(i), k -> new Element(new MutableTomlTable(true), position));
-      if (element.value instanceof MutableTomlTable) {
-        table = (MutableTomlTable) element.value;
+      int entry = table.find(path.get(i));
+      if (entry < 0) {
+        entry = table.add(path.get(i), new MutableTomlTable(true, trackPositions), position);
+      }
+      Object value = table.values[entry];
+      if (value instanceof MutableTomlTable) {
+        table = (MutableTomlTable) value;
         continue;
       }
-      if (followArrayTables && element.value instanceof MutableTomlArray) {
-        MutableTomlArray array = (MutableTomlArray) element.value;
+      if (followArrayTables && value instanceof MutableTomlArray) {
+        MutableTomlArray array = (MutableTomlArray) value;
         if (!array.wasDefinedAsLiteral() && !array.isEmpty() && array.containsTables()) {
           table = (MutableTomlTable) array.get(array.size() - 1);
           continue;
@@ -236,10 +292,91 @@ final class MutableTomlTable implements TomlTable {
       String message =
           Toml.joinKeyPath(path.subList(0, i + 1))
               + " is not a table (previously defined at "
-              + element.position
+              + table.describe(entry)
               + ")";
       throw new TomlParseError(message, position);
     }
     return table;
   }
+
+  // Entry storage
+
+  private int find(String key) {
+    int[] index = this.index;
+    if (index == null) {
+      for (int i = 0; i < size; ++i) {
+        if (keys[i].equals(key)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+    int mask = index.length - 1;
+    for (int slot = hash(key) & mask; index[slot] != 0; slot = (slot + 1) & mask) {
+      int i = index[slot] - 1;
+      if (keys[i].equals(key)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private int add(String key, Object value, TomlPosition position) {
+    if (size == keys.length) {
+      int capacity = (size < 4) ? 4 : size + (size >> 1);
+      keys = Arrays.copyOf(keys, capacity);
+      values = Arrays.copyOf(values, capacity);
+      if (trackPositions) {
+        positions = Arrays.copyOf(positions, capacity);
+      }
+    }
+    int i = size++;
+    keys[i] = key;
+    values[i] = value;
+    setPosition(i, position);
+    if (index != null && size * 2 <= index.length) {
+      insert(index, i);
+    } else if (size > MAX_LINEAR_SEARCH) {
+      // keep the index at most half full
+      int[] newIndex = new int[Integer.highestOneBit(size) * 4];
+      for (int j = 0; j < size; ++j) {
+        insert(newIndex, j);
+      }
+      index = newIndex;
+    }
+    return i;
+  }
+
+  private void insert(int[] index, int i) {
+    int mask = index.length - 1;
+    int slot = hash(keys[i]) & mask;
+    while (index[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    index[slot] = i + 1;
+  }
+
+  private static int hash(String key) {
+    int h = key.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  private void setPosition(int i, TomlPosition position) {
+    if (trackPositions) {
+      positions[i] = ((long) position.line() << 32) | position.column();
+    }
+  }
+
+  @Nullable
+  private TomlPosition position(int i) {
+    if (!trackPositions) {
+      return null;
+    }
+    return positionAt((int) (positions[i] >>> 32), (int) positions[i]);
+  }
+
+  private String describe(int i) {
+    TomlPosition position = position(i);
+    return (position == null) ? "an unknown position" : position.toString();
+  }
 }
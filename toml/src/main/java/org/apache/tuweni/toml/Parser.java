@@ -5,74 +5,132 @@ package org.apache.tuweni.toml;
 import org.apache.tuweni.toml.internal.TomlLexer;
 import org.apache.tuweni.toml.internal.TomlParser;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import javax.annotation.Nullable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
-import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonTokenStream;
-import org.antlr.v4.runtime.tree.ParseTree;
 
 final class Parser {
-  private Parser() {}
+  // Dotted keys are typically drawn from a small, fixed set of constants in the calling code, so a
+  // modest bound is enough to keep every hot key resident. Beyond it, keys that have not been looked
+  // up since the last eviction are removed first, so a document with more keys than that does not
+  // displace the keys in regular use.
+  static final int MAX_CACHED_KEYS = 4096;
+  // the number of keys removed by each eviction, so that eviction runs once per batch of new keys
+  private static final int EVICTION_BATCH = MAX_CACHED_KEYS / 8;
 
-  static TomlParseResult parse(CharStream stream, TomlVersion version) {
-    TomlLexer lexer = new TomlLexer(stream);
-    TomlParser parser = new TomlParser(new CommonTokenStream(lexer));
-    parser.removeErrorListeners();
-    AccumulatingErrorListener errorListener = new AccumulatingErrorListener();
-    parser.addErrorListener(errorListener);
-    ParseTree tree = parser.toml();
-    TomlTable table = tree.accept(new LineVisitor(errorListener, version));
+  private static final ConcurrentHashMap<String, CachedKey> keyCache = new ConcurrentHashMap<>();
+  private static final ReentrantLock evictionLock = new ReentrantLock();
 
-    return new TomlParseResult() {
-      @Override
-      public int size() {
-        return table.size();
-      }
+  private static final class CachedKey {
+    final List<String> keyList;
+    // set by lookups, and cleared as eviction passes over the key
+    volatile boolean used;
 
-      @Override
-      public boolean isEmpty() {
-        return table.isEmpty();
-      }
+    CachedKey(List<String> keyList) {
+      this.keyList = keyList;
+    }
+  }
 
-      @Override
-      public Set<String> keySet() {
-        return table.keySet();
-      }
+  private Parser() {}
 
-      @Override
-      public Set<List<String>> keyPathSet(boolean includeTables) {
-        return table.keyPathSet(includeTables);
+  static List<String> parseDottedKey(String dottedKey) {
+    CachedKey cached = keyCache.get(dottedKey);
+    if (cached != null) {
+      // only write when the flag changes, so hot keys are read without contention
+      if (!cached.used) {
+        cached.used = true;
       }
+      return cached.keyList;
+    }
+    List<String> keyList = splitBareKey(dottedKey);
+    if (keyList == null) {
+      keyList = parseKey(dottedKey);
+    }
+    keyList = Collections.unmodifiableList(keyList);
+    cached = keyCache.putIfAbsent(dottedKey, new CachedKey(keyList));
+    if (cached != null) {
+      return cached.keyList;
+    }
+    if (keyCache.size() > MAX_CACHED_KEYS) {
+      evictKeys();
+    }
+    return keyList;
+  }
 
-      @Override
-      @Nullable
-      public Object get(List<String> path) {
-        return table.get(path);
+  // A second-chance sweep: keys used since the previous sweep have their flag cleared and are kept,
+  // and the others are removed. A thread finding a sweep already in progress leaves it to finish.
+  private static void evictKeys() {
+    if (!evictionLock.tryLock()) {
+      return;
+    }
+    try {
+      int target = MAX_CACHED_KEYS - EVICTION_BATCH;
+      for (int pass = 0; pass < 2 && keyCache.size() > target; ++pass) {
+        Iterator<CachedKey> iterator = keyCache.values().iterator();
+        while (iterator.hasNext() && keyCache.size() > target) {
+          CachedKey cached = iterator.next();
+          if (cached.used) {
+            cached.used = false;
+          } else {
+            iterator.remove();
+          }
+        }
       }
+    } finally {
+      evictionLock.unlock();
+    }
+  }
 
-      @Override
-      @Nullable
-      public TomlPosition inputPositionOf(List<String> path) {
-        return table.inputPositionOf(path);
+  /**
+   * Split a key consisting only of bare keys separated by dots, without any whitespace or quoting.
+   *
+   * @return The key parts, or {@code null} if the key is not of that form.
+   */
+  static List<String> splitBareKey(String dottedKey) {
+    List<String> keyList = new ArrayList<>(4);
+    int start = 0;
+    int length = dottedKey.length();
+    for (int i = 0; i <= length; ++i) {
+      if (i == length || dottedKey.charAt(i) == '.') {
+        if (i == start) {
+          return null;
+        }
+        keyList.add(dottedKey.substring(start, i));
+        start = i + 1;
+      } else if (!isBareKeyChar(dottedKey.charAt(i))) {
+        return null;
       }
+    }
+    return keyList;
+  }
 
-      @Override
-      public Map<String, Object> toMap() {
-        return table.toMap();
+  static boolean isBareKey(String key) {
+    if (key.isEmpty()) {
+      return false;
+    }
+    for (int i = 0; i < key.length(); ++i) {
+      if (!isBareKeyChar(key.charAt(i))) {
+        return false;
       }
+    }
+    return true;
+  }
 
-      @Override
-      public List<TomlParseError> errors() {
-        return errorListener.errors();
-      }
-    };
+  private static boolean isBareKeyChar(char c) {
+    return (c >= 'a' && c <= 'z')
+        || (c >= 'A' && c <= 'Z')
+        || (c >= '0' && c <= '9')
+        || c == '_'
+        || c == '-';
   }
 
-  static List<String> parseDottedKey(String dottedKey) {
+  private static List<String> parseKey(String dottedKey) {
     TomlLexer lexer = new TomlLexer(CharStreams.fromString(dottedKey));
     lexer.mode(TomlLexer.KeyMode);
     TomlParser parser = new TomlParser(new CommonTokenStream(lexer));
@@ -87,4 +145,12 @@ final class Parser {
     }
     return keyList;
   }
+
+  static void clearKeyCache() {
+    keyCache.clear();
+  }
+
+  static int keyCacheSize() {
+    return keyCache.size();
+  }
 }
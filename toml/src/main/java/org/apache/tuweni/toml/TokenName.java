@@ -6,6 +6,9 @@ import org.apache.tuweni.toml.internal.TomlLexer;
 
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 enum TokenName {
@@ -55,7 +58,7 @@ enum TokenName {
   TokenName(String displayName, int... tokenTypes) {
     this.displayName = displayName;
     // offset by 1 to account for EOF being -1 (moves it to zero)
-    this.tokenTypes = new BitSet(TomlLexer.VOCABULARY.getMaxTokenType() + 1);
+    this.tokenTypes = new BitSet();
     for (int type : tokenTypes) {
       this.tokenTypes.set(type + 1);
     }
@@ -68,4 +71,42 @@ enum TokenName {
   public String displayName() {
     return displayName;
   }
+
+  static String describeToken(int tokenType, String text) {
+    switch (tokenType) {
+      case TomlLexer.NewLine:
+        return "end of line";
+      case TomlLexer.EOF:
+        return "end of input";
+      default:
+        return "'" + Toml.tomlEscape(text) + '\'';
+    }
+  }
+
+  static String describeExpected(IntStream tokenTypes) {
+    List<String> sortedNames =
+        tokenTypes
+            .boxed()
+            .flatMap(TokenName::namesForToken)
+            .sorted()
+            .distinct()
+            .map(TokenName::displayName)
+            .collect(Collectors.toList());
+
+    StringBuilder builder = new StringBuilder();
+    int count = sortedNames.size();
+    for (int i = 0; i < count; ++i) {
+      builder.append(sortedNames.get(i));
+      if (i < (count - 2)) {
+        builder.append(", ");
+      } else if (i == (count - 2)) {
+        if (count >= 3) {
+          builder.append(',');
+        }
+        builder.append(" or ");
+      }
+    }
+
+    return builder.toString();
+  }
 }
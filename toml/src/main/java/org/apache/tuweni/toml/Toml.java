@@ -6,19 +6,33 @@ import static java.util.Objects.requireNonNull;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.StringJoiner;
-import java.util.regex.Pattern;
-
-import org.antlr.v4.runtime.CharStream;
-import org.antlr.v4.runtime.CharStreams;
 
 /** Methods for parsing data stored in Tom's Obvious, Minimal Language (TOML). */
 public final class Toml {
-  private static final Pattern simpleKeyPattern = Pattern.compile("^[A-Za-z0-9_-]+$");
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+  // the named escape sequences, indexed by character
+  private static final String[] ESCAPES = new String['\'' + 1];
+
+  static {
+    ESCAPES['\t'] = "\\t";
+    ESCAPES['\b'] = "\\b";
+    ESCAPES['\n'] = "\\n";
+    ESCAPES['\r'] = "\\r";
+    ESCAPES['\f'] = "\\f";
+    ESCAPES['\''] = "\\'";
+  }
 
   private Toml() {}
 
@@ -40,8 +54,20 @@ public final class Toml {
    * @return The parse result.
    */
   public static TomlParseResult parse(String input, TomlVersion version) {
-    CharStream stream = CharStreams.fromString(input);
-    return Parser.parse(stream, version.canonical);
+    return parse(input, version, true);
+  }
+
+  /**
+   * Parse a TOML string.
+   *
+   * @param input The input to parse.
+   * @param version The version level to parse at.
+   * @param trackPositions {@code false} to discard the input position of each value, in which case
+   *     {@link TomlTable#inputPositionOf(String)} returns {@code null} and less memory is used.
+   * @return The parse result.
+   */
+  public static TomlParseResult parse(String input, TomlVersion version, boolean trackPositions) {
+    return DocumentParser.parse(input, version.canonical, trackPositions);
   }
 
   /**
@@ -64,8 +90,56 @@ public final class Toml {
    * @throws IOException If an IO error occurs.
    */
   public static TomlParseResult parse(Path file, TomlVersion version) throws IOException {
-    CharStream stream = CharStreams.fromPath(file);
-    return Parser.parse(stream, version.canonical);
+    return parse(file, version, true);
+  }
+
+  /**
+   * Parse a TOML file.
+   *
+   * @param file The input file to parse.
+   * @param version The version level to parse at.
+   * @param trackPositions {@code false} to discard the input position of each value, in which case
+   *     {@link TomlTable#inputPositionOf(String)} returns {@code null} and less memory is used.
+   * @return The parse result.
+   * @throws IOException If an IO error occurs.
+   */
+  public static TomlParseResult parse(Path file, TomlVersion version, boolean trackPositions)
+      throws IOException {
+    try (Reader reader = Channels.newReader(Files.newByteChannel(file), decoder(), -1)) {
+      return DocumentParser.parse(reader, version.canonical, trackPositions);
+    }
+  }
+
+  /**
+   * Parse a TOML file, decoding values only when they are read.
+   *
+   * <p>The file is memory-mapped and parsed once, to check it for errors and to index its tables
+   * and keys. Values other than tables are not retained, but are decoded from the mapped file each
+   * time they are read, so the memory used by the result is a small fraction of that used by {@link
+   * #parse(Path)} for files with large values or many entries.
+   *
+   * <p>The file must not be modified while the result is in use.
+   *
+   * @param file The input file to parse.
+   * @return The parse result.
+   * @throws IOException If an IO error occurs.
+   */
+  public static TomlParseResult parseLazily(Path file) throws IOException {
+    return parseLazily(file, TomlVersion.LATEST);
+  }
+
+  /**
+   * Parse a TOML file, decoding values only when they are read.
+   *
+   * <p>See {@link #parseLazily(Path)}.
+   *
+   * @param file The input file to parse.
+   * @param version The version level to parse at.
+   * @return The parse result.
+   * @throws IOException If an IO error occurs.
+   */
+  public static TomlParseResult parseLazily(Path file, TomlVersion version) throws IOException {
+    return LazyTomlDocument.parse(file, version.canonical);
   }
 
   /**
@@ -88,8 +162,24 @@ public final class Toml {
    * @throws IOException If an IO error occurs.
    */
   public static TomlParseResult parse(InputStream is, TomlVersion version) throws IOException {
-    CharStream stream = CharStreams.fromStream(is);
-    return Parser.parse(stream, version.canonical);
+    return parse(is, version, true);
+  }
+
+  /**
+   * Parse a TOML input stream.
+   *
+   * @param is The input stream to read the TOML document from.
+   * @param version The version level to parse at.
+   * @param trackPositions {@code false} to discard the input position of each value, in which case
+   *     {@link TomlTable#inputPositionOf(String)} returns {@code null} and less memory is used.
+   * @return The parse result.
+   * @throws IOException If an IO error occurs.
+   */
+  public static TomlParseResult parse(InputStream is, TomlVersion version, boolean trackPositions)
+      throws IOException {
+    try (Reader reader = new InputStreamReader(is, decoder())) {
+      return DocumentParser.parse(reader, version.canonical, trackPositions);
+    }
   }
 
   /**
@@ -112,8 +202,24 @@ public final class Toml {
    * @throws IOException If an IO error occurs.
    */
   public static TomlParseResult parse(Reader reader, TomlVersion version) throws IOException {
-    CharStream stream = CharStreams.fromReader(reader);
-    return Parser.parse(stream, version.canonical);
+    return parse(reader, version, true);
+  }
+
+  /**
+   * Parse a TOML reader.
+   *
+   * @param reader The reader to obtain the TOML document from.
+   * @param version The version level to parse at.
+   * @param trackPositions {@code false} to discard the input position of each value, in which case
+   *     {@link TomlTable#inputPositionOf(String)} returns {@code null} and less memory is used.
+   * @return The parse result.
+   * @throws IOException If an IO error occurs.
+   */
+  public static TomlParseResult parse(Reader reader, TomlVersion version, boolean trackPositions)
+      throws IOException {
+    try (Reader r = reader) {
+      return DocumentParser.parse(r, version.canonical, trackPositions);
+    }
   }
 
   /**
@@ -137,15 +243,41 @@ public final class Toml {
    */
   public static TomlParseResult parse(ReadableByteChannel channel, TomlVersion version)
       throws IOException {
-    CharStream stream = CharStreams.fromChannel(channel);
-    return Parser.parse(stream, version.canonical);
+    return parse(channel, version, true);
+  }
+
+  /**
+   * Parse a TOML channel.
+   *
+   * @param channel The channel to read the TOML document from.
+   * @param version The version level to parse at.
+   * @param trackPositions {@code false} to discard the input position of each value, in which case
+   *     {@link TomlTable#inputPositionOf(String)} returns {@code null} and less memory is used.
+   * @return The parse result.
+   * @throws IOException If an IO error occurs.
+   */
+  public static TomlParseResult parse(
+      ReadableByteChannel channel, TomlVersion version, boolean trackPositions)
+      throws IOException {
+    try (Reader reader = Channels.newReader(channel, decoder(), -1)) {
+      return DocumentParser.parse(reader, version.canonical, trackPositions);
+    }
+  }
+
+  static CharsetDecoder decoder() {
+    return StandardCharsets.UTF_8
+        .newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
   }
 
   /**
    * Parse a dotted key into individual parts.
    *
+   * <p>Parsed keys are cached, so repeated lookups of the same key are cheap.
+   *
    * @param dottedKey A dotted key (e.g. {@code server.address.port}).
-   * @return A list of individual keys in the path.
+   * @return An unmodifiable list of individual keys in the path.
    * @throws IllegalArgumentException If the dotted key cannot be parsed.
    */
   public static List<String> parseDottedKey(String dottedKey) {
@@ -164,7 +296,7 @@ public final class Toml {
 
     StringJoiner joiner = new StringJoiner(".");
     for (String key : path) {
-      if (simpleKeyPattern.matcher(key).matches()) {
+      if (Parser.isBareKey(key)) {
         joiner.add(key);
       } else {
         joiner.add("\"" + tomlEscape(key) + '\"');
@@ -191,45 +323,55 @@ public final class Toml {
    * @return A {@link StringBuilder} holding the results of escaping the text.
    */
   public static StringBuilder tomlEscape(String text) {
-    final StringBuilder out = new StringBuilder();
-    for (int i = 0; i < text.length(); i++) {
-      int codepoint = text.codePointAt(i);
-      if (Character.charCount(codepoint) > 1) {
-        out.append("\\U").append(String.format("%08x", codepoint));
-        ++i;
-        continue;
-      }
+    final StringBuilder out = new StringBuilder(text.length());
+    try {
+      tomlEscape(text, out);
+    } catch (IOException e) {
+      // not reachable
+      throw new UncheckedIOException(e);
+    }
+    return out;
+  }
 
-      char ch = Character.toChars(codepoint)[0];
-      if (ch == '\'') {
-        out.append("\\'");
+  /**
+   * Escape a text string using the TOML escape sequences, appending the result to an output.
+   *
+   * <p>Runs of characters that need no escaping are appended directly from the text.
+   *
+   * @param text The text string to escape.
+   * @param out The appendable output.
+   * @throws IOException If an IO error occurs.
+   */
+  public static void tomlEscape(String text, Appendable out) throws IOException {
+    requireNonNull(text);
+    requireNonNull(out);
+    int length = text.length();
+    int start = 0;
+    for (int i = 0; i < length; ++i) {
+      char ch = text.charAt(i);
+      if (ch >= 0x20 && ch < 0x7F && ch != '\'') {
         continue;
       }
-      if (ch >= 0x20 && ch < 0x7F) {
-        out.append(ch);
-        continue;
+      out.append(text, start, i);
+      if (ch < ESCAPES.length && ESCAPES[ch] != null) {
+        out.append(ESCAPES[ch]);
+      } else if (Character.isHighSurrogate(ch)
+          && i + 1 < length
+          && Character.isLowSurrogate(text.charAt(i + 1))) {
+        appendHexEscape(out, 'U', Character.toCodePoint(ch, text.charAt(++i)), 8);
+      } else {
+        appendHexEscape(out, 'u', ch, 4);
       }
+      start = i + 1;
+    }
+    out.append(text, start, length);
+  }
 
-      switch (ch) {
-        case '\t':
-          out.append("\\t");
-          break;
-        case '\b':
-          out.append("\\b");
-          break;
-        case '\n':
-          out.append("\\n");
-          break;
-        case '\r':
-          out.append("\\r");
-          break;
-        case '\f':
-          out.append("\\f");
-          break;
-        default:
-          out.append("\\u").append(String.format("%04x", codepoint));
-      }
+  private static void appendHexEscape(Appendable out, char prefix, int codepoint, int digits)
+      throws IOException {
+    out.append('\\').append(prefix);
+    for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+      out.append(HEX_DIGITS[(codepoint >>> shift) & 0xF]);
     }
-    return out;
   }
 }
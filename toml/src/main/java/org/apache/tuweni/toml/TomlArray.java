@@ -5,7 +5,13 @@ package org.apache.tuweni.toml;
 import static org.apache.tuweni.toml.TomlType.typeNameFor;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
@@ -277,6 +283,57 @@ public interface TomlArray {
     return (TomlTable) value;
   }
 
+  /**
+   * Get the elements of an array of integers as a {@code long[]}.
+   *
+   * @return A new array holding the elements of this array.
+   * @throws TomlInvalidTypeException If this array does not contain longs.
+   */
+  default long[] getLongArray() {
+    if (!containsLongs()) {
+      throw new TomlInvalidTypeException("array contains " + typeNameFor(get(0)) + "s");
+    }
+    long[] result = new long[size()];
+    for (int i = 0; i < result.length; ++i) {
+      result[i] = getLong(i);
+    }
+    return result;
+  }
+
+  /**
+   * Get the elements of an array of floats as a {@code double[]}.
+   *
+   * @return A new array holding the elements of this array.
+   * @throws TomlInvalidTypeException If this array does not contain doubles.
+   */
+  default double[] getDoubleArray() {
+    if (!containsDoubles()) {
+      throw new TomlInvalidTypeException("array contains " + typeNameFor(get(0)) + "s");
+    }
+    double[] result = new double[size()];
+    for (int i = 0; i < result.length; ++i) {
+      result[i] = getDouble(i);
+    }
+    return result;
+  }
+
+  /**
+   * Get the elements of an array of booleans as a {@code boolean[]}.
+   *
+   * @return A new array holding the elements of this array.
+   * @throws TomlInvalidTypeException If this array does not contain booleans.
+   */
+  default boolean[] getBooleanArray() {
+    if (!containsBooleans()) {
+      throw new TomlInvalidTypeException("array contains " + typeNameFor(get(0)) + "s");
+    }
+    boolean[] result = new boolean[size()];
+    for (int i = 0; i < result.length; ++i) {
+      result[i] = getBoolean(i);
+    }
+    return result;
+  }
+
   /**
    * Get the elements of this array as a {@link List}.
    *
@@ -312,4 +369,32 @@ public interface TomlArray {
   default void toJson(Appendable appendable) throws IOException {
     JsonSerializer.toJson(this, appendable);
   }
+
+  /**
+   * Write a JSON representation of this array to an output stream, using the UTF-8 encoding.
+   *
+   * <p>The output stream is flushed, but not closed.
+   *
+   * @param out The output stream.
+   * @throws IOException If an IO error occurs.
+   */
+  default void writeJson(OutputStream out) throws IOException {
+    Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+    toJson(writer);
+    writer.flush();
+  }
+
+  /**
+   * Write a JSON representation of this array to a channel, using the UTF-8 encoding.
+   *
+   * <p>The channel is not closed.
+   *
+   * @param channel The channel.
+   * @throws IOException If an IO error occurs.
+   */
+  default void writeJson(WritableByteChannel channel) throws IOException {
+    Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1);
+    toJson(writer);
+    writer.flush();
+  }
 }
@@ -4,7 +4,12 @@ package org.apache.tuweni.toml;
 
 import java.util.List;
 
-/** The result from parsing a TOML document. */
+/**
+ * The result from parsing a TOML document.
+ *
+ * <p>A document with syntax errors is still parsed. The values read before a syntax error are kept,
+ * including a partial string, array or inline table, and parsing resumes at the next line.
+ */
 public interface TomlParseResult extends TomlTable {
 
   /**
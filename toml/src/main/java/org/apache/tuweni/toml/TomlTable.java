@@ -8,7 +8,13 @@ import static org.apache.tuweni.toml.Toml.joinKeyPath;
 import static org.apache.tuweni.toml.TomlType.typeNameFor;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
@@ -1172,4 +1178,32 @@ public interface TomlTable {
   default void toJson(Appendable appendable) throws IOException {
     JsonSerializer.toJson(this, appendable);
   }
+
+  /**
+   * Write a JSON representation of this table to an output stream, using the UTF-8 encoding.
+   *
+   * <p>The output stream is flushed, but not closed.
+   *
+   * @param out The output stream.
+   * @throws IOException If an IO error occurs.
+   */
+  default void writeJson(OutputStream out) throws IOException {
+    Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+    toJson(writer);
+    writer.flush();
+  }
+
+  /**
+   * Write a JSON representation of this table to a channel, using the UTF-8 encoding.
+   *
+   * <p>The channel is not closed.
+   *
+   * @param channel The channel.
+   * @throws IOException If an IO error occurs.
+   */
+  default void writeJson(WritableByteChannel channel) throws IOException {
+    Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1);
+    toJson(writer);
+    writer.flush();
+  }
 }
@@ -0,0 +1,123 @@
+// Copyright The Tuweni Authors
+// SPDX-License-Identifier: Apache-2.0
+package org.apache.tuweni.toml;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.apache.tuweni.junit.TempDirectory;
+import org.apache.tuweni.junit.TempDirectoryExtension;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+@ExtendWith(TempDirectoryExtension.class)
+class LazyTomlDocumentTest {
+
+  @ParameterizedTest
+  @ValueSource(
+      strings = {
+        "example-v0.4.0.toml",
+        "hard_example.toml",
+        "hard_example_unicode.toml",
+        "toml-v0.5.0-spec-example.toml"
+      })
+  void shouldMatchEagerParse(String resource) throws Exception {
+    Path file =
+        Paths.get(this.getClass().getResource("/org/apache/tuweni/toml/" + resource).toURI());
+    TomlParseResult expected = Toml.parse(file, TomlVersion.V0_4_0);
+    TomlParseResult result = Toml.parseLazily(file, TomlVersion.V0_4_0);
+    assertEquals(errors(expected), errors(result));
+    assertEquals(expected.keyPathSet(), result.keyPathSet());
+    assertEquals(expected.toJson(), result.toJson());
+    for (List<String> path : expected.keyPathSet(true)) {
+      assertEquals(expected.inputPositionOf(path), result.inputPositionOf(path));
+    }
+  }
+
+  @Test
+  void shouldDecodeValuesOnDemand(@TempDirectory Path tempDir) throws Exception {
+    Path file = tempDir.resolve("lazy.toml");
+    String input =
+        "# ƭλïƨ ïƨ á ƭèƨƭ\r\n"
+            + "name = \"Ýôú'ℓℓ λáƭè ₥è\"\r\n"
+            + "text = \"\"\"\n"
+            + "several\n"
+            + "lines\"\"\"\n"
+            + "\n"
+            + "[server]\n"
+            + "  ports = [\n"
+            + "    8000,\n"
+            + "    8001, # ñèжƭ\n"
+            + "  ]\n"
+            + "  address.host = 'localhost'\n"
+            + "  limits = { connections = 10, rate = 1.5 }\n"
+            + "\n"
+            + "[[peers]]\n"
+            + "id = 1\n"
+            + "[[peers]]\n"
+            + "id = 2\n"
+            + "since = 1979-05-27T07:32:00Z\n";
+    Files.write(file, input.getBytes(UTF_8));
+
+    TomlParseResult result = Toml.parseLazily(file);
+    assertFalse(result.hasErrors(), () -> errors(result).toString());
+    assertEquals("Ýôú'ℓℓ λáƭè ₥è", result.getString("name"));
+    assertEquals("several\nlines".replace("\n", System.lineSeparator()), result.getString("text"));
+    TomlArray ports = result.getArray("server.ports");
+    assertNotNull(ports);
+    assertEquals(Arrays.asList(8000L, 8001L), ports.toList());
+    TomlParseResult expected = Toml.parse(input);
+    assertEquals(expected.getArray("server.ports").inputPositionOf(1), ports.inputPositionOf(1));
+    assertEquals("localhost", result.getString("server.address.host"));
+    assertEquals(10L, result.getLong("server.limits.connections"));
+    assertEquals(TomlPosition.positionAt(12, 3), result.inputPositionOf("server.address.host"));
+
+    TomlArray peers = result.getArray("peers");
+    assertNotNull(peers);
+    assertEquals(2, peers.size());
+    assertEquals(2L, peers.getTable(1).getLong("id"));
+    assertEquals("1979-05-27T07:32Z", peers.getTable(1).getOffsetDateTime("since").toString());
+    assertNull(result.get("server.ports.0"));
+
+    assertEquals(expected.toJson(), result.toJson());
+  }
+
+  @Test
+  void shouldReportSameErrorsAsEagerParse(@TempDirectory Path tempDir) throws Exception {
+    String input =
+        "a = [1, 2]\n"
+            + "[[a]]\n"
+            + "b = 1\n"
+            + "b.c = 2\n"
+            + "c = 99999999999999999999\n"
+            + "d = 'ok'\n"
+            + "[d]\n";
+    Path file = tempDir.resolve("errors.toml");
+    Files.write(file, input.getBytes(UTF_8));
+
+    TomlParseResult result = Toml.parseLazily(file);
+    assertTrue(result.hasErrors());
+    assertEquals(errors(Toml.parse(input)), errors(result));
+    assertEquals(Arrays.asList(1L, 2L), result.getArray("a").toList());
+    assertEquals("ok", result.getString("d"));
+    assertNull(result.get("c"));
+  }
+
+  private static List<String> errors(TomlParseResult result) {
+    return result.errors().stream().map(TomlParseError::toString).collect(Collectors.toList());
+  }
+}
@@ -3,8 +3,10 @@
 package org.apache.tuweni.toml;
 
 import static org.apache.tuweni.toml.TomlPosition.positionAt;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -102,6 +104,40 @@ class MutableTomlArrayTest {
     assertEquals(false, array.getBoolean(0));
   }
 
+  @Test
+  void shouldGetPrimitiveArrays() {
+    MutableTomlArray longs = new MutableTomlArray();
+    for (long i = 0; i < 10; ++i) {
+      longs.append(i * 3, positionAt(1, 1));
+    }
+    assertArrayEquals(new long[] {0, 3, 6, 9, 12, 15, 18, 21, 24, 27}, longs.getLongArray());
+    assertEquals(27L, longs.get(9));
+    MutableTomlArray doubles =
+        new MutableTomlArray().append(1.5d, positionAt(1, 1)).append(-2d, positionAt(1, 6));
+    assertArrayEquals(new double[] {1.5d, -2d}, doubles.getDoubleArray());
+    MutableTomlArray booleans =
+        new MutableTomlArray().append(true, positionAt(1, 1)).append(false, positionAt(1, 7));
+    assertArrayEquals(new boolean[] {true, false}, booleans.getBooleanArray());
+    assertArrayEquals(new long[0], new MutableTomlArray().getLongArray());
+  }
+
+  @Test
+  void cannotGetPrimitiveArrayOfDifferentType() {
+    MutableTomlArray array = new MutableTomlArray().append(1L, positionAt(1, 1));
+    TomlInvalidTypeException e =
+        assertThrows(TomlInvalidTypeException.class, array::getDoubleArray);
+    assertEquals("array contains integers", e.getMessage());
+    assertThrows(TomlInvalidTypeException.class, array::getBooleanArray);
+    assertThrows(TomlInvalidTypeException.class, () -> array.getDouble(0));
+  }
+
+  @Test
+  void shouldNotTrackPositionsIfDisabled() {
+    MutableTomlArray array = new MutableTomlArray(false, false).append("foo", positionAt(2, 3));
+    assertEquals("foo", array.getString(0));
+    assertNull(array.inputPositionOf(0));
+  }
+
   @Test
   void shouldGetOffSetDateTime() {
     OffsetDateTime time = OffsetDateTime.now(ZoneId.of("America/Los_Angeles"));
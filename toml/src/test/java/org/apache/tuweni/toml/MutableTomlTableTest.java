@@ -9,11 +9,18 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.stream.Stream;
@@ -154,6 +161,40 @@ class MutableTomlTableTest {
     assertEquals(new HashSet<>(Arrays.asList("bar", "foo")), table.keySet());
   }
 
+  @Test
+  void shouldLookUpKeysOfLargeTable() {
+    MutableTomlTable table = new MutableTomlTable();
+    List<String> keys = new ArrayList<>();
+    for (int i = 0; i < 100; ++i) {
+      keys.add("key" + i);
+      table.set(Collections.singletonList("key" + i), (long) i, positionAt(i + 1, 1));
+    }
+    assertEquals(100, table.size());
+    assertEquals(keys, new ArrayList<>(table.keySet()));
+    for (int i = 0; i < 100; ++i) {
+      assertEquals(i, table.getLong("key" + i));
+      assertEquals(positionAt(i + 1, 1), table.inputPositionOf("key" + i));
+    }
+    assertNull(table.get("key100"));
+    assertTrue(table.keySet().contains("key42"));
+    TomlParseError e =
+        assertThrows(TomlParseError.class, () -> table.set("key42", 1L, positionAt(200, 1)));
+    assertEquals("key42 previously defined at line 43, column 1", e.getMessageWithoutPosition());
+  }
+
+  @Test
+  void shouldNotTrackPositionsIfDisabled() {
+    MutableTomlTable table = new MutableTomlTable(false);
+    table.set("foo.bar", "one", positionAt(4, 3));
+    assertEquals("one", table.getString("foo.bar"));
+    assertNull(table.inputPositionOf("foo.bar"));
+    TomlParseError e =
+        assertThrows(TomlParseError.class, () -> table.set("foo.bar", "two", positionAt(5, 1)));
+    assertEquals(
+        "foo.bar previously defined at an unknown position", e.getMessageWithoutPosition());
+    assertEquals(positionAt(5, 1), e.position());
+  }
+
   @Test
   void shouldReturnDottedKeySet() {
     MutableTomlTable table = new MutableTomlTable();
@@ -224,4 +265,52 @@ class MutableTomlTableTest {
             + "}\n";
     assertEquals(expected.replace("\n", System.lineSeparator()), table.toJson());
   }
+
+  @Test
+  void shouldSerializeIntegersToJSON() {
+    MutableTomlTable table = new MutableTomlTable();
+    table.set("a", 0L, positionAt(1, 1));
+    table.set("b", -42L, positionAt(2, 1));
+    table.set("c", Long.MAX_VALUE, positionAt(3, 1));
+    table.set("d", Long.MIN_VALUE, positionAt(4, 1));
+    String expected =
+        "{\n"
+            + "  \"a\" : 0,\n"
+            + "  \"b\" : -42,\n"
+            + "  \"c\" : 9223372036854775807,\n"
+            + "  \"d\" : -9223372036854775808\n"
+            + "}\n";
+    assertEquals(expected.replace("\n", System.lineSeparator()), table.toJson());
+  }
+
+  @Test
+  void shouldStreamJSON() throws Exception {
+    MutableTomlTable table = new MutableTomlTable();
+    for (int i = 0; i < 2000; ++i) {
+      String value = "value \"" + i + "\" ελληνικά";
+      table.set("section" + (i % 7) + ".key" + i, value, positionAt(i + 1, 1));
+      table.set("numbers.n" + i, (long) i * -997, positionAt(i + 1, 2));
+    }
+    String expected = table.toJson();
+    assertTrue(expected.length() > 100_000);
+
+    StringWriter writer = new StringWriter();
+    table.toJson(writer);
+    assertEquals(expected, writer.toString());
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    table.writeJson(out);
+    assertEquals(expected, out.toString(StandardCharsets.UTF_8));
+
+    out.reset();
+    table.writeJson(Channels.newChannel(out));
+    assertEquals(expected, out.toString(StandardCharsets.UTF_8));
+
+    // a print stream is both an output stream and an appendable
+    out.reset();
+    PrintStream printStream = new PrintStream(out, true, StandardCharsets.UTF_8);
+    table.toJson(printStream);
+    printStream.flush();
+    assertEquals(expected, out.toString(StandardCharsets.UTF_8));
+  }
 }
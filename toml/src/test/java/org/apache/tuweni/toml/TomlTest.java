@@ -2,13 +2,24 @@
 // SPDX-License-Identifier: Apache-2.0
 package org.apache.tuweni.toml;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
@@ -23,6 +34,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
 
 class TomlTest {
 
@@ -63,6 +75,57 @@ class TomlTest {
     assertEquals(2, error.position().column());
   }
 
+  @ParameterizedTest
+  @MethodSource("dottedKeySupplier")
+  void shouldSplitDottedKey(String dottedKey, List<String> expected) {
+    assertEquals(expected, Toml.parseDottedKey(dottedKey));
+    // a second lookup is served from the key cache and must agree
+    assertEquals(expected, Toml.parseDottedKey(dottedKey));
+  }
+
+  @SuppressWarnings("UnusedMethod")
+  private static Stream<Arguments> dottedKeySupplier() {
+    return Stream.of(
+        Arguments.of("foo", Arrays.asList("foo")),
+        Arguments.of("foo.bar.-baz_1", Arrays.asList("foo", "bar", "-baz_1")),
+        Arguments.of("1.2", Arrays.asList("1", "2")),
+        Arguments.of(" foo . bar ", Arrays.asList("foo", "bar")),
+        Arguments.of("foo.\"bar.baz\"", Arrays.asList("foo", "bar.baz")),
+        Arguments.of("'a b'.c", Arrays.asList("a b", "c")));
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"", ".", "foo.", ".foo", "foo..bar", "foo bar", "foo.b@r"})
+  void shouldRejectInvalidDottedKey(String dottedKey) {
+    assertThrows(IllegalArgumentException.class, () -> Toml.parseDottedKey(dottedKey));
+    assertThrows(IllegalArgumentException.class, () -> Toml.parseDottedKey(dottedKey));
+  }
+
+  @Test
+  void dottedKeysAreUnmodifiable() {
+    List<String> keys = Toml.parseDottedKey("foo.bar");
+    assertThrows(UnsupportedOperationException.class, () -> keys.add("baz"));
+  }
+
+  @Test
+  void dottedKeyCacheIsBounded() {
+    Parser.clearKeyCache();
+    for (int i = 0; i < Parser.MAX_CACHED_KEYS * 2; ++i) {
+      assertEquals(Arrays.asList("key", Integer.toString(i)), Toml.parseDottedKey("key." + i));
+    }
+    assertTrue(Parser.keyCacheSize() <= Parser.MAX_CACHED_KEYS);
+  }
+
+  @Test
+  void dottedKeyCacheKeepsKeysInUse() {
+    Parser.clearKeyCache();
+    List<String> hot = Toml.parseDottedKey("server.port");
+    for (int i = 0; i < Parser.MAX_CACHED_KEYS * 2; ++i) {
+      Toml.parseDottedKey("key." + i);
+      assertSame(hot, Toml.parseDottedKey("server.port"));
+    }
+  }
+
   @ParameterizedTest
   @MethodSource("stringSupplier")
   void shouldParseString(String input, String expected) {
@@ -660,6 +723,26 @@ class TomlTest {
     assertEquals("]", result.getArray("the.hard.'βïƭ#'.multi_line_array").getString(0));
   }
 
+  @Test
+  void testHardExampleUnicodeFromReader() throws Exception {
+    InputStream is =
+        this.getClass().getResourceAsStream("/org/apache/tuweni/toml/hard_example_unicode.toml");
+    assertNotNull(is);
+    String input = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+    // a reader returning a single char per read, to split surrogate pairs and line endings
+    Reader reader =
+        new StringReader(input) {
+          @Override
+          public int read(char[] cbuf, int off, int len) throws IOException {
+            return super.read(cbuf, off, Math.min(len, 1));
+          }
+        };
+    TomlParseResult result = Toml.parse(reader, TomlVersion.V0_4_0);
+    assertFalse(result.hasErrors(), () -> joinErrors(result));
+    assertEquals(Toml.parse(input, TomlVersion.V0_4_0).toJson(), result.toJson());
+    assertEquals("]", result.getArray("the.hard.'βïƭ#'.multi_line_array").getString(0));
+  }
+
   @Test
   void testSpecExample() throws Exception {
     InputStream is =
@@ -680,6 +763,58 @@ class TomlTest {
     assertEquals(Arrays.asList("alpha", "omega"), clientHosts.toList());
   }
 
+  @ParameterizedTest
+  @MethodSource("tomlEscapeSupplier")
+  void shouldEscapeTomlString(String text, String expected) throws Exception {
+    assertEquals(expected, Toml.tomlEscape(text).toString());
+    StringBuilder out = new StringBuilder("prefix:");
+    Toml.tomlEscape(text, out);
+    assertEquals("prefix:" + expected, out.toString());
+  }
+
+  @SuppressWarnings("UnusedMethod")
+  private static Stream<Arguments> tomlEscapeSupplier() {
+    return Stream.of(
+        Arguments.of("", ""),
+        Arguments.of("plain text", "plain text"),
+        Arguments.of("it's", "it\\'s"),
+        Arguments.of("a\tb\bc\nd\re\ff", "a\\tb\\bc\\nd\\re\\ff"),
+        Arguments.of("\u0001\u001f\u007f", "\\u0001\\u001f\\u007f"),
+        Arguments.of("caf\u00e9", "caf\\u00e9"),
+        Arguments.of("\ud83d\ude00!", "\\U0001f600!"),
+        Arguments.of("\ud83d", "\\ud83d"));
+  }
+
+  @Test
+  void shouldParseWithoutPositions() throws Exception {
+    InputStream is =
+        this.getClass().getResourceAsStream("/org/apache/tuweni/toml/hard_example.toml");
+    assertNotNull(is);
+    String input = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+    TomlParseResult result = Toml.parse(input, TomlVersion.V0_4_0, false);
+    assertFalse(result.hasErrors(), () -> joinErrors(result));
+    assertEquals(Toml.parse(input, TomlVersion.V0_4_0).toJson(), result.toJson());
+    assertNull(result.inputPositionOf("the.test_string"));
+    assertNull(result.getArray("the.hard.'bit#'.multi_line_array").inputPositionOf(0));
+
+    TomlParseResult errors = Toml.parse("a = 1\na = 2\n", TomlVersion.LATEST, false);
+    assertEquals(1, errors.errors().size());
+    assertEquals(
+        "a previously defined at an unknown position",
+        errors.errors().get(0).getMessageWithoutPosition());
+    assertEquals(TomlPosition.positionAt(2, 1), errors.errors().get(0).position());
+  }
+
+  @Test
+  void shouldGetPrimitiveArrays() {
+    TomlParseResult result =
+        Toml.parse("ints = [1, 2, 3]\nfloats = [0.5, 1e3]\nflags = [true, false]\n");
+    assertFalse(result.hasErrors(), () -> joinErrors(result));
+    assertArrayEquals(new long[] {1, 2, 3}, result.getArray("ints").getLongArray());
+    assertArrayEquals(new double[] {0.5, 1e3}, result.getArray("floats").getDoubleArray());
+    assertArrayEquals(new boolean[] {true, false}, result.getArray("flags").getBooleanArray());
+  }
+
   @Test
   void testDottedKeyOrder() throws Exception {
     TomlParseResult result1 = Toml.parse("[dog.\"tater.man\"]\ntype.name = \"pug\"");
@@ -690,6 +825,40 @@ class TomlTest {
     assertTrue(result3.hasErrors());
   }
 
+  @Test
+  void shouldKeepValuesReadBeforeSyntaxError() {
+    TomlParseResult result = Toml.parse("a = \"unterminated");
+    assertEquals(1, result.errors().size());
+    assertEquals("unterminated", result.getString("a"));
+
+    result = Toml.parse("a = [1, 2\nb = 3");
+    assertEquals(Arrays.asList(1L, 2L), result.getArray("a").toList());
+    assertFalse(result.contains("b"));
+
+    result = Toml.parse("a = {x = 1, y = \nb = 3");
+    assertEquals(1L, result.getLong("a.x"));
+    assertFalse(result.contains("a.y"));
+    assertEquals(3L, result.getLong("b"));
+
+    result = Toml.parse("[t\nx = 1");
+    assertEquals(1L, result.getLong("t.x"));
+
+    // the rest of the line is skipped
+    result = Toml.parse("a = 1 b = 2\nc = 3");
+    assertEquals(1L, result.getLong("a"));
+    assertFalse(result.contains("b"));
+    assertEquals(3L, result.getLong("c"));
+  }
+
+  @Test
+  void shouldCloseChannel() throws Exception {
+    ReadableByteChannel channel =
+        Channels.newChannel(new ByteArrayInputStream("a = 1".getBytes(StandardCharsets.UTF_8)));
+    TomlParseResult result = Toml.parse(channel);
+    assertEquals(1L, result.getLong("a"));
+    assertFalse(channel.isOpen());
+  }
+
   private String joinErrors(TomlParseResult result) {
     return result.errors().stream().map(TomlParseError::toString).collect(Collectors.joining("\n"));
   }